@@ -1,7 +0,0 @@
-package infinity.ecs.benchmark;
-
-public interface BenchmarkItem {
-	public String getName();
-	public void printMenu();
-	public void handleInput(String input);
-}
@@ -0,0 +1,80 @@
+package infinity.ecs.benchmark.core;
+
+import infinity.ecs.core.Component;
+import infinity.ecs.core.ComponentFactory;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.EntityManager;
+
+/**
+ * Provides a fixed set of empty {@link Component} types, so benchmarks can be parameterized by the
+ * number of {@link Component}s per {@link infinity.ecs.core.Entity}.
+ *
+ * @author preip
+ */
+public final class BenchmarkComponents {
+
+	public static class C0 extends Component { public int value; }
+	public static class C1 extends Component { public int value; }
+	public static class C2 extends Component { public int value; }
+	public static class C3 extends Component { public int value; }
+	public static class C4 extends Component { public int value; }
+	public static class C5 extends Component { public int value; }
+	public static class C6 extends Component { public int value; }
+	public static class C7 extends Component { public int value; }
+
+	/**
+	 * The classes of all available {@link Component}s.
+	 */
+	private static final Class<?>[] CLASSES = {
+		C0.class, C1.class, C2.class, C3.class, C4.class, C5.class, C6.class, C7.class
+	};
+
+	/**
+	 * The maximum number of {@link Component} types.
+	 */
+	public static final int MAX_COUNT = CLASSES.length;
+
+	private BenchmarkComponents() { }
+
+	/**
+	 * Gets the first count {@link ComponentType}s.
+	 *
+	 * @param count The number of types.
+	 * @return The types.
+	 * @throws IllegalArgumentException When count is larger than {@link #MAX_COUNT}.
+	 */
+	@SuppressWarnings("unchecked")
+	public static ComponentType[] getTypes(int count) throws IllegalArgumentException {
+		if (count > MAX_COUNT)
+			throw new IllegalArgumentException();
+		ComponentType[] types = new ComponentType[count];
+		for (int i = 0; i < count; i++)
+			types[i] = ComponentType.get((Class<? extends Component>)CLASSES[i]);
+		return types;
+	}
+
+	/**
+	 * Registers a factory for every {@link Component} type with the specified manager.
+	 *
+	 * @param manager The {@link EntityManager} the factories are registered with.
+	 */
+	public static void registerFactories(EntityManager manager) {
+		for (final ComponentType type : getTypes(MAX_COUNT)) {
+			manager.registerComponentFactory(new ComponentFactory() {
+				@Override
+				public ComponentType getComponentType() {
+					return type;
+				}
+
+				@Override
+				public Component createNewComponent() {
+					try {
+						return type.getComponentClass().getDeclaredConstructor().newInstance();
+					} catch (ReflectiveOperationException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package infinity.ecs.benchmark.core;
+
+import infinity.ecs.core.ComponentMask;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.exceptions.ComponentAlreadyExistsException;
+import infinity.ecs.utils.ReadOnlyCollection;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the structural operations of the {@link EntityManager}: creating and removing
+ * {@link Entity}s, adding and removing {@link infinity.ecs.core.Component}s and getting the
+ * {@link Entity}s of a {@link ComponentMask}. Every operation is applied to all {@link Entity}s
+ * of the world, so the scores are times per world.
+ *
+ * @author preip
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityBenchmark {
+
+	/**
+	 * The number of {@link Entity}s of the world.
+	 */
+	@Param({ "1000", "100000" })
+	public int entityCount;
+
+	/**
+	 * The number of {@link infinity.ecs.core.Component}s of every {@link Entity}.
+	 */
+	@Param({ "1", "4", "8" })
+	public int componentCount;
+
+	private ComponentType[] _types;
+	private ComponentMask _mask;
+	private EntityManager _manager;
+	private Entity[] _entities;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws ComponentAlreadyExistsException {
+		_types = BenchmarkComponents.getTypes(componentCount);
+		_mask = new ComponentMask(_types);
+		_manager = new EntityManager();
+		BenchmarkComponents.registerFactories(_manager);
+		_entities = _manager.createEntities(entityCount, _types);
+	}
+
+	@Benchmark
+	public Entity[] createAndRemoveEntities() throws ComponentAlreadyExistsException {
+		Entity[] entities = new Entity[entityCount];
+		for (int i = 0; i < entityCount; i++) {
+			entities[i] = _manager.createEntity();
+			_manager.addComponents(entities[i], _types);
+		}
+		for (int i = 0; i < entityCount; i++)
+			_manager.removeEntity(entities[i]);
+		return entities;
+	}
+
+	@Benchmark
+	public int createAndRemoveEntitiesBatched() throws ComponentAlreadyExistsException {
+		Entity[] entities = _manager.createEntities(entityCount, _types);
+		return _manager.removeEntities(entities);
+	}
+
+	@Benchmark
+	public void removeAndAddComponent() throws ComponentAlreadyExistsException {
+		ComponentType type = _types[_types.length - 1];
+		for (Entity entity : _entities)
+			_manager.removeComponent(entity, type);
+		for (Entity entity : _entities)
+			_manager.addComponent(entity, type);
+	}
+
+	@Benchmark
+	public void getEntitiesByMask(Blackhole blackhole) {
+		ReadOnlyCollection<Entity> entities = _manager.getEntitiesByMask(_mask);
+		for (Entity entity : entities)
+			blackhole.consume(entity);
+	}
+}
@@ -1,6 +1,7 @@
 package infinity.ecs.benchmark.messaging;
 
-import infinity.ecs.benchmark.BenchmarkItem;
+import infinity.ecs.messaging.ConcurrentMessageDispatcher;
+import infinity.ecs.messaging.EventStreamDispatcher;
 import infinity.ecs.messaging.IndexedMessageDispatcher;
 import infinity.ecs.messaging.Message;
 import infinity.ecs.messaging.MessageDispatcher;
@@ -8,151 +9,154 @@ import infinity.ecs.messaging.MessageEndpoint;
 import infinity.ecs.messaging.MessageType;
 import infinity.ecs.messaging.SimpleMessageDispatcher;
 
-public class MessagingBenchmark implements BenchmarkItem {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
-	static final int NUMBER_OF_EPS = 1000;
-	static final int NUMBER_OF_ITERATIONS = 10000;
-	
-	@Override
-	public String getName() {
-		return "Messaging Benchmark";
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the {@link SimpleMessageDispatcher}, the {@link IndexedMessageDispatcher}, the
+ * {@link ConcurrentMessageDispatcher} and the {@link EventStreamDispatcher}. Most endpoints are
+ * registered for the types A and B, while C and D only have a single receiver. All sent messages
+ * are received again, so the queues don't grow during a run. Every benchmark call counts as a
+ * frame for the streams.
+ *
+ * @author preip
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagingBenchmark {
+
+	/**
+	 * The dispatcher implementation.
+	 */
+	@Param({ "simple", "indexed", "concurrent", "stream" })
+	public String dispatcher;
+
+	/**
+	 * The number of endpoints registered for the common message types.
+	 */
+	@Param({ "10", "1000" })
+	public int endpointCount;
+
+	private MessageEndpoint _sender;
+	private MessageEndpoint _receiver;
+	private MessageEndpoint[] _endpoints;
+	private List<Message> _batch;
+	private Consumer<Message> _consumer;
+	private Message _last;
+	private EventStreamDispatcher _streams;
+
+	@Setup
+	public void setUp() {
+		MessageDispatcher disp;
+		if (dispatcher.equals("simple"))
+			disp = new SimpleMessageDispatcher();
+		else if (dispatcher.equals("indexed"))
+			disp = new IndexedMessageDispatcher();
+		else if (dispatcher.equals("concurrent"))
+			disp = new ConcurrentMessageDispatcher();
+		else
+			disp = _streams = new EventStreamDispatcher();
+		_sender = disp.createEndpoint();
+		_sender.register(MessageType.get(MessageC.class));
+		_receiver = disp.createEndpoint();
+		_receiver.register(MessageType.get(MessageD.class));
+		_endpoints = new MessageEndpoint[endpointCount];
+		for (int i = 0; i < endpointCount; i++) {
+			_endpoints[i] = disp.createEndpoint();
+			_endpoints[i].register(MessageType.get(MessageA.class));
+			_endpoints[i].register(MessageType.get(MessageB.class));
+		}
+		_batch = new ArrayList<Message>();
+		for (int i = 0; i < 64; i++)
+			_batch.add(new MessageA(i));
+		_consumer = new Consumer<Message>() {
+			@Override
+			public void accept(Message msg) {
+				_last = msg;
+			}
+		};
 	}
 
-	@Override
-	public void printMenu() {
-		System.out.println("\n---------------------------------------");
-		System.out.println("- InfinityECS - Messaging Benchmarks: -");
-		System.out.println("---------------------------------------");
-		System.out.println(" [01] MessageDispatcher Comparison");
+	/**
+	 * Sends a message which is only part of one endpoint.
+	 */
+	@Benchmark
+	public Message sendToOne() {
+		_sender.send(new MessageD(5));
+		Message msg = _receiver.retrieveNext();
+		nextFrame();
+		return msg;
 	}
 
-	@Override
-	public void handleInput(String input) {
-		switch (input) {
-		case  "1":
-		case "01":
-			compareDispatchers();
-			break;
-		default:
-			System.out.println("unrecognized command");
-			break;
-		}
+	/**
+	 * Sends a message which is part of nearly every endpoint.
+	 */
+	@Benchmark
+	public void sendToAll(Blackhole blackhole) {
+		_sender.send(new MessageA(5));
+		for (MessageEndpoint endpoint : _endpoints)
+			blackhole.consume(endpoint.retrieveNext());
+		nextFrame();
 	}
-	
-	public void compareDispatchers() {
-		System.out.println("\nCompare SimpleMessageDispatcher and IndexedMessageDispatcher with "
-				+ NUMBER_OF_EPS + " endpoints and " + NUMBER_OF_ITERATIONS + " messages:");
-		
-		System.out.println("> Send messages, which are only part of one Endpoint:");
-		{
-			MessageDispatcher disp = new SimpleMessageDispatcher();
-			MessageEndpoint ep1 = disp.createEndpoint();
-			ep1.register(MessageType.get(MessageC.class));
-			MessageEndpoint ep2 = disp.createEndpoint();
-			ep2.register(MessageType.get(MessageD.class));
-			for (int i = 0; i < NUMBER_OF_EPS; i++) {
-				MessageEndpoint ept = disp.createEndpoint();
-				ept.register(MessageType.get(MessageA.class));
-				ept.register(MessageType.get(MessageB.class));
-			}
-			long startTime = System.nanoTime();
-			for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
-				ep1.send(new MessageD(5)); // send a message that is only part of one endpoint
-			}
-			long endTime = System.nanoTime();
-			
-			System.out.println("> \tSimpleMessageDispatcher  = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		{
-			MessageDispatcher fastDisp = new IndexedMessageDispatcher();
-			MessageEndpoint ep1 = fastDisp.createEndpoint();
-			ep1.register(MessageType.get(MessageC.class));
-			MessageEndpoint ep2 = fastDisp.createEndpoint();
-			ep2.register(MessageType.get(MessageD.class));
-			for (int i = 0; i < NUMBER_OF_EPS; i++) {
-				MessageEndpoint ept = fastDisp.createEndpoint();
-				ept.register(MessageType.get(MessageA.class));
-				ept.register(MessageType.get(MessageB.class));
-			}
-			long startTime = System.nanoTime();
-			for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
-				ep1.send(new MessageD(5));
-			}
-			long endTime = System.nanoTime();
-			System.out.println("> \tIndexedMessageDispatcher = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		
-		System.out.println("> Send messages, which are part of nearly every Endpoint:");
-		{
-			MessageDispatcher disp = new SimpleMessageDispatcher();
-			MessageEndpoint ep1 = disp.createEndpoint();
-			ep1.register(MessageType.get(MessageC.class));
-			MessageEndpoint ep2 = disp.createEndpoint();
-			ep2.register(MessageType.get(MessageD.class));
-			for (int i = 0; i < NUMBER_OF_EPS; i++) {
-				MessageEndpoint ept = disp.createEndpoint();
-				ept.register(MessageType.get(MessageA.class));
-				ept.register(MessageType.get(MessageB.class));
-			}
-			long startTime = System.nanoTime();
-			for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
-				ep1.send(new MessageA(5));
-			}
-			long endTime = System.nanoTime();
-			
-			System.out.println("> \tSimpleMessageDispatcher  = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		{
-			MessageDispatcher fastDisp = new IndexedMessageDispatcher();
-			MessageEndpoint ep1 = fastDisp.createEndpoint();
-			ep1.register(MessageType.get(MessageC.class));
-			MessageEndpoint ep2 = fastDisp.createEndpoint();
-			ep2.register(MessageType.get(MessageD.class));
-			for (int i = 0; i < NUMBER_OF_EPS; i++) {
-				MessageEndpoint ept = fastDisp.createEndpoint();
-				ept.register(MessageType.get(MessageA.class));
-				ept.register(MessageType.get(MessageB.class));
-			}
-			long startTime = System.nanoTime();
-			for (int i = 0; i < NUMBER_OF_ITERATIONS; i++) {
-				ep1.send(new MessageA(5));
-			}
-			long endTime = System.nanoTime();
-			
-			System.out.println("> \tIndexedMessageDispatcher = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
+
+	/**
+	 * Sends a batch of 64 messages which are part of nearly every endpoint and drains them again.
+	 */
+	@Benchmark
+	public Message sendBatchToAll() {
+		_sender.sendAll(_batch);
+		for (MessageEndpoint endpoint : _endpoints)
+			endpoint.drainTo(_consumer, Integer.MAX_VALUE);
+		nextFrame();
+		return _last;
+	}
+
+	private void nextFrame() {
+		if (_streams != null)
+			_streams.nextFrame();
 	}
 
 	//----------------------------------------------------------------------------------------------
 	// Message Classes
 	//----------------------------------------------------------------------------------------------
-	@SuppressWarnings("unused")
-	private static class MessageA extends Message {
+	public static class MessageA extends Message {
 		public int x;
 		public MessageA(int x) {
 			this.x = x;
 		}
 	}
-	@SuppressWarnings("unused")
-	private static class MessageB extends Message {
+	public static class MessageB extends Message {
 		public int x;
 		public MessageB(int x) {
 			this.x = x;
 		}
 	}
-	@SuppressWarnings("unused")
-	private static class MessageC extends Message {
+	public static class MessageC extends Message {
 		public int x;
 		public MessageC(int x) {
 			this.x = x;
 		}
 	}
-	@SuppressWarnings("unused")
-	private static class MessageD extends Message {
+	public static class MessageD extends Message {
 		public int x;
 		public MessageD(int x) {
 			this.x = x;
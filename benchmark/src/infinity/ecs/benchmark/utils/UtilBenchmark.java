@@ -1,150 +1,126 @@
 package infinity.ecs.benchmark.utils;
 
-import infinity.ecs.benchmark.BenchmarkItem;
+import infinity.ecs.utils.BitArray;
 import infinity.ecs.utils.IndexedCollection;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-public class UtilBenchmark implements BenchmarkItem {
-	
-	public String getName() {
-		return "Utility Benchmarks";
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the {@link IndexedCollection} in comparison to an {@link ArrayList}, and the set
+ * operations of the {@link BitArray}, which back every {@link infinity.ecs.core.ComponentMask}.
+ *
+ * @author preip
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+
+	/**
+	 * The number of elements of the collections.
+	 */
+	@Param({ "1000", "100000" })
+	public int elementCount;
+
+	/**
+	 * The number of bits set in the {@link BitArray}s, i.e. the number of component types.
+	 */
+	@Param({ "4", "64" })
+	public int componentCount;
+
+	private List<Integer> _list;
+	private IndexedCollection<Integer> _collection;
+	private BitArray _all, _some, _other;
+
+	@Setup
+	public void setUp() {
+		_list = new ArrayList<Integer>(elementCount);
+		_collection = new IndexedCollection<Integer>(elementCount);
+		for (int i = 0; i < elementCount; i++) {
+			_list.add(i);
+			_collection.set(i, i);
+		}
+		_all = new BitArray();
+		_some = new BitArray();
+		_other = new BitArray();
+		for (int i = 0; i < componentCount; i++) {
+			_all.set(i, true);
+			if (i % 2 == 0)
+				_some.set(i, true);
+		}
+		_other.set(componentCount, true);
 	}
-	
-	public void printMenu() {
-		System.out.println("\n-------------------------------------");
-		System.out.println("- InfinityECS - Utility Benchmarks: -");
-		System.out.println("-------------------------------------");
-		System.out.println(" [01] Indexed Collection Performance");
+
+	@Benchmark
+	public IndexedCollection<Integer> indexedCollectionSet() {
+		IndexedCollection<Integer> collection = new IndexedCollection<Integer>(32);
+		for (int i = 0; i < elementCount; i++)
+			collection.set(i, i);
+		return collection;
 	}
-	
-	public void handleInput(String input) {
-		switch (input) {
-		case  "1":
-		case "01":
-			this.testIndexedCollectionPerformance();
-			break;
-		default:
-			System.out.println("unrecognized command");
-			break;
-		}
+
+	@Benchmark
+	public List<Integer> arrayListAdd() {
+		List<Integer> list = new ArrayList<Integer>(32);
+		for (int i = 0; i < elementCount; i++)
+			list.add(i);
+		return list;
 	}
-	
-	public static final int ITERATION_COUNT = 10000;
-	
-	public void testIndexedCollectionPerformance() {
-		System.out.println("\nTexting the performance of 'IndexedCollection' in comparison to"
-				+ "'java.util.ArrayList' with " + ITERATION_COUNT + " elements:");
-		List<Integer> list = new ArrayList<Integer>(32); 
-		IndexedCollection<Integer> iCol = new IndexedCollection<Integer>(32);
-		
-		System.out.println("> Adding " + ITERATION_COUNT + " elements to the lists:");
-		// ArrayList add performance
-		{
-			long startTime = System.nanoTime();
-			for (int i = 0; i < ITERATION_COUNT; i++)
-				list.add(i);
-			long endTime = System.nanoTime();
-			System.out.println("> \tArrayListt            = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		// IndexedCollection add performance
-		{
-			long startTime = System.nanoTime();
-			for (int i = 0; i < ITERATION_COUNT; i++)
-				iCol.set(i, i);
-			long endTime = System.nanoTime();
-			System.out.println("> \tIndexedCollection     = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		
-		System.out.println("> Getting elements (by their id):");
-		// ArrayList indexOf performance
-		{
-			long startTime = System.nanoTime();
-			for (int i = 0; i < ITERATION_COUNT; i++)
-				list.indexOf(i);
-			long endTime = System.nanoTime();
-			System.out.println("> \tArrayList (indexOf)   = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		// ArrayList indexOf performance
-		{
-			long startTime = System.nanoTime();
-			for (int i = 0; i < ITERATION_COUNT; i++)
-				list.get(i);
-			long endTime = System.nanoTime();
-			System.out.println("> \tArrayList (get)       = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		// IndexedCollection get performance
-		{
-			long startTime = System.nanoTime();
-			for (int i = 0; i < ITERATION_COUNT; i++)
-				iCol.get(i);
-			long endTime = System.nanoTime();
-			System.out.println("> \tIndexedCollection     = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		
-		System.out.println("Iterating to the elements by using 'iterator()' without gaps:");
-		// ArrayList iterator performance
-		{
-			Iterator<Integer> it = list.iterator();
-			long startTime = System.nanoTime();
-			
-			while(it.hasNext()) {
-				it.next();
-			}
-			long endTime = System.nanoTime();
-			System.out.println("> \tArrayList             = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		// IndexedCollection iterator performance
-		{
-			// first call to iterator() takes ~3ms and messes up test if executed after nanoTime()
-			Iterator<Integer> it = iCol.iterator();
-			long startTime = System.nanoTime();
-			while(it.hasNext()) {
-				it.next();
-			}
-			long endTime = System.nanoTime();
-			System.out.println("> \tIndexedCollection     = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		
-		// now only keep every tenth element in the array
-		for (int i = 0; i < ITERATION_COUNT; i++) {
-			if (i % 10 != 0) {
-				list.remove(list.size() - 1);
-				iCol.remove(i);
-			}
-		}
-		System.out.println("> Iterating to the elements by using 'iterator()' with all but every"
-				+ "tenth element missing:");
-		// ArrayList iterator performance
-		{
-			Iterator<Integer> it = list.iterator();
-			long startTime = System.nanoTime();
-			while(it.hasNext()) {
-				it.next();
-			}
-			long endTime = System.nanoTime();
-			System.out.println("> \tArrayList             = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
-		// IndexedCollection iterator performance
-		{
-			Iterator<Integer> it = iCol.iterator();
-			long startTime = System.nanoTime();
-			while(it.hasNext()) {
-				it.next();
-			}
-			long endTime = System.nanoTime();
-			System.out.println("> \tIndexedCollection     = " + (float)(endTime - startTime)
-					/ 1000000.0f + " ms");
-		}
+
+	@Benchmark
+	public void indexedCollectionGet(Blackhole blackhole) {
+		for (int i = 0; i < elementCount; i++)
+			blackhole.consume(_collection.get(i));
+	}
+
+	@Benchmark
+	public void arrayListGet(Blackhole blackhole) {
+		for (int i = 0; i < elementCount; i++)
+			blackhole.consume(_list.get(i));
+	}
+
+	@Benchmark
+	public void indexedCollectionIterate(Blackhole blackhole) {
+		for (Integer element : _collection)
+			blackhole.consume(element);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean bitArrayContains() {
+		return _all.contains(_some);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public boolean bitArrayIntersects() {
+		return _all.intersects(_other);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public BitArray bitArraySet() {
+		BitArray bits = new BitArray();
+		for (int i = 0; i < componentCount; i++)
+			bits.set(i, true);
+		return bits;
 	}
 }
@@ -0,0 +1,81 @@
+package infinity.ecs.benchmark.world;
+
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntityQuery;
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.core.Prefab;
+import infinity.ecs.messaging.MessageDispatcher;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replaces a fixed number of the {@link Entity}s of a population every frame, like units that die
+ * and respawn in a game. The removed {@link Entity}s are a random run of consecutive
+ * {@link Entity}s of the query of the population, the new ones are instances of the
+ * {@link Prefab} of the population.
+ *
+ * @author preip
+ */
+public class ChurnSystem extends EntitySystem {
+
+	private final Prefab _prefab;
+	private final ComponentType[] _excluded;
+	private final int _churn;
+	private final Random _random;
+	private final Entity[] _removed;
+	private EntityManager _manager;
+	private EntityQuery _query;
+
+	/**
+	 * Creates a new instance of the {@link ChurnSystem} class.
+	 *
+	 * @param prefab The {@link Prefab} of the population.
+	 * @param churn The number of {@link Entity}s which are replaced every frame.
+	 * @param seed The seed of the random selection of the removed {@link Entity}s.
+	 * @param excluded The component types the population doesn't have, which distinguish it from
+	 * 		other populations with more components.
+	 */
+	public ChurnSystem(Prefab prefab, int churn, long seed, ComponentType... excluded) {
+		super(prefab.getComponentMask());
+		_prefab = prefab;
+		_excluded = excluded.clone();
+		_churn = churn;
+		_random = new Random(seed);
+		_removed = new Entity[churn];
+	}
+
+	@Override
+	public void initialize(EntityManager entityManager, MessageDispatcher msgDispatcher) {
+		_manager = entityManager;
+		List<ComponentType> types = _mask.getComponentTypes();
+		_query = _manager.query().all(types.toArray(new ComponentType[types.size()]))
+				.none(_excluded).build();
+	}
+
+	@Override
+	public boolean isInitialized() {
+		return _manager != null;
+	}
+
+	@Override
+	public void update(int elapsedTime) {
+		int size = _query.size();
+		int count = Math.min(_churn, size);
+		if (count == 0)
+			return;
+		int start = _random.nextInt(size - count + 1);
+		// if the population has shrunk, the array still contains entities of an earlier frame,
+		// which are already dead and therefore skipped
+		for (int i = 0; i < count; i++)
+			_removed[i] = _query.get(start + i);
+		_manager.removeEntities(_removed);
+		_manager.instantiate(_prefab, count);
+		countProcessed(count * 2);
+	}
+
+	@Override
+	public void terminate() { }
+}
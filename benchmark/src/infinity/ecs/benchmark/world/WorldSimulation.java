@@ -0,0 +1,319 @@
+package infinity.ecs.benchmark.world;
+
+import example.components.DirectionComponent;
+import example.components.InventoryComponent;
+import example.components.SpacialComponent;
+import example.components.StatusComponent;
+import example.stuff.ShieldItem;
+import example.stuff.WeaponItem;
+import example.systems.EndSystem;
+import example.systems.InventorySystem;
+import example.systems.MovementSystem;
+import infinity.ecs.core.ComponentMask;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.core.Prefab;
+import infinity.ecs.scheduling.Clock;
+import infinity.ecs.scheduling.FrameTimer;
+import infinity.ecs.scheduling.ParallelScheduler;
+import infinity.ecs.scheduling.RRScheduler;
+import infinity.ecs.scheduling.Scheduler;
+import infinity.ecs.scheduling.SchedulerMetrics;
+import infinity.ecs.scheduling.SystemMetrics;
+import infinity.ecs.utils.LatencyHistogram;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An end-to-end benchmark which simulates a world built from the example components and systems.
+ * Three populations are spawned from prefabs:
+ * <ul>
+ * <li>props, which only have a {@link SpacialComponent},</li>
+ * <li>movers, which also have a {@link DirectionComponent},</li>
+ * <li>fighters, which additionally have a {@link StatusComponent} and an
+ * {@link InventoryComponent}.</li>
+ * </ul>
+ * Every frame the {@link MovementSystem} moves all movers and fighters, the
+ * {@link InventorySystem} applies the items of all fighters, and a {@link ChurnSystem} per
+ * population replaces some of its entities. After a number of warmup frames the simulation is
+ * measured for a number of frames and reports the frame rate, the frame time percentiles, the
+ * allocation rate and the activity of the garbage collector.
+ * <p>
+ * <b>Notes:</b><br>
+ * The schedule is driven by a simulated clock that advances one fixed step per frame, so the
+ * frames run back to back without sleeping, while the systems still see a realistic elapsed time.
+ * <p>
+ * The options are passed as name=value arguments, e.g. {@code movers=200000 frames=2000
+ * scheduler=parallel out=results.json}. See {@link #WorldSimulation(String[])} for all options.
+ *
+ * @author preip
+ */
+public class WorldSimulation {
+
+	public static void main(String[] args) throws IOException {
+		WorldSimulation simulation = new WorldSimulation(args);
+		simulation.run();
+	}
+
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * The length of a simulated frame in milliseconds.
+	 */
+	private static final int STEP = 16;
+
+	private final int _props;
+	private final int _movers;
+	private final int _fighters;
+	private final int _churn;
+	private final int _warmupFrames;
+	private final int _frames;
+	private final long _seed;
+	private final String _scheduler;
+	private final String _out;
+
+	/**
+	 * Creates a new instance of the {@link WorldSimulation} class.
+	 *
+	 * @param args The options as name=value pairs:
+	 * 		<ul>
+	 * 		<li>props, movers, fighters: the size of every population (10000, 100000, 10000)</li>
+	 * 		<li>churn: the number of entities every population replaces per frame (100)</li>
+	 * 		<li>warmup: the number of frames before the measurement (500)</li>
+	 * 		<li>frames: the number of measured frames (2000)</li>
+	 * 		<li>seed: the seed of the random churn (42)</li>
+	 * 		<li>scheduler: either rr or parallel (rr)</li>
+	 * 		<li>out: a file the results are written to as JSON (none)</li>
+	 * 		</ul>
+	 * @throws IllegalArgumentException When an argument is unknown or malformed.
+	 */
+	public WorldSimulation(String[] args) throws IllegalArgumentException {
+		_props = getInt(args, "props", 10000);
+		_movers = getInt(args, "movers", 100000);
+		_fighters = getInt(args, "fighters", 10000);
+		_churn = getInt(args, "churn", 100);
+		_warmupFrames = getInt(args, "warmup", 500);
+		_frames = getInt(args, "frames", 2000);
+		_seed = getInt(args, "seed", 42);
+		_scheduler = getString(args, "scheduler", "rr");
+		_out = getString(args, "out", null);
+		for (String arg : args) {
+			String name = arg.substring(0, Math.max(0, arg.indexOf('=')));
+			if (!name.matches("props|movers|fighters|churn|warmup|frames|seed|scheduler|out"))
+				throw new IllegalArgumentException("unknown option '" + arg + "'");
+		}
+	}
+
+	/**
+	 * Gets the component types of all populations.
+	 *
+	 * @return The types.
+	 */
+	static ComponentType[] getComponentTypes() {
+		return new ComponentType[] { ComponentType.get(SpacialComponent.class),
+				ComponentType.get(DirectionComponent.class), ComponentType.get(StatusComponent.class),
+				ComponentType.get(InventoryComponent.class) };
+	}
+
+	/**
+	 * Builds the world, runs the warmup and the measured frames and reports the results.
+	 *
+	 * @throws IOException When the results could not be written.
+	 */
+	public void run() throws IOException {
+		ComponentType[] types = getComponentTypes();
+		ComponentType direction = types[1];
+		ComponentType status = types[2];
+		ComponentType inventory = types[3];
+
+		EntityManager manager = new EntityManager();
+		Prefab prop = new Prefab(new SpacialComponent());
+		Prefab mover = new Prefab(new SpacialComponent(), createDirection());
+		InventoryComponent items = new InventoryComponent();
+		items.items.set(0, new WeaponItem(10, 5, WeaponItem.WEAPONTYPE.LASER));
+		items.items.set(1, new ShieldItem(2, 1));
+		Prefab fighter = new Prefab(new SpacialComponent(), createDirection(),
+				new StatusComponent(), items);
+		manager.instantiate(prop, _props);
+		manager.instantiate(mover, _movers);
+		manager.instantiate(fighter, _fighters);
+
+		Scheduler scheduler = _scheduler.equals("parallel") ? new ParallelScheduler()
+				: new RRScheduler();
+		List<EntitySystem> systems = new ArrayList<EntitySystem>();
+		systems.add(new MovementSystem());
+		systems.add(new InventorySystem(new ComponentMask(status, inventory)));
+		systems.add(new ChurnSystem(prop, _churn, _seed, direction));
+		systems.add(new ChurnSystem(mover, _churn, _seed + 1, status));
+		systems.add(new ChurnSystem(fighter, _churn, _seed + 2));
+		int priority = 1;
+		for (EntitySystem system : systems) {
+			system.initialize(manager, null);
+			scheduler.registerSystem(system, priority++);
+		}
+		// simulated time, which advances exactly one step whenever the timer reads it
+		scheduler.setFrameTimer(new FrameTimer(new Clock() {
+			private long _now;
+
+			@Override
+			public long nanoTime() {
+				_now += STEP * 1000000L;
+				return _now;
+			}
+		}, STEP, 1));
+
+		runFrames(scheduler, priority, manager, _warmupFrames);
+
+		SchedulerMetrics metrics = scheduler.getMetrics();
+		metrics.reset();
+		metrics.setEnabled(true);
+		long gcCount = getGcCount();
+		long gcTime = getGcTime();
+		long allocated = getAllocatedBytes();
+		long start = System.nanoTime();
+		runFrames(scheduler, priority, manager, _frames);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		allocated = getAllocatedBytes() - allocated;
+		gcCount = getGcCount() - gcCount;
+		gcTime = getGcTime() - gcTime;
+		metrics.setEnabled(false);
+
+		LatencyHistogram frames = metrics.getFrameTimes();
+		StringBuilder json = new StringBuilder();
+		json.append("{\n");
+		appendJson(json, "scheduler", "\"" + _scheduler + "\"");
+		appendJson(json, "entities", _props + _movers + _fighters);
+		appendJson(json, "churnPerFrame", _churn * 3);
+		appendJson(json, "frames", frames.getCount());
+		appendJson(json, "fps", frames.getCount() / seconds);
+		appendJson(json, "meanFrameTimeMs", frames.getMean() / 1e6);
+		appendJson(json, "p50FrameTimeMs", frames.getValueAtPercentile(50) / 1e6);
+		appendJson(json, "p99FrameTimeMs", frames.getValueAtPercentile(99) / 1e6);
+		appendJson(json, "maxFrameTimeMs", frames.getMax() / 1e6);
+		appendJson(json, "allocationRateMBs", allocated / seconds / (1024 * 1024));
+		appendJson(json, "allocatedBytesPerFrame", allocated / Math.max(1, frames.getCount()));
+		appendJson(json, "gcCount", gcCount);
+		appendJson(json, "gcTimeMs", gcTime);
+		json.append("  \"systems\": {\n");
+		// the EndSystems of the runs are only needed to stop the scheduler
+		List<SystemMetrics> all = new ArrayList<SystemMetrics>();
+		for (SystemMetrics system : metrics.getAllSystemMetrics())
+			if (!(system.getSystem() instanceof EndSystem))
+				all.add(system);
+		for (int i = 0; i < all.size(); i++) {
+			SystemMetrics system = all.get(i);
+			LatencyHistogram times = system.getUpdateTimes();
+			json.append(String.format(Locale.ROOT,
+					"    \"%d-%s\": { \"meanMs\": %.4f, \"p99Ms\": %.4f, \"entities\": %d }%s\n",
+					i, system.getSystem().getClass().getSimpleName(), times.getMean() / 1e6,
+					times.getValueAtPercentile(99) / 1e6, system.getLastEntityCount(),
+					i + 1 < all.size() ? "," : ""));
+		}
+		json.append("  }\n}\n");
+
+		System.out.print(json);
+		if (_out != null) {
+			File file = new File(_out);
+			if (file.getParentFile() != null)
+				file.getParentFile().mkdirs();
+			try (Writer writer = new FileWriter(file)) {
+				writer.write(json.toString());
+			}
+		}
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Runs the specified number of frames. The scheduler is ended by an {@link EndSystem} with the
+	 * lowest priority, which is removed again afterwards.
+	 */
+	private void runFrames(Scheduler scheduler, int priority, EntityManager manager, int frames) {
+		if (frames <= 0)
+			return;
+		EndSystem end = new EndSystem(new ComponentMask(), frames - 2, scheduler);
+		end.initialize(manager, null);
+		scheduler.registerSystem(end, priority);
+		try {
+			scheduler.makeSchedule();
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+		scheduler.run();
+		scheduler.removeSystem(end);
+	}
+
+	private static DirectionComponent createDirection() {
+		DirectionComponent direction = new DirectionComponent();
+		direction.xDir = 1;
+		direction.yDir = 0.5f;
+		direction.xSpeed = 0.01f;
+		direction.ySpeed = 0.01f;
+		return direction;
+	}
+
+	private static void appendJson(StringBuilder json, String name, Object value) {
+		if (value instanceof Double)
+			value = String.format(Locale.ROOT, "%.4f", value);
+		json.append("  \"").append(name).append("\": ").append(value).append(",\n");
+	}
+
+	/**
+	 * Gets the number of bytes allocated by all live threads so far.
+	 */
+	private static long getAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		long total = 0;
+		for (long bytes : ((com.sun.management.ThreadMXBean)threads)
+				.getThreadAllocatedBytes(threads.getAllThreadIds()))
+			if (bytes > 0)
+				total += bytes;
+		return total;
+	}
+
+	private static long getGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long getGcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+
+	private static int getInt(String[] args, String name, int defaultValue) {
+		String value = getString(args, name, null);
+		if (value == null)
+			return defaultValue;
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("option '" + name + "' needs a number");
+		}
+	}
+
+	private static String getString(String[] args, String name, String defaultValue) {
+		for (String arg : args)
+			if (arg.startsWith(name + "="))
+				return arg.substring(name.length() + 1);
+		return defaultValue;
+	}
+}
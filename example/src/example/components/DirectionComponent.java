@@ -1,11 +1,13 @@
 package example.components;
 
 import infinity.ecs.core.Component;
+import infinity.ecs.core.Packed;
 
 /**
  *
  * @author Simon
  */
+@Packed
 public class DirectionComponent extends Component {
 
     public float xDir;
@@ -17,4 +17,12 @@ public class InventoryComponent extends Component {
 		items = new IndexedCollection<>();
 		maxSize = 10;
     }
+
+    @Override
+    protected Component copy() {
+		InventoryComponent c = (InventoryComponent)super.copy();
+		// every copy needs its own inventory
+		c.items = new IndexedCollection<>(items);
+		return c;
+    }
 }
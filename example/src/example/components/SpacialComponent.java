@@ -2,6 +2,7 @@ package example.components;
 
 import infinity.ecs.core.*;
 
+@Packed
 public class SpacialComponent extends Component {
 
 	public float xPos;
@@ -2,8 +2,6 @@ package example.systems;
 import example.components.CounterComponent;
 import infinity.ecs.core.*;
 import infinity.ecs.messaging.MessageDispatcher;
-import infinity.ecs.utils.ReadOnlyCollection;
-import java.util.Iterator;
 
 /**
  *
@@ -12,7 +10,7 @@ import java.util.Iterator;
 public class CounterSystem extends EntitySystem{
     
     private EntityManager _manager;
-    private ReadOnlyCollection<Entity> _allEntities;
+    private EntityQuery _query;
     private final ComponentType _counterComponentType; 
     private boolean _isInitialized;
     
@@ -24,10 +22,9 @@ public class CounterSystem extends EntitySystem{
     @Override
     public void initialize(EntityManager manager, MessageDispatcher dispatcher) {
 	_manager = manager;
-	_allEntities = _manager.getEntitiesByMask(_mask);
-	Iterator<Entity> iter = _allEntities.iterator();
-	while(iter.hasNext()) {
-	    Entity tempEntity = iter.next();
+	_query = _manager.getQuery(_mask);
+	for(int i = 0; i < _query.size(); i++) {
+	    Entity tempEntity = _query.get(i);
 	    CounterComponent count;
 	    count = (CounterComponent)tempEntity.getComponent(_counterComponentType);
 	    count.counter = 0;
@@ -36,9 +33,8 @@ public class CounterSystem extends EntitySystem{
     
     @Override
     public void update(int elapsedTime){
-	Iterator<Entity> iter = _allEntities.iterator();
-	while(iter.hasNext()) {
-	    Entity tempEntity = iter.next();
+	for(int i = 0; i < _query.size(); i++) {
+	    Entity tempEntity = _query.get(i);
 	    CounterComponent count;
 	    count = (CounterComponent)tempEntity.getComponent(_counterComponentType);
 	    count.counter += 1;
@@ -9,9 +9,9 @@ import infinity.ecs.core.ComponentMask;
 import infinity.ecs.core.ComponentType;
 import infinity.ecs.core.Entity;
 import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntityQuery;
 import infinity.ecs.core.EntitySystem;
 import infinity.ecs.messaging.MessageDispatcher;
-import infinity.ecs.utils.ReadOnlyCollection;
 
 /**
  *
@@ -23,7 +23,7 @@ public class InventorySystem extends EntitySystem {
     private final ComponentType _inType = ComponentType.get(InventoryComponent.class);
 	private final ComponentType _statusType = ComponentType.get(StatusComponent.class);
 	
-    private ReadOnlyCollection<Entity> _allEntities;
+    private EntityQuery _query;
     private EntityManager _manager;
     private MessageDispatcher _dispatcher;
     private boolean _isInitialized;
@@ -34,7 +34,8 @@ public class InventorySystem extends EntitySystem {
     
     @Override
     public void update(int time){
-		for(Entity entity : _allEntities){
+		for(int i = 0; i < _query.size(); i++){
+			Entity entity = _query.get(i);
 			InventoryComponent inventory  = (InventoryComponent) entity.getComponent(_inType);
 			StatusComponent status = (StatusComponent) entity.getComponent(_statusType);
 			
@@ -51,6 +52,7 @@ public class InventorySystem extends EntitySystem {
 				}
 			}
 		}
+		countProcessed(_query.size());
     }
     
     @Override
@@ -61,7 +63,7 @@ public class InventorySystem extends EntitySystem {
 		_manager = manager;
 		_dispatcher = dispatcher;
 		_isInitialized = true;
-		_allEntities = _manager.getEntitiesByMask(_mask);
+		_query = _manager.getQuery(_mask);
     }
     
     @Override
@@ -0,0 +1,72 @@
+package example.systems;
+import example.components.DirectionComponent;
+import example.components.SpacialComponent;
+import infinity.ecs.core.*;
+import infinity.ecs.messaging.MessageDispatcher;
+
+/**
+ * Moves all entities with a SpacialComponent and a DirectionComponent. Both
+ * components are packed, so the system works directly on the float columns.
+ * The rows are processed in parallel chunks, each row is only written by the
+ * chunk that contains it.
+ *
+ * @author Simon
+ */
+public class MovementSystem extends EntitySystem{
+
+    private PackedComponentArray _spacials;
+    private PackedComponentArray _directions;
+    private boolean _isInitialized;
+
+    public MovementSystem() {
+	super(new ComponentMask(ComponentType.get(SpacialComponent.class),
+		ComponentType.get(DirectionComponent.class)),
+		new ComponentMask(ComponentType.get(DirectionComponent.class)),
+		new ComponentMask(ComponentType.get(SpacialComponent.class)));
+	setGrainSize(4096);
+    }
+
+    @Override
+    public void initialize(EntityManager manager, MessageDispatcher dispatcher) {
+	_spacials = manager.getPackedComponents(
+		ComponentType.get(SpacialComponent.class));
+	_directions = manager.getPackedComponents(
+		ComponentType.get(DirectionComponent.class));
+	_isInitialized = true;
+    }
+
+    @Override
+    public void update(final int elapsedTime){
+	// the columns are fetched every update, since they are replaced when the arrays grow
+	final float[] xPos = _spacials.getFloats("xPos");
+	final float[] yPos = _spacials.getFloats("yPos");
+	final float[] zPos = _spacials.getFloats("zPos");
+	final float[] xDir = _directions.getFloats("xDir");
+	final float[] yDir = _directions.getFloats("yDir");
+	final float[] zDir = _directions.getFloats("zDir");
+	final float[] xSpeed = _directions.getFloats("xSpeed");
+	final float[] ySpeed = _directions.getFloats("ySpeed");
+	final float[] zSpeed = _directions.getFloats("zSpeed");
+	forEachChunk(_spacials.size(), new ChunkAction() {
+	    @Override
+	    public void process(int start, int end) {
+		for(int i = start; i < end; i++) {
+		    int d = _directions.indexOf(_spacials.getEntityId(i));
+		    if(d == -1)
+			continue;
+		    xPos[i] += xDir[d] * xSpeed[d] * elapsedTime;
+		    yPos[i] += yDir[d] * ySpeed[d] * elapsedTime;
+		    zPos[i] += zDir[d] * zSpeed[d] * elapsedTime;
+		}
+	    }
+	});
+    }
+
+    @Override
+    public boolean isInitialized(){
+	return _isInitialized;
+    }
+
+    @Override
+    public void terminate(){}
+}
@@ -0,0 +1,282 @@
+package infinity.ecs.core;
+
+import infinity.ecs.utils.IndexedCollection;
+import infinity.ecs.utils.ReadOnlyCollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An archetype groups all {@link Entity}s which have exactly the same {@link ComponentMask}. The
+ * {@link Entity}s of an archetype are stored in a list of {@link ArchetypeChunk}s.
+ * <p>
+ * <b>Notes:</b><br>
+ * The rows of an archetype are numbered continuously over all of its chunks, so the row
+ * <i>r</i> is located in chunk <i>r / chunkSize</i> at position <i>r % chunkSize</i>. All chunks
+ * except the last one are always full, since removed rows are filled by moving the last row of
+ * the archetype into the gap.
+ * <p>
+ * Archetypes are created and managed by the {@link ArchetypeComponentStorage}. They also cache
+ * the archetypes which result from adding or removing a single {@link ComponentType}, so moving
+ * an {@link Entity} to another archetype doesn't require a lookup by {@link ComponentMask}.
+ *
+ * @author preip
+ */
+public final class Archetype {
+
+	//----------------------------------------------------------------------------------------------
+	// Fields
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * The {@link ComponentMask} shared by all {@link Entity}s of this archetype.
+	 */
+	private final ComponentMask _mask;
+
+	/**
+	 * The {@link ComponentType}s of this archetype, sorted by their id. The position of a type
+	 * within this array is the index of its column.
+	 */
+	private final ComponentType[] _types;
+
+	/**
+	 * The column index of every {@link ComponentType} of the archetype, indexed by the id of the
+	 * type. Contains -1 for all types which are not part of the archetype.
+	 */
+	private final int[] _columnIndices;
+
+	/**
+	 * The number of {@link Entity}s each {@link ArchetypeChunk} can hold.
+	 */
+	private final int _chunkSize;
+
+	/**
+	 * The list of all chunks of the archetype.
+	 */
+	private final List<ArchetypeChunk> _chunks;
+
+	/**
+	 * A read only view of {@link #_chunks} which is handed out to systems.
+	 */
+	private final ReadOnlyCollection<ArchetypeChunk> _readOnlyChunks;
+
+	/**
+	 * The archetypes that result from adding a {@link ComponentType}, indexed by the id of the type.
+	 */
+	private final IndexedCollection<Archetype> _addEdges;
+
+	/**
+	 * The archetypes that result from removing a {@link ComponentType}, indexed by the id of the
+	 * type.
+	 */
+	private final IndexedCollection<Archetype> _removeEdges;
+
+	/**
+	 * The total number of {@link Entity}s in all chunks.
+	 */
+	private int _size;
+
+	//----------------------------------------------------------------------------------------------
+	// Constructors
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Creates a new instance of the {@link Archetype} class.
+	 *
+	 * @param mask The {@link ComponentMask} of the archetype. The mask is copied.
+	 * @param chunkSize The number of {@link Entity}s each chunk can hold.
+	 */
+	Archetype(ComponentMask mask, int chunkSize) {
+		_mask = new ComponentMask(mask);
+		List<ComponentType> types = mask.getComponentTypes();
+		_types = types.toArray(new ComponentType[types.size()]);
+		int maxId = _types.length == 0 ? -1 : _types[_types.length - 1].getId();
+		_columnIndices = new int[maxId + 1];
+		Arrays.fill(_columnIndices, -1);
+		for (int i = 0; i < _types.length; i++)
+			_columnIndices[_types[i].getId()] = i;
+		_chunkSize = chunkSize;
+		_chunks = new ArrayList<ArchetypeChunk>();
+		_readOnlyChunks = new ReadOnlyCollection<ArchetypeChunk>(_chunks);
+		_addEdges = new IndexedCollection<Archetype>();
+		_removeEdges = new IndexedCollection<Archetype>();
+		_size = 0;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Package-Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the {@link ComponentMask} of this archetype without copying it. The mask must not be
+	 * changed, since it is the key of the archetype in the {@link ArchetypeComponentStorage}.
+	 */
+	ComponentMask getMask() {
+		return _mask;
+	}
+
+	/**
+	 * Appends a new row for the specified {@link Entity}. All {@link Component}s of the new row are
+	 * null.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The row of the {@link Entity} within this archetype.
+	 */
+	int add(int entityId) {
+		int chunkIndex = _size / _chunkSize;
+		ArchetypeChunk chunk;
+		if (chunkIndex == _chunks.size()) {
+			chunk = new ArchetypeChunk(this, _chunkSize);
+			_chunks.add(chunk);
+		}
+		else
+			chunk = _chunks.get(chunkIndex);
+		chunk.add(entityId);
+		return _size++;
+	}
+
+	/**
+	 * Creates all {@link ArchetypeChunk}s needed to hold the specified number of additional rows,
+	 * so a batch of {@link Entity}s can be added without allocating chunks in between. The rows
+	 * should be added right away, since chunks without rows are only dropped again when the last
+	 * row is removed.
+	 *
+	 * @param count The number of rows which are about to be added.
+	 */
+	void reserve(int count) {
+		int chunkCount = (_size + count + _chunkSize - 1) / _chunkSize;
+		while (_chunks.size() < chunkCount)
+			_chunks.add(new ArchetypeChunk(this, _chunkSize));
+	}
+
+	/**
+	 * Removes the specified row. The gap is filled with the last row of the archetype.
+	 *
+	 * @param row The row which should be removed.
+	 * @return The id of the {@link Entity} that has been moved to the specified row, or -1 if the
+	 * 		removed row was the last one and nothing was moved.
+	 */
+	int remove(int row) {
+		int last = _size - 1;
+		ArchetypeChunk lastChunk = _chunks.get(last / _chunkSize);
+		int lastRow = last % _chunkSize;
+		int movedId = -1;
+		if (row != last) {
+			ArchetypeChunk chunk = _chunks.get(row / _chunkSize);
+			chunk.copyRow(row % _chunkSize, lastChunk, lastRow);
+			movedId = lastChunk.getEntityId(lastRow);
+		}
+		lastChunk.removeLast();
+		// drop the last chunk if it became empty, but keep a single chunk around to avoid
+		// reallocating it if an entity is added again
+		if (lastChunk.size() == 0 && _chunks.size() > 1)
+			_chunks.remove(_chunks.size() - 1);
+		_size--;
+		return movedId;
+	}
+
+	/**
+	 * Gets the {@link Component} with the specified column index in the specified row.
+	 */
+	Component get(int row, int column) {
+		return _chunks.get(row / _chunkSize).get(column, row % _chunkSize);
+	}
+
+	/**
+	 * Sets the {@link Component} with the specified column index in the specified row.
+	 */
+	void set(int row, int column, Component component) {
+		_chunks.get(row / _chunkSize).set(column, row % _chunkSize, component);
+	}
+
+	/**
+	 * Gets the number of columns, which is the number of {@link ComponentType}s of the archetype.
+	 */
+	int getColumnCount() {
+		return _types.length;
+	}
+
+	/**
+	 * Gets the {@link ComponentType} of the specified column.
+	 */
+	ComponentType getType(int column) {
+		return _types[column];
+	}
+
+	/**
+	 * Gets the cached archetype that results from adding the specified {@link ComponentType}.
+	 *
+	 * @return The cached archetype or null if there is none yet.
+	 */
+	Archetype getAddEdge(ComponentType type) {
+		return _addEdges.get(type.getId());
+	}
+
+	/**
+	 * Caches the archetype that results from adding the specified {@link ComponentType}.
+	 */
+	void setAddEdge(ComponentType type, Archetype archetype) {
+		_addEdges.set(type.getId(), archetype);
+	}
+
+	/**
+	 * Gets the cached archetype that results from removing the specified {@link ComponentType}.
+	 *
+	 * @return The cached archetype or null if there is none yet.
+	 */
+	Archetype getRemoveEdge(ComponentType type) {
+		return _removeEdges.get(type.getId());
+	}
+
+	/**
+	 * Caches the archetype that results from removing the specified {@link ComponentType}.
+	 */
+	void setRemoveEdge(ComponentType type, Archetype archetype) {
+		_removeEdges.set(type.getId(), archetype);
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the column index of the specified {@link ComponentType}.
+	 *
+	 * @param type The {@link ComponentType} which column should be got.
+	 * @return The column index or -1 if the type is not part of this archetype.
+	 */
+	public int getColumn(ComponentType type) {
+		int id = type.getId();
+		if (id >= _columnIndices.length)
+			return -1;
+		return _columnIndices[id];
+	}
+
+	/**
+	 * Gets the {@link ComponentMask} shared by all {@link Entity}s of this archetype.
+	 *
+	 * @return A copy of the {@link ComponentMask} of the archetype.
+	 */
+	public ComponentMask getComponentMask() {
+		return new ComponentMask(_mask);
+	}
+
+	/**
+	 * Gets a read only list of all {@link ArchetypeChunk}s of this archetype.
+	 *
+	 * @return The list of all chunks.
+	 */
+	public ReadOnlyCollection<ArchetypeChunk> getChunks() {
+		return _readOnlyChunks;
+	}
+
+	/**
+	 * Gets the number of {@link Entity}s which are part of this archetype.
+	 *
+	 * @return The number of {@link Entity}s.
+	 */
+	public int size() {
+		return _size;
+	}
+}
@@ -0,0 +1,166 @@
+package infinity.ecs.core;
+
+/**
+ * A fixed-size block of {@link Entity}s which all belong to the same {@link Archetype}. The
+ * {@link Component}s of the {@link Entity}s are stored column-wise, which means there is one array
+ * for every {@link ComponentType} of the {@link Archetype}, and the {@link Component}s of a single
+ * {@link Entity} share the same row within all of those arrays.
+ * <p>
+ * <b>Notes:</b><br>
+ * The rows of a chunk are always packed, so all rows from zero to {@link #size()} are occupied.
+ * Systems can therefore simply iterate over the arrays returned by {@link #getColumn(ComponentType)}
+ * up to the size of the chunk. The arrays must not be modified.
+ *
+ * @author preip
+ */
+public final class ArchetypeChunk {
+
+	/**
+	 * The {@link Archetype} this chunk is part of.
+	 */
+	private final Archetype _archetype;
+
+	/**
+	 * The ids of the {@link Entity}s stored in this chunk, indexed by their row.
+	 */
+	private final int[] _entityIds;
+
+	/**
+	 * The {@link Component} columns of the chunk, indexed by the column of the {@link ComponentType}
+	 * within the {@link Archetype} and by the row of the {@link Entity}.
+	 */
+	private final Component[][] _columns;
+
+	/**
+	 * The number of occupied rows.
+	 */
+	private int _size;
+
+	/**
+	 * Creates a new instance of the {@link ArchetypeChunk} class.
+	 *
+	 * @param archetype The {@link Archetype} the chunk is part of.
+	 * @param capacity The number of {@link Entity}s the chunk can hold.
+	 */
+	ArchetypeChunk(Archetype archetype, int capacity) {
+		_archetype = archetype;
+		_entityIds = new int[capacity];
+		_columns = new Component[archetype.getColumnCount()][capacity];
+		_size = 0;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Package-Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Appends a new row for the specified {@link Entity}. The caller must make sure that the chunk
+	 * is not full.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The row of the {@link Entity} within this chunk.
+	 */
+	int add(int entityId) {
+		_entityIds[_size] = entityId;
+		return _size++;
+	}
+
+	/**
+	 * Removes the last row of the chunk and clears all references it holds.
+	 */
+	void removeLast() {
+		_size--;
+		for (Component[] column : _columns)
+			column[_size] = null;
+	}
+
+	/**
+	 * Sets the {@link Entity} and all {@link Component}s of the specified row to the values of
+	 * the specified row of another chunk of the same {@link Archetype}.
+	 *
+	 * @param row The row which should be overridden.
+	 * @param source The chunk which contains the source row.
+	 * @param sourceRow The row which should be copied.
+	 */
+	void copyRow(int row, ArchetypeChunk source, int sourceRow) {
+		_entityIds[row] = source._entityIds[sourceRow];
+		for (int i = 0; i < _columns.length; i++)
+			_columns[i][row] = source._columns[i][sourceRow];
+	}
+
+	/**
+	 * Gets the {@link Component} stored in the specified column and row.
+	 */
+	Component get(int column, int row) {
+		return _columns[column][row];
+	}
+
+	/**
+	 * Sets the {@link Component} stored in the specified column and row.
+	 */
+	void set(int column, int row, Component component) {
+		_columns[column][row] = component;
+	}
+
+	/**
+	 * Indicates if all rows of the chunk are occupied.
+	 */
+	boolean isFull() {
+		return _size == _entityIds.length;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the {@link Archetype} this chunk is part of.
+	 *
+	 * @return The {@link Archetype} of the chunk.
+	 */
+	public Archetype getArchetype() {
+		return _archetype;
+	}
+
+	/**
+	 * Gets the number of {@link Entity}s currently stored in this chunk.
+	 *
+	 * @return The number of {@link Entity}s.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the maximum number of {@link Entity}s this chunk can hold.
+	 *
+	 * @return The capacity of the chunk.
+	 */
+	public int getCapacity() {
+		return _entityIds.length;
+	}
+
+	/**
+	 * Gets the id of the {@link Entity} stored in the specified row.
+	 *
+	 * @param row The row of the {@link Entity}.
+	 * @return The id of the {@link Entity}.
+	 */
+	public int getEntityId(int row) {
+		return _entityIds[row];
+	}
+
+	/**
+	 * Gets the column which holds the {@link Component}s of the specified type. Only the first
+	 * {@link #size()} elements of the column are valid.
+	 *
+	 * @param type The {@link ComponentType} of the desired column.
+	 * @return The column or null if the {@link ComponentType} is not part of the {@link Archetype}.
+	 */
+	public Component[] getColumn(ComponentType type) {
+		int column = _archetype.getColumn(type);
+		if (column == -1)
+			return null;
+		return _columns[column];
+	}
+}
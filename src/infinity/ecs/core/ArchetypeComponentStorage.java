@@ -0,0 +1,279 @@
+package infinity.ecs.core;
+
+import infinity.ecs.utils.IndexedCollection;
+import infinity.ecs.utils.ReadOnlyCollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A {@link ComponentStorage} which groups all {@link Entity}s with the same {@link ComponentMask}
+ * into {@link Archetype}s and stores their {@link Component}s column-wise in fixed-size
+ * {@link ArchetypeChunk}s.
+ * <p>
+ * <b>Notes:</b><br>
+ * Since all {@link Component}s of one type within an {@link Archetype} are stored in a continuous
+ * array, systems can iterate over them without chasing the references of per-entity collections.
+ * The price for this is paid whenever a {@link Component} is added to or removed from an
+ * {@link Entity}, because the whole {@link Entity} has to be moved to another {@link Archetype}.
+ * <p>
+ * The location of every {@link Entity} is stored as a pair of {@link Archetype} and row, both
+ * indexed by the id of the {@link Entity}.
+ *
+ * @author preip
+ */
+public final class ArchetypeComponentStorage implements ComponentStorage {
+
+	//----------------------------------------------------------------------------------------------
+	// Fields
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * The default number of {@link Entity}s stored in a single {@link ArchetypeChunk}.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	/**
+	 * The number of {@link Entity}s stored in a single {@link ArchetypeChunk}.
+	 */
+	private final int _chunkSize;
+
+	/**
+	 * All existing {@link Archetype}s indexed by their {@link ComponentMask}.
+	 */
+	private final HashMap<ComponentMask, Archetype> _archetypeLib;
+
+	/**
+	 * The list of all existing {@link Archetype}s in the order of their creation.
+	 */
+	private final List<Archetype> _archetypes;
+
+	/**
+	 * A read only view of {@link #_archetypes}.
+	 */
+	private final ReadOnlyCollection<Archetype> _readOnlyArchetypes;
+
+	/**
+	 * The {@link Archetype} of {@link Entity}s without any {@link Component}s.
+	 */
+	private final Archetype _emptyArchetype;
+
+	/**
+	 * The {@link Archetype} of every stored {@link Entity}, indexed by the id of the {@link Entity}.
+	 */
+	private final IndexedCollection<Archetype> _entityArchetypes;
+
+	/**
+	 * The row of every stored {@link Entity} within its {@link Archetype}, indexed by the id of the
+	 * {@link Entity}.
+	 */
+	private int[] _entityRows;
+
+	//----------------------------------------------------------------------------------------------
+	// Constructors
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Creates a new instance of the {@link ArchetypeComponentStorage} class with the default
+	 * chunk size.
+	 */
+	public ArchetypeComponentStorage() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of the {@link ArchetypeComponentStorage} class.
+	 *
+	 * @param chunkSize The number of {@link Entity}s stored in a single {@link ArchetypeChunk}.
+	 * @throws IllegalArgumentException When the chunk size is smaller than one.
+	 */
+	public ArchetypeComponentStorage(int chunkSize) throws IllegalArgumentException {
+		if (chunkSize < 1)
+			throw new IllegalArgumentException();
+		_chunkSize = chunkSize;
+		_archetypeLib = new HashMap<ComponentMask, Archetype>();
+		_archetypes = new ArrayList<Archetype>();
+		_readOnlyArchetypes = new ReadOnlyCollection<Archetype>(_archetypes);
+		_entityArchetypes = new IndexedCollection<Archetype>();
+		_entityRows = new int[32];
+		_emptyArchetype = getArchetype(new ComponentMask());
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// ComponentStorage Methods
+	//----------------------------------------------------------------------------------------------
+
+	@Override
+	public void addEntity(int entityId) {
+		setLocation(entityId, _emptyArchetype, _emptyArchetype.add(entityId));
+	}
+
+	@Override
+	public void addEntities(int[] entityIds, ComponentType[] types, Component[] components) {
+		// the whole batch is placed directly into its final archetype instead of moving every
+		// entity through one archetype per type
+		Archetype archetype = getArchetype(new ComponentMask(types));
+		archetype.reserve(entityIds.length);
+		int[] columns = new int[types.length];
+		for (int i = 0; i < types.length; i++)
+			columns[i] = archetype.getColumn(types[i]);
+		for (int n = 0; n < entityIds.length; n++) {
+			int row = archetype.add(entityIds[n]);
+			for (int i = 0; i < types.length; i++)
+				archetype.set(row, columns[i], components[n * types.length + i]);
+			setLocation(entityIds[n], archetype, row);
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		_entityArchetypes.ensureCapacity(capacity);
+		if (capacity > _entityRows.length)
+			_entityRows = Arrays.copyOf(_entityRows, capacity);
+	}
+
+	@Override
+	public void removeEntity(int entityId) {
+		Archetype archetype = _entityArchetypes.get(entityId);
+		removeRow(archetype, _entityRows[entityId]);
+		_entityArchetypes.remove(entityId);
+	}
+
+	@Override
+	public Component getComponent(int entityId, ComponentType type) {
+		Archetype archetype = _entityArchetypes.get(entityId);
+		int column = archetype.getColumn(type);
+		if (column == -1)
+			return null;
+		return archetype.get(_entityRows[entityId], column);
+	}
+
+	@Override
+	public void addComponent(int entityId, ComponentType type, Component component) {
+		Archetype source = _entityArchetypes.get(entityId);
+		Archetype target = source.getAddEdge(type);
+		if (target == null) {
+			ComponentMask mask = new ComponentMask(source.getMask());
+			mask.add(type);
+			target = getArchetype(mask);
+			source.setAddEdge(type, target);
+			target.setRemoveEdge(type, source);
+		}
+		int row = move(entityId, source, target);
+		target.set(row, target.getColumn(type), component);
+	}
+
+	@Override
+	public Component removeComponent(int entityId, ComponentType type) {
+		Archetype source = _entityArchetypes.get(entityId);
+		int column = source.getColumn(type);
+		if (column == -1)
+			return null;
+		Component c = source.get(_entityRows[entityId], column);
+		Archetype target = source.getRemoveEdge(type);
+		if (target == null) {
+			ComponentMask mask = new ComponentMask(source.getMask());
+			mask.remove(type);
+			target = getArchetype(mask);
+			source.setRemoveEdge(type, target);
+			target.setAddEdge(type, source);
+		}
+		move(entityId, source, target);
+		return c;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets a read only list of all {@link Archetype}s that have been created by this storage.
+	 * Systems can use it to iterate over the {@link ArchetypeChunk}s of all {@link Archetype}s
+	 * that match their {@link ComponentMask}.
+	 *
+	 * @return The list of all {@link Archetype}s.
+	 */
+	public ReadOnlyCollection<Archetype> getArchetypes() {
+		return _readOnlyArchetypes;
+	}
+
+	/**
+	 * Gets the {@link Archetype} the specified {@link Entity} is currently part of.
+	 *
+	 * @param entity The {@link Entity} which {@link Archetype} should be got.
+	 * @return The {@link Archetype} of the {@link Entity} or null if the {@link Entity} is not
+	 * 		stored in this storage.
+	 */
+	public Archetype getArchetype(Entity entity) {
+		return _entityArchetypes.get(entity.getId());
+	}
+
+	/**
+	 * Gets the number of {@link Entity}s stored in a single {@link ArchetypeChunk}.
+	 *
+	 * @return The chunk size.
+	 */
+	public int getChunkSize() {
+		return _chunkSize;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the {@link Archetype} with the specified {@link ComponentMask} and creates a new one if
+	 * it doesn't exist yet.
+	 */
+	private Archetype getArchetype(ComponentMask mask) {
+		Archetype archetype = _archetypeLib.get(mask);
+		if (archetype == null) {
+			archetype = new Archetype(mask, _chunkSize);
+			_archetypeLib.put(archetype.getMask(), archetype);
+			_archetypes.add(archetype);
+		}
+		return archetype;
+	}
+
+	/**
+	 * Moves the specified {@link Entity} from one {@link Archetype} to another. All
+	 * {@link Component}s which are part of both archetypes are copied to the new row.
+	 *
+	 * @return The new row of the {@link Entity} in the target {@link Archetype}.
+	 */
+	private int move(int entityId, Archetype source, Archetype target) {
+		int sourceRow = _entityRows[entityId];
+		int targetRow = target.add(entityId);
+		int columns = target.getColumnCount();
+		for (int i = 0; i < columns; i++) {
+			int sourceColumn = source.getColumn(target.getType(i));
+			if (sourceColumn != -1)
+				target.set(targetRow, i, source.get(sourceRow, sourceColumn));
+		}
+		removeRow(source, sourceRow);
+		setLocation(entityId, target, targetRow);
+		return targetRow;
+	}
+
+	/**
+	 * Removes the specified row from the specified {@link Archetype} and updates the location of the
+	 * {@link Entity} which has been moved into the gap.
+	 */
+	private void removeRow(Archetype archetype, int row) {
+		int movedId = archetype.remove(row);
+		if (movedId != -1)
+			_entityRows[movedId] = row;
+	}
+
+	/**
+	 * Stores the location of the specified {@link Entity}.
+	 */
+	private void setLocation(int entityId, Archetype archetype, int row) {
+		if (entityId >= _entityRows.length)
+			_entityRows = Arrays.copyOf(_entityRows, Math.max(entityId + 1, _entityRows.length * 2));
+		_entityArchetypes.set(entityId, archetype);
+		_entityRows[entityId] = row;
+	}
+}
@@ -0,0 +1,98 @@
+package infinity.ecs.core;
+
+import java.util.Arrays;
+
+/**
+ * Stores when the {@link Component}s of a single {@link ComponentType} were added to or changed
+ * on their {@link Entity}s, measured in change ticks of the {@link EntityManager}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The {@link EntityManager} only keeps change ticks for types which are used in the change
+ * filters of an {@link EntityQuery}, so types which are never filtered don't pay for the
+ * bookkeeping. A tick of zero means the {@link Component} was added or changed before it was
+ * tracked.
+ *
+ * @author preip
+ */
+final class ChangeTicks {
+
+	/**
+	 * The tick at which the {@link Component} was added, indexed by the id of the {@link Entity}.
+	 */
+	private int[] _added;
+
+	/**
+	 * The tick at which the {@link Component} was last changed, indexed by the id of the
+	 * {@link Entity}.
+	 */
+	private int[] _changed;
+
+	/**
+	 * Creates a new instance of the {@link ChangeTicks} class.
+	 *
+	 * @param capacity The number of {@link Entity} ids the ticks should initially be able to hold.
+	 */
+	ChangeTicks(int capacity) {
+		capacity = Math.max(capacity, 32);
+		_added = new int[capacity];
+		_changed = new int[capacity];
+	}
+
+	/**
+	 * Records that the {@link Component} was added to the specified {@link Entity}. Adding a
+	 * {@link Component} also counts as changing it.
+	 */
+	void setAdded(int entityId, int tick) {
+		ensureCapacity(entityId);
+		_added[entityId] = tick;
+		_changed[entityId] = tick;
+	}
+
+	/**
+	 * Records that the {@link Component} of the specified {@link Entity} was changed. The arrays
+	 * already cover every {@link Entity} with a {@link Component} of the type, because they were
+	 * either sized for all existing {@link Entity}s or grown when the {@link Component} was added.
+	 * They are therefore never replaced here, which lets several threads record changes at once.
+	 */
+	void setChanged(int entityId, int tick) {
+		_changed[entityId] = tick;
+	}
+
+	/**
+	 * Resets the ticks of the specified {@link Entity}, because its {@link Component} was removed.
+	 */
+	void clear(int entityId) {
+		if (entityId < _added.length) {
+			_added[entityId] = 0;
+			_changed[entityId] = 0;
+		}
+	}
+
+	/**
+	 * Checks if the {@link Component} of the specified {@link Entity} was added after the specified
+	 * tick.
+	 */
+	boolean isAddedAfter(int entityId, int tick) {
+		// compare by subtraction, so the check still works after the tick counter overflowed
+		return entityId < _added.length && _added[entityId] - tick > 0;
+	}
+
+	/**
+	 * Checks if the {@link Component} of the specified {@link Entity} was changed after the
+	 * specified tick.
+	 */
+	boolean isChangedAfter(int entityId, int tick) {
+		return entityId < _changed.length && _changed[entityId] - tick > 0;
+	}
+
+	/**
+	 * Makes sure the arrays can hold the ticks of the specified {@link Entity}.
+	 */
+	private void ensureCapacity(int entityId) {
+		if (entityId >= _added.length) {
+			int length = Math.max(entityId + 1, _added.length * 2);
+			_added = Arrays.copyOf(_added, length);
+			_changed = Arrays.copyOf(_changed, length);
+		}
+	}
+}
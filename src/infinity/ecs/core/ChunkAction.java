@@ -0,0 +1,23 @@
+package infinity.ecs.core;
+
+/**
+ * An action which processes a contiguous chunk of a range of indices, e.g. the positions of the
+ * {@link Entity}s of an {@link EntityQuery} or the rows of a {@link PackedComponents} storage.
+ * <p>
+ * <b>Notes:</b><br>
+ * When used by {@link EntitySystem#forEachChunk(int, ChunkAction)}, several chunks of the same
+ * range are processed concurrently. The chunks never overlap, so an implementation may freely
+ * write to the elements of its own chunk, but must synchronize access to everything else.
+ *
+ * @author preip
+ */
+public interface ChunkAction {
+
+	/**
+	 * Processes the indices from the start (inclusive) to the end (exclusive).
+	 *
+	 * @param start The first index of the chunk.
+	 * @param end The index after the last index of the chunk.
+	 */
+	public void process(int start, int end);
+}
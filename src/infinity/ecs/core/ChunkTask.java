@@ -0,0 +1,57 @@
+package infinity.ecs.core;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Processes a range of indices with a {@link ChunkAction} by splitting it in halves until the
+ * chunks are no longer than the grain size. The halves are processed as fork-join tasks, so idle
+ * workers steal the remaining chunks of busy ones.
+ * <p>
+ * <b>Notes:</b><br>
+ * If the task is invoked from a worker of a pool, e.g. by a system which is updated by a
+ * {@link infinity.ecs.scheduling.ParallelScheduler}, the chunks are processed by the same pool.
+ * Otherwise they are processed by the common pool.
+ *
+ * @author preip
+ */
+final class ChunkTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final ChunkAction _action;
+	private final int _start;
+	private final int _end;
+	private final int _grainSize;
+
+	/**
+	 * Creates a new instance of the {@link ChunkTask} class.
+	 *
+	 * @param action The action which processes the chunks.
+	 * @param start The first index of the range.
+	 * @param end The index after the last index of the range.
+	 * @param grainSize The maximum number of indices of a chunk.
+	 * @throws IllegalArgumentException When grainSize is not positive.
+	 */
+	ChunkTask(ChunkAction action, int start, int end, int grainSize)
+			throws IllegalArgumentException {
+		if (grainSize <= 0)
+			throw new IllegalArgumentException();
+		_action = action;
+		_start = start;
+		_end = end;
+		_grainSize = grainSize;
+	}
+
+	@Override
+	protected void compute() {
+		int size = _end - _start;
+		if (size <= _grainSize) {
+			if (size > 0)
+				_action.process(_start, _end);
+			return;
+		}
+		int middle = _start + size / 2;
+		invokeAll(new ChunkTask(_action, _start, middle, _grainSize),
+				new ChunkTask(_action, middle, _end, _grainSize));
+	}
+}
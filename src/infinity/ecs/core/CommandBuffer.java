@@ -0,0 +1,354 @@
+package infinity.ecs.core;
+
+import infinity.ecs.exceptions.AlreadyNestedException;
+import infinity.ecs.exceptions.ComponentAlreadyExistsException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Records structural changes of {@link Entity}s, which are applied to an {@link EntityManager}
+ * later on by {@link #playback()}. Systems can use a buffer to change {@link Entity}s while they
+ * iterate over an {@link EntityQuery}, which must not be changed during the iteration.
+ * <p>
+ * <b>Notes:</b><br>
+ * The commands are not applied in the order they have been recorded. Instead they are sorted into
+ * phases, which are applied one after another:
+ * <ol>
+ * <li>New {@link Entity}s are created. Consecutive creations with the same types are batched
+ * into a single call of {@link EntityManager#createEntities(int, ComponentType...)}.</li>
+ * <li>{@link Component}s are added and removed, grouped by their type.</li>
+ * <li>{@link Entity}s are moved to their new parents.</li>
+ * <li>{@link Entity}s are removed by a single call of
+ * {@link EntityManager#removeEntities(Entity...)}.</li>
+ * </ol>
+ * Within a phase the recorded order is kept, so adding and removing a {@link Component} of the
+ * same type to and from the same {@link Entity} is applied in the order it has been recorded,
+ * e.g. a removal followed by an addition resets the {@link Component}. Commands which no longer
+ * apply at the time of the playback, because the {@link Entity} has already been removed or
+ * already has the {@link Component}, are skipped.
+ * <p>
+ * All methods are synchronized, so several threads can record into the same buffer. For the
+ * least contention every thread should use its own buffer.
+ *
+ * @author preip
+ */
+public final class CommandBuffer {
+
+	//----------------------------------------------------------------------------------------------
+	// Commands
+	//----------------------------------------------------------------------------------------------
+
+	private static final int CREATE = 0;
+	private static final int ADD_COMPONENT = 1;
+	private static final int REMOVE_COMPONENT = 2;
+	private static final int SET_PARENT = 3;
+	private static final int REMOVE = 4;
+
+	/**
+	 * The phase every command is applied in, indexed by the command. Additions and removals of
+	 * {@link Component}s share a phase, so they keep their recorded order.
+	 */
+	private static final int[] PHASES = { 0, 1, 1, 2, 3 };
+
+	//----------------------------------------------------------------------------------------------
+	// Fields
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * The {@link EntityManager} the commands are applied to.
+	 */
+	private final EntityManager _manager;
+
+	/**
+	 * Every recorded command.
+	 */
+	private int[] _commands;
+
+	/**
+	 * The {@link Entity} every command refers to, or null for creations.
+	 */
+	private Entity[] _entities;
+
+	/**
+	 * The argument of every command: the {@link ComponentType} for component commands, the new
+	 * parent for reparenting and the array of {@link ComponentType}s for creations.
+	 */
+	private Object[] _arguments;
+
+	/**
+	 * The number of {@link Entity}s to create for creations.
+	 */
+	private int[] _counts;
+
+	/**
+	 * The number of recorded commands.
+	 */
+	private int _size;
+
+	/**
+	 * The number of {@link Entity}s which will be created by the recorded commands.
+	 */
+	private int _createCount;
+
+	/**
+	 * The {@link Entity}s created by the last playback.
+	 */
+	private Entity[] _created;
+
+	/**
+	 * Creates a new instance of the {@link CommandBuffer} class.
+	 *
+	 * @param manager The {@link EntityManager} the commands are applied to.
+	 * @throws IllegalArgumentException When manager was null.
+	 */
+	public CommandBuffer(EntityManager manager) throws IllegalArgumentException {
+		if (manager == null)
+			throw new IllegalArgumentException();
+		_manager = manager;
+		_commands = new int[32];
+		_entities = new Entity[32];
+		_arguments = new Object[32];
+		_counts = new int[32];
+		_size = 0;
+		_createCount = 0;
+		_created = new Entity[0];
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Recording
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Records the creation of a new {@link Entity} with new {@link Component}s of the specified
+	 * types.
+	 *
+	 * @param componentTypes The types of the {@link Component}s the {@link Entity} should have.
+	 * @return The index of the {@link Entity} within {@link #getCreatedEntities()} after the next
+	 * 		playback.
+	 */
+	public synchronized int createEntity(ComponentType... componentTypes) {
+		return createEntities(1, componentTypes);
+	}
+
+	/**
+	 * Records the creation of the specified number of new {@link Entity}s with new
+	 * {@link Component}s of the specified types.
+	 *
+	 * @param count The number of {@link Entity}s which should be created.
+	 * @param componentTypes The types of the {@link Component}s every {@link Entity} should have.
+	 * @return The index of the first {@link Entity} within {@link #getCreatedEntities()} after the
+	 * 		next playback.
+	 * @throws IllegalArgumentException When count is negative.
+	 */
+	public synchronized int createEntities(int count, ComponentType... componentTypes)
+			throws IllegalArgumentException {
+		if (count < 0)
+			throw new IllegalArgumentException();
+		int index = _createCount;
+		record(CREATE, null, componentTypes.clone(), count);
+		_createCount += count;
+		return index;
+	}
+
+	/**
+	 * Records the removal of the specified {@link Entity} and its children.
+	 *
+	 * @param entity The {@link Entity} which should be removed.
+	 */
+	public synchronized void removeEntity(Entity entity) {
+		record(REMOVE, entity, null, 0);
+	}
+
+	/**
+	 * Records the addition of a new {@link Component} of the specified type to the specified
+	 * {@link Entity}.
+	 *
+	 * @param entity The {@link Entity} the {@link Component} should be added to.
+	 * @param componentType The type of the {@link Component}.
+	 */
+	public synchronized void addComponent(Entity entity, ComponentType componentType) {
+		record(ADD_COMPONENT, entity, componentType, 0);
+	}
+
+	/**
+	 * Records the removal of the {@link Component} of the specified type from the specified
+	 * {@link Entity}.
+	 *
+	 * @param entity The {@link Entity} the {@link Component} should be removed from.
+	 * @param componentType The type of the {@link Component}.
+	 */
+	public synchronized void removeComponent(Entity entity, ComponentType componentType) {
+		record(REMOVE_COMPONENT, entity, componentType, 0);
+	}
+
+	/**
+	 * Records moving the specified {@link Entity} to a new parent.
+	 *
+	 * @param child The {@link Entity} which should be moved.
+	 * @param parent The new parent, or null if the {@link Entity} should only be detached from its
+	 * 		current parent.
+	 */
+	public synchronized void setParent(Entity child, Entity parent) {
+		record(SET_PARENT, child, parent, 0);
+	}
+
+	/**
+	 * Gets the number of recorded commands.
+	 *
+	 * @return The number of commands.
+	 */
+	public synchronized int size() {
+		return _size;
+	}
+
+	/**
+	 * Discards all recorded commands.
+	 */
+	public synchronized void clear() {
+		Arrays.fill(_entities, 0, _size, null);
+		Arrays.fill(_arguments, 0, _size, null);
+		_size = 0;
+		_createCount = 0;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Playback
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Applies all recorded commands to the {@link EntityManager} and clears the buffer. The buffer
+	 * is also cleared if a command fails, so calling this method again never applies a command
+	 * twice. The commands applied before the failing one stay applied, the remaining ones are
+	 * discarded.
+	 *
+	 * @throws IllegalArgumentException When a {@link Component} should be added for which no
+	 * 		factory is registered, or when an {@link Entity} should become a child of one of its own
+	 * 		children.
+	 */
+	public synchronized void playback() throws IllegalArgumentException {
+		// sort the commands by phase and, within the component phase, by type. The index of the
+		// command is part of the key, which keeps the sort stable.
+		long[] keys = new long[_size];
+		for (int i = 0; i < _size; i++) {
+			long group = 0;
+			if (_commands[i] == ADD_COMPONENT || _commands[i] == REMOVE_COMPONENT)
+				group = ((ComponentType)_arguments[i]).getId();
+			keys[i] = ((long)PHASES[_commands[i]] << 56) | (group << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		Entity[] created = new Entity[_createCount];
+		int createdCount = 0;
+		List<Entity> removed = new ArrayList<Entity>();
+		try {
+			for (int k = 0; k < keys.length; k++) {
+				int i = (int)keys[k];
+				Entity entity = _entities[i];
+				switch (_commands[i]) {
+				case CREATE:
+					// batch all following creations with the same types
+					ComponentType[] types = (ComponentType[])_arguments[i];
+					int count = _counts[i];
+					while (k + 1 < keys.length && _commands[(int)keys[k + 1]] == CREATE
+							&& Arrays.equals(types, (ComponentType[])_arguments[(int)keys[k + 1]]))
+						count += _counts[(int)keys[++k]];
+					Entity[] batch;
+					try {
+						batch = _manager.createEntities(count, types);
+					} catch (ComponentAlreadyExistsException e) {
+						throw new IllegalArgumentException(e);
+					}
+					System.arraycopy(batch, 0, created, createdCount, count);
+					createdCount += count;
+					break;
+				case ADD_COMPONENT:
+					ComponentType type = (ComponentType)_arguments[i];
+					if (_manager.isAlive(entity)
+							&& !_manager.getComponentMask(entity).contains(type)) {
+						try {
+							_manager.addComponent(entity, type);
+						} catch (ComponentAlreadyExistsException e) {
+							// can't happen, since the mask has been checked
+						}
+					}
+					break;
+				case REMOVE_COMPONENT:
+					if (_manager.isAlive(entity))
+						_manager.removeComponent(entity, (ComponentType)_arguments[i]);
+					break;
+				case SET_PARENT:
+					Entity parent = (Entity)_arguments[i];
+					if (!_manager.isAlive(entity) || (parent != null && !_manager.isAlive(parent)))
+						break;
+					if (_manager.getParent(entity) == parent)
+						break;
+					// check for cycles before the entity is detached, so the failing command
+					// doesn't change anything
+					if (parent != null && isAncestorOf(entity, parent))
+						throw new IllegalArgumentException();
+					_manager.removeChildEntity(entity);
+					if (parent != null) {
+						try {
+							_manager.addChildEntity(parent, entity);
+						} catch (AlreadyNestedException e) {
+							// can't happen, since the child has just been detached
+						}
+					}
+					break;
+				default:
+					removed.add(entity);
+					break;
+				}
+			}
+			if (!removed.isEmpty())
+				_manager.removeEntities(removed.toArray(new Entity[removed.size()]));
+		} finally {
+			_created = Arrays.copyOf(created, createdCount);
+			clear();
+		}
+	}
+
+	/**
+	 * Gets the {@link Entity}s created by the last playback, in the order their creation has been
+	 * recorded.
+	 *
+	 * @return The created {@link Entity}s.
+	 */
+	public synchronized Entity[] getCreatedEntities() {
+		return _created.clone();
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Checks if the specified {@link Entity} is the other {@link Entity} or one of its parents.
+	 */
+	private boolean isAncestorOf(Entity entity, Entity other) {
+		for (Entity e = other; e != null; e = _manager.getParent(e))
+			if (e == entity)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Appends a command to the buffer.
+	 */
+	private void record(int phase, Entity entity, Object argument, int count) {
+		if (_size == _commands.length) {
+			int capacity = _size * 2;
+			_commands = Arrays.copyOf(_commands, capacity);
+			_entities = Arrays.copyOf(_entities, capacity);
+			_arguments = Arrays.copyOf(_arguments, capacity);
+			_counts = Arrays.copyOf(_counts, capacity);
+		}
+		_commands[_size] = phase;
+		_entities[_size] = entity;
+		_arguments[_size] = argument;
+		_counts[_size] = count;
+		_size++;
+	}
+}
@@ -3,10 +3,15 @@ package infinity.ecs.core;
 /**
  * Abstract class which identifies all derived classes as {@link Component}s, which can be used as
  * a specific data storage in combination with {@link Entity}s.
+ * <p>
+ * <b>Notes:</b><br>
+ * {@link Component}s which are used as templates of a {@link Prefab} are copied by
+ * {@link #copy()}, which creates a shallow copy. {@link Component}s which hold mutable objects
+ * should override it to copy those as well.
  * 
  * @author preip
  */
-public abstract class Component {
+public abstract class Component implements Cloneable {
 	
 	/**
 	 * The {@link Entity} which this {@link Component} is part of.
@@ -38,6 +43,23 @@ public abstract class Component {
 		return _entity;
 	}
 	
+	/**
+	 * Creates a copy of this {@link Component}, which is not bound to any {@link Entity}. The
+	 * default implementation creates a shallow copy of all fields.
+	 * 
+	 * @return The copy of this {@link Component}.
+	 */
+	protected Component copy() {
+		try {
+			Component c = (Component)super.clone();
+			c._entity = null;
+			return c;
+		} catch (CloneNotSupportedException e) {
+			// can't happen, since all components are cloneable
+			throw new IllegalStateException(e);
+		}
+	}
+	
 	/**
 	 * Gets the {@link ComponentType} of this {@link Component}.
 	 * 
@@ -32,7 +32,12 @@ public final class ComponentMask {
 	//----------------------------------------------------------------------------------------------
 	// Fields
 	//----------------------------------------------------------------------------------------------
-	
+
+	/**
+	 * An empty {@link BitArray} that is used to check if a mask is empty. Must never be changed.
+	 */
+	private static final BitArray EMPTY_BITS = new BitArray();
+
 	/**
 	 * The {@link BitArray} that acts as the base for the {@link ComponentMask} and stores the id
 	 *  of every {@link ComponentType} that is part of the map.
@@ -178,6 +183,28 @@ public final class ComponentMask {
 		return _bitArray.intersects(mask._bitArray);
 	}
 	
+	/**
+	 * Checks if this {@link ComponentMask} contains all types of the first specified mask, at least
+	 * one type of the second mask, unless it is empty, and none of the types of the third mask.
+	 *
+	 * @param all The mask of which all types need to be part of this mask.
+	 * @param any The mask of which at least one type needs to be part of this mask.
+	 * @param none The mask of which no type may be part of this mask.
+	 * @return True if all three conditions are met, otherwise false.
+	 */
+	public boolean matches(ComponentMask all, ComponentMask any, ComponentMask none) {
+		return _bitArray.matches(all._bitArray, any._bitArray, none._bitArray);
+	}
+
+	/**
+	 * Indicates if this {@link ComponentMask} doesn't contain any {@link ComponentType}s.
+	 *
+	 * @return True if the mask is empty, otherwise false.
+	 */
+	public boolean isEmpty() {
+		return _bitArray.equals(EMPTY_BITS);
+	}
+
 	/**
 	 * Gets a list of all {@link ComponentType}s that are part of the mask.
 	 * 
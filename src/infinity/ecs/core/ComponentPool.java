@@ -0,0 +1,191 @@
+package infinity.ecs.core;
+
+import java.util.Arrays;
+
+/**
+ * Stores all {@link Component}s of a single {@link ComponentType} as a sparse set.
+ * <p>
+ * <b>Notes:</b><br>
+ * The pool consists of a sparse array, indexed by the id of the {@link Entity}, which contains the
+ * position of the {@link Component} within two dense arrays. The dense arrays hold the ids of the
+ * {@link Entity}s and the {@link Component}s themselves and are always packed, so iterating over
+ * all {@link Component}s of the type is a simple loop from zero to {@link #size()}.
+ * <p>
+ * Adding and removing {@link Component}s is O(1), because a removed {@link Component} is simply
+ * replaced by the last {@link Component} of the dense arrays. This also means the order of the
+ * dense arrays changes whenever a {@link Component} is removed.
+ *
+ * @author preip
+ */
+public final class ComponentPool {
+
+	/**
+	 * The initial capacity of the sparse and dense arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 32;
+
+	/**
+	 * The {@link ComponentType} of all {@link Component}s stored in this pool.
+	 */
+	private final ComponentType _type;
+
+	/**
+	 * The position of every {@link Component} within the dense arrays, indexed by the id of its
+	 * {@link Entity}. Contains -1 for all {@link Entity}s without a {@link Component} in this pool.
+	 */
+	private int[] _sparse;
+
+	/**
+	 * The packed ids of all {@link Entity}s that have a {@link Component} in this pool.
+	 */
+	private int[] _entityIds;
+
+	/**
+	 * The packed {@link Component}s, in the same order as {@link #_entityIds}.
+	 */
+	private Component[] _components;
+
+	/**
+	 * The number of {@link Component}s stored in this pool.
+	 */
+	private int _size;
+
+	/**
+	 * Creates a new instance of the {@link ComponentPool} class.
+	 *
+	 * @param type The {@link ComponentType} of all {@link Component}s stored in the pool.
+	 */
+	public ComponentPool(ComponentType type) {
+		_type = type;
+		_sparse = new int[INITIAL_CAPACITY];
+		Arrays.fill(_sparse, -1);
+		_entityIds = new int[INITIAL_CAPACITY];
+		_components = new Component[INITIAL_CAPACITY];
+		_size = 0;
+	}
+
+	/**
+	 * Adds the specified {@link Component} for the specified {@link Entity} or replaces the existing
+	 * one.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @param component The {@link Component} which should be added.
+	 */
+	public void add(int entityId, Component component) {
+		if (entityId >= _sparse.length) {
+			int oldLength = _sparse.length;
+			_sparse = Arrays.copyOf(_sparse, Math.max(entityId + 1, oldLength * 2));
+			Arrays.fill(_sparse, oldLength, _sparse.length, -1);
+		}
+		int index = _sparse[entityId];
+		if (index != -1) {
+			_components[index] = component;
+			return;
+		}
+		if (_size == _entityIds.length) {
+			_entityIds = Arrays.copyOf(_entityIds, _size * 2);
+			_components = Arrays.copyOf(_components, _size * 2);
+		}
+		_sparse[entityId] = _size;
+		_entityIds[_size] = entityId;
+		_components[_size] = component;
+		_size++;
+	}
+
+	/**
+	 * Removes the {@link Component} of the specified {@link Entity} from this pool.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The {@link Component} which was removed or null if the {@link Entity} had none.
+	 */
+	public Component remove(int entityId) {
+		int index = indexOf(entityId);
+		if (index == -1)
+			return null;
+		Component c = _components[index];
+		int last = --_size;
+		// fill the gap with the last element to keep the dense arrays packed
+		int lastId = _entityIds[last];
+		_entityIds[index] = lastId;
+		_components[index] = _components[last];
+		_sparse[lastId] = index;
+		_components[last] = null;
+		_sparse[entityId] = -1;
+		return c;
+	}
+
+	/**
+	 * Gets the {@link Component} of the specified {@link Entity}.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The {@link Component} or null if the {@link Entity} has none in this pool.
+	 */
+	public Component get(int entityId) {
+		int index = indexOf(entityId);
+		if (index == -1)
+			return null;
+		return _components[index];
+	}
+
+	/**
+	 * Gets the position of the {@link Component} of the specified {@link Entity} within the dense
+	 * arrays.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The position or -1 if the {@link Entity} has no {@link Component} in this pool.
+	 */
+	public int indexOf(int entityId) {
+		if (entityId >= _sparse.length)
+			return -1;
+		return _sparse[entityId];
+	}
+
+	/**
+	 * Gets the {@link ComponentType} of all {@link Component}s stored in this pool.
+	 *
+	 * @return The {@link ComponentType} of the pool.
+	 */
+	public ComponentType getComponentType() {
+		return _type;
+	}
+
+	/**
+	 * Gets the number of {@link Component}s stored in this pool.
+	 *
+	 * @return The size of the pool.
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the id of the {@link Entity} at the specified position of the dense arrays.
+	 *
+	 * @param index The position within the dense arrays.
+	 * @return The id of the {@link Entity}.
+	 */
+	public int getEntityId(int index) {
+		return _entityIds[index];
+	}
+
+	/**
+	 * Gets the {@link Component} at the specified position of the dense arrays.
+	 *
+	 * @param index The position within the dense arrays.
+	 * @return The {@link Component}.
+	 */
+	public Component getComponent(int index) {
+		return _components[index];
+	}
+
+	/**
+	 * Gets the dense array of {@link Component}s for tight iteration loops. Only the first
+	 * {@link #size()} elements are valid. The array is replaced whenever the pool grows, so it
+	 * shouldn't be kept between updates, and it must not be modified.
+	 *
+	 * @return The dense array of {@link Component}s.
+	 */
+	public Component[] getComponents() {
+		return _components;
+	}
+}
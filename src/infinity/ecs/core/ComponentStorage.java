@@ -0,0 +1,80 @@
+package infinity.ecs.core;
+
+/**
+ * Interface for all classes which can be used by an {@link EntityManager} to store the
+ * {@link Component}s of its {@link Entity}s.
+ * <p>
+ * <b>Notes:</b><br>
+ * The storage is only responsible for holding the {@link Component}s themselves. All the
+ * bookkeeping like checking if an {@link Entity} exists, if a {@link Component} is already part of
+ * an {@link Entity} or maintaining the {@link ComponentMask}s is done by the {@link EntityManager}
+ * before calling the storage. Implementations can therefore skip those checks.
+ *
+ * @author preip
+ */
+public interface ComponentStorage {
+
+	/**
+	 * Adds a new {@link Entity} without any {@link Component}s to the storage.
+	 *
+	 * @param entityId The id of the {@link Entity} which should be added.
+	 */
+	public void addEntity(int entityId);
+
+	/**
+	 * Adds a batch of new {@link Entity}s which all have {@link Component}s of the same types.
+	 *
+	 * @param entityIds The ids of the {@link Entity}s which should be added.
+	 * @param types The {@link ComponentType}s of the {@link Component}s every {@link Entity} of
+	 * 		the batch has, each type only once.
+	 * @param components The {@link Component}s of all {@link Entity}s. The {@link Component} of
+	 * 		the type at index i of the {@link Entity} at index n is stored at index
+	 * 		{@code n * types.length + i}.
+	 */
+	public void addEntities(int[] entityIds, ComponentType[] types, Component[] components);
+
+	/**
+	 * Prepares the storage for {@link Entity}s with ids up to the specified capacity, so a batch
+	 * of {@link Entity}s can be added without growing the storage repeatedly.
+	 *
+	 * @param capacity The number of {@link Entity} ids the storage should be able to hold.
+	 */
+	public void ensureCapacity(int capacity);
+
+	/**
+	 * Removes the {@link Entity} with the specified id and all its {@link Component}s from the
+	 * storage.
+	 *
+	 * @param entityId The id of the {@link Entity} which should be removed.
+	 */
+	public void removeEntity(int entityId);
+
+	/**
+	 * Gets the {@link Component} of the specified type from the specified {@link Entity}.
+	 *
+	 * @param entityId The id of the {@link Entity} which {@link Component} should be got.
+	 * @param type The {@link ComponentType} of the desired {@link Component}.
+	 * @return The desired {@link Component} or null if the {@link Entity} has no {@link Component}
+	 * 		of the specified type.
+	 */
+	public Component getComponent(int entityId, ComponentType type);
+
+	/**
+	 * Adds the specified {@link Component} to the specified {@link Entity}.
+	 *
+	 * @param entityId The id of the {@link Entity} to which the {@link Component} should be added.
+	 * @param type The {@link ComponentType} of the {@link Component}.
+	 * @param component The {@link Component} which should be added.
+	 */
+	public void addComponent(int entityId, ComponentType type, Component component);
+
+	/**
+	 * Removes the {@link Component} of the specified type from the specified {@link Entity}.
+	 *
+	 * @param entityId The id of the {@link Entity} which {@link Component} should be removed.
+	 * @param type The {@link ComponentType} of the {@link Component} which should be removed.
+	 * @return The {@link Component} which was removed or null if there was no such
+	 * 		{@link Component}.
+	 */
+	public Component removeComponent(int entityId, ComponentType type);
+}
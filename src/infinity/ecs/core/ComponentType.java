@@ -62,7 +62,7 @@ public final class ComponentType {
 		// if not,
 		if (cType == null) {
 			// a new one must be created
-			cType = new ComponentType(_classLib.size());
+			cType = new ComponentType(_classLib.size(), typeClass);
 			// and added to the class library, to enable the class based lookup
 			_classLib.put(typeClass, cType);
 			// and also to the component type list to enable the lookup based on IDs
@@ -102,6 +102,21 @@ public final class ComponentType {
 	 */
 	private final int _id;
 	
+	/**
+	 * The {@link Component} class this {@link ComponentType} represents.
+	 */
+	private final Class<? extends Component> _typeClass;
+	
+	/**
+	 * Indicates if the {@link Component} class is annotated as {@link Packed}.
+	 */
+	private final boolean _isPacked;
+	
+	/**
+	 * Indicates if the {@link Component} class is {@link Packed} and stored off-heap.
+	 */
+	private final boolean _isOffHeap;
+	
 	//----------------------------------------------------------------------------------------------
 	// Constructors
 	//----------------------------------------------------------------------------------------------
@@ -111,9 +126,14 @@ public final class ComponentType {
 	 * type IDs must be managed centrally.
 	 *
 	 * @param id The id of this {@link ComponentType}.
+	 * @param typeClass The {@link Component} class this {@link ComponentType} represents.
 	 */
-	private ComponentType(int id) {
+	private ComponentType(int id, Class<? extends Component> typeClass) {
 		_id = id;
+		_typeClass = typeClass;
+		Packed packed = typeClass.getAnnotation(Packed.class);
+		_isPacked = packed != null;
+		_isOffHeap = packed != null && packed.offHeap();
 	}
 
 	//----------------------------------------------------------------------------------------------
@@ -128,6 +148,33 @@ public final class ComponentType {
 	public int getId() {
 		return _id;
 	}
+	
+	/**
+	 * Gets the {@link Component} class this {@link ComponentType} represents.
+	 *
+	 * @return The {@link Component} class.
+	 */
+	public Class<? extends Component> getComponentClass() {
+		return _typeClass;
+	}
+	
+	/**
+	 * Indicates if the {@link Component}s of this type are {@link Packed}.
+	 *
+	 * @return true if the {@link Component} class is annotated as {@link Packed}, otherwise false.
+	 */
+	public boolean isPacked() {
+		return _isPacked;
+	}
+	
+	/**
+	 * Indicates if the {@link Component}s of this type are {@link Packed} and stored off-heap.
+	 *
+	 * @return true if the {@link Component}s are stored in native memory, otherwise false.
+	 */
+	public boolean isOffHeap() {
+		return _isOffHeap;
+	}
 
 	/**
 	 * Checks if this {@link ComponentType} is equal to the specified object.
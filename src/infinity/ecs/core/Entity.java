@@ -8,6 +8,12 @@ import infinity.ecs.utils.ReadOnlyCollection;
  * A class that represents a single entity within the game world. The entity is associated with an
  * specific {@link EntitManager} and has a unique Id. It consist of several {@link Components} which
  * contain the actual data of the entity and therefore define its type.
+ * <p>
+ * <b>Notes:</b><br>
+ * The ids of removed entities are reused by the {@link EntityManager}. To tell a removed entity
+ * apart from a new one with the same id, every entity also has a generation, which is increased
+ * whenever the id is reused. The id and the generation together form the handle of the entity,
+ * see {@link #getHandle()}.
  *
  * @author preip, Simon
  */
@@ -22,6 +28,11 @@ public final class Entity {
 	 */
 	private final int _id;
 	
+	/**
+	 * The generation of the id of the {@link Entity}.
+	 */
+	private final int _generation;
+	
 	/**
 	 * The {@link EntityManager} this entity is associated with.
 	 */
@@ -36,12 +47,38 @@ public final class Entity {
 	 * Can't be public, or IDs were no longer be guaranteed to be unique.
 	 * 
 	 * @param id The unique id of the {@link Entity}.
+	 * @param generation The generation of the id.
 	 */
-	Entity(int id, EntityManager em) {
+	Entity(int id, int generation, EntityManager em) {
 		_id = id;
+		_generation = generation;
 		_em = em;
 	}
 	
+	//----------------------------------------------------------------------------------------------
+	// Static Methods
+	//----------------------------------------------------------------------------------------------
+	
+	/**
+	 * Gets the id from the specified handle.
+	 * 
+	 * @param handle The handle of an {@link Entity}.
+	 * @return The id of the {@link Entity}.
+	 */
+	public static int getId(long handle) {
+		return (int)handle;
+	}
+	
+	/**
+	 * Gets the generation from the specified handle.
+	 * 
+	 * @param handle The handle of an {@link Entity}.
+	 * @return The generation of the id of the {@link Entity}.
+	 */
+	public static int getGeneration(long handle) {
+		return (int)(handle >>> 32);
+	}
+	
 	//----------------------------------------------------------------------------------------------
 	// Methods
 	//----------------------------------------------------------------------------------------------
@@ -55,6 +92,35 @@ public final class Entity {
 		return _id;
 	}
 	
+	/**
+	 * Gets the generation of the id of this {@link Entity}.
+	 * 
+	 * @return the generation of the id.
+	 */
+	public int getGeneration() {
+		return _generation;
+	}
+	
+	/**
+	 * Gets the handle of this {@link Entity}, which contains the id in the lower and the
+	 * generation in the upper 32 bits. Unlike the id, the handle is never reused, so it can be
+	 * kept to refer to the {@link Entity} without keeping the object itself.
+	 * 
+	 * @return the handle of the {@link Entity}.
+	 */
+	public long getHandle() {
+		return ((long)_generation << 32) | (_id & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * Indicates if this {@link Entity} is still part of its {@link EntityManager}.
+	 * 
+	 * @return true if the {@link Entity} hasn't been removed yet, otherwise false.
+	 */
+	public boolean isAlive() {
+		return _em.isAlive(this);
+	}
+	
 	//----------------------------------------------------------------------------------------------
 	// Component related methods
 	//----------------------------------------------------------------------------------------------
@@ -105,6 +171,17 @@ public final class Entity {
 		return _em.removeComponent(this, componentType);
 	}
 	
+	/**
+	 * Marks the {@link Component} of the specified type as changed.
+	 *
+	 * @param componentType The type of the {@link Component} which has been changed.
+	 * @return true if the {@link Component} was marked, or false if there was no {@link Component}
+	 * 		of the specified type.
+	 */
+	public boolean markChanged(ComponentType componentType) {
+		return _em.markChanged(this, componentType);
+	}
+
 	/**
 	 * Gets the ComponentMask for this Entity.
 	 * 
@@ -168,12 +245,12 @@ public final class Entity {
 		if (getClass() != obj.getClass())
 			return false;
 		Entity entity = (Entity)obj;
-		return _id == entity._id;
+		return _id == entity._id && _generation == entity._generation;
 	}
 
 	@Override
 	public int hashCode() {
-		// hash code is just the id, which is assumed to be unique,
+		// hash code is just the id, which is unique among all living entities,
 		// so there shouldn't be a problem
 		return _id;
 	}
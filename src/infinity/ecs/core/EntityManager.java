@@ -1,16 +1,27 @@
 package infinity.ecs.core;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import infinity.ecs.messaging.ChildEntityAddedMessage;
 import infinity.ecs.messaging.ChildEntityRemovedMessage;
 import infinity.ecs.messaging.ComponentAddedMessage;
+import infinity.ecs.messaging.ComponentChangedMessage;
 import infinity.ecs.messaging.ComponentRemovedMessage;
+import infinity.ecs.messaging.EntitiesCreatedMessage;
+import infinity.ecs.messaging.EntitiesRemovedMessage;
 import infinity.ecs.messaging.EntityCreatedMessage;
 import infinity.ecs.messaging.EntityRemovedMessage;
+import infinity.ecs.messaging.Message;
 import infinity.ecs.messaging.MessageDispatcher;
 import infinity.ecs.messaging.MessageEndpoint;
+import infinity.ecs.messaging.MessagePool;
+import infinity.ecs.messaging.MessageType;
 import infinity.ecs.utils.IdPool;
 import infinity.ecs.utils.IndexedCollection;
 import infinity.ecs.utils.ReadOnlyCollection;
@@ -30,6 +41,30 @@ public final class EntityManager {
 	// Fields
 	//----------------------------------------------------------------------------------------------
 	
+	/**
+	 * The children of all {@link Entity}s which have none.
+	 */
+	private static final ReadOnlyCollection<Entity> NO_CHILDREN
+		= new ReadOnlyCollection<Entity>(Collections.<Entity>emptyList());
+	
+	/**
+	 * The {@link MessageType}s of all {@link Message}s send by {@link EntityManager}s.
+	 */
+	private static final MessageType ENTITY_CREATED = MessageType.get(EntityCreatedMessage.class);
+	private static final MessageType ENTITIES_CREATED
+		= MessageType.get(EntitiesCreatedMessage.class);
+	private static final MessageType ENTITY_REMOVED = MessageType.get(EntityRemovedMessage.class);
+	private static final MessageType ENTITIES_REMOVED
+		= MessageType.get(EntitiesRemovedMessage.class);
+	private static final MessageType CHILD_ADDED = MessageType.get(ChildEntityAddedMessage.class);
+	private static final MessageType CHILD_REMOVED
+		= MessageType.get(ChildEntityRemovedMessage.class);
+	private static final MessageType COMPONENT_ADDED = MessageType.get(ComponentAddedMessage.class);
+	private static final MessageType COMPONENT_REMOVED
+		= MessageType.get(ComponentRemovedMessage.class);
+	private static final MessageType COMPONENT_CHANGED
+		= MessageType.get(ComponentChangedMessage.class);
+	
 	/**
 	 * The IdPool used by this entity manager to generate IDs for new entities.
 	 */
@@ -40,6 +75,13 @@ public final class EntityManager {
 	 */
 	private final IndexedCollection<Entity> _entities;
 	
+	/**
+	 * The current generation of every id, indexed by the id. The generation is increased whenever
+	 * an {@link Entity} is removed, so {@link Entity}s which reuse the id can be told apart from
+	 * the removed one.
+	 */
+	private int[] _generations;
+	
 	/**
 	 * The list of all Parent-{@link Entity}s of all the registered {@link Entity}s indexed by
 	 * their IDs. Every registered entity gets an entry in this list. If the {@link Entity} is null,
@@ -49,16 +91,27 @@ public final class EntityManager {
 	
 	/**
 	 * The list of the children of all registered {@link Entity}s indexed by the IDs of their
-	 * parents. Every registered {@link Entity} gets an entry in this list. The entries itself
-	 * are also lists, which contain references to the children of the corresponding {@link Entity}.
+	 * parents. The entries itself are also lists, which contain references to the children of the
+	 * corresponding {@link Entity}. They are only created once the first child is added, so
+	 * {@link Entity}s without children don't cost an allocation.
 	 */
 	private final IndexedCollection<List<Entity>> _children;
 	
 	/**
-	 * The list of the {@link Component}s of all entities, indexed by the id of the entity and the
-	 * id of the {@link ComponentType}. 
+	 * The {@link ComponentStorage} which holds the {@link Component}s of all entities.
 	 */
-	private final IndexedCollection<IndexedCollection<Component>> _components;
+	private final ComponentStorage _storage;
+	
+	/**
+	 * The {@link PackedComponents} of all {@link Packed} {@link ComponentType}s indexed by the id
+	 * of the type. {@link Component}s of these types are not kept in the {@link #_storage}.
+	 */
+	private final IndexedCollection<PackedComponents> _packed;
+	
+	/**
+	 * The list of all {@link PackedComponents}.
+	 */
+	private final List<PackedComponents> _packedList;
 	
 	/**
 	 * The list of the {@link ComponentMask}s of all registered {@link Entity}s indexed by the
@@ -73,23 +126,122 @@ public final class EntityManager {
 	 */
 	private final IndexedCollection<ComponentFactory> _factories;
 	
+	/**
+	 * All registered {@link EntityQuery}s indexed by their {@link ComponentMask}.
+	 */
+	private final HashMap<ComponentMask, EntityQuery> _queries;
+	
+	/**
+	 * The list of all registered {@link EntityQuery}s.
+	 */
+	private final List<EntityQuery> _queryList;
+	
+	/**
+	 * The registered {@link EntityQuery}s indexed by the ids of all {@link ComponentType}s that
+	 * are part of their masks. Only these queries need to be updated if a {@link Component} of a
+	 * specific type is added or removed.
+	 */
+	private final IndexedCollection<List<EntityQuery>> _queriesByType;
+	
+	/**
+	 * The {@link ChangeTicks} of all {@link ComponentType}s which are used in the change filters of
+	 * an {@link EntityQuery}, indexed by the id of the type.
+	 */
+	private final IndexedCollection<ChangeTicks> _changeTicks;
+	
+	/**
+	 * The list of all {@link ChangeTicks}.
+	 */
+	private final List<ChangeTicks> _changeTicksList;
+	
+	/**
+	 * The current change tick, which is increased whenever a tracked {@link Component} is added or
+	 * changed. It is atomic, since {@link #markChanged(Entity, ComponentType)} may be called by
+	 * several threads during a concurrent update.
+	 */
+	private final AtomicInteger _changeTick;
+	
+	/**
+	 * The number of concurrent updates which have been begun but not yet ended.
+	 */
+	private final AtomicInteger _concurrentUpdates;
+	
+	/**
+	 * The {@link Component}s which have been marked as changed during a concurrent update and
+	 * whose {@link ComponentChangedMessage}s are send when the update ends.
+	 */
+	private final ConcurrentLinkedQueue<Component> _deferredChanges;
+	
+	/**
+	 * The {@link MessageDispatcher} this {@link EntityManager} is registered with, or null.
+	 */
+	private MessageDispatcher _msgDispatcher;
+	
 	private MessageEndpoint _msgEndpoint;
+	
+	/**
+	 * The pools of the {@link Message}s which are send for single {@link Entity}s, so frequent
+	 * structural changes don't allocate a new {@link Message} every time.
+	 */
+	private final MessagePool<EntityCreatedMessage> _entityCreatedPool;
+	private final MessagePool<EntityRemovedMessage> _entityRemovedPool;
+	private final MessagePool<ChildEntityAddedMessage> _childAddedPool;
+	private final MessagePool<ChildEntityRemovedMessage> _childRemovedPool;
+	private final MessagePool<ComponentAddedMessage> _componentAddedPool;
+	private final MessagePool<ComponentRemovedMessage> _componentRemovedPool;
+	private final MessagePool<ComponentChangedMessage> _componentChangedPool;
 
 	//----------------------------------------------------------------------------------------------
 	// Constructors
 	//----------------------------------------------------------------------------------------------
 	
 	/**
-	 * Creates a new instance of the {@link EntityManager} class.
+	 * Creates a new instance of the {@link EntityManager} class which uses an
+	 * {@link IndexedComponentStorage} to store the {@link Component}s.
 	 */
 	public EntityManager() {
-		_idPool = new IdPool();
+		this(new IndexedComponentStorage());
+	}
+	
+	/**
+	 * Creates a new instance of the {@link EntityManager} class.
+	 * 
+	 * @param storage The {@link ComponentStorage} which should be used to store the
+	 * 		{@link Component}s of all entities.
+	 * @throws IllegalArgumentException when storage was null.
+	 */
+	public EntityManager(ComponentStorage storage) throws IllegalArgumentException {
+		if (storage == null)
+			throw new IllegalArgumentException();
+		// freed ids must never be dropped, or the arrays indexed by them would grow forever
+		_idPool = new IdPool(255, true);
 		_entities = new IndexedCollection<Entity>();
+		_generations = new int[32];
 		_parents = new IndexedCollection<Entity>();
 		_children = new IndexedCollection<List<Entity>>();
-		_components = new IndexedCollection<IndexedCollection<Component>>();
+		_storage = storage;
+		_packed = new IndexedCollection<PackedComponents>();
+		_packedList = new ArrayList<PackedComponents>();
 		_componentMasks = new IndexedCollection<ComponentMask>();
 		_factories = new IndexedCollection<ComponentFactory>();
+		_queries = new HashMap<ComponentMask, EntityQuery>();
+		_queryList = new ArrayList<EntityQuery>();
+		_queriesByType = new IndexedCollection<List<EntityQuery>>();
+		_changeTicks = new IndexedCollection<ChangeTicks>();
+		_changeTicksList = new ArrayList<ChangeTicks>();
+		_changeTick = new AtomicInteger();
+		_concurrentUpdates = new AtomicInteger();
+		_deferredChanges = new ConcurrentLinkedQueue<Component>();
+		_entityCreatedPool = new MessagePool<EntityCreatedMessage>(EntityCreatedMessage.class);
+		_entityRemovedPool = new MessagePool<EntityRemovedMessage>(EntityRemovedMessage.class);
+		_childAddedPool = new MessagePool<ChildEntityAddedMessage>(ChildEntityAddedMessage.class);
+		_childRemovedPool
+			= new MessagePool<ChildEntityRemovedMessage>(ChildEntityRemovedMessage.class);
+		_componentAddedPool = new MessagePool<ComponentAddedMessage>(ComponentAddedMessage.class);
+		_componentRemovedPool
+			= new MessagePool<ComponentRemovedMessage>(ComponentRemovedMessage.class);
+		_componentChangedPool
+			= new MessagePool<ComponentChangedMessage>(ComponentChangedMessage.class);
 	}
 	
 	//----------------------------------------------------------------------------------------------
@@ -97,22 +249,176 @@ public final class EntityManager {
 	//----------------------------------------------------------------------------------------------
 	
 	/**
-	 * Creates a new, empty Entity with a unique ID.
+	 * Creates a new, empty Entity with a unique ID. The ids of removed entities are reused, but
+	 * with a new generation.
 	 * @return The created Entity.
 	 */
 	public Entity createEntity() {
 		int id = _idPool.getId();
-		Entity entity = new Entity(id, this);
+		if (id >= _generations.length)
+			_generations = Arrays.copyOf(_generations, Math.max(id + 1, _generations.length * 2));
+		Entity entity = new Entity(id, _generations[id], this);
 		_entities.set(id, entity);
-		_children.set(id, new ArrayList<Entity>());
-		_components.set(id, new IndexedCollection<Component>());
-		_componentMasks.set(id, new ComponentMask());
+		ComponentMask mask = new ComponentMask();
+		_componentMasks.set(id, mask);
+		_storage.addEntity(id);
+		// only queries without any required types can match an empty entity
+		for (int i = 0; i < _queryList.size(); i++) {
+			EntityQuery query = _queryList.get(i);
+			if (query.matches(mask))
+				query.add(entity);
+		}
 		
-		if (_msgEndpoint != null)
-			_msgEndpoint.send(new EntityCreatedMessage(entity));
+		if (hasSubscribers(ENTITY_CREATED))
+			send(_entityCreatedPool.acquire().set(entity));
 		return entity;
 	}
 	
+	/**
+	 * Creates the specified number of new {@link Entity}s, each with new {@link Component}s of the
+	 * specified types. This is considerably cheaper than creating the {@link Entity}s one by one,
+	 * since all lookups and checks are done once for the whole batch and the ids are reserved in
+	 * bulk.
+	 * <p>
+	 * Instead of an {@link EntityCreatedMessage} and a {@link ComponentAddedMessage} for every
+	 * {@link Entity} and {@link Component}, a single {@link EntitiesCreatedMessage} is send.
+	 * 
+	 * @param count The number of {@link Entity}s which should be created.
+	 * @param componentTypes The types of the {@link Component}s every {@link Entity} should have.
+	 * @return The created {@link Entity}s.
+	 * @throws IllegalArgumentException When count is negative or there is no factory for one of
+	 * 		the specified types.
+	 * @throws ComponentAlreadyExistsException When a type is specified more than once.
+	 */
+	public Entity[] createEntities(int count, ComponentType... componentTypes)
+			throws IllegalArgumentException, ComponentAlreadyExistsException {
+		if (count < 0)
+			throw new IllegalArgumentException();
+		// check everything up front, so the batch is either created completely or not at all
+		ComponentMask mask = new ComponentMask();
+		ComponentFactory[] factories = new ComponentFactory[componentTypes.length];
+		for (int i = 0; i < componentTypes.length; i++) {
+			ComponentType componentType = componentTypes[i];
+			if (mask.contains(componentType))
+				throw new ComponentAlreadyExistsException();
+			mask.add(componentType);
+			factories[i] = _factories.get(componentType.getId());
+			if (factories[i] == null)
+				throw new IllegalArgumentException();
+		}
+		return createEntities(count, mask, componentTypes, factories, null);
+	}
+	
+	/**
+	 * Creates a new {@link Entity} from the specified {@link Prefab}. The {@link Entity} gets a
+	 * copy of every template {@link Component} of the {@link Prefab}.
+	 * 
+	 * @param prefab The {@link Prefab} which should be instantiated.
+	 * @return The created {@link Entity}.
+	 * @throws IllegalArgumentException When prefab was null.
+	 */
+	public Entity instantiate(Prefab prefab) throws IllegalArgumentException {
+		return instantiate(prefab, 1)[0];
+	}
+	
+	/**
+	 * Creates the specified number of new {@link Entity}s from the specified {@link Prefab}. Every
+	 * {@link Entity} gets a copy of every template {@link Component} of the {@link Prefab}. No
+	 * {@link ComponentFactory}s are involved, and like {@link #createEntities(int, ComponentType...)}
+	 * only a single {@link EntitiesCreatedMessage} is send.
+	 * 
+	 * @param prefab The {@link Prefab} which should be instantiated.
+	 * @param count The number of {@link Entity}s which should be created.
+	 * @return The created {@link Entity}s.
+	 * @throws IllegalArgumentException When prefab was null or count is negative.
+	 */
+	public Entity[] instantiate(Prefab prefab, int count) throws IllegalArgumentException {
+		if (prefab == null || count < 0)
+			throw new IllegalArgumentException();
+		return createEntities(count, prefab.getComponentMask(), prefab.getComponentTypes(), null,
+				prefab.getTemplates());
+	}
+	
+	/**
+	 * Creates a batch of {@link Entity}s with {@link Component}s of the specified types, which are
+	 * either constructed by the specified factories or copied from the specified templates.
+	 * 
+	 * @param count The number of {@link Entity}s.
+	 * @param mask The {@link ComponentMask} of all specified types.
+	 * @param componentTypes The types of the {@link Component}s, each type only once.
+	 * @param factories The factories of the types, or null if templates are used.
+	 * @param templates The templates of the types, or null if factories are used.
+	 * @return The created {@link Entity}s.
+	 */
+	private Entity[] createEntities(int count, ComponentMask mask, ComponentType[] componentTypes,
+			ComponentFactory[] factories, Component[] templates) {
+		PackedComponents[] packed = new PackedComponents[componentTypes.length];
+		ChangeTicks[] ticks = new ChangeTicks[componentTypes.length];
+		int unpackedCount = 0;
+		for (int i = 0; i < componentTypes.length; i++) {
+			if (componentTypes[i].isPacked())
+				packed[i] = getPackedStorage(componentTypes[i]);
+			else
+				unpackedCount++;
+			ticks[i] = _changeTicks.get(componentTypes[i].getId());
+		}
+		ComponentType[] unpackedTypes = new ComponentType[unpackedCount];
+		for (int i = 0, k = 0; i < componentTypes.length; i++)
+			if (packed[i] == null)
+				unpackedTypes[k++] = componentTypes[i];
+		// all entities of the batch end up in the same queries
+		List<EntityQuery> queries = new ArrayList<EntityQuery>();
+		for (int i = 0; i < _queryList.size(); i++)
+			if (_queryList.get(i).matches(mask))
+				queries.add(_queryList.get(i));
+		int tick = _changeTick.incrementAndGet();
+		
+		int[] ids = _idPool.getIds(count);
+		int capacity = _idPool.getIdCount();
+		_entities.ensureCapacity(capacity);
+		_componentMasks.ensureCapacity(capacity);
+		_storage.ensureCapacity(capacity);
+		if (capacity > _generations.length)
+			_generations = Arrays.copyOf(_generations, Math.max(capacity, _generations.length * 2));
+		
+		Entity[] entities = new Entity[count];
+		// the unpacked components of the whole batch are handed to the storage at once, so it can
+		// place every entity directly with its complete set of components
+		Component[] components = new Component[count * unpackedCount];
+		for (int n = 0, k = 0; n < count; n++) {
+			int id = ids[n];
+			Entity entity = new Entity(id, _generations[id], this);
+			entities[n] = entity;
+			_entities.set(id, entity);
+			_componentMasks.set(id, new ComponentMask(mask));
+			for (int i = 0; i < componentTypes.length; i++) {
+				if (packed[i] != null && templates != null) {
+					// the values of packed templates can be stored without copying the template
+					packed[i].add(id, templates[i]);
+				}
+				else {
+					Component c = templates != null
+							? templates[i].copy() : factories[i].createNewComponent();
+					if (packed[i] != null)
+						packed[i].add(id, c);
+					else
+						components[k++] = c;
+					c.bind(entity);
+				}
+				if (ticks[i] != null)
+					ticks[i].setAdded(id, tick);
+			}
+		}
+		_storage.addEntities(ids, unpackedTypes, components);
+		for (int n = 0; n < count; n++)
+			for (int i = 0; i < queries.size(); i++)
+				queries.get(i).add(entities[n]);
+		
+		if (hasSubscribers(ENTITIES_CREATED))
+			_msgEndpoint.send(new EntitiesCreatedMessage(entities, componentTypes));
+		return entities;
+	}
+	
 	/**
 	 * Tries to get the {@link Entity} with the specified id.
 	 * 
@@ -126,46 +432,203 @@ public final class EntityManager {
 		return entity;
 	}
 	
+	/**
+	 * Tries to get the {@link Entity} with the specified handle.
+	 * 
+	 * @param handle The handle of the {@link Entity} requested, see {@link Entity#getHandle()}.
+	 * @return The desired {@link Entity}.
+	 * @throws EntityDoesNotExistsException When the {@link Entity} has already been removed.
+	 */
+	public Entity getEntityByHandle(long handle) throws EntityDoesNotExistsException {
+		Entity entity = _entities.get(Entity.getId(handle));
+		if (entity == null || entity.getGeneration() != Entity.getGeneration(handle))
+			throw new EntityDoesNotExistsException();
+		return entity;
+	}
+	
+	/**
+	 * Indicates if the specified {@link Entity} is part of this {@link EntityManager}.
+	 * 
+	 * @param entity The {@link Entity} which should be checked.
+	 * @return true if the {@link Entity} is part of this {@link EntityManager} and hasn't been
+	 * 		removed yet, otherwise false.
+	 */
+	public boolean isAlive(Entity entity) {
+		return entity != null && _entities.get(entity.getId()) == entity;
+	}
+	
+	/**
+	 * Indicates if the {@link Entity} with the specified handle is part of this
+	 * {@link EntityManager}.
+	 * 
+	 * @param handle The handle of the {@link Entity}, see {@link Entity#getHandle()}.
+	 * @return true if the {@link Entity} hasn't been removed yet, otherwise false.
+	 */
+	public boolean isAlive(long handle) {
+		int id = Entity.getId(handle);
+		return id >= 0 && id < _generations.length
+				&& _generations[id] == Entity.getGeneration(handle) && _entities.get(id) != null;
+	}
+	
 	/**
 	 * Removes the specified {@link Entity} from this {@link EntityManager} and also all
-	 * Child-{@link Entity}s of the specified {@link Entity}.
+	 * Child-{@link Entity}s of the specified {@link Entity}. The id of the {@link Entity} is
+	 * reused afterwards.
 	 * 
 	 * @param entity The {@link Entity} which should be removed.
 	 * @return true if the {@link Entity} was removed, otherwise false.
 	 */
 	public boolean removeEntity(Entity entity) {
+		if (!isAlive(entity))
+			return false;
+		removeEntity(entity, null);
+		return true;
+	}
+	
+	/**
+	 * Removes the specified {@link Entity}s from this {@link EntityManager} and also all their
+	 * Child-{@link Entity}s. {@link Entity}s which have already been removed are ignored.
+	 * <p>
+	 * Instead of an {@link EntityRemovedMessage} for every {@link Entity}, a single
+	 * {@link EntitiesRemovedMessage} is send.
+	 * 
+	 * @param entities The {@link Entity}s which should be removed.
+	 * @return The number of {@link Entity}s which have been removed, including the children.
+	 */
+	public int removeEntities(Entity... entities) {
+		List<Entity> removed = new ArrayList<Entity>(entities.length);
+		for (Entity entity : entities)
+			if (isAlive(entity))
+				removeEntity(entity, removed);
+		if (!removed.isEmpty() && hasSubscribers(ENTITIES_REMOVED))
+			_msgEndpoint.send(new EntitiesRemovedMessage(removed));
+		return removed.size();
+	}
+	
+	/**
+	 * Removes the specified living {@link Entity} and all its children.
+	 * 
+	 * @param entity The {@link Entity} which should be removed.
+	 * @param removed The list all removed {@link Entity}s are added to, or null if an
+	 * 		{@link EntityRemovedMessage} should be send for every removed {@link Entity}.
+	 */
+	private void removeEntity(Entity entity, List<Entity> removed) {
 		int eId = entity.getId();
-		if (_entities.remove(eId)) {
-			_components.remove(eId);
-			_componentMasks.remove(eId);
-			for (Entity child : _children.get(eId))
-				removeEntity(child);
-			_children.set(eId, null);
-			if (_parents.remove(eId)) {
-				List<Entity> tChilds = _children.get(eId);
-				tChilds.remove(eId);
-			}
-			
-			if (_msgEndpoint != null)
-				_msgEndpoint.send(new EntityRemovedMessage(entity));
-			return true;
+		// remove the children first, which detaches them from this entity
+		List<Entity> tChilds = _children.get(eId);
+		if (tChilds != null)
+			while (!tChilds.isEmpty())
+				removeEntity(tChilds.get(tChilds.size() - 1), removed);
+		Entity parent = _parents.get(eId);
+		if (parent != null) {
+			_children.get(parent.getId()).remove(entity);
+			_parents.remove(eId);
 		}
-		return false;
+		
+		_entities.remove(eId);
+		_children.remove(eId);
+		_storage.removeEntity(eId);
+		for (int i = 0; i < _packedList.size(); i++)
+			_packedList.get(i).remove(eId);
+		// the ticks must not carry over to the next entity which gets the id
+		for (int i = 0; i < _changeTicksList.size(); i++)
+			_changeTicksList.get(i).clear(eId);
+		_componentMasks.remove(eId);
+		for (int i = 0; i < _queryList.size(); i++)
+			_queryList.get(i).remove(entity);
+		// invalidate all handles of the entity before its id can be reused
+		_generations[eId]++;
+		_idPool.freeId(eId);
+		
+		if (removed != null)
+			removed.add(entity);
+		else if (hasSubscribers(ENTITY_REMOVED))
+			send(_entityRemovedPool.acquire().set(entity));
 	}
 	
 	/**
 	 * Gets a list of all {@link Entity}s that contain the {@link Component}s defined by the
-	 * specified {@link ComponentMask}.
+	 * specified {@link ComponentMask}. The list is a live view of the {@link EntityQuery} of the
+	 * mask, so it doesn't need to be requested again after {@link Entity}s have changed.
 	 * 
 	 * @param mask The {@link ComponentMask} which defines the desired {@link Entity}s.
 	 * @return A list of all relevant {@link Entity}s.
 	 */
 	public ReadOnlyCollection<Entity> getEntitiesByMask(ComponentMask mask) {
-		List<Entity> result = new ArrayList<Entity>();
+		return getQuery(mask).getEntities();
+	}
+	
+	/**
+	 * Gets the {@link EntityQuery} of all {@link Entity}s that contain the {@link Component}s
+	 * defined by the specified {@link ComponentMask}. The query is created and filled when it is
+	 * requested for the first time and kept up to date from then on.
+	 * 
+	 * @param mask The {@link ComponentMask} which defines the desired {@link Entity}s.
+	 * @return The {@link EntityQuery} of the mask.
+	 * @throws IllegalArgumentException when mask was null.
+	 */
+	public EntityQuery getQuery(ComponentMask mask) throws IllegalArgumentException {
+		if (mask == null)
+			throw new IllegalArgumentException();
+		EntityQuery query = _queries.get(mask);
+		if (query == null) {
+			ComponentMask empty = new ComponentMask();
+			query = new EntityQuery(this, mask, empty, empty, new ChangeTicks[0],
+					new ChangeTicks[0]);
+			registerQuery(query);
+			_queries.put(query.getRequired(), query);
+		}
+		return query;
+	}
+	
+	/**
+	 * Creates a new {@link QueryBuilder} which can be used to define an {@link EntityQuery} with
+	 * optional and excluded {@link ComponentType}s and change filters.
+	 * 
+	 * @return The new {@link QueryBuilder}.
+	 */
+	public QueryBuilder query() {
+		return new QueryBuilder(this);
+	}
+	
+	/**
+	 * Removes the specified {@link EntityQuery} from this {@link EntityManager}. The query is no
+	 * longer updated afterwards.
+	 * 
+	 * @param query The {@link EntityQuery} which should be removed.
+	 * @return true if the query was removed, otherwise false.
+	 */
+	public boolean removeQuery(EntityQuery query) {
+		if (!_queryList.remove(query))
+			return false;
+		_queries.remove(query.getRequired(), query);
+		for (List<EntityQuery> queries : _queriesByType)
+			queries.remove(query);
+		return true;
+	}
+	
+	/**
+	 * Registers the specified {@link EntityQuery}, fills it with all matching {@link Entity}s and
+	 * indexes it by all {@link ComponentType}s that can change whether an {@link Entity} matches.
+	 * 
+	 * @param query The {@link EntityQuery} which should be registered.
+	 */
+	void registerQuery(EntityQuery query) {
 		for (Entity entity : _entities)
-			if (entity.getComponentMask().contains(mask))
-				result.add(entity);
-		return new ReadOnlyCollection<Entity>(result);
+			if (query.matches(_componentMasks.get(entity.getId())))
+				query.add(entity);
+		_queryList.add(query);
+		ComponentMask relevant = new ComponentMask(query.getRequired());
+		relevant.add(query.getOptional().getComponentTypes());
+		relevant.add(query.getExcluded().getComponentTypes());
+		for (ComponentType type : relevant.getComponentTypes()) {
+			List<EntityQuery> queries = _queriesByType.get(type.getId());
+			if (queries == null) {
+				queries = new ArrayList<EntityQuery>();
+				_queriesByType.set(type.getId(), queries);
+			}
+			queries.add(query);
+		}
 	}
 		
 	//----------------------------------------------------------------------------------------------
@@ -185,10 +648,8 @@ public final class EntityManager {
 		// check for null and also make sure nobody tries to add the entity to itself
 		if (parent == null || child == null || child == parent)
 			throw new IllegalArgumentException();
-		// check if the entity is registered in the entity manager and try to get the list of
-		// all the children it currently has
-		List<Entity> tChilds = _children.get(parent.getId());
-		if (tChilds == null)
+		// check if both entities are registered in the entity manager
+		if (!isAlive(parent) || !isAlive(child))
 			throw new IllegalArgumentException();
 		// check if the child already has a parent
 		if (_parents.get(child.getId()) != null)
@@ -202,11 +663,16 @@ public final class EntityManager {
 			parentOfParent = _parents.get(parentOfParent.getId());
 		}
 		// finally add the child to the parent
+		List<Entity> tChilds = _children.get(parent.getId());
+		if (tChilds == null) {
+			tChilds = new ArrayList<Entity>();
+			_children.set(parent.getId(), tChilds);
+		}
 		tChilds.add(child);
 		_parents.set(child.getId(), parent);
 		
-		if (_msgEndpoint != null)
-			_msgEndpoint.send(new ChildEntityAddedMessage(parent, child));
+		if (hasSubscribers(CHILD_ADDED))
+			send(_childAddedPool.acquire().set(parent, child));
 	}
 	
 	/**
@@ -218,6 +684,8 @@ public final class EntityManager {
 	 */
 	public boolean removeChildEntity(Entity child)
 			throws IllegalArgumentException {
+		if (!isAlive(child))
+			return false;
 		Entity parent = _parents.get(child.getId());
 		if (parent == null)
 			return false;
@@ -227,8 +695,8 @@ public final class EntityManager {
 		if (tChilds.remove(child)) {
 			_parents.remove(child.getId());
 			
-			if (_msgEndpoint != null)
-				_msgEndpoint.send(new ChildEntityRemovedMessage(parent, child));
+			if (hasSubscribers(CHILD_REMOVED))
+				send(_childRemovedPool.acquire().set(parent, child));
 			return true;
 		}
 		return false;
@@ -242,6 +710,8 @@ public final class EntityManager {
 	 * 		parent.
 	 */
 	public Entity getParent(Entity entity) {
+		if (!isAlive(entity))
+			return null;
 		return _parents.get(entity.getId());
 	}
 	
@@ -252,9 +722,11 @@ public final class EntityManager {
 	 * @return The list of all Child-{@link Entity}s.
 	 */
 	public ReadOnlyCollection<Entity> getChildren(Entity entity) {
+		if (!isAlive(entity))
+			throw new IllegalArgumentException();
 		List<Entity> tChilds = _children.get(entity.getId());
 		if (tChilds == null)
-			throw new IllegalArgumentException();
+			return NO_CHILDREN;
 		return new ReadOnlyCollection<>(tChilds);
 	}
 	
@@ -293,14 +765,12 @@ public final class EntityManager {
 	public Component addComponent(Entity entity, ComponentType componentType)
 			throws IllegalArgumentException, ComponentAlreadyExistsException {
 		int eId = entity.getId();
-		// try to get the list of all components for the specified entity
-		IndexedCollection<Component> ec = _components.get(eId);
-		if (ec == null)
-			throw new IllegalArgumentException();
+		// try to get the mask of the specified entity, which also checks if it exists
+		ComponentMask mask = getAliveMask(entity);
 		
 		int cId = componentType.getId();
 		// check if there is already a component of the same type
-		if (ec.get(cId) != null)
+		if (mask.contains(componentType))
 			throw new ComponentAlreadyExistsException();
 		// try to get the factory which constructs components of the specified type
 		ComponentFactory fac = _factories.get(cId);
@@ -308,12 +778,19 @@ public final class EntityManager {
 			throw new IllegalArgumentException();
 		
 		Component c = fac.createNewComponent();
-		ec.set(cId, c);
+		if (componentType.isPacked())
+			getPackedStorage(componentType).add(eId, c);
+		else
+			_storage.addComponent(eId, componentType, c);
 		c.bind(entity);
-		_componentMasks.get(eId).add(componentType);
+		mask.add(componentType);
+		updateQueries(entity, mask, componentType);
+		ChangeTicks ticks = _changeTicks.get(cId);
+		if (ticks != null)
+			ticks.setAdded(eId, _changeTick.incrementAndGet());
 		
-		if (_msgEndpoint != null)
-			_msgEndpoint.send(new ComponentAddedMessage(c));
+		if (hasSubscribers(COMPONENT_ADDED))
+			send(_componentAddedPool.acquire().set(c));
 		return c;
 	}
 	
@@ -331,15 +808,33 @@ public final class EntityManager {
 	public void addComponents(Entity entity, ComponentType... componentTypes)
 			throws IllegalArgumentException, ComponentAlreadyExistsException {
 		int eId = entity.getId();
-		// try to get the list of all components for the specified entity
-		IndexedCollection<Component> ec = _components.get(eId);
-		if (ec == null)
-			throw new IllegalArgumentException();
-		
+		// try to get the mask of the specified entity, which also checks if it exists
+		ComponentMask mask = getAliveMask(entity);
+		// the messages are send together, even if a later type fails
+		List<ComponentAddedMessage> msgs = hasSubscribers(COMPONENT_ADDED)
+				? new ArrayList<ComponentAddedMessage>(componentTypes.length) : null;
+		try {
+			addComponents(entity, eId, mask, componentTypes, msgs);
+		} finally {
+			if (msgs != null && !msgs.isEmpty()) {
+				_msgEndpoint.sendAll(msgs);
+				for (int i = 0; i < msgs.size(); i++)
+					msgs.get(i).release();
+			}
+		}
+	}
+	
+	/**
+	 * Adds new {@link Component}s of the specified types to the specified {@link Entity} and
+	 * collects the {@link ComponentAddedMessage}s into the specified list, if there is one.
+	 */
+	private void addComponents(Entity entity, int eId, ComponentMask mask,
+			ComponentType[] componentTypes, List<ComponentAddedMessage> msgs)
+			throws IllegalArgumentException, ComponentAlreadyExistsException {
 		for (ComponentType componentType : componentTypes) {
 			int cId = componentType.getId();
 			// check if there is already a component of the same type
-			if (ec.get(cId) != null)
+			if (mask.contains(componentType))
 				throw new ComponentAlreadyExistsException();
 			// try to get the factory which constructs components of the specified type
 			ComponentFactory fac = _factories.get(cId);
@@ -347,12 +842,19 @@ public final class EntityManager {
 				throw new IllegalArgumentException();
 			
 			Component c = fac.createNewComponent();
-			ec.set(cId, c);
+			if (componentType.isPacked())
+				getPackedStorage(componentType).add(eId, c);
+			else
+				_storage.addComponent(eId, componentType, c);
 			c.bind(entity);
-			_componentMasks.get(eId).add(componentType);
+			mask.add(componentType);
+			updateQueries(entity, mask, componentType);
+			ChangeTicks ticks = _changeTicks.get(cId);
+			if (ticks != null)
+				ticks.setAdded(eId, _changeTick.incrementAndGet());
 			
-			if (_msgEndpoint != null)
-				_msgEndpoint.send(new ComponentAddedMessage(c));
+			if (msgs != null)
+				msgs.add(_componentAddedPool.acquire().set(c));
 		}
 	}
 	
@@ -363,17 +865,112 @@ public final class EntityManager {
 	 * @param entity The {@link Entity} which {@link Component} should be got.
 	 * @param type The {@link ComponentType} of the {@link Component} which should be got.
 	 * @return The desired {@link Component} or null if the type of {@link Component} was not part
-	 * 		of the entity.
+	 * 		of the entity. For {@link Packed} types this is a detached copy of the stored values.
 	 * @throws IllegalArgumentException When the {@link Entity} was not part of this
 	 * 		{@link EntityManager}.
 	 */
 	public Component getComponent(Entity entity, ComponentType type)
 			throws IllegalArgumentException {
-		int eId = entity.getId();
-		IndexedCollection<Component> ec = _components.get(eId);
-		if (ec == null)
+		if (!isAlive(entity))
 			throw new IllegalArgumentException();
-		return ec.get(type.getId());
+		if (type.isPacked())
+			return getPackedComponent(entity, type);
+		return _storage.getComponent(entity.getId(), type);
+	}
+	
+	/**
+	 * Gets the {@link PackedComponentArray} which stores all {@link Component}s of the specified
+	 * {@link Packed} {@link ComponentType}. The array is created when it is requested for the first
+	 * time.
+	 * 
+	 * @param componentType The {@link Packed} {@link ComponentType}.
+	 * @return The {@link PackedComponentArray} of the type.
+	 * @throws IllegalArgumentException When the type is not {@link Packed}, is stored off-heap or
+	 * 		its {@link Component} class contains fields which are not primitive.
+	 */
+	public PackedComponentArray getPackedComponents(ComponentType componentType)
+			throws IllegalArgumentException {
+		if (!componentType.isPacked() || componentType.isOffHeap())
+			throw new IllegalArgumentException();
+		return (PackedComponentArray)getPackedStorage(componentType);
+	}
+	
+	/**
+	 * Gets the {@link OffHeapComponentArray} which stores all {@link Component}s of the specified
+	 * off-heap {@link Packed} {@link ComponentType}. The array is created when it is requested for
+	 * the first time.
+	 * 
+	 * @param componentType The off-heap {@link Packed} {@link ComponentType}.
+	 * @return The {@link OffHeapComponentArray} of the type.
+	 * @throws IllegalArgumentException When the type is not stored off-heap or its
+	 * 		{@link Component} class contains fields which are not primitive.
+	 */
+	public OffHeapComponentArray getOffHeapComponents(ComponentType componentType)
+			throws IllegalArgumentException {
+		if (!componentType.isOffHeap())
+			throw new IllegalArgumentException();
+		return (OffHeapComponentArray)getPackedStorage(componentType);
+	}
+	
+	/**
+	 * Gets the number of bytes of native memory reserved by all {@link OffHeapComponentArray}s of
+	 * this {@link EntityManager}.
+	 * 
+	 * @return The native footprint in bytes.
+	 */
+	public long getNativeMemorySize() {
+		long size = 0;
+		for (int i = 0; i < _packedList.size(); i++) {
+			PackedComponents packed = _packedList.get(i);
+			if (packed instanceof OffHeapComponentArray)
+				size += ((OffHeapComponentArray)packed).getNativeSize();
+		}
+		return size;
+	}
+	
+	/**
+	 * Gets the {@link PackedComponents} of the specified {@link Packed} {@link ComponentType} and
+	 * creates them if necessary.
+	 */
+	private PackedComponents getPackedStorage(ComponentType componentType) {
+		PackedComponents packed = _packed.get(componentType.getId());
+		if (packed == null) {
+			if (componentType.isOffHeap())
+				packed = new OffHeapComponentArray(componentType);
+			else
+				packed = new PackedComponentArray(componentType);
+			_packed.set(componentType.getId(), packed);
+			_packedList.add(packed);
+		}
+		return packed;
+	}
+	
+	/**
+	 * Creates a detached copy of the {@link Packed} {@link Component} of the specified type of the
+	 * specified {@link Entity}.
+	 */
+	private Component getPackedComponent(Entity entity, ComponentType type) {
+		PackedComponents array = _packed.get(type.getId());
+		if (array == null)
+			return null;
+		int index = array.indexOf(entity.getId());
+		if (index == -1)
+			return null;
+		Component c;
+		ComponentFactory fac = _factories.get(type.getId());
+		if (fac != null)
+			c = fac.createNewComponent();
+		else {
+			// entities created from prefabs may have packed components without a factory
+			try {
+				c = type.getComponentClass().getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException e) {
+				return null;
+			}
+		}
+		array.load(index, c);
+		c.bind(entity);
+		return c;
 	}
 
 	/**
@@ -389,21 +986,127 @@ public final class EntityManager {
 	 */
 	public boolean removeComponent(Entity entity, ComponentType componentType) {
 		int eId = entity.getId();
-		IndexedCollection<Component> ec = _components.get(eId);
-		if (ec == null)
-			throw new IllegalArgumentException();
-		int cId = componentType.getId(); 
-		Component c = ec.get(cId);
-		if (c == null)
+		ComponentMask mask = getAliveMask(entity);
+		if (!mask.contains(componentType))
 			return false;
-		ec.remove(cId);
-		_componentMasks.get(eId).remove(componentType);
+		Component c;
+		if (componentType.isPacked()) {
+			c = getPackedComponent(entity, componentType);
+			_packed.get(componentType.getId()).remove(eId);
+		}
+		else
+			c = _storage.removeComponent(eId, componentType);
+		mask.remove(componentType);
+		updateQueries(entity, mask, componentType);
+		ChangeTicks ticks = _changeTicks.get(componentType.getId());
+		if (ticks != null)
+			ticks.clear(eId);
 		
-		if (_msgEndpoint != null)
-			_msgEndpoint.send(new ComponentRemovedMessage(c));
+		if (hasSubscribers(COMPONENT_REMOVED))
+			send(_componentRemovedPool.acquire().set(c));
+		return true;
+	}
+	
+	/**
+	 * Marks the {@link Component} with the specified {@link ComponentType} of the specified
+	 * {@link Entity} as changed. This lets the {@link Entity} pass the change filters of
+	 * {@link EntityQuery}s and sends a {@link ComponentChangedMessage}.
+	 * <p>
+	 * Between {@link #beginConcurrentUpdate()} and {@link #endConcurrentUpdate()} this method may
+	 * be called by several threads at once, as long as no {@link Entity} is changed structurally
+	 * at the same time. The {@link ComponentChangedMessage}s are then send by the thread which
+	 * ends the update. Outside of a concurrent update the method is not thread-safe.
+	 * 
+	 * @param entity The {@link Entity} which {@link Component} has been changed.
+	 * @param componentType The {@link ComponentType} of the {@link Component} which has been
+	 * 		changed.
+	 * @return true if the {@link Component} was marked, or false if the {@link Entity} has no
+	 * 		{@link Component} of the specified type.
+	 * @throws IllegalArgumentException When the {@link Entity} was not part of this
+	 * 		{@link EntityManager}.
+	 */
+	public boolean markChanged(Entity entity, ComponentType componentType)
+			throws IllegalArgumentException {
+		int eId = entity.getId();
+		ComponentMask mask = getAliveMask(entity);
+		if (!mask.contains(componentType))
+			return false;
+		ChangeTicks ticks = _changeTicks.get(componentType.getId());
+		if (ticks != null)
+			ticks.setChanged(eId, _changeTick.incrementAndGet());
+		
+		if (hasSubscribers(COMPONENT_CHANGED)) {
+			Component c = getComponent(entity, componentType);
+			// neither the pool nor the dispatcher are thread-safe, so the message is left to the
+			// thread which ends the concurrent update
+			if (_concurrentUpdates.get() > 0)
+				_deferredChanges.add(c);
+			else
+				send(_componentChangedPool.acquire().set(c));
+		}
 		return true;
 	}
 	
+	/**
+	 * Begins a concurrent update, during which {@link #markChanged(Entity, ComponentType)} may
+	 * be called by several threads at once. Structural changes are not allowed until the update
+	 * has been ended. Concurrent updates can be nested; only ending the outermost one sends the
+	 * deferred {@link ComponentChangedMessage}s.
+	 */
+	public void beginConcurrentUpdate() {
+		_concurrentUpdates.incrementAndGet();
+	}
+	
+	/**
+	 * Ends a concurrent update which has been begun by {@link #beginConcurrentUpdate()}. Ending
+	 * the outermost update sends all {@link ComponentChangedMessage}s which have been deferred
+	 * since it began on the calling thread.
+	 * 
+	 * @throws IllegalStateException When no concurrent update has been begun.
+	 */
+	public void endConcurrentUpdate() throws IllegalStateException {
+		int updates = _concurrentUpdates.decrementAndGet();
+		if (updates < 0) {
+			_concurrentUpdates.incrementAndGet();
+			throw new IllegalStateException("no concurrent update has been begun");
+		}
+		if (updates > 0)
+			return;
+		Component c;
+		while ((c = _deferredChanges.poll()) != null) {
+			if (hasSubscribers(COMPONENT_CHANGED))
+				send(_componentChangedPool.acquire().set(c));
+		}
+	}
+	
+	/**
+	 * Gets the current change tick of this {@link EntityManager}.
+	 * 
+	 * @return The current change tick.
+	 */
+	int getChangeTick() {
+		return _changeTick.get();
+	}
+	
+	/**
+	 * Starts tracking when {@link Component}s of the specified {@link ComponentType} are added or
+	 * changed, if that isn't already the case.
+	 * 
+	 * @param componentType The {@link ComponentType} which should be tracked.
+	 * @return The {@link ChangeTicks} of the type.
+	 */
+	ChangeTicks trackChanges(ComponentType componentType) {
+		ChangeTicks ticks = _changeTicks.get(componentType.getId());
+		if (ticks == null) {
+			// sized for all current entities, so marking a component as changed never has to grow
+			// the arrays while other threads are marking as well
+			ticks = new ChangeTicks(_idPool.getIdCount());
+			_changeTicks.set(componentType.getId(), ticks);
+			_changeTicksList.add(ticks);
+		}
+		return ticks;
+	}
+	
 	/**
 	 * Gets the {@link ComponentMask} of the specified {@link Entity}.
 	 * 
@@ -411,9 +1114,50 @@ public final class EntityManager {
 	 * @return The {@link ComponentMask} of the {@link Entity}.
 	 */
 	public ComponentMask getComponentMask(Entity entity) {
+		if (!isAlive(entity))
+			return null;
 		return _componentMasks.get(entity.getId());
 	}
 	
+	/**
+	 * Gets the {@link ComponentStorage} which holds the {@link Component}s of all entities
+	 * managed by this {@link EntityManager}.
+	 * 
+	 * @return The {@link ComponentStorage} of this {@link EntityManager}.
+	 */
+	public ComponentStorage getComponentStorage() {
+		return _storage;
+	}
+	
+	/**
+	 * Gets the {@link ComponentMask} of the specified {@link Entity} and makes sure the
+	 * {@link Entity} is part of this {@link EntityManager}.
+	 * 
+	 * @throws IllegalArgumentException When the {@link Entity} was not part of this
+	 * 		{@link EntityManager} or has already been removed.
+	 */
+	private ComponentMask getAliveMask(Entity entity) throws IllegalArgumentException {
+		if (!isAlive(entity))
+			throw new IllegalArgumentException();
+		return _componentMasks.get(entity.getId());
+	}
+	
+	/**
+	 * Updates all {@link EntityQuery}s that could be affected by a change of the specified
+	 * {@link ComponentType}.
+	 * 
+	 * @param entity The {@link Entity} that has been changed.
+	 * @param mask The new {@link ComponentMask} of the {@link Entity}.
+	 * @param componentType The {@link ComponentType} which has been added or removed.
+	 */
+	private void updateQueries(Entity entity, ComponentMask mask, ComponentType componentType) {
+		List<EntityQuery> queries = _queriesByType.get(componentType.getId());
+		if (queries == null)
+			return;
+		for (int i = 0; i < queries.size(); i++)
+			queries.get(i).update(entity, mask);
+	}
+	
 	//----------------------------------------------------------------------------------------------
 	// Message related methods
 	//----------------------------------------------------------------------------------------------
@@ -431,5 +1175,28 @@ public final class EntityManager {
 		if (_msgEndpoint != null)
 			_msgEndpoint.terminate();
 		_msgEndpoint = msgDispatcher.createEndpoint();
+		_msgDispatcher = msgDispatcher;
+	}
+	
+	/**
+	 * Checks if the {@link EntityManager} is registered with a {@link MessageDispatcher} and any
+	 * endpoint of the dispatcher receives {@link Message}s of the specified type. Only then a
+	 * {@link Message} needs to be constructed and send.
+	 * 
+	 * @param msgType The {@link MessageType} which should be checked.
+	 * @return true if {@link Message}s of the type should be send, otherwise false.
+	 */
+	private boolean hasSubscribers(MessageType msgType) {
+		return _msgDispatcher != null && _msgDispatcher.hasSubscribers(msgType);
+	}
+	
+	/**
+	 * Sends the specified {@link Message} and releases the reference of the sender afterwards.
+	 * 
+	 * @param msg The {@link Message} which should be send.
+	 */
+	private void send(Message msg) {
+		_msgEndpoint.send(msg);
+		msg.release();
 	}
 }
@@ -0,0 +1,356 @@
+package infinity.ecs.core;
+
+import infinity.ecs.utils.ReadOnlyCollection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A live view of all {@link Entity}s of an {@link EntityManager} which contain all
+ * {@link Component}s defined by a specific {@link ComponentMask}. Queries built with a
+ * {@link QueryBuilder} can additionally require at least one of a set of {@link Component}s,
+ * exclude {@link Component}s, and filter out {@link Entity}s whose {@link Component}s haven't been
+ * added or changed since the query was last run.
+ * <p>
+ * <b>Notes:</b><br>
+ * Queries are created and registered by {@link EntityManager#getQuery(ComponentMask)} or
+ * {@link EntityManager#query()} and are updated incrementally whenever an {@link Entity} is
+ * created or removed or gains or looses a {@link Component}. Reading a query therefore never
+ * requires a scan over all {@link Entity}s of the manager, and iterating it only costs as much as
+ * there are matching {@link Entity}s.
+ * <p>
+ * The matching {@link Entity}s are kept in a packed list. A removed {@link Entity} is replaced
+ * by the last {@link Entity} of the list, so the order of the {@link Entity}s is not stable. For
+ * the same reason the query must not be structurally changed while it is iterated.
+ * <p>
+ * The change filters are not part of the live view, since they depend on when the query was
+ * last run. They are only applied by {@link #forEach(Consumer)}, which also marks the end of a
+ * run.
+ *
+ * @author preip
+ */
+public final class EntityQuery {
+
+	/**
+	 * The {@link EntityManager} this query is registered with.
+	 */
+	private final EntityManager _manager;
+	
+	/**
+	 * The {@link ComponentMask} of all types an {@link Entity} needs to be part of this query.
+	 */
+	private final ComponentMask _all;
+	
+	/**
+	 * The {@link ComponentMask} of the types of which an {@link Entity} needs at least one to be
+	 * part of this query. An empty mask means there is no such condition.
+	 */
+	private final ComponentMask _any;
+	
+	/**
+	 * The {@link ComponentMask} of all types an {@link Entity} must not have to be part of this
+	 * query.
+	 */
+	private final ComponentMask _none;
+	
+	/**
+	 * The {@link ChangeTicks} of all types that pass the change filter if they have been added
+	 * since the last run.
+	 */
+	private final ChangeTicks[] _addedFilters;
+	
+	/**
+	 * The {@link ChangeTicks} of all types that pass the change filter if they have been changed
+	 * since the last run.
+	 */
+	private final ChangeTicks[] _changedFilters;
+	
+	/**
+	 * The change tick of the {@link EntityManager} at the end of the last run.
+	 */
+	private int _lastRun;
+
+	/**
+	 * The packed list of all matching {@link Entity}s.
+	 */
+	private final List<Entity> _entities;
+
+	/**
+	 * A read only view of {@link #_entities}.
+	 */
+	private final ReadOnlyCollection<Entity> _readOnlyEntities;
+
+	/**
+	 * The position of every matching {@link Entity} within {@link #_entities}, indexed by the id of
+	 * the {@link Entity}. Contains -1 for all {@link Entity}s which are not part of the query.
+	 */
+	private int[] _positions;
+
+	/**
+	 * Creates a new instance of the {@link EntityQuery} class. Only called by the
+	 * {@link EntityManager}.
+	 *
+	 * @param manager The {@link EntityManager} the query is registered with.
+	 * @param all The types all of which an {@link Entity} needs. The mask is copied.
+	 * @param any The types of which an {@link Entity} needs at least one. The mask is copied.
+	 * @param none The types an {@link Entity} must not have. The mask is copied.
+	 * @param addedFilters The ticks of the types which pass the filter if they were added.
+	 * @param changedFilters The ticks of the types which pass the filter if they were changed.
+	 */
+	EntityQuery(EntityManager manager, ComponentMask all, ComponentMask any, ComponentMask none,
+			ChangeTicks[] addedFilters, ChangeTicks[] changedFilters) {
+		_manager = manager;
+		_all = new ComponentMask(all);
+		_any = new ComponentMask(any);
+		_none = new ComponentMask(none);
+		_addedFilters = addedFilters;
+		_changedFilters = changedFilters;
+		_lastRun = manager.getChangeTick();
+		_entities = new ArrayList<Entity>();
+		_readOnlyEntities = new ReadOnlyCollection<Entity>(_entities);
+		_positions = new int[32];
+		Arrays.fill(_positions, -1);
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Package-Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Checks if an {@link Entity} with the specified {@link ComponentMask} belongs to the query.
+	 */
+	boolean matches(ComponentMask mask) {
+		return mask.matches(_all, _any, _none);
+	}
+	
+	/**
+	 * Indicates if the query has any change filters.
+	 */
+	boolean hasChangeFilters() {
+		return _addedFilters.length != 0 || _changedFilters.length != 0;
+	}
+	
+	/**
+	 * Gets the {@link ComponentMask} of all types an {@link Entity} needs. The mask is not copied,
+	 * since the {@link EntityManager} uses it as key for the query.
+	 */
+	ComponentMask getRequired() {
+		return _all;
+	}
+	
+	/**
+	 * Gets the {@link ComponentMask} of all types an {@link Entity} must not have.
+	 */
+	ComponentMask getExcluded() {
+		return _none;
+	}
+	
+	/**
+	 * Gets the {@link ComponentMask} of the types of which an {@link Entity} needs at least one.
+	 */
+	ComponentMask getOptional() {
+		return _any;
+	}
+	
+	/**
+	 * Checks if at least one of the filtered types of the specified {@link Entity} has been added
+	 * or changed after the specified tick.
+	 */
+	private boolean passesChangeFilters(int entityId, int tick) {
+		for (ChangeTicks ticks : _addedFilters)
+			if (ticks.isAddedAfter(entityId, tick))
+				return true;
+		for (ChangeTicks ticks : _changedFilters)
+			if (ticks.isChangedAfter(entityId, tick))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Adds or removes the specified {@link Entity} depending on whether its {@link ComponentMask}
+	 * matches the query.
+	 */
+	void update(Entity entity, ComponentMask mask) {
+		boolean isPart = contains(entity);
+		if (matches(mask)) {
+			if (!isPart)
+				add(entity);
+		}
+		else if (isPart)
+			remove(entity);
+	}
+
+	/**
+	 * Adds the specified {@link Entity} to the query.
+	 */
+	void add(Entity entity) {
+		int id = entity.getId();
+		if (id >= _positions.length) {
+			int oldLength = _positions.length;
+			_positions = Arrays.copyOf(_positions, Math.max(id + 1, oldLength * 2));
+			Arrays.fill(_positions, oldLength, _positions.length, -1);
+		}
+		_positions[id] = _entities.size();
+		_entities.add(entity);
+	}
+
+	/**
+	 * Removes the specified {@link Entity} from the query, if it is part of it.
+	 */
+	void remove(Entity entity) {
+		int id = entity.getId();
+		if (id >= _positions.length)
+			return;
+		int pos = _positions[id];
+		if (pos == -1)
+			return;
+		// fill the gap with the last entity to keep the list packed
+		int last = _entities.size() - 1;
+		Entity lastEntity = _entities.remove(last);
+		if (pos != last) {
+			_entities.set(pos, lastEntity);
+			_positions[lastEntity.getId()] = pos;
+		}
+		_positions[id] = -1;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the {@link ComponentMask} of all types an {@link Entity} needs to be part of this query.
+	 *
+	 * @return A copy of the {@link ComponentMask} of the query.
+	 */
+	public ComponentMask getComponentMask() {
+		return new ComponentMask(_all);
+	}
+
+	/**
+	 * Indicates if the specified {@link Entity} is part of this query.
+	 *
+	 * @param entity The {@link Entity} which should be checked.
+	 * @return true if the {@link Entity} is part of the query, otherwise false.
+	 */
+	public boolean contains(Entity entity) {
+		int id = entity.getId();
+		if (id >= _positions.length || _positions[id] == -1)
+			return false;
+		// the id may belong to a removed entity which has since been reused
+		return _entities.get(_positions[id]) == entity;
+	}
+
+	/**
+	 * Gets the number of {@link Entity}s which are currently part of this query.
+	 *
+	 * @return The number of matching {@link Entity}s.
+	 */
+	public int size() {
+		return _entities.size();
+	}
+
+	/**
+	 * Gets the matching {@link Entity} at the specified position. Together with {@link #size()}
+	 * this allows iterating over the query without allocating an iterator.
+	 *
+	 * @param index The position of the {@link Entity}.
+	 * @return The {@link Entity} at the specified position.
+	 */
+	public Entity get(int index) {
+		return _entities.get(index);
+	}
+
+	/**
+	 * Gets a read only view of all matching {@link Entity}s. The view is live and reflects all
+	 * changes to the query.
+	 *
+	 * @return The read only list of all matching {@link Entity}s.
+	 */
+	public ReadOnlyCollection<Entity> getEntities() {
+		return _readOnlyEntities;
+	}
+	
+	/**
+	 * Performs the specified action for every matching {@link Entity}. If the query has change
+	 * filters, only {@link Entity}s of which at least one of the filtered {@link Component}s has
+	 * been added or changed since the end of the last call are passed to the action.
+	 * <p>
+	 * Changes made by the action itself are not reported by the next call, because the end of the
+	 * call counts as the new last run.
+	 *
+	 * @param action The action which should be performed for every {@link Entity}.
+	 * @return The number of {@link Entity}s which have been passed to the action.
+	 */
+	public int forEach(Consumer<? super Entity> action) {
+		int size = _entities.size();
+		if (!hasChangeFilters()) {
+			for (int i = 0; i < size; i++)
+				action.accept(_entities.get(i));
+			return size;
+		}
+		int lastRun = _lastRun;
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			Entity entity = _entities.get(i);
+			if (passesChangeFilters(entity.getId(), lastRun)) {
+				action.accept(entity);
+				count++;
+			}
+		}
+		_lastRun = _manager.getChangeTick();
+		return count;
+	}
+
+	/**
+	 * Performs the specified action for every matching {@link Entity} like
+	 * {@link #forEach(Consumer)}, but splits the matching {@link Entity}s into chunks of at most
+	 * the specified size, which are processed concurrently by fork-join tasks. Every
+	 * {@link Entity} is passed to the action exactly once, so no two workers ever touch the same
+	 * {@link Entity}.
+	 * <p>
+	 * The action must not change the structure of any {@link Entity}; such changes should be
+	 * recorded in a {@link CommandBuffer} instead. It may mark {@link Component}s as changed,
+	 * since the iteration runs as a concurrent update of the {@link EntityManager} (see
+	 * {@link EntityManager#beginConcurrentUpdate()}). Any other method of the
+	 * {@link EntityManager} must only be used for reading. The call returns when all chunks are
+	 * done.
+	 *
+	 * @param action The action which should be performed for every {@link Entity}.
+	 * @param grainSize The maximum number of {@link Entity}s processed by a single task.
+	 * @return The number of {@link Entity}s which have been passed to the action.
+	 * @throws IllegalArgumentException When grainSize is not positive.
+	 */
+	public int forEachParallel(final Consumer<? super Entity> action, int grainSize)
+			throws IllegalArgumentException {
+		final boolean filtered = hasChangeFilters();
+		final int lastRun = _lastRun;
+		final AtomicInteger count = new AtomicInteger();
+		_manager.beginConcurrentUpdate();
+		try {
+			new ChunkTask(new ChunkAction() {
+				@Override
+				public void process(int start, int end) {
+					// count locally, so the chunks only touch the shared counter once
+					int passed = 0;
+					for (int i = start; i < end; i++) {
+						Entity entity = _entities.get(i);
+						if (!filtered || passesChangeFilters(entity.getId(), lastRun)) {
+							action.accept(entity);
+							passed++;
+						}
+					}
+					count.addAndGet(passed);
+				}
+			}, 0, _entities.size(), grainSize).invoke();
+		} finally {
+			_manager.endConcurrentUpdate();
+		}
+		if (filtered)
+			_lastRun = _manager.getChangeTick();
+		return count.get();
+	}
+}
@@ -2,6 +2,8 @@ package infinity.ecs.core;
 
 import infinity.ecs.messaging.MessageDispatcher;
 
+import java.util.function.Consumer;
+
 public abstract class EntitySystem {
 	
 	/**
@@ -10,7 +12,31 @@ public abstract class EntitySystem {
 	protected final ComponentMask _mask;
 	
 	/**
-	 * Creates a new instance of the EntitySystem class.
+	 * A mask of all component types the system only reads during an update, or null if the system
+	 * hasn't declared its accesses.
+	 */
+	private final ComponentMask _readMask;
+	
+	/**
+	 * A mask of all component types the system writes during an update, or null if the system
+	 * hasn't declared its accesses.
+	 */
+	private final ComponentMask _writeMask;
+	
+	/**
+	 * The maximum number of entities or rows processed by a single task when the system iterates
+	 * in parallel, or 0 if the system iterates on the calling thread.
+	 */
+	private int _grainSize;
+	
+	/**
+	 * The total number of entities or rows the system has processed.
+	 */
+	private long _processedCount;
+	
+	/**
+	 * Creates a new instance of the EntitySystem class. The system doesn't declare which
+	 * components it reads and writes, so it is never updated concurrently with other systems.
 	 * 
 	 * @param mask A mask consisting of the IDs of all component types the system is interested in.
 	 * 		A value of null is treated as an empty mask.
@@ -19,6 +45,34 @@ public abstract class EntitySystem {
 		if (mask == null)
 			mask = new ComponentMask();
 		_mask = mask;
+		_readMask = null;
+		_writeMask = null;
+	}
+	
+	/**
+	 * Creates a new instance of the EntitySystem class, which declares the component types it
+	 * accesses during an update. Systems whose accesses don't conflict may be updated concurrently
+	 * by a {@link infinity.ecs.scheduling.ParallelScheduler}. Such a system must not change the
+	 * structure of any {@link Entity} directly, but should record the changes in a
+	 * {@link CommandBuffer} instead.
+	 * 
+	 * @param mask A mask consisting of the IDs of all component types the system is interested in.
+	 * 		A value of null is treated as an empty mask.
+	 * @param readMask A mask of all component types the system only reads. A value of null is
+	 * 		treated as an empty mask.
+	 * @param writeMask A mask of all component types the system writes. A value of null is treated
+	 * 		as an empty mask.
+	 */
+	protected EntitySystem(ComponentMask mask, ComponentMask readMask, ComponentMask writeMask) {
+		if (mask == null)
+			mask = new ComponentMask();
+		if (readMask == null)
+			readMask = new ComponentMask();
+		if (writeMask == null)
+			writeMask = new ComponentMask();
+		_mask = mask;
+		_readMask = readMask;
+		_writeMask = writeMask;
 	}
 	
 	/**
@@ -30,6 +84,120 @@ public abstract class EntitySystem {
 		return _mask;
 	}
 	
+	/**
+	 * Gets the mask of all component types the system only reads during an update.
+	 * 
+	 * @return The read mask, or null if the system hasn't declared its accesses.
+	 */
+	public final ComponentMask getReadMask() {
+		return _readMask;
+	}
+	
+	/**
+	 * Gets the mask of all component types the system writes during an update.
+	 * 
+	 * @return The write mask, or null if the system hasn't declared its accesses.
+	 */
+	public final ComponentMask getWriteMask() {
+		return _writeMask;
+	}
+	
+	/**
+	 * Indicates if this system must not be updated concurrently with the specified system. This is
+	 * the case if one of both systems writes a component type the other one accesses, or if one of
+	 * them hasn't declared its accesses at all.
+	 * 
+	 * @param other The other system.
+	 * @return True if both systems conflict, false otherwise.
+	 */
+	public final boolean conflictsWith(EntitySystem other) {
+		if (_writeMask == null || other._writeMask == null)
+			return true;
+		return _writeMask.intersects(other._writeMask) || _writeMask.intersects(other._readMask)
+				|| other._writeMask.intersects(_readMask);
+	}
+	
+	/**
+	 * Gets the grain size of the parallel iteration of this system.
+	 * 
+	 * @return The maximum number of entities or rows processed by a single task, or 0 if the
+	 * 		system iterates on the calling thread.
+	 */
+	public final int getGrainSize() {
+		return _grainSize;
+	}
+	
+	/**
+	 * Sets the grain size of the parallel iteration of this system. A positive value makes
+	 * {@link #forEach(EntityQuery, Consumer)} and {@link #forEachChunk(int, ChunkAction)} split
+	 * their work into chunks of at most this size, which are processed concurrently. Smaller
+	 * chunks balance the load better, larger chunks have less overhead.
+	 * 
+	 * @param grainSize The maximum number of entities or rows processed by a single task, or 0 if
+	 * 		the system should iterate on the calling thread.
+	 * @throws IllegalArgumentException When grainSize is negative.
+	 */
+	protected final void setGrainSize(int grainSize) throws IllegalArgumentException {
+		if (grainSize < 0)
+			throw new IllegalArgumentException();
+		_grainSize = grainSize;
+	}
+	
+	/**
+	 * Performs the specified action for every entity of the specified query. Depending on the
+	 * grain size of the system, the entities are processed on the calling thread or concurrently
+	 * by {@link EntityQuery#forEachParallel(Consumer, int)}. Only the entities which pass the
+	 * change filters of the query are counted as processed.
+	 * 
+	 * @param query The query which entities should be processed.
+	 * @param action The action which should be performed for every entity.
+	 */
+	protected final void forEach(EntityQuery query, Consumer<? super Entity> action) {
+		if (_grainSize == 0)
+			_processedCount += query.forEach(action);
+		else
+			_processedCount += query.forEachParallel(action, _grainSize);
+	}
+	
+	/**
+	 * Processes the indices from 0 to the specified size with the specified action, e.g. all rows
+	 * of a {@link PackedComponents} storage. Depending on the grain size of the system, the whole
+	 * range is processed as a single chunk on the calling thread or split into chunks which are
+	 * processed concurrently.
+	 * 
+	 * @param size The number of indices.
+	 * @param action The action which processes the chunks.
+	 */
+	protected final void forEachChunk(int size, ChunkAction action) {
+		_processedCount += size;
+		if (_grainSize == 0)
+			action.process(0, size);
+		else
+			new ChunkTask(action, 0, size, _grainSize).invoke();
+	}
+	
+	/**
+	 * Adds the specified number of entities to the number of processed entities. Entities which are
+	 * iterated by {@link #forEach(EntityQuery, Consumer)} or {@link #forEachChunk(int, ChunkAction)}
+	 * are counted automatically, systems which iterate on their own can report them by this
+	 * method.
+	 * 
+	 * @param count The number of processed entities.
+	 */
+	protected final void countProcessed(int count) {
+		_processedCount += count;
+	}
+	
+	/**
+	 * Gets the total number of entities or rows this system has processed. Used by the
+	 * {@link infinity.ecs.scheduling.SchedulerMetrics}.
+	 * 
+	 * @return The number of processed entities.
+	 */
+	public final long getProcessedCount() {
+		return _processedCount;
+	}
+	
 	/**
 	 * Initializes all resources needed by the system.
 	 * 
@@ -0,0 +1,75 @@
+package infinity.ecs.core;
+
+import infinity.ecs.utils.IndexedCollection;
+
+/**
+ * The default {@link ComponentStorage} which keeps an {@link IndexedCollection} of
+ * {@link Component}s for every {@link Entity}.
+ * <p>
+ * <b>Notes:</b><br>
+ * Accessing the {@link Component}s of a single {@link Entity} is very fast, but since the
+ * {@link Component}s are spread over many small collections, iterating over all {@link Component}s
+ * of a specific type is not. Use {@link ArchetypeComponentStorage} if iteration performance matters.
+ *
+ * @author preip
+ */
+public final class IndexedComponentStorage implements ComponentStorage {
+
+	/**
+	 * The list of the {@link Component}s of all entities, indexed by the id of the entity and the
+	 * id of the {@link ComponentType}.
+	 */
+	private final IndexedCollection<IndexedCollection<Component>> _components;
+
+	/**
+	 * Creates a new instance of the {@link IndexedComponentStorage} class.
+	 */
+	public IndexedComponentStorage() {
+		_components = new IndexedCollection<IndexedCollection<Component>>();
+	}
+
+	@Override
+	public void addEntity(int entityId) {
+		_components.set(entityId, new IndexedCollection<Component>());
+	}
+
+	@Override
+	public void addEntities(int[] entityIds, ComponentType[] types, Component[] components) {
+		for (int n = 0; n < entityIds.length; n++) {
+			IndexedCollection<Component> ec = new IndexedCollection<Component>();
+			for (int i = 0; i < types.length; i++)
+				ec.set(types[i].getId(), components[n * types.length + i]);
+			_components.set(entityIds[n], ec);
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		_components.ensureCapacity(capacity);
+	}
+
+	@Override
+	public void removeEntity(int entityId) {
+		_components.remove(entityId);
+	}
+
+	@Override
+	public Component getComponent(int entityId, ComponentType type) {
+		return _components.get(entityId).get(type.getId());
+	}
+
+	@Override
+	public void addComponent(int entityId, ComponentType type, Component component) {
+		_components.get(entityId).set(type.getId(), component);
+	}
+
+	@Override
+	public Component removeComponent(int entityId, ComponentType type) {
+		IndexedCollection<Component> ec = _components.get(entityId);
+		int cId = type.getId();
+		Component c = ec.get(cId);
+		if (c != null)
+			ec.remove(cId);
+		return c;
+	}
+}
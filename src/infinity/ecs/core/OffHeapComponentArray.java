@@ -0,0 +1,459 @@
+package infinity.ecs.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Stores the values of all {@link Component}s of a single {@link Packed} {@link ComponentType} in
+ * native memory outside of the Java heap. The values of every {@link Entity} occupy one row of
+ * fixed size within a direct {@link ByteBuffer}, so the garbage collector never has to look at
+ * them.
+ * <p>
+ * <b>Notes:</b><br>
+ * The layout of a row is determined once by the {@link PackedLayout} of the {@link Component}
+ * class. Fields are addressed by the index returned by {@link #getFieldIndex(String)} and read or
+ * written with the typed accessors, e.g. {@link #getFloat(int, int)}.
+ * <p>
+ * Like the {@link PackedComponentArray}, the rows are kept packed by moving the last row into the
+ * gap of a removed {@link Entity}. The sparse index and the ids of the {@link Entity}s are plain
+ * int arrays, which don't contain references and are cheap to scan for the collector.
+ * <p>
+ * A single direct {@link ByteBuffer} can hold at most 2 GB, so the rows are split into segments
+ * of a fixed number of rows, each of which is a buffer of its own. While the array is smaller
+ * than one segment, its only buffer is replaced by one of twice the size when it is full, after
+ * that further segments are added without copying the existing ones. The native memory of a
+ * replaced buffer is released once the buffer itself is collected.
+ *
+ * @author preip
+ */
+public final class OffHeapComponentArray implements PackedComponents {
+
+	/**
+	 * The initial number of rows.
+	 */
+	private static final int INITIAL_CAPACITY = 32;
+
+	/**
+	 * The default maximal size of a segment in bytes.
+	 */
+	static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+	/**
+	 * The {@link ComponentType} of all {@link Component}s stored in this array.
+	 */
+	private final ComponentType _type;
+
+	/**
+	 * The layout of the {@link Component} class.
+	 */
+	private final PackedLayout _layout;
+
+	/**
+	 * The size of a row in bytes.
+	 */
+	private final int _stride;
+
+	/**
+	 * The number of rows of a full segment, which is a power of two.
+	 */
+	private final int _segmentRows;
+
+	/**
+	 * The number of bits the index of a row needs to be shifted to get the index of its segment.
+	 */
+	private final int _segmentShift;
+
+	/**
+	 * The position of the row of every {@link Entity}, indexed by the id of the {@link Entity}.
+	 * Contains -1 for all {@link Entity}s without values in this array.
+	 */
+	private int[] _sparse;
+
+	/**
+	 * The packed ids of all {@link Entity}s that have values in this array.
+	 */
+	private int[] _entityIds;
+
+	/**
+	 * The direct buffers which hold the rows, one per segment.
+	 */
+	private ByteBuffer[] _segments;
+
+	/**
+	 * The number of {@link Entity}s stored in this array.
+	 */
+	private int _size;
+
+	/**
+	 * Creates a new instance of the {@link OffHeapComponentArray} class.
+	 *
+	 * @param type The {@link ComponentType} of all {@link Component}s stored in the array.
+	 * @throws IllegalArgumentException When the {@link Component} class of the type contains a
+	 * 		field which is not primitive.
+	 */
+	public OffHeapComponentArray(ComponentType type) throws IllegalArgumentException {
+		this(type, DEFAULT_SEGMENT_SIZE);
+	}
+
+	/**
+	 * Creates a new instance of the {@link OffHeapComponentArray} class with the specified maximal
+	 * segment size, which allows to test arrays spanning several segments.
+	 *
+	 * @param type The {@link ComponentType} of all {@link Component}s stored in the array.
+	 * @param segmentSize The maximal size of a segment in bytes.
+	 * @throws IllegalArgumentException When the {@link Component} class of the type contains a
+	 * 		field which is not primitive.
+	 */
+	OffHeapComponentArray(ComponentType type, int segmentSize) throws IllegalArgumentException {
+		_type = type;
+		_layout = new PackedLayout(type.getComponentClass());
+		_stride = _layout.getStride();
+		_segmentRows = Integer.highestOneBit(Math.max(segmentSize / Math.max(_stride, 1), 1));
+		_segmentShift = Integer.numberOfTrailingZeros(_segmentRows);
+		_sparse = new int[INITIAL_CAPACITY];
+		Arrays.fill(_sparse, -1);
+		_entityIds = new int[INITIAL_CAPACITY];
+		int rows = Math.min(INITIAL_CAPACITY, _segmentRows);
+		_segments = new ByteBuffer[INITIAL_CAPACITY / rows];
+		for (int i = 0; i < _segments.length; i++)
+			_segments[i] = allocate(rows);
+		_size = 0;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Allocates a new direct buffer with the specified number of rows, which never exceeds the
+	 * rows of a segment.
+	 */
+	private ByteBuffer allocate(int rows) {
+		return ByteBuffer.allocateDirect(rows * _stride).order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Doubles the number of rows.
+	 *
+	 * @throws IllegalStateException When the array can't hold any more rows.
+	 */
+	private void grow() throws IllegalStateException {
+		if (_entityIds.length > Integer.MAX_VALUE >> 1)
+			throw new IllegalStateException("too many off-heap components");
+		int capacity = _entityIds.length * 2;
+		_entityIds = Arrays.copyOf(_entityIds, capacity);
+		int rows = Math.min(capacity, _segmentRows);
+		if (_segments[0].capacity() < rows * _stride) {
+			// the only segment isn't full-size yet, so it is replaced by a bigger one
+			ByteBuffer buffer = allocate(rows);
+			ByteBuffer old = _segments[0].duplicate();
+			old.position(0).limit(_size * _stride);
+			buffer.put(old);
+			buffer.clear();
+			_segments[0] = buffer;
+		}
+		int count = capacity / rows;
+		int oldCount = _segments.length;
+		if (count > oldCount) {
+			_segments = Arrays.copyOf(_segments, count);
+			for (int i = oldCount; i < count; i++)
+				_segments[i] = allocate(_segmentRows);
+		}
+	}
+
+	/**
+	 * Gets the buffer of the segment of the specified row.
+	 */
+	private ByteBuffer segment(int index) {
+		return _segments[index >>> _segmentShift];
+	}
+
+	/**
+	 * Gets the position of the specified row within the buffer of its segment.
+	 */
+	private int offset(int index) {
+		return (index & (_segmentRows - 1)) * _stride;
+	}
+
+	/**
+	 * Gets the position of the specified field of the specified row within the buffer of its
+	 * segment.
+	 */
+	private int position(int index, int field) {
+		return offset(index) + _layout.getOffset(field);
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	@Override
+	public int add(int entityId, Component source) {
+		if (entityId >= _sparse.length) {
+			int oldLength = _sparse.length;
+			_sparse = Arrays.copyOf(_sparse, Math.max(entityId + 1, oldLength * 2));
+			Arrays.fill(_sparse, oldLength, _sparse.length, -1);
+		}
+		int index = _sparse[entityId];
+		if (index == -1) {
+			if (_size == _entityIds.length)
+				grow();
+			index = _size++;
+			_sparse[entityId] = index;
+			_entityIds[index] = entityId;
+		}
+		_layout.read(source, segment(index), offset(index));
+		return index;
+	}
+
+	@Override
+	public boolean remove(int entityId) {
+		int index = indexOf(entityId);
+		if (index == -1)
+			return false;
+		int last = --_size;
+		// fill the gap with the last row to keep the buffers packed
+		if (index != last) {
+			int lastId = _entityIds[last];
+			_entityIds[index] = lastId;
+			ByteBuffer target = segment(index);
+			ByteBuffer source = segment(last);
+			int targetOffset = offset(index);
+			int sourceOffset = offset(last);
+			for (int i = 0; i < _stride; i += 8)
+				target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+			_sparse[lastId] = index;
+		}
+		_sparse[entityId] = -1;
+		return true;
+	}
+
+	@Override
+	public int indexOf(int entityId) {
+		if (entityId >= _sparse.length)
+			return -1;
+		return _sparse[entityId];
+	}
+
+	@Override
+	public void load(int index, Component target) {
+		_layout.write(segment(index), offset(index), target);
+	}
+
+	@Override
+	public void store(int index, Component source) {
+		_layout.read(source, segment(index), offset(index));
+	}
+
+	@Override
+	public ComponentType getComponentType() {
+		return _type;
+	}
+
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	@Override
+	public int getEntityId(int index) {
+		return _entityIds[index];
+	}
+
+	@Override
+	public int getFieldIndex(String name) throws IllegalArgumentException {
+		int field = _layout.indexOf(name);
+		if (field == -1)
+			throw new IllegalArgumentException("unknown field '" + name + "'");
+		return field;
+	}
+
+	/**
+	 * Gets the number of bytes of native memory currently reserved by this array.
+	 *
+	 * @return The native footprint in bytes.
+	 */
+	public long getNativeSize() {
+		long size = 0;
+		for (ByteBuffer segment : _segments)
+			size += segment.capacity();
+		return size;
+	}
+
+	/**
+	 * Gets the value of the specified {@code boolean} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public boolean getBoolean(int index, int field) {
+		return segment(index).get(position(index, field)) != 0;
+	}
+
+	/**
+	 * Sets the value of the specified {@code boolean} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setBoolean(int index, int field, boolean value) {
+		segment(index).put(position(index, field), value ? (byte)1 : (byte)0);
+	}
+
+	/**
+	 * Gets the value of the specified {@code byte} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public byte getByte(int index, int field) {
+		return segment(index).get(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code byte} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setByte(int index, int field, byte value) {
+		segment(index).put(position(index, field), value);
+	}
+
+	/**
+	 * Gets the value of the specified {@code char} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public char getChar(int index, int field) {
+		return segment(index).getChar(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code char} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setChar(int index, int field, char value) {
+		segment(index).putChar(position(index, field), value);
+	}
+
+	/**
+	 * Gets the value of the specified {@code short} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public short getShort(int index, int field) {
+		return segment(index).getShort(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code short} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setShort(int index, int field, short value) {
+		segment(index).putShort(position(index, field), value);
+	}
+
+	/**
+	 * Gets the value of the specified {@code int} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public int getInt(int index, int field) {
+		return segment(index).getInt(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code int} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setInt(int index, int field, int value) {
+		segment(index).putInt(position(index, field), value);
+	}
+
+	/**
+	 * Gets the value of the specified {@code long} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public long getLong(int index, int field) {
+		return segment(index).getLong(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code long} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setLong(int index, int field, long value) {
+		segment(index).putLong(position(index, field), value);
+	}
+
+	/**
+	 * Gets the value of the specified {@code float} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public float getFloat(int index, int field) {
+		return segment(index).getFloat(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code float} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setFloat(int index, int field, float value) {
+		segment(index).putFloat(position(index, field), value);
+	}
+
+	/**
+	 * Gets the value of the specified {@code double} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @return The value of the field.
+	 */
+	public double getDouble(int index, int field) {
+		return segment(index).getDouble(position(index, field));
+	}
+
+	/**
+	 * Sets the value of the specified {@code double} field of the specified row.
+	 *
+	 * @param index The index of the row.
+	 * @param field The index of the field, as returned by {@link #getFieldIndex(String)}.
+	 * @param value The new value of the field.
+	 */
+	public void setDouble(int index, int field, double value) {
+		segment(index).putDouble(position(index, field), value);
+	}
+}
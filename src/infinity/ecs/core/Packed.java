@@ -0,0 +1,34 @@
+package infinity.ecs.core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link Component} class as packed. The {@link EntityManager} doesn't store instances of
+ * packed {@link Component}s, but copies their fields into a {@link PackedComponentArray}, which
+ * keeps one primitive array per field.
+ * <p>
+ * <b>Notes:</b><br>
+ * Packed {@link Component}s may only declare primitive fields. Since the instances are not
+ * stored, {@link EntityManager#getComponent(Entity, ComponentType)} returns a detached copy of
+ * the stored values. Changes must be written through the arrays or a {@link PackedCursor} of the
+ * {@link PackedComponentArray} instead.
+ * <p>
+ * With {@link #offHeap()} the values are kept in native memory by an
+ * {@link OffHeapComponentArray}, so they don't add to the heap at all.
+ *
+ * @author preip
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Packed {
+
+	/**
+	 * Indicates if the values should be stored outside of the Java heap.
+	 */
+	boolean offHeap() default false;
+}
@@ -0,0 +1,308 @@
+package infinity.ecs.core;
+
+import java.util.Arrays;
+
+/**
+ * Stores all {@link Component}s of a single {@link Packed} {@link ComponentType} as a structure of
+ * arrays. Every field of the {@link Component} class is stored in its own primitive array, so a
+ * system which only needs some of the fields can stream through them without touching any
+ * {@link Component} objects.
+ * <p>
+ * <b>Notes:</b><br>
+ * Like the {@link ComponentPool} the array consists of a sparse array, indexed by the id of the
+ * {@link Entity}, which contains the position of the values within the dense arrays. The dense
+ * arrays are always packed, so iterating over them is a simple loop from zero to {@link #size()}.
+ * A removed {@link Entity} is replaced by the last {@link Entity} of the dense arrays.
+ * <p>
+ * The columns can be accessed directly by {@link #getFloats(String)} and its siblings, or through
+ * a {@link PackedCursor}, which is a reusable flyweight over a single position. The column arrays
+ * are replaced whenever the array grows, so they shouldn't be kept between updates.
+ *
+ * @author preip
+ */
+public final class PackedComponentArray implements PackedComponents {
+
+	/**
+	 * The initial capacity of the sparse and dense arrays.
+	 */
+	private static final int INITIAL_CAPACITY = 32;
+
+	/**
+	 * The {@link ComponentType} of all {@link Component}s stored in this array.
+	 */
+	private final ComponentType _type;
+
+	/**
+	 * The layout of the {@link Component} class.
+	 */
+	private final PackedLayout _layout;
+
+	/**
+	 * The position of the values of every {@link Entity} within the dense arrays, indexed by the id
+	 * of the {@link Entity}. Contains -1 for all {@link Entity}s without values in this array.
+	 */
+	private int[] _sparse;
+
+	/**
+	 * The packed ids of all {@link Entity}s that have values in this array.
+	 */
+	private int[] _entityIds;
+
+	/**
+	 * One primitive array per field of the {@link Component} class, in the same order as
+	 * {@link #_entityIds}.
+	 */
+	private final Object[] _columns;
+
+	/**
+	 * The number of {@link Entity}s stored in this array.
+	 */
+	private int _size;
+
+	/**
+	 * Creates a new instance of the {@link PackedComponentArray} class.
+	 *
+	 * @param type The {@link ComponentType} of all {@link Component}s stored in the array.
+	 * @throws IllegalArgumentException When the {@link Component} class of the type contains a
+	 * 		field which is not primitive.
+	 */
+	public PackedComponentArray(ComponentType type) throws IllegalArgumentException {
+		_type = type;
+		_layout = new PackedLayout(type.getComponentClass());
+		_sparse = new int[INITIAL_CAPACITY];
+		Arrays.fill(_sparse, -1);
+		_entityIds = new int[INITIAL_CAPACITY];
+		_columns = new Object[_layout.getFieldCount()];
+		for (int i = 0; i < _columns.length; i++)
+			_columns[i] = _layout.newColumn(i, INITIAL_CAPACITY);
+		_size = 0;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Package-Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the column of the field with the specified index.
+	 */
+	Object getColumn(int field) {
+		return _columns[field];
+	}
+
+	/**
+	 * Gets the column of the field with the specified name and checks its kind.
+	 */
+	private Object getColumn(String name, int kind) throws IllegalArgumentException {
+		int field = getFieldIndex(name);
+		if (_layout.getKind(field) != kind)
+			throw new IllegalArgumentException("field '" + name + "' has a different type");
+		return _columns[field];
+	}
+
+	/**
+	 * Grows all dense arrays to twice their size.
+	 */
+	private void grow() {
+		int capacity = _entityIds.length * 2;
+		_entityIds = Arrays.copyOf(_entityIds, capacity);
+		for (int i = 0; i < _columns.length; i++) {
+			Object column = _layout.newColumn(i, capacity);
+			System.arraycopy(_columns[i], 0, column, 0, _size);
+			_columns[i] = column;
+		}
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Copies the values of the specified {@link Component} into the array for the specified
+	 * {@link Entity}, replacing any existing values.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @param source The {@link Component} whose values should be stored.
+	 * @return The position of the values within the dense arrays.
+	 */
+	@Override
+	public int add(int entityId, Component source) {
+		if (entityId >= _sparse.length) {
+			int oldLength = _sparse.length;
+			_sparse = Arrays.copyOf(_sparse, Math.max(entityId + 1, oldLength * 2));
+			Arrays.fill(_sparse, oldLength, _sparse.length, -1);
+		}
+		int index = _sparse[entityId];
+		if (index == -1) {
+			if (_size == _entityIds.length)
+				grow();
+			index = _size++;
+			_sparse[entityId] = index;
+			_entityIds[index] = entityId;
+		}
+		_layout.read(source, _columns, index);
+		return index;
+	}
+
+	/**
+	 * Removes the values of the specified {@link Entity} from this array.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return true if the values were removed, or false if the {@link Entity} had none.
+	 */
+	@Override
+	public boolean remove(int entityId) {
+		int index = indexOf(entityId);
+		if (index == -1)
+			return false;
+		int last = --_size;
+		// fill the gap with the last element to keep the dense arrays packed
+		if (index != last) {
+			int lastId = _entityIds[last];
+			_entityIds[index] = lastId;
+			for (Object column : _columns)
+				System.arraycopy(column, last, column, index, 1);
+			_sparse[lastId] = index;
+		}
+		_sparse[entityId] = -1;
+		return true;
+	}
+
+	/**
+	 * Gets the position of the values of the specified {@link Entity} within the dense arrays.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The position or -1 if the {@link Entity} has no values in this array.
+	 */
+	@Override
+	public int indexOf(int entityId) {
+		if (entityId >= _sparse.length)
+			return -1;
+		return _sparse[entityId];
+	}
+
+	/**
+	 * Copies the values at the specified position into the specified {@link Component}.
+	 *
+	 * @param index The position within the dense arrays.
+	 * @param target The {@link Component} the values should be copied to.
+	 */
+	@Override
+	public void load(int index, Component target) {
+		_layout.write(_columns, index, target);
+	}
+
+	/**
+	 * Copies the values of the specified {@link Component} to the specified position.
+	 *
+	 * @param index The position within the dense arrays.
+	 * @param source The {@link Component} whose values should be copied.
+	 */
+	@Override
+	public void store(int index, Component source) {
+		_layout.read(source, _columns, index);
+	}
+
+	/**
+	 * Gets the {@link ComponentType} of all {@link Component}s stored in this array.
+	 *
+	 * @return The {@link ComponentType} of the array.
+	 */
+	@Override
+	public ComponentType getComponentType() {
+		return _type;
+	}
+
+	/**
+	 * Gets the number of {@link Entity}s stored in this array.
+	 *
+	 * @return The size of the array.
+	 */
+	@Override
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Gets the id of the {@link Entity} at the specified position of the dense arrays.
+	 *
+	 * @param index The position within the dense arrays.
+	 * @return The id of the {@link Entity}.
+	 */
+	@Override
+	public int getEntityId(int index) {
+		return _entityIds[index];
+	}
+
+	/**
+	 * Gets the index of the field with the specified name, which can be used with a
+	 * {@link PackedCursor}.
+	 *
+	 * @param name The name of the field.
+	 * @return The index of the field.
+	 * @throws IllegalArgumentException When there is no field with the specified name.
+	 */
+	@Override
+	public int getFieldIndex(String name) throws IllegalArgumentException {
+		int field = _layout.indexOf(name);
+		if (field == -1)
+			throw new IllegalArgumentException("unknown field '" + name + "'");
+		return field;
+	}
+
+	/**
+	 * Gets the column of the int field with the specified name. Only the first {@link #size()}
+	 * elements are valid.
+	 *
+	 * @param name The name of the field.
+	 * @return The column of the field.
+	 * @throws IllegalArgumentException When there is no int field with the specified name.
+	 */
+	public int[] getInts(String name) throws IllegalArgumentException {
+		return (int[])getColumn(name, PackedLayout.INT);
+	}
+
+	/**
+	 * Gets the column of the long field with the specified name. Only the first {@link #size()}
+	 * elements are valid.
+	 *
+	 * @param name The name of the field.
+	 * @return The column of the field.
+	 * @throws IllegalArgumentException When there is no long field with the specified name.
+	 */
+	public long[] getLongs(String name) throws IllegalArgumentException {
+		return (long[])getColumn(name, PackedLayout.LONG);
+	}
+
+	/**
+	 * Gets the column of the float field with the specified name. Only the first {@link #size()}
+	 * elements are valid.
+	 *
+	 * @param name The name of the field.
+	 * @return The column of the field.
+	 * @throws IllegalArgumentException When there is no float field with the specified name.
+	 */
+	public float[] getFloats(String name) throws IllegalArgumentException {
+		return (float[])getColumn(name, PackedLayout.FLOAT);
+	}
+
+	/**
+	 * Gets the column of the double field with the specified name. Only the first {@link #size()}
+	 * elements are valid.
+	 *
+	 * @param name The name of the field.
+	 * @return The column of the field.
+	 * @throws IllegalArgumentException When there is no double field with the specified name.
+	 */
+	public double[] getDoubles(String name) throws IllegalArgumentException {
+		return (double[])getColumn(name, PackedLayout.DOUBLE);
+	}
+
+	/**
+	 * Creates a new {@link PackedCursor} over this array.
+	 *
+	 * @return The new cursor.
+	 */
+	public PackedCursor cursor() {
+		return new PackedCursor(this);
+	}
+}
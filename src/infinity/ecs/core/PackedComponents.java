@@ -0,0 +1,89 @@
+package infinity.ecs.core;
+
+/**
+ * Interface for all classes which store the values of {@link Packed} {@link Component}s instead of
+ * the {@link Component} objects themselves. The values of every {@link Entity} occupy a single
+ * position within the dense storage of the implementation.
+ * <p>
+ * <b>Notes:</b><br>
+ * The {@link EntityManager} uses a {@link PackedComponentArray} for {@link Packed} types and an
+ * {@link OffHeapComponentArray} for types which are marked with {@link Packed#offHeap()}. Both
+ * keep the dense storage packed, so positions change whenever an {@link Entity} is removed.
+ *
+ * @author preip
+ */
+public interface PackedComponents {
+
+	/**
+	 * Copies the values of the specified {@link Component} into the storage for the specified
+	 * {@link Entity}, replacing any existing values.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @param source The {@link Component} whose values should be stored.
+	 * @return The position of the values within the dense storage.
+	 */
+	public int add(int entityId, Component source);
+
+	/**
+	 * Removes the values of the specified {@link Entity} from the storage.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return true if the values were removed, or false if the {@link Entity} had none.
+	 */
+	public boolean remove(int entityId);
+
+	/**
+	 * Gets the position of the values of the specified {@link Entity} within the dense storage.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return The position or -1 if the {@link Entity} has no values in the storage.
+	 */
+	public int indexOf(int entityId);
+
+	/**
+	 * Copies the values at the specified position into the specified {@link Component}.
+	 *
+	 * @param index The position within the dense storage.
+	 * @param target The {@link Component} the values should be copied to.
+	 */
+	public void load(int index, Component target);
+
+	/**
+	 * Copies the values of the specified {@link Component} to the specified position.
+	 *
+	 * @param index The position within the dense storage.
+	 * @param source The {@link Component} whose values should be copied.
+	 */
+	public void store(int index, Component source);
+
+	/**
+	 * Gets the {@link ComponentType} of all {@link Component}s stored.
+	 *
+	 * @return The {@link ComponentType} of the storage.
+	 */
+	public ComponentType getComponentType();
+
+	/**
+	 * Gets the number of {@link Entity}s stored.
+	 *
+	 * @return The size of the storage.
+	 */
+	public int size();
+
+	/**
+	 * Gets the id of the {@link Entity} at the specified position of the dense storage.
+	 *
+	 * @param index The position within the dense storage.
+	 * @return The id of the {@link Entity}.
+	 */
+	public int getEntityId(int index);
+
+	/**
+	 * Gets the index of the field with the specified name.
+	 *
+	 * @param name The name of the field.
+	 * @return The index of the field.
+	 * @throws IllegalArgumentException When there is no field with the specified name.
+	 */
+	public int getFieldIndex(String name) throws IllegalArgumentException;
+}
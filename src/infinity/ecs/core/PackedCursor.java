@@ -0,0 +1,143 @@
+package infinity.ecs.core;
+
+/**
+ * A reusable flyweight which gives typed access to the values of a single position of a
+ * {@link PackedComponentArray}. Fields are addressed by the index returned by
+ * {@link PackedComponentArray#getFieldIndex(String)}, which should be looked up once and kept.
+ * <p>
+ * <b>Notes:</b><br>
+ * The cursor doesn't copy anything, every call reads or writes the current column of the array.
+ * Moving it is therefore free, and a single cursor can be used to walk over all {@link Entity}s
+ * of the array:
+ * <pre>
+ * for (int i = 0; i &lt; array.size(); i++) {
+ *     cursor.setIndex(i);
+ *     cursor.setFloat(x, cursor.getFloat(x) + 1f);
+ * }
+ * </pre>
+ *
+ * @author preip
+ */
+public final class PackedCursor {
+
+	/**
+	 * The array this cursor reads and writes.
+	 */
+	private final PackedComponentArray _array;
+
+	/**
+	 * The current position within the dense arrays.
+	 */
+	private int _index;
+
+	/**
+	 * Creates a new instance of the {@link PackedCursor} class. Only called by the
+	 * {@link PackedComponentArray}.
+	 */
+	PackedCursor(PackedComponentArray array) {
+		_array = array;
+		_index = -1;
+	}
+
+	/**
+	 * Moves the cursor to the values of the specified {@link Entity}.
+	 *
+	 * @param entityId The id of the {@link Entity}.
+	 * @return true if the {@link Entity} has values in the array, otherwise false.
+	 */
+	public boolean moveTo(int entityId) {
+		_index = _array.indexOf(entityId);
+		return _index != -1;
+	}
+
+	/**
+	 * Moves the cursor to the specified position within the dense arrays.
+	 *
+	 * @param index The position.
+	 */
+	public void setIndex(int index) {
+		_index = index;
+	}
+
+	/**
+	 * Gets the current position within the dense arrays.
+	 *
+	 * @return The position, or -1 if the cursor isn't positioned.
+	 */
+	public int getIndex() {
+		return _index;
+	}
+
+	/**
+	 * Gets the id of the {@link Entity} at the current position.
+	 *
+	 * @return The id of the {@link Entity}.
+	 */
+	public int getEntityId() {
+		return _array.getEntityId(_index);
+	}
+
+	public boolean getBoolean(int field) {
+		return ((boolean[])_array.getColumn(field))[_index];
+	}
+
+	public void setBoolean(int field, boolean value) {
+		((boolean[])_array.getColumn(field))[_index] = value;
+	}
+
+	public byte getByte(int field) {
+		return ((byte[])_array.getColumn(field))[_index];
+	}
+
+	public void setByte(int field, byte value) {
+		((byte[])_array.getColumn(field))[_index] = value;
+	}
+
+	public char getChar(int field) {
+		return ((char[])_array.getColumn(field))[_index];
+	}
+
+	public void setChar(int field, char value) {
+		((char[])_array.getColumn(field))[_index] = value;
+	}
+
+	public short getShort(int field) {
+		return ((short[])_array.getColumn(field))[_index];
+	}
+
+	public void setShort(int field, short value) {
+		((short[])_array.getColumn(field))[_index] = value;
+	}
+
+	public int getInt(int field) {
+		return ((int[])_array.getColumn(field))[_index];
+	}
+
+	public void setInt(int field, int value) {
+		((int[])_array.getColumn(field))[_index] = value;
+	}
+
+	public long getLong(int field) {
+		return ((long[])_array.getColumn(field))[_index];
+	}
+
+	public void setLong(int field, long value) {
+		((long[])_array.getColumn(field))[_index] = value;
+	}
+
+	public float getFloat(int field) {
+		return ((float[])_array.getColumn(field))[_index];
+	}
+
+	public void setFloat(int field, float value) {
+		((float[])_array.getColumn(field))[_index] = value;
+	}
+
+	public double getDouble(int field) {
+		return ((double[])_array.getColumn(field))[_index];
+	}
+
+	public void setDouble(int field, double value) {
+		((double[])_array.getColumn(field))[_index] = value;
+	}
+}
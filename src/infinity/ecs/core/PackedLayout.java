@@ -0,0 +1,299 @@
+package infinity.ecs.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes the fields of a {@link Packed} {@link Component} class and copies their values between
+ * instances of the class and the primitive column arrays of a {@link PackedComponentArray}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The layout is determined once by reflection. All non-static fields declared by the class and
+ * its super classes up to {@link Component} become columns in the order of their declaration.
+ * Only primitive fields are supported.
+ * <p>
+ * For off-heap storage every field also gets a fixed byte offset within a row. The fields are
+ * placed in the order of descending size, so every value is naturally aligned as long as the
+ * rows start at a multiple of eight bytes.
+ *
+ * @author preip
+ */
+final class PackedLayout {
+
+	//----------------------------------------------------------------------------------------------
+	// Field Kinds
+	//----------------------------------------------------------------------------------------------
+
+	static final int BOOLEAN = 0;
+	static final int BYTE = 1;
+	static final int CHAR = 2;
+	static final int SHORT = 3;
+	static final int INT = 4;
+	static final int LONG = 5;
+	static final int FLOAT = 6;
+	static final int DOUBLE = 7;
+
+	//----------------------------------------------------------------------------------------------
+	// Fields
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * The reflected fields of the {@link Component} class.
+	 */
+	private final Field[] _fields;
+
+	/**
+	 * The kind of every field, which is one of the field kind constants.
+	 */
+	private final int[] _kinds;
+
+	/**
+	 * The byte offset of every field within an off-heap row.
+	 */
+	private final int[] _offsets;
+
+	/**
+	 * The size of an off-heap row in bytes, rounded up to a multiple of eight.
+	 */
+	private final int _stride;
+
+	/**
+	 * Creates a new instance of the {@link PackedLayout} class.
+	 *
+	 * @param typeClass The {@link Component} class which should be described.
+	 * @throws IllegalArgumentException When the class declares a field which is not primitive.
+	 */
+	PackedLayout(Class<? extends Component> typeClass) throws IllegalArgumentException {
+		List<Field> fields = new ArrayList<Field>();
+		collectFields(typeClass, fields);
+		_fields = fields.toArray(new Field[fields.size()]);
+		_kinds = new int[_fields.length];
+		for (int i = 0; i < _fields.length; i++) {
+			_fields[i].setAccessible(true);
+			_kinds[i] = kindOf(_fields[i]);
+		}
+		_offsets = new int[_fields.length];
+		int offset = 0;
+		for (int size = 8; size >= 1; size /= 2)
+			for (int i = 0; i < _fields.length; i++)
+				if (sizeOf(_kinds[i]) == size) {
+					_offsets[i] = offset;
+					offset += size;
+				}
+		_stride = Math.max(8, (offset + 7) & ~7);
+	}
+
+	/**
+	 * Gets the number of fields, which is also the number of columns.
+	 */
+	int getFieldCount() {
+		return _fields.length;
+	}
+
+	/**
+	 * Gets the name of the field with the specified index.
+	 */
+	String getName(int field) {
+		return _fields[field].getName();
+	}
+
+	/**
+	 * Gets the kind of the field with the specified index.
+	 */
+	int getKind(int field) {
+		return _kinds[field];
+	}
+
+	/**
+	 * Gets the byte offset of the field with the specified index within an off-heap row.
+	 */
+	int getOffset(int field) {
+		return _offsets[field];
+	}
+
+	/**
+	 * Gets the size of an off-heap row in bytes.
+	 */
+	int getStride() {
+		return _stride;
+	}
+
+	/**
+	 * Gets the index of the field with the specified name.
+	 *
+	 * @return The index of the field or -1 if there is no such field.
+	 */
+	int indexOf(String name) {
+		for (int i = 0; i < _fields.length; i++)
+			if (_fields[i].getName().equals(name))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Creates a new primitive array for the column of the field with the specified index.
+	 */
+	Object newColumn(int field, int capacity) {
+		switch (_kinds[field]) {
+		case BOOLEAN: return new boolean[capacity];
+		case BYTE:    return new byte[capacity];
+		case CHAR:    return new char[capacity];
+		case SHORT:   return new short[capacity];
+		case INT:     return new int[capacity];
+		case LONG:    return new long[capacity];
+		case FLOAT:   return new float[capacity];
+		default:      return new double[capacity];
+		}
+	}
+
+	/**
+	 * Copies the values of all fields of the specified {@link Component} into the specified row of
+	 * the columns.
+	 */
+	void read(Component source, Object[] columns, int row) {
+		try {
+			for (int i = 0; i < _fields.length; i++) {
+				Field f = _fields[i];
+				Object column = columns[i];
+				switch (_kinds[i]) {
+				case BOOLEAN: ((boolean[])column)[row] = f.getBoolean(source); break;
+				case BYTE:    ((byte[])column)[row] = f.getByte(source); break;
+				case CHAR:    ((char[])column)[row] = f.getChar(source); break;
+				case SHORT:   ((short[])column)[row] = f.getShort(source); break;
+				case INT:     ((int[])column)[row] = f.getInt(source); break;
+				case LONG:    ((long[])column)[row] = f.getLong(source); break;
+				case FLOAT:   ((float[])column)[row] = f.getFloat(source); break;
+				default:      ((double[])column)[row] = f.getDouble(source); break;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			// can't happen, since all fields have been made accessible
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Copies the values of the specified row of the columns into the fields of the specified
+	 * {@link Component}.
+	 */
+	void write(Object[] columns, int row, Component target) {
+		try {
+			for (int i = 0; i < _fields.length; i++) {
+				Field f = _fields[i];
+				Object column = columns[i];
+				switch (_kinds[i]) {
+				case BOOLEAN: f.setBoolean(target, ((boolean[])column)[row]); break;
+				case BYTE:    f.setByte(target, ((byte[])column)[row]); break;
+				case CHAR:    f.setChar(target, ((char[])column)[row]); break;
+				case SHORT:   f.setShort(target, ((short[])column)[row]); break;
+				case INT:     f.setInt(target, ((int[])column)[row]); break;
+				case LONG:    f.setLong(target, ((long[])column)[row]); break;
+				case FLOAT:   f.setFloat(target, ((float[])column)[row]); break;
+				default:      f.setDouble(target, ((double[])column)[row]); break;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Copies the values of all fields of the specified {@link Component} into the off-heap row
+	 * which starts at the specified position of the buffer.
+	 */
+	void read(Component source, ByteBuffer buffer, int base) {
+		try {
+			for (int i = 0; i < _fields.length; i++) {
+				Field f = _fields[i];
+				int pos = base + _offsets[i];
+				switch (_kinds[i]) {
+				case BOOLEAN: buffer.put(pos, f.getBoolean(source) ? (byte)1 : (byte)0); break;
+				case BYTE:    buffer.put(pos, f.getByte(source)); break;
+				case CHAR:    buffer.putChar(pos, f.getChar(source)); break;
+				case SHORT:   buffer.putShort(pos, f.getShort(source)); break;
+				case INT:     buffer.putInt(pos, f.getInt(source)); break;
+				case LONG:    buffer.putLong(pos, f.getLong(source)); break;
+				case FLOAT:   buffer.putFloat(pos, f.getFloat(source)); break;
+				default:      buffer.putDouble(pos, f.getDouble(source)); break;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Copies the values of the off-heap row which starts at the specified position of the buffer
+	 * into the fields of the specified {@link Component}.
+	 */
+	void write(ByteBuffer buffer, int base, Component target) {
+		try {
+			for (int i = 0; i < _fields.length; i++) {
+				Field f = _fields[i];
+				int pos = base + _offsets[i];
+				switch (_kinds[i]) {
+				case BOOLEAN: f.setBoolean(target, buffer.get(pos) != 0); break;
+				case BYTE:    f.setByte(target, buffer.get(pos)); break;
+				case CHAR:    f.setChar(target, buffer.getChar(pos)); break;
+				case SHORT:   f.setShort(target, buffer.getShort(pos)); break;
+				case INT:     f.setInt(target, buffer.getInt(pos)); break;
+				case LONG:    f.setLong(target, buffer.getLong(pos)); break;
+				case FLOAT:   f.setFloat(target, buffer.getFloat(pos)); break;
+				default:      f.setDouble(target, buffer.getDouble(pos)); break;
+				}
+			}
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the size in bytes of a value of the specified kind.
+	 */
+	static int sizeOf(int kind) {
+		switch (kind) {
+		case BOOLEAN:
+		case BYTE:    return 1;
+		case CHAR:
+		case SHORT:   return 2;
+		case INT:
+		case FLOAT:   return 4;
+		default:      return 8;
+		}
+	}
+
+	/**
+	 * Collects all non-static fields of the specified class and its super classes up to
+	 * {@link Component}, starting with the fields of the top most class.
+	 */
+	private static void collectFields(Class<?> typeClass, List<Field> fields) {
+		if (typeClass == Component.class || typeClass == Object.class)
+			return;
+		collectFields(typeClass.getSuperclass(), fields);
+		for (Field f : typeClass.getDeclaredFields())
+			if (!Modifier.isStatic(f.getModifiers()))
+				fields.add(f);
+	}
+
+	/**
+	 * Gets the kind of the specified field.
+	 *
+	 * @throws IllegalArgumentException When the field is not primitive.
+	 */
+	private static int kindOf(Field field) throws IllegalArgumentException {
+		Class<?> type = field.getType();
+		if (type == boolean.class) return BOOLEAN;
+		if (type == byte.class)    return BYTE;
+		if (type == char.class)    return CHAR;
+		if (type == short.class)   return SHORT;
+		if (type == int.class)     return INT;
+		if (type == long.class)    return LONG;
+		if (type == float.class)   return FLOAT;
+		if (type == double.class)  return DOUBLE;
+		throw new IllegalArgumentException("packed components may only contain primitive fields, "
+				+ "but '" + field.getName() + "' is of type " + type.getName());
+	}
+}
@@ -0,0 +1,110 @@
+package infinity.ecs.core;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A template for {@link Entity}s which consists of a set of {@link Component}s with their initial
+ * values. A prefab can be instantiated any number of times by
+ * {@link EntityManager#instantiate(Prefab, int)}, which gives every new {@link Entity} a copy of
+ * all template {@link Component}s.
+ * <p>
+ * <b>Notes:</b><br>
+ * Instantiating a prefab doesn't use the registered {@link ComponentFactory}s. The template
+ * {@link Component}s are copied by {@link Component#copy()}, and the values of {@link Packed}
+ * templates are written directly into the packed storage without creating any objects at all.
+ * <p>
+ * The templates are owned by the prefab and must not be added to an {@link Entity}. Changing
+ * their values afterwards is allowed and affects all later instances.
+ *
+ * @author preip
+ */
+public final class Prefab {
+
+	/**
+	 * The {@link ComponentMask} of all {@link Entity}s created from this prefab.
+	 */
+	private final ComponentMask _mask;
+
+	/**
+	 * The {@link ComponentType}s of the templates, sorted by their id.
+	 */
+	private final ComponentType[] _types;
+
+	/**
+	 * The template {@link Component}s, in the same order as {@link #_types}.
+	 */
+	private final Component[] _templates;
+
+	/**
+	 * Creates a new instance of the {@link Prefab} class.
+	 *
+	 * @param templates The template {@link Component}s.
+	 * @throws IllegalArgumentException When a template is null, is already bound to an
+	 * 		{@link Entity}, or when there is more than one template of the same type.
+	 */
+	public Prefab(Component... templates) throws IllegalArgumentException {
+		_templates = templates.clone();
+		Arrays.sort(_templates, new Comparator<Component>() {
+			@Override
+			public int compare(Component c1, Component c2) {
+				return c1.getComponentType().getId() - c2.getComponentType().getId();
+			}
+		});
+		_types = new ComponentType[_templates.length];
+		_mask = new ComponentMask();
+		for (int i = 0; i < _templates.length; i++) {
+			Component template = _templates[i];
+			if (template == null || template.getEntity() != null)
+				throw new IllegalArgumentException();
+			_types[i] = template.getComponentType();
+			if (_mask.contains(_types[i]))
+				throw new IllegalArgumentException();
+			_mask.add(_types[i]);
+		}
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Package-Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the {@link ComponentType}s of the templates. The array must not be modified.
+	 */
+	ComponentType[] getComponentTypes() {
+		return _types;
+	}
+
+	/**
+	 * Gets the template {@link Component}s. The array must not be modified.
+	 */
+	Component[] getTemplates() {
+		return _templates;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the {@link ComponentMask} of all {@link Entity}s created from this prefab.
+	 *
+	 * @return A copy of the {@link ComponentMask} of the prefab.
+	 */
+	public ComponentMask getComponentMask() {
+		return new ComponentMask(_mask);
+	}
+
+	/**
+	 * Gets the template {@link Component} of the specified type.
+	 *
+	 * @param componentType The {@link ComponentType} of the template.
+	 * @return The template or null if the prefab contains no {@link Component} of the type.
+	 */
+	public Component getTemplate(ComponentType componentType) {
+		for (int i = 0; i < _types.length; i++)
+			if (_types[i] == componentType)
+				return _templates[i];
+		return null;
+	}
+}
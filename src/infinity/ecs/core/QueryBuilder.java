@@ -0,0 +1,155 @@
+package infinity.ecs.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Can be used to define and register an {@link EntityQuery} which filters {@link Entity}s by more
+ * than just a set of required {@link Component}s. Instances are created by
+ * {@link EntityManager#query()}.
+ * <p>
+ * <b>Notes:</b><br>
+ * All conditions are combined, so an {@link Entity} is part of the query if it has all
+ * {@link ComponentType}s passed to {@link #all(ComponentType...)}, at least one of the types passed
+ * to {@link #any(ComponentType...)} and none of the types passed to {@link #none(ComponentType...)}.
+ * The three sets of types are compiled into {@link ComponentMask}s, so the check of an
+ * {@link Entity} is a single pass over the words of the masks.
+ * <p>
+ * The change filters {@link #added(ComponentType...)} and {@link #changed(ComponentType...)} let an
+ * {@link Entity} pass if at least one of the filtered {@link Component}s has been added or changed
+ * since the query was last run. Changes must be reported by calling
+ * {@link EntityManager#markChanged(Entity, ComponentType)}. Filtered types should usually also
+ * be required by {@link #all(ComponentType...)}.
+ * <p>
+ * Queries which use more than {@link #all(ComponentType...)} are never shared, since queries
+ * with change filters keep track of their own last run. Release them with
+ * {@link EntityManager#removeQuery(EntityQuery)} once they are no longer needed.
+ *
+ * @author preip
+ */
+public final class QueryBuilder {
+
+	/**
+	 * The {@link EntityManager} the query will be registered with.
+	 */
+	private final EntityManager _manager;
+
+	/**
+	 * The types all of which an {@link Entity} needs.
+	 */
+	private final ComponentMask _all;
+
+	/**
+	 * The types of which an {@link Entity} needs at least one.
+	 */
+	private final ComponentMask _any;
+
+	/**
+	 * The types an {@link Entity} must not have.
+	 */
+	private final ComponentMask _none;
+
+	/**
+	 * The types which pass the change filter if they have been added.
+	 */
+	private final List<ComponentType> _added;
+
+	/**
+	 * The types which pass the change filter if they have been changed.
+	 */
+	private final List<ComponentType> _changed;
+
+	/**
+	 * Creates a new instance of the {@link QueryBuilder} class. Only called by the
+	 * {@link EntityManager}.
+	 *
+	 * @param manager The {@link EntityManager} the query will be registered with.
+	 */
+	QueryBuilder(EntityManager manager) {
+		_manager = manager;
+		_all = new ComponentMask();
+		_any = new ComponentMask();
+		_none = new ComponentMask();
+		_added = new ArrayList<ComponentType>();
+		_changed = new ArrayList<ComponentType>();
+	}
+
+	/**
+	 * Requires all of the specified {@link ComponentType}s.
+	 *
+	 * @param componentTypes The required types.
+	 * @return This builder.
+	 */
+	public QueryBuilder all(ComponentType... componentTypes) {
+		_all.add(componentTypes);
+		return this;
+	}
+
+	/**
+	 * Requires at least one of the specified {@link ComponentType}s.
+	 *
+	 * @param componentTypes The optional types.
+	 * @return This builder.
+	 */
+	public QueryBuilder any(ComponentType... componentTypes) {
+		_any.add(componentTypes);
+		return this;
+	}
+
+	/**
+	 * Excludes all {@link Entity}s which have one of the specified {@link ComponentType}s.
+	 *
+	 * @param componentTypes The excluded types.
+	 * @return This builder.
+	 */
+	public QueryBuilder none(ComponentType... componentTypes) {
+		_none.add(componentTypes);
+		return this;
+	}
+
+	/**
+	 * Lets {@link Entity}s pass the change filter if a {@link Component} of one of the specified
+	 * types has been added since the last run.
+	 *
+	 * @param componentTypes The filtered types.
+	 * @return This builder.
+	 */
+	public QueryBuilder added(ComponentType... componentTypes) {
+		for (ComponentType componentType : componentTypes)
+			_added.add(componentType);
+		return this;
+	}
+
+	/**
+	 * Lets {@link Entity}s pass the change filter if a {@link Component} of one of the specified
+	 * types has been added or changed since the last run.
+	 *
+	 * @param componentTypes The filtered types.
+	 * @return This builder.
+	 */
+	public QueryBuilder changed(ComponentType... componentTypes) {
+		for (ComponentType componentType : componentTypes)
+			_changed.add(componentType);
+		return this;
+	}
+
+	/**
+	 * Registers the defined query with the {@link EntityManager}. Queries which only require a set
+	 * of {@link ComponentType}s are shared with {@link EntityManager#getQuery(ComponentMask)}.
+	 *
+	 * @return The registered {@link EntityQuery}.
+	 */
+	public EntityQuery build() {
+		if (_any.isEmpty() && _none.isEmpty() && _added.isEmpty() && _changed.isEmpty())
+			return _manager.getQuery(_all);
+		ChangeTicks[] added = new ChangeTicks[_added.size()];
+		for (int i = 0; i < added.length; i++)
+			added[i] = _manager.trackChanges(_added.get(i));
+		ChangeTicks[] changed = new ChangeTicks[_changed.size()];
+		for (int i = 0; i < changed.length; i++)
+			changed[i] = _manager.trackChanges(_changed.get(i));
+		EntityQuery query = new EntityQuery(_manager, _all, _any, _none, added, changed);
+		_manager.registerQuery(query);
+		return query;
+	}
+}
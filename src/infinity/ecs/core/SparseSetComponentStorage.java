@@ -0,0 +1,105 @@
+package infinity.ecs.core;
+
+import infinity.ecs.utils.IndexedCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link ComponentStorage} which stores the {@link Component}s of every {@link ComponentType}
+ * in a separate {@link ComponentPool}.
+ * <p>
+ * <b>Notes:</b><br>
+ * In contrast to the {@link ArchetypeComponentStorage}, adding or removing a {@link Component}
+ * only touches the pool of the affected type, which makes this storage the better choice for
+ * {@link Entity}s whose {@link Component}s change often. Iterating over all {@link Component}s of a
+ * single type is a loop over the dense array of its {@link ComponentPool}. Removing an
+ * {@link Entity} however requires to check every pool.
+ *
+ * @author preip
+ */
+public final class SparseSetComponentStorage implements ComponentStorage {
+
+	/**
+	 * All {@link ComponentPool}s, indexed by the id of their {@link ComponentType}.
+	 */
+	private final IndexedCollection<ComponentPool> _pools;
+
+	/**
+	 * The list of all {@link ComponentPool}s, used when an {@link Entity} is removed.
+	 */
+	private final List<ComponentPool> _poolList;
+
+	/**
+	 * Creates a new instance of the {@link SparseSetComponentStorage} class.
+	 */
+	public SparseSetComponentStorage() {
+		_pools = new IndexedCollection<ComponentPool>();
+		_poolList = new ArrayList<ComponentPool>();
+	}
+
+	@Override
+	public void addEntity(int entityId) {
+		// nothing to do, since entities without components don't occupy any pool
+	}
+
+	@Override
+	public void addEntities(int[] entityIds, ComponentType[] types, Component[] components) {
+		for (int i = 0; i < types.length; i++) {
+			ComponentPool pool = getPool(types[i]);
+			for (int n = 0; n < entityIds.length; n++)
+				pool.add(entityIds[n], components[n * types.length + i]);
+		}
+	}
+
+	@Override
+	public void ensureCapacity(int capacity) {
+		// nothing to do, the pools grow by themselves once components are added
+	}
+
+	@Override
+	public void removeEntity(int entityId) {
+		for (int i = 0; i < _poolList.size(); i++)
+			_poolList.get(i).remove(entityId);
+	}
+
+	@Override
+	public Component getComponent(int entityId, ComponentType type) {
+		ComponentPool pool = _pools.get(type.getId());
+		if (pool == null)
+			return null;
+		return pool.get(entityId);
+	}
+
+	@Override
+	public void addComponent(int entityId, ComponentType type, Component component) {
+		getPool(type).add(entityId, component);
+	}
+
+	@Override
+	public Component removeComponent(int entityId, ComponentType type) {
+		ComponentPool pool = _pools.get(type.getId());
+		if (pool == null)
+			return null;
+		return pool.remove(entityId);
+	}
+
+	/**
+	 * Gets the {@link ComponentPool} of the specified {@link ComponentType} and creates it if it
+	 * doesn't exist yet. Systems can use the pool to iterate over all {@link Component}s of the
+	 * type.
+	 *
+	 * @param type The {@link ComponentType} of the desired pool.
+	 * @return The {@link ComponentPool} of the type.
+	 */
+	public ComponentPool getPool(ComponentType type) {
+		int id = type.getId();
+		ComponentPool pool = _pools.get(id);
+		if (pool == null) {
+			pool = new ComponentPool(type);
+			_pools.set(id, pool);
+			_poolList.add(pool);
+		}
+		return pool;
+	}
+}
@@ -0,0 +1,77 @@
+package infinity.ecs.messaging;
+
+import java.util.concurrent.Executor;
+
+/**
+ * A thread-safe {@link MessageDispatcher}, whose endpoints deliver their {@link Message}s
+ * asynchronously to a {@link java.util.concurrent.Flow.Subscriber}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The {@link Message}s are routed by an internal {@link ConcurrentMessageDispatcher}, so a send
+ * only puts the {@link Message} into the bounded lock-free queues of the receivers and never waits
+ * for them. Every {@link AsyncMessageEndpoint} is a {@link java.util.concurrent.Flow.Publisher},
+ * which passes its queued {@link Message}s to its subscriber by a task running on the
+ * {@link Executor} of the dispatcher, but only as many as the subscriber has requested. Slow
+ * consumers, like sinks which write to a disk or the network, therefore don't stall the systems
+ * sending the {@link Message}s, and {@link Message}s they can't keep up with are dropped and
+ * counted by their endpoint. An endpoint without a subscriber can be polled like a
+ * {@link ConcurrentMessageEndpoint}.
+ * <p>
+ * Any {@link Executor} can be used, for example a pool of threads or an executor which starts a
+ * new virtual thread for every task, where available.
+ *
+ * @author preip
+ */
+public final class AsyncMessageDispatcher implements MessageDispatcher {
+
+	/**
+	 * The dispatcher which routes the {@link Message}s to the queues of the endpoints.
+	 */
+	private final ConcurrentMessageDispatcher _dispatcher;
+
+	/**
+	 * The {@link Executor} which runs the deliveries of all endpoints.
+	 */
+	private final Executor _executor;
+
+	/**
+	 * The capacity of the queues of new endpoints.
+	 */
+	private final int _capacity;
+
+	/**
+	 * Creates a new instance of the {@link AsyncMessageDispatcher} class, whose endpoints can hold
+	 * {@link ConcurrentMessageDispatcher#DEFAULT_CAPACITY} messages.
+	 *
+	 * @param executor The {@link Executor} which should deliver the {@link Message}s.
+	 * @throws IllegalArgumentException When executor is null.
+	 */
+	public AsyncMessageDispatcher(Executor executor) throws IllegalArgumentException {
+		this(executor, ConcurrentMessageDispatcher.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new instance of the {@link AsyncMessageDispatcher} class.
+	 *
+	 * @param executor The {@link Executor} which should deliver the {@link Message}s.
+	 * @param capacity The number of messages every endpoint can hold before further messages are
+	 * 		dropped, which is rounded up to the next power of two.
+	 * @throws IllegalArgumentException When executor is null or capacity is not positive.
+	 */
+	public AsyncMessageDispatcher(Executor executor, int capacity)
+			throws IllegalArgumentException {
+		if (executor == null)
+			throw new IllegalArgumentException("executor must not be null");
+		_dispatcher = new ConcurrentMessageDispatcher(capacity);
+		_executor = executor;
+		_capacity = capacity;
+	}
+
+	public MessageEndpoint createEndpoint() {
+		return new AsyncMessageEndpoint(this, _dispatcher, _capacity, _executor);
+	}
+
+	public boolean hasSubscribers(MessageType msgType) {
+		return _dispatcher.hasSubscribers(msgType);
+	}
+}
@@ -0,0 +1,323 @@
+package infinity.ecs.messaging;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MessageEndpoint} which is created and used by the {@link AsyncMessageDispatcher}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The endpoint queues its {@link Message}s like a {@link ConcurrentMessageEndpoint}. Once a
+ * {@link Flow.Subscriber} has subscribed, the queue is only read by a delivery task running on the
+ * {@link Executor} of the dispatcher, which passes the {@link Message}s to the subscriber as long
+ * as it has requested more of them. The task is started whenever a {@link Message} arrives or more
+ * {@link Message}s are requested, and at most one task runs at a time, so the subscriber is never
+ * called concurrently. The subscriber takes over the reference of every {@link Message} it
+ * receives and should release it once it is done with it.
+ * <p>
+ * The endpoint only accepts a single subscriber. While it is subscribed, the endpoint can't be
+ * polled. Terminating the endpoint completes the subscription, and cancelling the subscription
+ * allows another subscriber or polling again.
+ *
+ * @author preip
+ */
+public class AsyncMessageEndpoint extends ConcurrentMessageEndpoint
+		implements Flow.Publisher<Message> {
+
+	/**
+	 * The subscription of a {@link Flow.Subscriber} to the endpoint.
+	 */
+	private final class MessageSubscription implements Flow.Subscription {
+
+		/**
+		 * The subscriber of the endpoint.
+		 */
+		final Flow.Subscriber<? super Message> _subscriber;
+
+		/**
+		 * The number of {@link Message}s which have been requested but not yet delivered.
+		 */
+		final AtomicLong _requested;
+
+		/**
+		 * Indicates if the subscription has been cancelled or not.
+		 */
+		volatile boolean _isCancelled;
+
+		/**
+		 * The error which should be signalled to the subscriber, or null.
+		 */
+		volatile Throwable _error;
+
+		MessageSubscription(Flow.Subscriber<? super Message> subscriber) {
+			_subscriber = subscriber;
+			_requested = new AtomicLong();
+		}
+
+		public void request(long n) {
+			if (n <= 0)
+				_error = new IllegalArgumentException("non-positive request " + n);
+			else {
+				long requested, next;
+				do {
+					requested = _requested.get();
+					next = requested + n;
+					// the demand is unbounded once it overflows
+					if (next < 0)
+						next = Long.MAX_VALUE;
+				} while (!_requested.compareAndSet(requested, next));
+			}
+			schedule();
+		}
+
+		public void cancel() {
+			_isCancelled = true;
+			schedule();
+		}
+	}
+
+	/**
+	 * The subscription which is passed to subscribers which have been rejected.
+	 */
+	private static final Flow.Subscription REJECTED = new Flow.Subscription() {
+		public void request(long n) { }
+		public void cancel() { }
+	};
+
+	/**
+	 * The {@link AsyncMessageDispatcher} this endpoint is associated with.
+	 */
+	private final AsyncMessageDispatcher _asyncDispatcher;
+
+	/**
+	 * The {@link Executor} which runs the delivery task.
+	 */
+	private final Executor _executor;
+
+	/**
+	 * The current subscription, or null if the endpoint has no subscriber.
+	 */
+	private final AtomicReference<MessageSubscription> _subscription;
+
+	/**
+	 * The number of times the delivery task has been requested since it last finished. The task is
+	 * only started when the number changes from zero.
+	 */
+	private final AtomicInteger _pending;
+
+	/**
+	 * The task which delivers the queued {@link Message}s to the subscriber.
+	 */
+	private final Runnable _deliveryTask;
+
+	/**
+	 * Indicates if the endpoint should be terminated by the delivery task.
+	 */
+	private volatile boolean _isTerminating;
+
+	/**
+	 * Creates a new instance of the {@link AsyncMessageEndpoint} class. Only called by the
+	 * {@link AsyncMessageDispatcher}.
+	 *
+	 * @param asyncDispatcher The {@link AsyncMessageDispatcher} this endpoint is associated with.
+	 * @param dispatcher The {@link ConcurrentMessageDispatcher} which routes the messages.
+	 * @param capacity The number of messages the queue can hold.
+	 * @param executor The {@link Executor} which runs the delivery task.
+	 */
+	AsyncMessageEndpoint(AsyncMessageDispatcher asyncDispatcher,
+			ConcurrentMessageDispatcher dispatcher, int capacity, Executor executor) {
+		super(dispatcher, capacity);
+		_asyncDispatcher = asyncDispatcher;
+		_executor = executor;
+		_subscription = new AtomicReference<MessageSubscription>();
+		_pending = new AtomicInteger();
+		_deliveryTask = new Runnable() {
+			@Override
+			public void run() {
+				deliver();
+			}
+		};
+		_isTerminating = false;
+	}
+
+	@Override
+	void receive(Message msg) {
+		super.receive(msg);
+		if (_subscription.get() != null)
+			schedule();
+	}
+
+	/**
+	 * Subscribes the specified subscriber to the {@link Message}s of this endpoint. If the
+	 * endpoint already has a subscriber or has been terminated, the subscriber receives an
+	 * {@link IllegalStateException} through {@link Flow.Subscriber#onError(Throwable)}.
+	 *
+	 * @param subscriber The subscriber which should receive the {@link Message}s.
+	 * @throws NullPointerException when the subscriber is null.
+	 */
+	public void subscribe(Flow.Subscriber<? super Message> subscriber)
+			throws NullPointerException {
+		if (subscriber == null)
+			throw new NullPointerException("subscriber must not be null");
+		if (_isTerminating || _subscription.get() != null) {
+			subscriber.onSubscribe(REJECTED);
+			subscriber.onError(new IllegalStateException(_isTerminating
+					? "endpoint has been terminated" : "endpoint already has a subscriber"));
+			return;
+		}
+		MessageSubscription subscription = new MessageSubscription(subscriber);
+		// the subscriber needs to know its subscription before the first message is delivered
+		subscriber.onSubscribe(subscription);
+		if (!_subscription.compareAndSet(null, subscription)) {
+			subscription._isCancelled = true;
+			subscriber.onError(new IllegalStateException("endpoint already has a subscriber"));
+			return;
+		}
+		schedule();
+	}
+
+	/**
+	 * Indicates if the endpoint has a subscriber or not.
+	 *
+	 * @return true if the endpoint has a subscriber, otherwise false.
+	 */
+	public boolean hasSubscriber() {
+		return _subscription.get() != null;
+	}
+
+	/**
+	 * Retrieves the next message from the queue. Must not be called by several threads at the
+	 * same time.
+	 *
+	 * @return The next message or null.
+	 * @throws IllegalStateException when the endpoint has a subscriber.
+	 */
+	@Override
+	public Message retrieveNext() throws IllegalStateException {
+		if (_subscription.get() != null)
+			throw new IllegalStateException("endpoint has a subscriber");
+		return super.retrieveNext();
+	}
+
+	/**
+	 * Retrieves up to the specified number of messages from the queue and passes them to the
+	 * specified consumer. Must not be called by several threads at the same time.
+	 *
+	 * @param consumer The consumer of the messages.
+	 * @param max The maximal number of messages which should be retrieved.
+	 * @return The number of retrieved messages.
+	 * @throws IllegalStateException when the endpoint has a subscriber.
+	 */
+	@Override
+	public int drainTo(Consumer<? super Message> consumer, int max) throws IllegalStateException {
+		if (_subscription.get() != null)
+			throw new IllegalStateException("endpoint has a subscriber");
+		return super.drainTo(consumer, max);
+	}
+
+	/**
+	 * Terminates the endpoint. If the endpoint has a subscriber, the termination is done by the
+	 * delivery task, which releases all undelivered messages and completes the subscription
+	 * afterwards.
+	 */
+	@Override
+	public void terminate() {
+		if (_subscription.get() == null) {
+			super.terminate();
+			return;
+		}
+		_isTerminating = true;
+		schedule();
+	}
+
+	@Override
+	public MessageDispatcher getDispatcher() {
+		return _asyncDispatcher;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Starts the delivery task, unless it is already running, in which case it runs once more. If
+	 * the {@link Executor} rejects the task, the subscription ends with the
+	 * {@link RejectedExecutionException}, since the subscriber would never be called again.
+	 */
+	private void schedule() {
+		if (_pending.getAndIncrement() != 0)
+			return;
+		try {
+			_executor.execute(_deliveryTask);
+		} catch (RejectedExecutionException e) {
+			// the subscription is removed first, so a task started by another thread after the
+			// counter has been reset doesn't call the subscriber concurrently
+			MessageSubscription subscription = _subscription.getAndSet(null);
+			_pending.set(0);
+			if (subscription != null && !subscription._isCancelled)
+				subscription._subscriber.onError(e);
+			if (_isTerminating)
+				super.terminate();
+		}
+	}
+
+	/**
+	 * Delivers the queued {@link Message}s until no further runs of the task have been requested.
+	 */
+	private void deliver() {
+		int pending = 1;
+		do {
+			MessageSubscription subscription = _subscription.get();
+			if (subscription != null)
+				deliver(subscription);
+			else if (_isTerminating)
+				super.terminate();
+			pending = _pending.addAndGet(-pending);
+		} while (pending != 0);
+	}
+
+	/**
+	 * Delivers as many queued {@link Message}s to the specified subscription as it has requested,
+	 * or ends the subscription if it has been cancelled, has failed or the endpoint is terminating.
+	 */
+	private void deliver(MessageSubscription subscription) {
+		Flow.Subscriber<? super Message> subscriber = subscription._subscriber;
+		if (subscription._isCancelled) {
+			_subscription.compareAndSet(subscription, null);
+			return;
+		}
+		if (subscription._error != null) {
+			_subscription.compareAndSet(subscription, null);
+			subscriber.onError(subscription._error);
+			return;
+		}
+		if (_isTerminating) {
+			super.terminate();
+			_subscription.compareAndSet(subscription, null);
+			subscriber.onComplete();
+			return;
+		}
+		long requested = subscription._requested.get();
+		long delivered = 0;
+		Message msg;
+		while (delivered != requested && !subscription._isCancelled
+				&& (msg = super.retrieveNext()) != null) {
+			try {
+				subscriber.onNext(msg);
+			} catch (RuntimeException e) {
+				// a failing subscriber is treated as if it had cancelled its subscription
+				subscription._isCancelled = true;
+				_subscription.compareAndSet(subscription, null);
+				return;
+			}
+			delivered++;
+		}
+		if (delivered != 0 && requested != Long.MAX_VALUE)
+			subscription._requested.addAndGet(-delivered);
+	}
+}
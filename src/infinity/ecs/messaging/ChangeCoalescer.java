@@ -0,0 +1,179 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.Component;
+
+import java.util.Arrays;
+
+/**
+ * The index of the {@link ComponentChangedMessage}s which are queued within an endpoint, used by
+ * endpoints in coalescing mode to queue at most one change of every {@link Component}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The index is an open-addressed hash table with linear probing, keyed by the id of the
+ * {@link infinity.ecs.core.Entity} and the id of the {@link infinity.ecs.core.ComponentType} of the
+ * changed {@link Component}. Since removed entries are filled by shifting the following entries
+ * back, lookups never have to skip deleted entries. If an id has been reused by a new
+ * {@link infinity.ecs.core.Entity} while a change of the old one is still queued, the change of the
+ * new {@link infinity.ecs.core.Entity} replaces the old entry and is queued as well.
+ *
+ * @author preip
+ */
+final class ChangeCoalescer {
+
+	/**
+	 * The keys of the entries.
+	 */
+	private long[] _keys;
+
+	/**
+	 * The queued {@link ComponentChangedMessage}s of the entries, which are null for empty slots.
+	 */
+	private ComponentChangedMessage[] _msgs;
+
+	/**
+	 * The mask which turns a hash into the index of a slot.
+	 */
+	private int _mask;
+
+	/**
+	 * The number of entries.
+	 */
+	private int _size;
+
+	/**
+	 * Creates a new instance of the {@link ChangeCoalescer} class.
+	 */
+	ChangeCoalescer() {
+		_keys = new long[16];
+		_msgs = new ComponentChangedMessage[16];
+		_mask = 15;
+		_size = 0;
+	}
+
+	/**
+	 * Adds the specified {@link Message} to the index, if it is a change of a {@link Component}
+	 * which is not queued yet.
+	 *
+	 * @param msg The received {@link Message}.
+	 * @return true if the {@link Message} needs to be queued, false if an equal change is already
+	 * 		queued.
+	 */
+	boolean offer(Message msg) {
+		if (!(msg instanceof ComponentChangedMessage))
+			return true;
+		ComponentChangedMessage change = (ComponentChangedMessage)msg;
+		long key = getKey(change.getComponent());
+		int slot = hash(key) & _mask;
+		ComponentChangedMessage queued;
+		while ((queued = _msgs[slot]) != null) {
+			if (_keys[slot] == key) {
+				if (queued.getEntity().equals(change.getEntity()))
+					return false;
+				_msgs[slot] = change;
+				return true;
+			}
+			slot = (slot + 1) & _mask;
+		}
+		_keys[slot] = key;
+		_msgs[slot] = change;
+		if (++_size > (_mask + 1) >> 1)
+			grow();
+		return true;
+	}
+
+	/**
+	 * Removes the specified {@link Message} from the index, after it has been taken from the queue.
+	 *
+	 * @param msg The retrieved {@link Message}.
+	 */
+	void remove(Message msg) {
+		if (!(msg instanceof ComponentChangedMessage))
+			return;
+		long key = getKey(((ComponentChangedMessage)msg).getComponent());
+		int slot = hash(key) & _mask;
+		while (_msgs[slot] != null) {
+			if (_keys[slot] == key) {
+				// a replaced entry belongs to a newer message which is still queued
+				if (_msgs[slot] == msg)
+					delete(slot);
+				return;
+			}
+			slot = (slot + 1) & _mask;
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	void clear() {
+		Arrays.fill(_msgs, null);
+		_size = 0;
+	}
+
+	/**
+	 * Gets the number of entries.
+	 */
+	int size() {
+		return _size;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the key of the specified {@link Component}.
+	 */
+	private static long getKey(Component component) {
+		return ((long)component.getEntity().getId() << 32)
+				| (component.getComponentType().getId() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Spreads the bits of the specified key.
+	 */
+	private static int hash(long key) {
+		return (int)((key * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+	/**
+	 * Deletes the entry of the specified slot and shifts the following entries of the same probe
+	 * sequence back into the gap.
+	 */
+	private void delete(int slot) {
+		int gap = slot;
+		int next = (gap + 1) & _mask;
+		while (_msgs[next] != null) {
+			int home = hash(_keys[next]) & _mask;
+			// the entry may only be moved if the gap lies between its home slot and its slot
+			if (((next - home) & _mask) >= ((next - gap) & _mask)) {
+				_keys[gap] = _keys[next];
+				_msgs[gap] = _msgs[next];
+				gap = next;
+			}
+			next = (next + 1) & _mask;
+		}
+		_msgs[gap] = null;
+		_size--;
+	}
+
+	/**
+	 * Doubles the number of slots and inserts all entries again.
+	 */
+	private void grow() {
+		long[] keys = _keys;
+		ComponentChangedMessage[] msgs = _msgs;
+		_keys = new long[keys.length * 2];
+		_msgs = new ComponentChangedMessage[msgs.length * 2];
+		_mask = _keys.length - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (msgs[i] == null)
+				continue;
+			int slot = hash(keys[i]) & _mask;
+			while (_msgs[slot] != null)
+				slot = (slot + 1) & _mask;
+			_keys[slot] = keys[i];
+			_msgs[slot] = msgs[i];
+		}
+	}
+}
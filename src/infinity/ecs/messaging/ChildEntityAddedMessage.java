@@ -11,12 +11,18 @@ public class ChildEntityAddedMessage extends Message {
 	/**
 	 * The {@link Entity} to which a child was added.
 	 */
-	private final Entity _parent;
+	private Entity _parent;
 	
 	/**
 	 * The child {@link Entity} which was added.
 	 */
-	private final Entity _child;
+	private Entity _child;
+	
+	/**
+	 * Creates a new, empty instance of the {@link ChildEntityAddedMessage} class, which is used by
+	 * {@link MessagePool}s.
+	 */
+	public ChildEntityAddedMessage() { }
 	
 	/**
 	 * Creates a new instance of the {@link ChildEntityAddedMessage} class.
@@ -29,6 +35,26 @@ public class ChildEntityAddedMessage extends Message {
 		_child = child;
 	}
 	
+	/**
+	 * Sets the content of this {@link ChildEntityAddedMessage}, after it has been acquired from a
+	 * {@link MessagePool}.
+	 * 
+	 * @param parent The {@link Entity} to which a child was added.
+	 * @param child The child {@link Entity} which was added.
+	 * @return This {@link ChildEntityAddedMessage}.
+	 */
+	public ChildEntityAddedMessage set(Entity parent, Entity child) {
+		_parent = parent;
+		_child = child;
+		return this;
+	}
+	
+	@Override
+	protected void clear() {
+		_parent = null;
+		_child = null;
+	}
+	
 	/**
 	 * Gets the {@link Entity} to which a child was added.
 	 * 
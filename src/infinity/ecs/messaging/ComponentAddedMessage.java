@@ -9,12 +9,18 @@ import infinity.ecs.core.Entity;
  * 
  * @author preip
  */
-public class ComponentAddedMessage extends Message {
+public class ComponentAddedMessage extends Message implements EntityMessage {
 	
 	/**
 	 * The {@link Component} which was added.
 	 */
-	private final Component _component;
+	private Component _component;
+	
+	/**
+	 * Creates a new, empty instance of the {@link ComponentAddedMessage} class, which is used by
+	 * {@link MessagePool}s.
+	 */
+	public ComponentAddedMessage() { }
 	
 	/**
 	 * Creates a new instance of the {@link ComponentAddedMessage} class. 
@@ -25,6 +31,23 @@ public class ComponentAddedMessage extends Message {
 		_component = component;
 	}
 	
+	/**
+	 * Sets the content of this {@link ComponentAddedMessage}, after it has been acquired from a
+	 * {@link MessagePool}.
+	 * 
+	 * @param component The {@link Component} which was added.
+	 * @return This {@link ComponentAddedMessage}.
+	 */
+	public ComponentAddedMessage set(Component component) {
+		_component = component;
+		return this;
+	}
+	
+	@Override
+	protected void clear() {
+		_component = null;
+	}
+	
 	/**
 	 * Gets the {@link Component} which was added.
 	 * 
@@ -8,12 +8,18 @@ import infinity.ecs.core.Entity;
  * 
  * @author preip
  */
-public class ComponentChangedMessage extends Message {
+public class ComponentChangedMessage extends Message implements EntityMessage {
 	
 	/**
 	 * The {@link Component} which was changed.
 	 */
-	private final Component _component;
+	private Component _component;
+	
+	/**
+	 * Creates a new, empty instance of the {@link ComponentChangedMessage} class, which is used by
+	 * {@link MessagePool}s.
+	 */
+	public ComponentChangedMessage() { }
 	
 	/**
 	 * Creates a new instance of the {@link ComponentAddedMessage} class. 
@@ -24,6 +30,23 @@ public class ComponentChangedMessage extends Message {
 		_component = component;
 	}
 	
+	/**
+	 * Sets the content of this {@link ComponentChangedMessage}, after it has been acquired from a
+	 * {@link MessagePool}.
+	 * 
+	 * @param component The {@link Component} which was changed.
+	 * @return This {@link ComponentChangedMessage}.
+	 */
+	public ComponentChangedMessage set(Component component) {
+		_component = component;
+		return this;
+	}
+	
+	@Override
+	protected void clear() {
+		_component = null;
+	}
+	
 	/**
 	 * Gets the {@link Component} which was changed.
 	 * 
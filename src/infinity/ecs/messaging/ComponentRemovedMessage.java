@@ -9,12 +9,18 @@ import infinity.ecs.core.Entity;
  * 
  * @author preip
  */
-public class ComponentRemovedMessage extends Message {
+public class ComponentRemovedMessage extends Message implements EntityMessage {
 	
 	/**
 	 * The {@link Component} which was removed.
 	 */
-	private final Component _component;
+	private Component _component;
+	
+	/**
+	 * Creates a new, empty instance of the {@link ComponentRemovedMessage} class, which is used by
+	 * {@link MessagePool}s.
+	 */
+	public ComponentRemovedMessage() { }
 	
 	/**
 	 * Creates a new instance of the {@link ComponentAddedMessage} class. 
@@ -25,6 +31,23 @@ public class ComponentRemovedMessage extends Message {
 		_component = component;
 	}
 	
+	/**
+	 * Sets the content of this {@link ComponentRemovedMessage}, after it has been acquired from a
+	 * {@link MessagePool}.
+	 * 
+	 * @param component The {@link Component} which was removed.
+	 * @return This {@link ComponentRemovedMessage}.
+	 */
+	public ComponentRemovedMessage set(Component component) {
+		_component = component;
+		return this;
+	}
+	
+	@Override
+	protected void clear() {
+		_component = null;
+	}
+	
 	/**
 	 * Gets the {@link Component} which was removed.
 	 * 
@@ -0,0 +1,240 @@
+package infinity.ecs.messaging;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A thread-safe {@link MessageDispatcher}, whose endpoints can be used by different threads to
+ * send {@link Message}s to each other without any locks on the path of a send.
+ * <p>
+ * <b>Notes:</b><br>
+ * Like the {@link IndexedMessageDispatcher}, the dispatcher indexes the registered endpoints by
+ * the id of the {@link MessageType}s. The index is never changed, but copied and replaced whenever
+ * a type is registered or deregistered. Senders therefore only need a single volatile read to get
+ * a consistent snapshot of all receivers, while the rare changes of the registrations are
+ * synchronized with each other.
+ * <p>
+ * Every {@link ConcurrentMessageEndpoint} stores its received {@link Message}s in a bounded
+ * lock-free queue, which can be filled by any number of senders at once, but may only be read by a
+ * single thread at a time. If the queue of an endpoint is full, further {@link Message}s for it are
+ * dropped and counted, since waiting for a slow consumer would stall the sending systems.
+ *
+ * @author preip
+ */
+public final class ConcurrentMessageDispatcher implements MessageDispatcher {
+
+	/**
+	 * The default capacity of the queues of the endpoints.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The empty array of endpoints shared by all types without registrations.
+	 */
+	private static final ConcurrentMessageEndpoint[] NO_ENDPOINTS
+		= new ConcurrentMessageEndpoint[0];
+
+	/**
+	 * All associated endpoints indexed by the id of the message types they have registered. Neither
+	 * the index nor the arrays within are changed after they have been published.
+	 */
+	private volatile ConcurrentMessageEndpoint[][] _endpointRegister;
+
+	/**
+	 * The capacity of the queues of new endpoints.
+	 */
+	private final int _capacity;
+
+	/**
+	 * Creates a new instance of the {@link ConcurrentMessageDispatcher} class, whose endpoints can
+	 * hold {@link #DEFAULT_CAPACITY} messages.
+	 */
+	public ConcurrentMessageDispatcher() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new instance of the {@link ConcurrentMessageDispatcher} class.
+	 *
+	 * @param capacity The number of messages every endpoint can hold before further messages are
+	 * 		dropped, which is rounded up to the next power of two.
+	 * @throws IllegalArgumentException When capacity is not positive.
+	 */
+	public ConcurrentMessageDispatcher(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException();
+		_capacity = capacity;
+		_endpointRegister = new ConcurrentMessageEndpoint[32][];
+	}
+
+	/**
+	 * Dispatches a {@link Message} which has been send by the specified endpoint to all other
+	 * relevant endpoints.
+	 *
+	 * @param sender The sender of the {@link Message}.
+	 * @param msg The {@link Message} which should be dispatched.
+	 */
+	void dispatch(ConcurrentMessageEndpoint sender, Message msg) {
+		int msgId = msg.getType().getId();
+		ConcurrentMessageEndpoint[][] register = _endpointRegister;
+		if (msgId >= register.length || register[msgId] == null)
+			return;
+		for (ConcurrentMessageEndpoint ep : register[msgId])
+			if (ep != sender)
+				ep.receive(msg);
+	}
+
+	/**
+	 * Dispatches all {@link Message}s which have been send together by the specified endpoint to
+	 * all other relevant endpoints. All {@link Message}s are dispatched with the same snapshot of
+	 * the registrations, which is only indexed once for every run of {@link Message}s of the same
+	 * type.
+	 *
+	 * @param sender The sender of the {@link Message}s.
+	 * @param msgs The {@link Message}s which should be dispatched.
+	 */
+	void dispatchAll(ConcurrentMessageEndpoint sender, Collection<? extends Message> msgs) {
+		ConcurrentMessageEndpoint[][] register = _endpointRegister;
+		int lastId = -1;
+		ConcurrentMessageEndpoint[] epList = NO_ENDPOINTS;
+		for (Message msg : msgs) {
+			int msgId = msg.getType().getId();
+			if (msgId != lastId) {
+				lastId = msgId;
+				epList = msgId < register.length && register[msgId] != null
+						? register[msgId] : NO_ENDPOINTS;
+			}
+			for (ConcurrentMessageEndpoint ep : epList)
+				if (ep != sender)
+					ep.receive(msg);
+		}
+	}
+
+	/**
+	 * Registers the specified {@link MessageType} with the specified
+	 * {@link ConcurrentMessageEndpoint}.
+	 *
+	 * @param endpoint The {@link ConcurrentMessageEndpoint} for which the type should be
+	 * 		registered.
+	 * @param msgType The {@link MessageType} which should be registered.
+	 */
+	synchronized void register(ConcurrentMessageEndpoint endpoint, MessageType msgType) {
+		int msgId = msgType.getId();
+		ConcurrentMessageEndpoint[] epList = get(msgId);
+		for (ConcurrentMessageEndpoint ep : epList)
+			if (ep == endpoint)
+				return;
+		epList = Arrays.copyOf(epList, epList.length + 1);
+		epList[epList.length - 1] = endpoint;
+		publish(msgId, epList);
+	}
+
+	/**
+	 * Deregisters the specified {@link MessageType} with the specified
+	 * {@link ConcurrentMessageEndpoint}.
+	 *
+	 * @param endpoint The {@link ConcurrentMessageEndpoint} for which the type should be
+	 * 		deregistered.
+	 * @param msgType The {@link MessageType} which should be deregistered.
+	 */
+	synchronized void deregister(ConcurrentMessageEndpoint endpoint, MessageType msgType) {
+		int msgId = msgType.getId();
+		ConcurrentMessageEndpoint[] epList = get(msgId);
+		ConcurrentMessageEndpoint[] newList = remove(epList, endpoint);
+		if (newList != epList)
+			publish(msgId, newList);
+	}
+
+	/**
+	 * Checks if the specified {@link MessageType} has been registered with the specified
+	 * {@link ConcurrentMessageEndpoint} or not.
+	 *
+	 * @param endpoint The {@link ConcurrentMessageEndpoint} for which the type should be checked.
+	 * @param msgType The {@link MessageType} which should be checked.
+	 * @return true if the type has been registered, otherwise false.
+	 */
+	boolean check(ConcurrentMessageEndpoint endpoint, MessageType msgType) {
+		for (ConcurrentMessageEndpoint ep : get(msgType.getId()))
+			if (ep == endpoint)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Removes the specified endpoint from this dispatcher. Only called by the
+	 * {@link ConcurrentMessageEndpoint} itself.
+	 *
+	 * @param endpoint The endpoint which should be removed.
+	 */
+	synchronized void removeEndpoint(ConcurrentMessageEndpoint endpoint) {
+		ConcurrentMessageEndpoint[][] register = _endpointRegister.clone();
+		for (int msgId = 0; msgId < register.length; msgId++) {
+			if (register[msgId] != null) {
+				register[msgId] = remove(register[msgId], endpoint);
+				if (register[msgId].length == 0)
+					register[msgId] = null;
+			}
+		}
+		_endpointRegister = register;
+	}
+
+	public MessageEndpoint createEndpoint() {
+		return new ConcurrentMessageEndpoint(this, _capacity);
+	}
+
+	/**
+	 * Checks if any endpoint has registered the specified {@link MessageType}. Types without
+	 * registrations have no entry in the index, so the check only needs a single volatile read.
+	 *
+	 * @param msgType The {@link MessageType} which should be checked.
+	 * @return true if at least one endpoint has registered the type, otherwise false.
+	 */
+	public boolean hasSubscribers(MessageType msgType) {
+		int msgId = msgType.getId();
+		ConcurrentMessageEndpoint[][] register = _endpointRegister;
+		return msgId < register.length && register[msgId] != null;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the endpoints which have registered the type with the specified id.
+	 */
+	private ConcurrentMessageEndpoint[] get(int msgId) {
+		ConcurrentMessageEndpoint[][] register = _endpointRegister;
+		if (msgId >= register.length || register[msgId] == null)
+			return NO_ENDPOINTS;
+		return register[msgId];
+	}
+
+	/**
+	 * Gets a copy of the specified endpoints without the specified endpoint, or the endpoints
+	 * themselves if the endpoint is not part of them.
+	 */
+	private static ConcurrentMessageEndpoint[] remove(ConcurrentMessageEndpoint[] epList,
+			ConcurrentMessageEndpoint endpoint) {
+		for (int i = 0; i < epList.length; i++) {
+			if (epList[i] == endpoint) {
+				ConcurrentMessageEndpoint[] newList
+					= new ConcurrentMessageEndpoint[epList.length - 1];
+				System.arraycopy(epList, 0, newList, 0, i);
+				System.arraycopy(epList, i + 1, newList, i, newList.length - i);
+				return newList;
+			}
+		}
+		return epList;
+	}
+
+	/**
+	 * Replaces the index by a copy in which the type with the specified id is registered by the
+	 * specified endpoints.
+	 */
+	private void publish(int msgId, ConcurrentMessageEndpoint[] epList) {
+		ConcurrentMessageEndpoint[][] register = _endpointRegister;
+		register = Arrays.copyOf(register, Math.max(register.length, msgId + 1));
+		register[msgId] = epList.length == 0 ? null : epList;
+		_endpointRegister = register;
+	}
+}
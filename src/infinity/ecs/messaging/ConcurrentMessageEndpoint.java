@@ -0,0 +1,228 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.utils.RingBuffer;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MessageEndpoint} which is created and used by the {@link ConcurrentMessageDispatcher}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The received {@link Message}s are stored in a bounded lock-free {@link RingBuffer}. Any thread
+ * may send {@link Message}s through the endpoint or register and deregister types, but only one
+ * thread at a time may retrieve the received {@link Message}s, which is usually the thread of the
+ * system owning the endpoint. {@link Message}s which arrive while the queue is full are dropped,
+ * unless the {@link OverflowPolicy#BLOCK} policy is used, which lets the sender wait until the
+ * receiver has made room. Endpoints whose receivers send to each other must not both block, since
+ * they could wait for each other forever.
+ *
+ * @author preip
+ */
+public class ConcurrentMessageEndpoint implements MessageEndpoint {
+
+	/**
+	 * The {@link ConcurrentMessageDispatcher} this endpoint is associated with.
+	 */
+	private final ConcurrentMessageDispatcher _dispatcher;
+
+	/**
+	 * The queue which is used to store all received messages.
+	 */
+	private final RingBuffer<Message> _queue;
+
+	/**
+	 * The number of received messages which have been dropped, because the queue was full.
+	 */
+	private final AtomicLong _droppedCount;
+
+	/**
+	 * The number of received messages which have been queued.
+	 */
+	private final AtomicLong _enqueuedCount;
+
+	/**
+	 * The policy which is used while the queue is full.
+	 */
+	private volatile OverflowPolicy _policy;
+
+	/**
+	 * Indicates if the endpoint has been terminated or not.
+	 */
+	private volatile boolean _isTerminated;
+
+	/**
+	 * Creates a new instance of the {@link ConcurrentMessageEndpoint} class. Only called by the
+	 * {@link ConcurrentMessageDispatcher}.
+	 *
+	 * @param dispatcher The {@link ConcurrentMessageDispatcher} this endpoint is associated with.
+	 * @param capacity The number of messages the queue can hold.
+	 */
+	ConcurrentMessageEndpoint(ConcurrentMessageDispatcher dispatcher, int capacity) {
+		_dispatcher = dispatcher;
+		_queue = new RingBuffer<Message>(capacity);
+		_droppedCount = new AtomicLong();
+		_enqueuedCount = new AtomicLong();
+		_policy = OverflowPolicy.DROP_NEWEST;
+		_isTerminated = false;
+	}
+
+	/**
+	 * Receives a new message which has been dispatched by the {@link ConcurrentMessageDispatcher}
+	 * this endpoint is associated with. The received {@link Message} is stored in the internal
+	 * queue, which holds a reference to it until it has been retrieved. If the queue is full, the
+	 * {@link Message} is dropped, or the calling thread waits until there is room again if the
+	 * {@link OverflowPolicy#BLOCK} policy is used.
+	 *
+	 * @param msg The received {@link Message}.
+	 */
+	void receive(Message msg) {
+		msg.retain();
+		if (_queue.offer(msg)) {
+			_enqueuedCount.incrementAndGet();
+			return;
+		}
+		if (_policy == OverflowPolicy.BLOCK) {
+			// stop waiting once the endpoint has been terminated, since nobody will retrieve it
+			while (!_isTerminated) {
+				Thread.yield();
+				if (_queue.offer(msg)) {
+					_enqueuedCount.incrementAndGet();
+					return;
+				}
+			}
+		}
+		msg.release();
+		_droppedCount.incrementAndGet();
+	}
+
+	/**
+	 * Sends the specified message to the dispatcher an all other relevant endpoints.
+	 *
+	 * @param msg The message which should be send.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void send(Message msg) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.dispatch(this, msg);
+	}
+
+	/**
+	 * Sends all specified messages to the dispatcher and all other relevant endpoints.
+	 *
+	 * @param msgs The messages which should be send.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void sendAll(Collection<? extends Message> msgs) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.dispatchAll(this, msgs);
+	}
+
+	/**
+	 * Registers the specified message type with this endpoint. The endpoint will now receive all
+	 * messages of the specified type until the type is derigstered again.
+	 *
+	 * @param type The {@link MessageType} which should be registered.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void register(MessageType type) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.register(this, type);
+	}
+
+	/**
+	 * Deregisters the specified message type with this endpoint. The endpoint will no longer
+	 * receive any messages of the specified type.
+	 *
+	 * @param type The {@link MessageType} which should be deregistered.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void deregister(MessageType type) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.deregister(this, type);
+	}
+
+	public boolean check(MessageType msgType) {
+		return _dispatcher.check(this, msgType);
+	}
+
+	/**
+	 * Retrieves the next message from the queue. Must not be called by several threads at the
+	 * same time.
+	 *
+	 * @return The next message or null.
+	 */
+	public Message retrieveNext() {
+		return _queue.poll();
+	}
+
+	/**
+	 * Retrieves up to the specified number of messages from the queue and passes them to the
+	 * specified consumer. Must not be called by several threads at the same time.
+	 *
+	 * @param consumer The consumer of the messages.
+	 * @param max The maximal number of messages which should be retrieved.
+	 * @return The number of retrieved messages.
+	 */
+	public int drainTo(Consumer<? super Message> consumer, int max) {
+		return _queue.drainTo(consumer, max);
+	}
+
+	/**
+	 * Sets the {@link OverflowPolicy} which is used while the queue is full. The default policy is
+	 * {@link OverflowPolicy#DROP_NEWEST}.
+	 *
+	 * @param policy The policy which should be used.
+	 * @throws IllegalArgumentException when the policy is neither
+	 * 		{@link OverflowPolicy#DROP_NEWEST} nor {@link OverflowPolicy#BLOCK}, since only the
+	 * 		receiver may take messages from the queue.
+	 */
+	public void setOverflowPolicy(OverflowPolicy policy) throws IllegalArgumentException {
+		if (policy != OverflowPolicy.DROP_NEWEST && policy != OverflowPolicy.BLOCK)
+			throw new IllegalArgumentException("unsupported overflow policy " + policy);
+		_policy = policy;
+	}
+
+	/**
+	 * Gets the {@link OverflowPolicy} which is used while the queue is full.
+	 *
+	 * @return The {@link OverflowPolicy}.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return _policy;
+	}
+
+	/**
+	 * Gets the number of messages the queue can hold.
+	 *
+	 * @return The capacity of the queue.
+	 */
+	public int getCapacity() {
+		return _queue.getCapacity();
+	}
+
+	public long getEnqueuedCount() {
+		return _enqueuedCount.get();
+	}
+
+	public long getDroppedCount() {
+		return _droppedCount.get();
+	}
+
+	public void terminate() {
+		_isTerminated = true;
+		_dispatcher.removeEndpoint(this);
+		Message msg;
+		while ((msg = _queue.poll()) != null)
+			msg.release();
+	}
+
+	public MessageDispatcher getDispatcher() {
+		return _dispatcher;
+	}
+}
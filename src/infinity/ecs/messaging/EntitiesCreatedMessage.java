@@ -0,0 +1,60 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.utils.ReadOnlyCollection;
+
+import java.util.Arrays;
+
+/**
+ * Message class which is send when a batch of entities has been created.
+ * Should only be send by the EntityManager.
+ * <p>
+ * <b>Notes:</b><br>
+ * The message replaces the {@link EntityCreatedMessage}s and {@link ComponentAddedMessage}s of
+ * all entities of the batch, so only a single message is send no matter how many entities have
+ * been created.
+ * 
+ * @author preip
+ */
+public class EntitiesCreatedMessage extends Message {
+	
+	/**
+	 * The entities which have been created.
+	 */
+	private final ReadOnlyCollection<Entity> _entities;
+	
+	/**
+	 * The types of the components which have been added to every entity.
+	 */
+	private final ComponentType[] _componentTypes;
+	
+	/**
+	 * Creates a new instance of the {@link EntitiesCreatedMessage} class.
+	 * 
+	 * @param entities The entities which have been created. The array is copied.
+	 * @param componentTypes The types of the components every entity has been created with.
+	 */
+	public EntitiesCreatedMessage(Entity[] entities, ComponentType[] componentTypes) {
+		_entities = new ReadOnlyCollection<Entity>(Arrays.asList(entities.clone()));
+		_componentTypes = componentTypes.clone();
+	}
+	
+	/**
+	 * Gets the entities which have been created.
+	 * 
+	 * @return The entities which have been created.
+	 */
+	public ReadOnlyCollection<Entity> getEntities() {
+		return _entities;
+	}
+	
+	/**
+	 * Gets the types of the components every entity has been created with.
+	 * 
+	 * @return A copy of the component types.
+	 */
+	public ComponentType[] getComponentTypes() {
+		return _componentTypes.clone();
+	}
+}
@@ -0,0 +1,42 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.Entity;
+import infinity.ecs.utils.ReadOnlyCollection;
+
+import java.util.List;
+
+/**
+ * Message class which is send when a batch of entities has been removed.
+ * Should only be send by the EntityManager.
+ * <p>
+ * <b>Notes:</b><br>
+ * The message replaces the {@link EntityRemovedMessage}s of all entities of the batch, including
+ * the children which have been removed together with their parents.
+ * 
+ * @author preip
+ */
+public class EntitiesRemovedMessage extends Message {
+	
+	/**
+	 * The entities which have been removed.
+	 */
+	private final ReadOnlyCollection<Entity> _entities;
+	
+	/**
+	 * Creates a new instance of the {@link EntitiesRemovedMessage} class.
+	 * 
+	 * @param entities The entities which have been removed.
+	 */
+	public EntitiesRemovedMessage(List<Entity> entities) {
+		_entities = new ReadOnlyCollection<Entity>(entities);
+	}
+	
+	/**
+	 * Gets the entities which have been removed.
+	 * 
+	 * @return The entities which have been removed.
+	 */
+	public ReadOnlyCollection<Entity> getEntities() {
+		return _entities;
+	}
+}
@@ -8,12 +8,18 @@ import infinity.ecs.core.Entity;
  * 
  * @author preip
  */
-public class EntityCreatedMessage extends Message {
+public class EntityCreatedMessage extends Message implements EntityMessage {
 	
 	/**
 	 * An immutable reference to the entity which has been created.
 	 */
-	private final Entity _entity;
+	private Entity _entity;
+	
+	/**
+	 * Creates a new, empty instance of the {@link EntityCreatedMessage} class, which is used by
+	 * {@link MessagePool}s.
+	 */
+	public EntityCreatedMessage() { }
 	
 	/**
 	 * Creates a new instance of the {@link EntityCreatedMessage} class.
@@ -24,6 +30,23 @@ public class EntityCreatedMessage extends Message {
 		_entity = entity;
 	}
 	
+	/**
+	 * Sets the content of this {@link EntityCreatedMessage}, after it has been acquired from a
+	 * {@link MessagePool}.
+	 * 
+	 * @param entity The Entity which has been created.
+	 * @return This {@link EntityCreatedMessage}.
+	 */
+	public EntityCreatedMessage set(Entity entity) {
+		_entity = entity;
+		return this;
+	}
+	
+	@Override
+	protected void clear() {
+		_entity = null;
+	}
+	
 	/**
 	 * Gets the entity which has been created.
 	 * 
@@ -0,0 +1,20 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.Entity;
+
+/**
+ * Interface of all {@link Message}s which refer to a single {@link Entity}. Dispatchers use it to
+ * deliver such messages to subscriptions which are filtered by the {@link Entity} or by its
+ * {@link infinity.ecs.core.ComponentMask}.
+ * 
+ * @author preip
+ */
+public interface EntityMessage {
+	
+	/**
+	 * Gets the {@link Entity} the {@link Message} refers to.
+	 * 
+	 * @return The {@link Entity}.
+	 */
+	public Entity getEntity();
+}
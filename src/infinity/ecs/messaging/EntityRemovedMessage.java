@@ -8,12 +8,18 @@ import infinity.ecs.core.Entity;
  * 
  * @author preip
  */
-public class EntityRemovedMessage extends Message {
+public class EntityRemovedMessage extends Message implements EntityMessage {
 	
 	/**
 	 * An immutable reference to the entity which has been removed.
 	 */
-	private final Entity _entity;
+	private Entity _entity;
+	
+	/**
+	 * Creates a new, empty instance of the {@link EntityRemovedMessage} class, which is used by
+	 * {@link MessagePool}s.
+	 */
+	public EntityRemovedMessage() { }
 	
 	/**
 	 * Creates a new instance of the {@link EntityRemovedMessage} class.
@@ -24,6 +30,23 @@ public class EntityRemovedMessage extends Message {
 		_entity = entity;
 	}
 	
+	/**
+	 * Sets the content of this {@link EntityRemovedMessage}, after it has been acquired from a
+	 * {@link MessagePool}.
+	 * 
+	 * @param entity The Entity which has been removed.
+	 * @return This {@link EntityRemovedMessage}.
+	 */
+	public EntityRemovedMessage set(Entity entity) {
+		_entity = entity;
+		return this;
+	}
+	
+	@Override
+	protected void clear() {
+		_entity = null;
+	}
+	
 	/**
 	 * Gets the entity which has been removed.
 	 * 
@@ -0,0 +1,161 @@
+package infinity.ecs.messaging;
+
+import java.util.Arrays;
+
+/**
+ * The log of all {@link Message}s of a single {@link MessageType} which have been send through an
+ * {@link EventStreamDispatcher} during the current and the previous frame.
+ * <p>
+ * <b>Notes:</b><br>
+ * The log is double-buffered: new {@link Message}s are appended to the buffer of the current
+ * frame, while the buffer of the previous frame can still be read. When the next frame starts,
+ * the previous buffer is cleared and becomes the current one. Every {@link Message} gets an index,
+ * which counts all {@link Message}s ever appended to the stream, so the readers only need to store
+ * the index of the next {@link Message} they want to read.
+ *
+ * @author preip
+ */
+final class EventStream {
+
+	/**
+	 * The {@link Message}s of the previous and the current frame.
+	 */
+	private Message[] _previous, _current;
+
+	/**
+	 * The endpoints which have send the {@link Message}s of the previous and the current frame.
+	 */
+	private EventStreamEndpoint[] _previousSenders, _currentSenders;
+
+	/**
+	 * The sequence numbers of the {@link Message}s of the previous and the current frame, which
+	 * order them across all streams of the dispatcher.
+	 */
+	private long[] _previousSequences, _currentSequences;
+
+	/**
+	 * The number of {@link Message}s of the previous and the current frame.
+	 */
+	private int _previousSize, _currentSize;
+
+	/**
+	 * The index of the first {@link Message} of the previous frame.
+	 */
+	private long _firstIndex;
+
+	/**
+	 * The number of endpoints which read the stream.
+	 */
+	private int _readerCount;
+
+	/**
+	 * Creates a new instance of the {@link EventStream} class.
+	 */
+	EventStream() {
+		_previous = new Message[16];
+		_current = new Message[16];
+		_previousSenders = new EventStreamEndpoint[16];
+		_currentSenders = new EventStreamEndpoint[16];
+		_previousSequences = new long[16];
+		_currentSequences = new long[16];
+	}
+
+	/**
+	 * Appends the specified {@link Message} to the buffer of the current frame. The stream holds a
+	 * reference to the {@link Message} until the buffer is cleared.
+	 *
+	 * @param sender The endpoint which has send the {@link Message}.
+	 * @param msg The {@link Message} which should be appended.
+	 * @param sequence The sequence number of the {@link Message}.
+	 */
+	void append(EventStreamEndpoint sender, Message msg, long sequence) {
+		if (_currentSize == _current.length) {
+			int capacity = _currentSize * 2;
+			_current = Arrays.copyOf(_current, capacity);
+			_currentSenders = Arrays.copyOf(_currentSenders, capacity);
+			_currentSequences = Arrays.copyOf(_currentSequences, capacity);
+		}
+		msg.retain();
+		_current[_currentSize] = msg;
+		_currentSenders[_currentSize] = sender;
+		_currentSequences[_currentSize] = sequence;
+		_currentSize++;
+	}
+
+	/**
+	 * Releases all {@link Message}s of the previous frame and turns the current buffer into the
+	 * previous one.
+	 */
+	void swap() {
+		for (int i = 0; i < _previousSize; i++)
+			_previous[i].release();
+		Arrays.fill(_previous, 0, _previousSize, null);
+		Arrays.fill(_previousSenders, 0, _previousSize, null);
+		_firstIndex += _previousSize;
+
+		Message[] msgs = _previous;
+		_previous = _current;
+		_current = msgs;
+		EventStreamEndpoint[] senders = _previousSenders;
+		_previousSenders = _currentSenders;
+		_currentSenders = senders;
+		long[] sequences = _previousSequences;
+		_previousSequences = _currentSequences;
+		_currentSequences = sequences;
+		_previousSize = _currentSize;
+		_currentSize = 0;
+	}
+
+	/**
+	 * Gets the index of the oldest {@link Message} which can still be read.
+	 */
+	long getFirstIndex() {
+		return _firstIndex;
+	}
+
+	/**
+	 * Gets the index the next appended {@link Message} will get.
+	 */
+	long getEndIndex() {
+		return _firstIndex + _previousSize + _currentSize;
+	}
+
+	/**
+	 * Gets the {@link Message} with the specified index, which must be readable.
+	 */
+	Message get(long index) {
+		int i = (int)(index - _firstIndex);
+		return i < _previousSize ? _previous[i] : _current[i - _previousSize];
+	}
+
+	/**
+	 * Gets the sender of the {@link Message} with the specified index, which must be readable.
+	 */
+	EventStreamEndpoint getSender(long index) {
+		int i = (int)(index - _firstIndex);
+		return i < _previousSize ? _previousSenders[i] : _currentSenders[i - _previousSize];
+	}
+
+	/**
+	 * Gets the sequence number of the {@link Message} with the specified index, which must be
+	 * readable.
+	 */
+	long getSequence(long index) {
+		int i = (int)(index - _firstIndex);
+		return i < _previousSize ? _previousSequences[i] : _currentSequences[i - _previousSize];
+	}
+
+	/**
+	 * Gets the number of endpoints which read the stream.
+	 */
+	int getReaderCount() {
+		return _readerCount;
+	}
+
+	/**
+	 * Changes the number of endpoints which read the stream by the specified amount.
+	 */
+	void addReaders(int count) {
+		_readerCount += count;
+	}
+}
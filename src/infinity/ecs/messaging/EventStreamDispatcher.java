@@ -0,0 +1,126 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.utils.IndexedCollection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link MessageDispatcher} which doesn't copy {@link Message}s into a queue per endpoint, but
+ * appends them to a single {@link EventStream} per {@link MessageType}, which is shared by all
+ * endpoints that have registered the type.
+ * <p>
+ * <b>Notes:</b><br>
+ * Sending a {@link Message} only appends it to the stream of its type, so the costs of a send
+ * don't depend on the number of receivers. Every {@link EventStreamEndpoint} only stores a read
+ * cursor per registered type and reads the {@link Message}s directly from the shared streams. The
+ * streams are double-buffered per frame: {@link #nextFrame()} must be called once per frame, for
+ * example by a system with the highest priority, and discards all {@link Message}s which have been
+ * send before the previous frame. An endpoint which doesn't read its {@link Message}s for two
+ * frames therefore misses the oldest of them, which are counted by the endpoint.
+ * <p>
+ * Like the {@link IndexedMessageDispatcher}, the dispatcher and its endpoints must only be used by
+ * one thread at a time.
+ *
+ * @author preip
+ */
+public final class EventStreamDispatcher implements MessageDispatcher {
+
+	/**
+	 * The streams of all {@link MessageType}s which have been registered or send, indexed by the
+	 * id of the type.
+	 */
+	private final IndexedCollection<EventStream> _streams;
+
+	/**
+	 * The list of all streams.
+	 */
+	private final List<EventStream> _streamList;
+
+	/**
+	 * The sequence number of the next {@link Message}, which orders the {@link Message}s of all
+	 * streams.
+	 */
+	private long _sequence;
+
+	/**
+	 * Creates a new instance of the {@link EventStreamDispatcher} class.
+	 */
+	public EventStreamDispatcher() {
+		_streams = new IndexedCollection<EventStream>(32);
+		_streamList = new ArrayList<EventStream>();
+		_sequence = 0;
+	}
+
+	/**
+	 * Starts a new frame. All {@link Message}s which have been send before the previous frame are
+	 * released and can no longer be read.
+	 */
+	public void nextFrame() {
+		for (int i = 0; i < _streamList.size(); i++)
+			_streamList.get(i).swap();
+	}
+
+	/**
+	 * Appends a {@link Message} which has been send by the specified endpoint to the stream of its
+	 * type, unless no endpoint reads the stream.
+	 *
+	 * @param sender The sender of the {@link Message}.
+	 * @param msg The {@link Message} which should be dispatched.
+	 */
+	void dispatch(EventStreamEndpoint sender, Message msg) {
+		EventStream stream = _streams.get(msg.getType().getId());
+		if (stream != null && stream.getReaderCount() > 0)
+			stream.append(sender, msg, _sequence++);
+	}
+
+	/**
+	 * Appends all {@link Message}s which have been send together by the specified endpoint to the
+	 * streams of their types. The stream is only looked up once for every run of {@link Message}s
+	 * of the same type.
+	 *
+	 * @param sender The sender of the {@link Message}s.
+	 * @param msgs The {@link Message}s which should be dispatched.
+	 */
+	void dispatchAll(EventStreamEndpoint sender, Collection<? extends Message> msgs) {
+		int lastId = -1;
+		EventStream stream = null;
+		for (Message msg : msgs) {
+			int msgId = msg.getType().getId();
+			if (msgId != lastId) {
+				lastId = msgId;
+				stream = _streams.get(msgId);
+				if (stream != null && stream.getReaderCount() == 0)
+					stream = null;
+			}
+			if (stream != null)
+				stream.append(sender, msg, _sequence++);
+		}
+	}
+
+	/**
+	 * Gets the stream of the specified {@link MessageType} and creates it if there is none yet.
+	 *
+	 * @param msgType The {@link MessageType} of the stream.
+	 * @return The resulting stream.
+	 */
+	EventStream getStream(MessageType msgType) {
+		EventStream stream = _streams.get(msgType.getId());
+		if (stream == null) {
+			stream = new EventStream();
+			_streams.set(msgType.getId(), stream);
+			_streamList.add(stream);
+		}
+		return stream;
+	}
+
+	public MessageEndpoint createEndpoint() {
+		return new EventStreamEndpoint(this);
+	}
+
+	public boolean hasSubscribers(MessageType msgType) {
+		EventStream stream = _streams.get(msgType.getId());
+		return stream != null && stream.getReaderCount() > 0;
+	}
+}
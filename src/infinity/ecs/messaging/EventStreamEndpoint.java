@@ -0,0 +1,249 @@
+package infinity.ecs.messaging;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MessageEndpoint} which is created and used by the {@link EventStreamDispatcher}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The endpoint has no queue. Instead it keeps a read cursor into the {@link EventStream} of every
+ * registered {@link MessageType} and retrieves the {@link Message}s of all these streams in the
+ * order they have been send. Since the {@link Message}s are shared with all other readers, every
+ * retrieved {@link Message} is retained for the receiver, who should release it like any other
+ * received {@link Message}.
+ *
+ * @author preip
+ */
+public class EventStreamEndpoint implements MessageEndpoint {
+
+	/**
+	 * The {@link EventStreamDispatcher} this endpoint is associated with.
+	 */
+	private final EventStreamDispatcher _dispatcher;
+
+	/**
+	 * The {@link MessageType}s which have been registered.
+	 */
+	private MessageType[] _types;
+
+	/**
+	 * The streams of the registered {@link MessageType}s, in the same order.
+	 */
+	private EventStream[] _streams;
+
+	/**
+	 * The index of the next {@link Message} to read from every stream, in the same order.
+	 */
+	private long[] _cursors;
+
+	/**
+	 * The number of registered {@link MessageType}s.
+	 */
+	private int _size;
+
+	/**
+	 * The number of {@link Message}s which have been discarded before they were read.
+	 */
+	private long _missedCount;
+
+	/**
+	 * The number of {@link Message}s which have been read.
+	 */
+	private long _readCount;
+
+	/**
+	 * Indicates if the endpoint has been terminated or not.
+	 */
+	private boolean _isTerminated;
+
+	/**
+	 * Creates a new instance of the {@link EventStreamEndpoint} class. Only called by the
+	 * {@link EventStreamDispatcher}.
+	 *
+	 * @param dispatcher The {@link EventStreamDispatcher} this endpoint is associated with.
+	 */
+	EventStreamEndpoint(EventStreamDispatcher dispatcher) {
+		_dispatcher = dispatcher;
+		_types = new MessageType[4];
+		_streams = new EventStream[4];
+		_cursors = new long[4];
+		_size = 0;
+		_missedCount = 0;
+		_readCount = 0;
+		_isTerminated = false;
+	}
+
+	/**
+	 * Sends the specified message to the dispatcher and all other relevant endpoints.
+	 *
+	 * @param msg The message which should be send.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void send(Message msg) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.dispatch(this, msg);
+	}
+
+	/**
+	 * Sends all specified messages to the dispatcher and all other relevant endpoints.
+	 *
+	 * @param msgs The messages which should be send.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void sendAll(Collection<? extends Message> msgs) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.dispatchAll(this, msgs);
+	}
+
+	/**
+	 * Registers the specified message type with this endpoint. The endpoint will now receive all
+	 * messages of the specified type which are send from now on, until the type is deregistered
+	 * again.
+	 *
+	 * @param type The {@link MessageType} which should be registered.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void register(MessageType type) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		if (indexOf(type) >= 0)
+			return;
+		if (_size == _types.length) {
+			_types = Arrays.copyOf(_types, _size * 2);
+			_streams = Arrays.copyOf(_streams, _size * 2);
+			_cursors = Arrays.copyOf(_cursors, _size * 2);
+		}
+		EventStream stream = _dispatcher.getStream(type);
+		stream.addReaders(1);
+		_types[_size] = type;
+		_streams[_size] = stream;
+		_cursors[_size] = stream.getEndIndex();
+		_size++;
+	}
+
+	/**
+	 * Deregisters the specified message type with this endpoint. The endpoint will no longer
+	 * receive any messages of the specified type.
+	 *
+	 * @param type The {@link MessageType} which should be deregistered.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void deregister(MessageType type) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		int index = indexOf(type);
+		if (index < 0)
+			return;
+		_streams[index].addReaders(-1);
+		_size--;
+		_types[index] = _types[_size];
+		_streams[index] = _streams[_size];
+		_cursors[index] = _cursors[_size];
+		_types[_size] = null;
+		_streams[_size] = null;
+	}
+
+	public boolean check(MessageType msgType) {
+		return indexOf(msgType) >= 0;
+	}
+
+	/**
+	 * Retrieves the oldest unread message of all registered types. The message is retained for
+	 * the receiver.
+	 *
+	 * @return The next message or null.
+	 */
+	public Message retrieveNext() {
+		int next = -1;
+		long nextSequence = Long.MAX_VALUE;
+		for (int i = 0; i < _size; i++) {
+			EventStream stream = _streams[i];
+			long cursor = _cursors[i];
+			if (cursor < stream.getFirstIndex()) {
+				_missedCount += stream.getFirstIndex() - cursor;
+				cursor = stream.getFirstIndex();
+			}
+			// the endpoint doesn't receive its own messages
+			long end = stream.getEndIndex();
+			while (cursor < end && stream.getSender(cursor) == this)
+				cursor++;
+			_cursors[i] = cursor;
+			if (cursor < end && stream.getSequence(cursor) < nextSequence) {
+				next = i;
+				nextSequence = stream.getSequence(cursor);
+			}
+		}
+		if (next < 0)
+			return null;
+		_readCount++;
+		return _streams[next].get(_cursors[next]++).retain();
+	}
+
+	public int drainTo(Consumer<? super Message> consumer, int max) {
+		int count = 0;
+		Message msg;
+		while (count < max && (msg = retrieveNext()) != null) {
+			consumer.accept(msg);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of messages which have been discarded by the dispatcher before this endpoint
+	 * has read them.
+	 *
+	 * @return The number of missed messages.
+	 */
+	public long getMissedCount() {
+		return _missedCount;
+	}
+
+	/**
+	 * Gets the number of messages which have been read. Since the endpoint has no queue of its
+	 * own, messages only count as delivered once they have been read.
+	 *
+	 * @return The number of read messages.
+	 */
+	public long getEnqueuedCount() {
+		return _readCount;
+	}
+
+	/**
+	 * Gets the number of messages which have been discarded by the dispatcher before this endpoint
+	 * has read them, which is the same as {@link #getMissedCount()}.
+	 *
+	 * @return The number of missed messages.
+	 */
+	public long getDroppedCount() {
+		return _missedCount;
+	}
+
+	public void terminate() {
+		while (_size > 0)
+			deregister(_types[_size - 1]);
+		_isTerminated = true;
+	}
+
+	public MessageDispatcher getDispatcher() {
+		return _dispatcher;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the index of the specified {@link MessageType} within the registered types, or -1.
+	 */
+	private int indexOf(MessageType type) {
+		for (int i = 0; i < _size; i++)
+			if (_types[i] == type)
+				return i;
+		return -1;
+	}
+}
@@ -1,9 +1,17 @@
 package infinity.ecs.messaging;
 
+import infinity.ecs.core.ComponentMask;
+import infinity.ecs.core.Entity;
+import infinity.ecs.utils.BitArray;
 import infinity.ecs.utils.IndexedCollection;
+import infinity.ecs.utils.ReadOnlyCollection;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A {@link MessageDispatcher} which uses an internal map to index the {@link MessageType}s of
@@ -14,21 +22,100 @@ import java.util.List;
  * endpoints directly without the need to check if they are interested in a message of the specific
  * type. This advantage is bought by using additional memory in comparison to an implementation
  * using a simple list for the endpoints. 
+ * <p>
+ * Besides whole {@link MessageType}s, endpoints can subscribe to the {@link EntityMessage}s of a
+ * type which refer to a specific {@link Entity}, or to an {@link Entity} which currently contains
+ * all types of a {@link ComponentMask}. These subscriptions are indexed as well, so the filtering
+ * is done once per message by the dispatcher instead of by every receiver. An endpoint receives a
+ * message only once, even if several of its subscriptions match. Types without such
+ * subscriptions are dispatched without any additional costs.
+ * <p>
+ * {@link Entity} subscriptions end by themselves once an {@link EntityRemovedMessage} or
+ * {@link EntitiesRemovedMessage} for the {@link Entity} is dispatched. While there are such
+ * subscriptions, the dispatcher therefore reports subscribers for both types.
  * 
  * @author preip
  */
 public final class IndexedMessageDispatcher implements MessageDispatcher {
 	
+	/**
+	 * The ids of the {@link MessageType}s which end the {@link Entity} subscriptions.
+	 */
+	private static final int ENTITY_REMOVED = MessageType.get(EntityRemovedMessage.class).getId();
+	private static final int ENTITIES_REMOVED
+		= MessageType.get(EntitiesRemovedMessage.class).getId();
+	
+	/**
+	 * A subscription to the messages of all {@link Entity}s which contain the types of a
+	 * {@link ComponentMask}, shared by all endpoints which have subscribed with an equal mask.
+	 */
+	private static final class MaskSubscription {
+		
+		/**
+		 * The copy of the subscribed {@link ComponentMask}.
+		 */
+		final ComponentMask _mask;
+		
+		/**
+		 * The endpoints which have subscribed with the mask.
+		 */
+		final List<IndexedMessageEndpoint> _endpoints;
+		
+		MaskSubscription(ComponentMask mask) {
+			_mask = new ComponentMask(mask);
+			_endpoints = new ArrayList<IndexedMessageEndpoint>();
+		}
+	}
+	
 	/**
 	 * All associated endpoints indexed by the id of the message types they have registered.
 	 */
 	private IndexedCollection<List<IndexedMessageEndpoint>> _endpointRegister;
 	
+	/**
+	 * Determines which {@link MessageType}s have been registered by at least one endpoint, by
+	 * setting the id of the corresponding type within the bit array.
+	 */
+	private final BitArray _subscribedBits;
+	
+	/**
+	 * The endpoints which have subscribed to the messages of specific {@link Entity}s, indexed by
+	 * the id of the message types and the {@link Entity}s.
+	 */
+	private final IndexedCollection<Map<Entity, List<IndexedMessageEndpoint>>> _entityRegister;
+	
+	/**
+	 * The number of {@link Entity}s within all maps of {@link #_entityRegister}.
+	 */
+	private int _entitySubscriptions;
+	
+	/**
+	 * The mask subscriptions, indexed by the id of the message types.
+	 */
+	private final IndexedCollection<List<MaskSubscription>> _maskRegister;
+	
+	/**
+	 * Determines which {@link MessageType}s have at least one entity or mask subscription.
+	 */
+	private final BitArray _filteredBits;
+	
+	/**
+	 * The stamp of the last message which has been dispatched to filtered subscriptions, which is
+	 * used to deliver it only once to every endpoint.
+	 */
+	private int _dispatchStamp;
+	
 	/**
 	 * Creates a new instance of the IndexedMessageDispatcher class.
 	 */
 	public IndexedMessageDispatcher() {
 		_endpointRegister = new IndexedCollection<List<IndexedMessageEndpoint>>(32);
+		_subscribedBits = new BitArray();
+		_entityRegister = new IndexedCollection<Map<Entity, List<IndexedMessageEndpoint>>>(32);
+		_maskRegister = new IndexedCollection<List<MaskSubscription>>(32);
+		_filteredBits = new BitArray();
+		_entitySubscriptions = 0;
+		_dispatchStamp = 0;
 	}
 	
 	/**
@@ -41,14 +128,51 @@ public final class IndexedMessageDispatcher implements MessageDispatcher {
 	void dispatch(IndexedMessageEndpoint sender, Message msg) {
 		int msgId = msg.getType().getId(); 
 		List<IndexedMessageEndpoint> epList = _endpointRegister.get(msgId);
+		if (_filteredBits.get(msgId))
+			dispatchFiltered(sender, msg, msgId, epList);
 		// if there are no endpoints registered for the type of the message, there is nothing to
-		// dispatch
-		if (epList == null)
-			return;
-		// otherwise send the message to every registered endpoint, except the original sender
-		for (IndexedMessageEndpoint ep : epList)
-			if (ep != sender)
-				ep.receive(msg);
+		// dispatch, otherwise send the message to every registered endpoint, except the original
+		// sender
+		else if (epList != null) {
+			for (IndexedMessageEndpoint ep : epList)
+				if (ep != sender)
+					ep.receive(msg);
+		}
+		if (_entitySubscriptions > 0)
+			removeEntitySubscriptions(msg, msgId);
+	}
+	
+	/**
+	 * Dispatches all {@link Message}s which have been send together by the specified endpoint to
+	 * all other relevant endpoints. The registered endpoints are only looked up once for every run
+	 * of {@link Message}s of the same type.
+	 * 
+	 * @param sender The sender of the {@link Message}s.
+	 * @param msgs The {@link Message}s which should be dispatched.
+	 */
+	void dispatchAll(IndexedMessageEndpoint sender, Collection<? extends Message> msgs) {
+		int lastId = -1;
+		List<IndexedMessageEndpoint> epList = null;
+		boolean filtered = false;
+		for (Message msg : msgs) {
+			int msgId = msg.getType().getId();
+			if (msgId != lastId) {
+				lastId = msgId;
+				epList = _endpointRegister.get(msgId);
+				filtered = _filteredBits.get(msgId);
+			}
+			if (filtered)
+				dispatchFiltered(sender, msg, msgId, epList);
+			else if (epList != null) {
+				for (int i = 0; i < epList.size(); i++) {
+					IndexedMessageEndpoint ep = epList.get(i);
+					if (ep != sender)
+						ep.receive(msg);
+				}
+			}
+			if (_entitySubscriptions > 0)
+				removeEntitySubscriptions(msg, msgId);
+		}
 	}
 	
 	/**
@@ -64,13 +188,12 @@ public final class IndexedMessageDispatcher implements MessageDispatcher {
 		// if there is no entry for the type of the message, a new one needs to be created
 		if (epList == null) {
 			epList = new ArrayList<IndexedMessageEndpoint>();
-			epList.add(endpoint);
 			_endpointRegister.set(msgId, epList);
-			return;
 		}
-		// otherwise the endpoint can be simply added to the list if it is not already part of it
+		// the endpoint can be simply added to the list if it is not already part of it
 		if (!epList.contains(endpoint))
 			epList.add(endpoint);
+		_subscribedBits.set(msgId, true);
 	}
 	
 	/**
@@ -81,10 +204,115 @@ public final class IndexedMessageDispatcher implements MessageDispatcher {
 	 * @param msgType The {@link MessageType} which should be deregistered.
 	 */
 	void deregister(IndexedMessageEndpoint endpoint, MessageType msgType) {
-		int msgId = msgType.getId();
+		deregister(endpoint, msgType.getId());
+	}
+	
+	/**
+	 * Deregisters the {@link MessageType} with the specified id with the specified
+	 * {@link IndexedMessageEndpoint}.
+	 * 
+	 * @param endpoint The {@link IndexedMessageEndpoint} for which the type should be deregistered.
+	 * @param msgId The id of the {@link MessageType} which should be deregistered.
+	 */
+	private void deregister(IndexedMessageEndpoint endpoint, int msgId) {
 		List<IndexedMessageEndpoint> epList = _endpointRegister.get(msgId);
-		if (epList != null)
-			epList.remove(endpoint);
+		if (epList != null && epList.remove(endpoint) && epList.isEmpty())
+			_subscribedBits.set(msgId, false);
+	}
+	
+	/**
+	 * Registers the specified {@link IndexedMessageEndpoint} for all messages of the specified
+	 * {@link MessageType} which refer to the specified {@link Entity}.
+	 * 
+	 * @param endpoint The {@link IndexedMessageEndpoint} which should be registered.
+	 * @param msgType The {@link MessageType} which should be registered.
+	 * @param entity The {@link Entity} the messages need to refer to.
+	 */
+	void register(IndexedMessageEndpoint endpoint, MessageType msgType, Entity entity) {
+		int msgId = msgType.getId();
+		Map<Entity, List<IndexedMessageEndpoint>> entityMap = _entityRegister.get(msgId);
+		if (entityMap == null) {
+			entityMap = new HashMap<Entity, List<IndexedMessageEndpoint>>();
+			_entityRegister.set(msgId, entityMap);
+		}
+		List<IndexedMessageEndpoint> epList = entityMap.get(entity);
+		if (epList == null) {
+			epList = new ArrayList<IndexedMessageEndpoint>(2);
+			entityMap.put(entity, epList);
+			_entitySubscriptions++;
+		}
+		if (!epList.contains(endpoint))
+			epList.add(endpoint);
+		_filteredBits.set(msgId, true);
+	}
+	
+	/**
+	 * Deregisters the subscription of the specified {@link IndexedMessageEndpoint} to the messages
+	 * of the specified {@link MessageType} which refer to the specified {@link Entity}.
+	 * 
+	 * @param endpoint The {@link IndexedMessageEndpoint} which should be deregistered.
+	 * @param msgType The {@link MessageType} which should be deregistered.
+	 * @param entity The {@link Entity} of the subscription.
+	 */
+	void deregister(IndexedMessageEndpoint endpoint, MessageType msgType, Entity entity) {
+		int msgId = msgType.getId();
+		Map<Entity, List<IndexedMessageEndpoint>> entityMap = _entityRegister.get(msgId);
+		if (entityMap == null)
+			return;
+		List<IndexedMessageEndpoint> epList = entityMap.get(entity);
+		if (epList != null && epList.remove(endpoint) && epList.isEmpty()) {
+			entityMap.remove(entity);
+			_entitySubscriptions--;
+			updateFilteredBit(msgId);
+		}
+	}
+	
+	/**
+	 * Registers the specified {@link IndexedMessageEndpoint} for all messages of the specified
+	 * {@link MessageType} which refer to an {@link Entity} that contains all types of the specified
+	 * {@link ComponentMask} when the message is dispatched.
+	 * 
+	 * @param endpoint The {@link IndexedMessageEndpoint} which should be registered.
+	 * @param msgType The {@link MessageType} which should be registered.
+	 * @param mask The {@link ComponentMask} the {@link Entity}s of the messages need to contain.
+	 */
+	void register(IndexedMessageEndpoint endpoint, MessageType msgType, ComponentMask mask) {
+		int msgId = msgType.getId();
+		List<MaskSubscription> subscriptions = _maskRegister.get(msgId);
+		if (subscriptions == null) {
+			subscriptions = new ArrayList<MaskSubscription>();
+			_maskRegister.set(msgId, subscriptions);
+		}
+		MaskSubscription subscription = getSubscription(subscriptions, mask);
+		if (subscription == null) {
+			subscription = new MaskSubscription(mask);
+			subscriptions.add(subscription);
+		}
+		if (!subscription._endpoints.contains(endpoint))
+			subscription._endpoints.add(endpoint);
+		_filteredBits.set(msgId, true);
+	}
+	
+	/**
+	 * Deregisters the subscription of the specified {@link IndexedMessageEndpoint} to the messages
+	 * of the specified {@link MessageType} which refer to an {@link Entity} that contains all types
+	 * of the specified {@link ComponentMask}.
+	 * 
+	 * @param endpoint The {@link IndexedMessageEndpoint} which should be deregistered.
+	 * @param msgType The {@link MessageType} which should be deregistered.
+	 * @param mask The {@link ComponentMask} of the subscription.
+	 */
+	void deregister(IndexedMessageEndpoint endpoint, MessageType msgType, ComponentMask mask) {
+		int msgId = msgType.getId();
+		List<MaskSubscription> subscriptions = _maskRegister.get(msgId);
+		if (subscriptions == null)
+			return;
+		MaskSubscription subscription = getSubscription(subscriptions, mask);
+		if (subscription != null && subscription._endpoints.remove(endpoint)
+				&& subscription._endpoints.isEmpty()) {
+			subscriptions.remove(subscription);
+			updateFilteredBit(msgId);
+		}
 	}
 	
 	/**
@@ -108,11 +336,159 @@ public final class IndexedMessageDispatcher implements MessageDispatcher {
 	 * @param The endpoint which should be removed.
 	 */
 	void removeEndpoint(IndexedMessageEndpoint endpoint) {
-		for (List<IndexedMessageEndpoint> epList : _endpointRegister)
-			epList.remove(endpoint);
+		// only the lists of subscribed types can contain the endpoint
+		for (int msgId = 0; msgId < _subscribedBits.getCapacity(); msgId++)
+			if (_subscribedBits.get(msgId))
+				deregister(endpoint, msgId);
+		for (int msgId = 0; msgId < _filteredBits.getCapacity(); msgId++)
+			if (_filteredBits.get(msgId))
+				removeFiltered(endpoint, msgId);
 	}
 
 	public MessageEndpoint createEndpoint() {
 		return new IndexedMessageEndpoint(this);
 	}
+	
+	public boolean hasSubscribers(MessageType msgType) {
+		int msgId = msgType.getId();
+		if (_entitySubscriptions > 0 && (msgId == ENTITY_REMOVED || msgId == ENTITIES_REMOVED))
+			return true;
+		return _subscribedBits.get(msgId) || _filteredBits.get(msgId);
+	}
+	
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+	
+	/**
+	 * Dispatches a {@link Message} of a type with entity or mask subscriptions. The
+	 * {@link Entity} and its current {@link ComponentMask} are only looked up once for all mask
+	 * subscriptions.
+	 * 
+	 * @param sender The sender of the {@link Message}.
+	 * @param msg The {@link Message} which should be dispatched.
+	 * @param msgId The id of the type of the {@link Message}.
+	 * @param epList The endpoints which have registered the whole type, or null.
+	 */
+	private void dispatchFiltered(IndexedMessageEndpoint sender, Message msg, int msgId,
+			List<IndexedMessageEndpoint> epList) {
+		int stamp = ++_dispatchStamp;
+		if (epList != null)
+			deliver(sender, msg, epList, stamp);
+		if (!(msg instanceof EntityMessage))
+			return;
+		Entity entity = ((EntityMessage)msg).getEntity();
+		if (entity == null)
+			return;
+		Map<Entity, List<IndexedMessageEndpoint>> entityMap = _entityRegister.get(msgId);
+		if (entityMap != null && !entityMap.isEmpty()) {
+			List<IndexedMessageEndpoint> entityList = entityMap.get(entity);
+			if (entityList != null)
+				deliver(sender, msg, entityList, stamp);
+		}
+		List<MaskSubscription> subscriptions = _maskRegister.get(msgId);
+		if (subscriptions == null || subscriptions.isEmpty())
+			return;
+		// removed entities have no mask and can't match any subscription
+		ComponentMask mask = entity.getComponentMask();
+		if (mask == null)
+			return;
+		for (int i = 0; i < subscriptions.size(); i++) {
+			MaskSubscription subscription = subscriptions.get(i);
+			if (mask.contains(subscription._mask))
+				deliver(sender, msg, subscription._endpoints, stamp);
+		}
+	}
+	
+	/**
+	 * Delivers the {@link Message} to all specified endpoints except the sender, unless they
+	 * already received it with the specified stamp.
+	 */
+	private void deliver(IndexedMessageEndpoint sender, Message msg,
+			List<IndexedMessageEndpoint> epList, int stamp) {
+		for (int i = 0; i < epList.size(); i++) {
+			IndexedMessageEndpoint ep = epList.get(i);
+			if (ep != sender)
+				ep.receive(msg, stamp);
+		}
+	}
+	
+	/**
+	 * Gets the subscription with a {@link ComponentMask} equal to the specified one, or null.
+	 */
+	private MaskSubscription getSubscription(List<MaskSubscription> subscriptions,
+			ComponentMask mask) {
+		for (int i = 0; i < subscriptions.size(); i++)
+			if (subscriptions.get(i)._mask.equals(mask))
+				return subscriptions.get(i);
+		return null;
+	}
+	
+	/**
+	 * Removes all entity and mask subscriptions of the specified endpoint to the
+	 * {@link MessageType} with the specified id.
+	 */
+	private void removeFiltered(IndexedMessageEndpoint endpoint, int msgId) {
+		Map<Entity, List<IndexedMessageEndpoint>> entityMap = _entityRegister.get(msgId);
+		if (entityMap != null) {
+			Iterator<List<IndexedMessageEndpoint>> it = entityMap.values().iterator();
+			while (it.hasNext()) {
+				List<IndexedMessageEndpoint> epList = it.next();
+				if (epList.remove(endpoint) && epList.isEmpty()) {
+					it.remove();
+					_entitySubscriptions--;
+				}
+			}
+		}
+		List<MaskSubscription> subscriptions = _maskRegister.get(msgId);
+		if (subscriptions != null) {
+			Iterator<MaskSubscription> it = subscriptions.iterator();
+			while (it.hasNext()) {
+				MaskSubscription subscription = it.next();
+				if (subscription._endpoints.remove(endpoint) && subscription._endpoints.isEmpty())
+					it.remove();
+			}
+		}
+		updateFilteredBit(msgId);
+	}
+	
+	/**
+	 * Removes all subscriptions to the {@link Entity}s of the specified {@link Message}, if it
+	 * reports their removal. The subscriptions could never match again, since the ids of removed
+	 * {@link Entity}s are only reused with a new generation.
+	 */
+	private void removeEntitySubscriptions(Message msg, int msgId) {
+		if (msgId == ENTITY_REMOVED)
+			removeEntitySubscriptions(((EntityRemovedMessage)msg).getEntity());
+		else if (msgId == ENTITIES_REMOVED) {
+			ReadOnlyCollection<Entity> entities = ((EntitiesRemovedMessage)msg).getEntities();
+			for (int i = 0; i < entities.size() && _entitySubscriptions > 0; i++)
+				removeEntitySubscriptions(entities.get(i));
+		}
+	}
+	
+	/**
+	 * Removes all subscriptions to the specified {@link Entity}.
+	 */
+	private void removeEntitySubscriptions(Entity entity) {
+		for (int msgId = 0; msgId < _filteredBits.getCapacity(); msgId++) {
+			if (!_filteredBits.get(msgId))
+				continue;
+			Map<Entity, List<IndexedMessageEndpoint>> entityMap = _entityRegister.get(msgId);
+			if (entityMap != null && entityMap.remove(entity) != null) {
+				_entitySubscriptions--;
+				updateFilteredBit(msgId);
+			}
+		}
+	}
+	
+	/**
+	 * Updates the bit of the {@link MessageType} with the specified id within the filtered bits.
+	 */
+	private void updateFilteredBit(int msgId) {
+		Map<Entity, List<IndexedMessageEndpoint>> entityMap = _entityRegister.get(msgId);
+		List<MaskSubscription> subscriptions = _maskRegister.get(msgId);
+		_filteredBits.set(msgId, (entityMap != null && !entityMap.isEmpty())
+				|| (subscriptions != null && !subscriptions.isEmpty()));
+	}
 }
@@ -1,7 +1,10 @@
 package infinity.ecs.messaging;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import infinity.ecs.core.ComponentMask;
+import infinity.ecs.core.Entity;
+
+import java.util.Collection;
+import java.util.function.Consumer;
 
 /**
  * A {@link MessageEndpoint} which is created and used by the {@link IndexedMessageDispatcher}.
@@ -23,13 +26,18 @@ public class IndexedMessageEndpoint implements MessageEndpoint {
 	/**
 	 * The queue which is used to store all received messages.
 	 */
-	private final Queue<Message> _queue;
+	private final MessageQueue _queue;
 	
 	/**
 	 * Indicates if the endpoint has been terminated or not.
 	 */
 	private boolean _isTerminated;
 	
+	/**
+	 * The stamp of the last message which has been received through a filtered subscription.
+	 */
+	private int _stamp;
+	
 	/**
 	 * Creates a new instance of the {@link IndexedMessageEndpoint} instance. Only called by the
 	 * {@link IndexedMessageDispatcher}.
@@ -38,14 +46,14 @@ public class IndexedMessageEndpoint implements MessageEndpoint {
 	 */
 	IndexedMessageEndpoint(IndexedMessageDispatcher dispatcher) {
 		_dispatcher = dispatcher;
-		_queue = new ArrayDeque<Message>();
+		_queue = new MessageQueue();
 		_isTerminated = false;
 	}
 	
 	/**
 	 * Receives a new message which has been dispatched by the {@link IndexedMessageDispatcher}
 	 * this endpoint is associated with. The received {@link Message} is stored in the internal
-	 * queue.
+	 * queue, which holds a reference to it until it has been retrieved.
 	 * 
 	 * @param msg The received {@link Message}.
 	 */
@@ -53,6 +61,20 @@ public class IndexedMessageEndpoint implements MessageEndpoint {
 		_queue.offer(msg);
 	}
 	
+	/**
+	 * Receives a new message which has been dispatched to filtered subscriptions, unless the
+	 * message has already been received with the same stamp through another subscription.
+	 * 
+	 * @param msg The received {@link Message}.
+	 * @param stamp The stamp of the dispatch.
+	 */
+	void receive(Message msg, int stamp) {
+		if (_stamp == stamp)
+			return;
+		_stamp = stamp;
+		receive(msg);
+	}
+	
 	/**
 	 * Sends the specified message to the dispatcher an all other relevant endpoints.
 	 * 
@@ -65,6 +87,18 @@ public class IndexedMessageEndpoint implements MessageEndpoint {
 		_dispatcher.dispatch(this, msg);
 	}
 	
+	/**
+	 * Sends all specified messages to the dispatcher and all other relevant endpoints.
+	 * 
+	 * @param msgs The messages which should be send.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void sendAll(Collection<? extends Message> msgs) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.dispatchAll(this, msgs);
+	}
+	
 	/**
 	 * Registers the specified message type with this endpoint. The endpoint will now receive all
 	 * messages of the specified type until the type is derigstered again.
@@ -90,6 +124,74 @@ public class IndexedMessageEndpoint implements MessageEndpoint {
 		_dispatcher.deregister(this, type);
 	}
 	
+	/**
+	 * Registers the specified message type for the specified {@link Entity} with this endpoint. The
+	 * endpoint will now receive all {@link EntityMessage}s of the specified type which refer to
+	 * the {@link Entity}, until the subscription is deregistered again.
+	 * 
+	 * @param type The {@link MessageType} which should be registered.
+	 * @param entity The {@link Entity} the messages need to refer to.
+	 * @throws IllegalArgumentException when the {@link Entity} is null.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void register(MessageType type, Entity entity)
+			throws IllegalArgumentException, IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		if (entity == null)
+			throw new IllegalArgumentException("entity must not be null");
+		_dispatcher.register(this, type, entity);
+	}
+	
+	/**
+	 * Deregisters the specified message type for the specified {@link Entity} with this endpoint.
+	 * Messages which are received because of other subscriptions are not affected.
+	 * 
+	 * @param type The {@link MessageType} which should be deregistered.
+	 * @param entity The {@link Entity} of the subscription.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void deregister(MessageType type, Entity entity) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.deregister(this, type, entity);
+	}
+	
+	/**
+	 * Registers the specified message type for the specified {@link ComponentMask} with this
+	 * endpoint. The endpoint will now receive all {@link EntityMessage}s of the specified type
+	 * which refer to an {@link Entity} that contains all types of the mask at the time the message
+	 * is send, until the subscription is deregistered again. Changes of the mask after the call
+	 * have no effect on the subscription.
+	 * 
+	 * @param type The {@link MessageType} which should be registered.
+	 * @param mask The {@link ComponentMask} the {@link Entity}s of the messages need to contain.
+	 * @throws IllegalArgumentException when the mask is null.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void register(MessageType type, ComponentMask mask)
+			throws IllegalArgumentException, IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		if (mask == null)
+			throw new IllegalArgumentException("mask must not be null");
+		_dispatcher.register(this, type, mask);
+	}
+	
+	/**
+	 * Deregisters the specified message type for the specified {@link ComponentMask} with this
+	 * endpoint. Messages which are received because of other subscriptions are not affected.
+	 * 
+	 * @param type The {@link MessageType} which should be deregistered.
+	 * @param mask The {@link ComponentMask} of the subscription.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void deregister(MessageType type, ComponentMask mask) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.deregister(this, type, mask);
+	}
+	
 	public boolean check(MessageType msgType) {
 		return _dispatcher.check(this, msgType);
 	}
@@ -98,12 +200,92 @@ public class IndexedMessageEndpoint implements MessageEndpoint {
 		return _queue.poll();
 	}
 	
+	public int drainTo(Consumer<? super Message> consumer, int max) {
+		return _queue.drainTo(consumer, max);
+	}
+	
 	public void terminate() {
 		_isTerminated = true;
 		_dispatcher.removeEndpoint(this);
 		_queue.clear();
 	}
 	
+	/**
+	 * Enables or disables the coalescing of {@link ComponentChangedMessage}s. While enabled, a
+	 * change of a {@link infinity.ecs.core.Component} is not queued if a change of the same
+	 * {@link infinity.ecs.core.Component} is already queued, so the queue holds at most one change
+	 * per {@link infinity.ecs.core.Component} no matter how often it is changed between two
+	 * retrievals. The queued change keeps its position within the queue. Messages of other types
+	 * are not affected.
+	 * 
+	 * @param coalescing true if changes should be coalesced, otherwise false.
+	 */
+	public void setCoalescing(boolean coalescing) {
+		_queue.setCoalescing(coalescing);
+	}
+	
+	/**
+	 * Indicates if the endpoint coalesces {@link ComponentChangedMessage}s, either because it has
+	 * been enabled or because of the {@link OverflowPolicy#COALESCE} policy.
+	 * 
+	 * @return true if changes are coalesced, otherwise false.
+	 */
+	public boolean isCoalescing() {
+		return _queue.isCoalescing();
+	}
+	
+	/**
+	 * Gets the number of {@link ComponentChangedMessage}s which haven't been queued, because an
+	 * equal change was already queued.
+	 * 
+	 * @return The number of coalesced messages.
+	 */
+	public long getCoalescedCount() {
+		return _queue.getCoalescedCount();
+	}
+	
+	/**
+	 * Limits the number of messages the queue of this endpoint can hold. Messages which are
+	 * received while the queue is full are handled according to the specified policy. If the queue
+	 * already holds more messages, the oldest of them are dropped if the policy is
+	 * {@link OverflowPolicy#DROP_OLDEST}, otherwise they are kept. The queue is unbounded by
+	 * default.
+	 * 
+	 * @param capacity The maximal number of queued messages.
+	 * @param policy The {@link OverflowPolicy} which is used while the queue is full.
+	 * @throws IllegalArgumentException when capacity is not positive, or the policy is null or
+	 * 		{@link OverflowPolicy#BLOCK}, since messages are received on the thread of the sender.
+	 */
+	public void setCapacity(int capacity, OverflowPolicy policy) throws IllegalArgumentException {
+		_queue.setCapacity(capacity, policy);
+	}
+	
+	/**
+	 * Gets the maximal number of messages the queue of this endpoint can hold.
+	 * 
+	 * @return The capacity, which is {@link Integer#MAX_VALUE} if the queue is unbounded.
+	 */
+	public int getCapacity() {
+		return _queue.getCapacity();
+	}
+	
+	/**
+	 * Gets the {@link OverflowPolicy} which is used while the queue of this endpoint is full.
+	 * 
+	 * @return The {@link OverflowPolicy}.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return _queue.getPolicy();
+	}
+	
+	public long getEnqueuedCount() {
+		return _queue.getEnqueuedCount();
+	}
+	
+	public long getDroppedCount() {
+		return _queue.getDroppedCount();
+	}
+	
 	public MessageDispatcher getDispatcher() {
 		return _dispatcher;
 	}
@@ -1,19 +1,118 @@
 package infinity.ecs.messaging;
 
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * Abstract class which identifies all derived classes as {@link Message}s, which can be send
  * between {@link MessageEndpoint}s with the use of a central {@link MessageDispatcher}.
+ * <p>
+ * <b>Notes:</b><br>
+ * The {@link MessageType} is looked up once when the message is constructed, so dispatching a
+ * message never needs to look up its type again.
+ * <p>
+ * Messages which have been acquired from a {@link MessagePool} are reference counted, so they can
+ * be recycled once every receiver is done with them. The sender holds the first reference and
+ * every endpoint which queues the message takes another one. Both the sender, after the message
+ * has been send, and the receivers, after the message has been handled, should call
+ * {@link #release()}. A message which is never released is simply collected as garbage, so
+ * receivers which don't know about pooling are still correct, but a message must never be used
+ * after it has been released. Messages which have been constructed directly don't belong to a pool
+ * and are never recycled.
  * 
  * @author preip
  */
 public abstract class Message {
 	
+	/**
+	 * Updates the reference count of messages atomically.
+	 */
+	private static final AtomicIntegerFieldUpdater<Message> REF_COUNT
+		= AtomicIntegerFieldUpdater.newUpdater(Message.class, "_refCount");
+	
+	/**
+	 * The {@link MessageType} of this {@link Message}.
+	 */
+	private final MessageType _type;
+	
+	/**
+	 * The pool this {@link Message} is recycled to, or null if it does not belong to a pool.
+	 */
+	private MessagePool<?> _pool;
+	
+	/**
+	 * The number of references to this {@link Message}.
+	 */
+	private volatile int _refCount;
+	
+	/**
+	 * Creates a new instance of the {@link Message} class.
+	 */
+	protected Message() {
+		_type = MessageType.get(this.getClass());
+		_refCount = 1;
+	}
+	
 	/**
 	 * Gets the {@link MessageType} of this {@link Message}.
 	 * 
 	 * @return The resulting {@link MessageType}.
 	 */
 	public MessageType getType() {
-		return MessageType.get(this.getClass());
+		return _type;
+	}
+	
+	/**
+	 * Takes another reference to this {@link Message}, which must be released separately.
+	 * 
+	 * @return This {@link Message}.
+	 */
+	public Message retain() {
+		REF_COUNT.incrementAndGet(this);
+		return this;
+	}
+	
+	/**
+	 * Releases a reference to this {@link Message}. When the last reference has been released, the
+	 * {@link Message} is cleared and recycled to its {@link MessagePool}.
+	 * 
+	 * @throws IllegalStateException When all references had already been released.
+	 */
+	public void release() throws IllegalStateException {
+		int refCount = REF_COUNT.decrementAndGet(this);
+		if (refCount > 0)
+			return;
+		if (refCount < 0) {
+			REF_COUNT.incrementAndGet(this);
+			throw new IllegalStateException("message has already been released");
+		}
+		if (_pool != null) {
+			clear();
+			_pool.recycle(this);
+		}
+	}
+	
+	/**
+	 * Removes all references to other objects before the {@link Message} is recycled, so they can
+	 * be collected as garbage while the {@link Message} waits in its pool. Derived classes which
+	 * are pooled should override this method.
+	 */
+	protected void clear() { }
+	
+	/**
+	 * Binds this {@link Message} to the specified pool. Only called by the {@link MessagePool}
+	 * which created the {@link Message}.
+	 * 
+	 * @param pool The {@link MessagePool} the {@link Message} belongs to.
+	 */
+	void bind(MessagePool<?> pool) {
+		_pool = pool;
+	}
+	
+	/**
+	 * Resets the reference count of the {@link Message} before it is handed out by its pool again.
+	 * Only called by the {@link MessagePool}.
+	 */
+	void reset() {
+		_refCount = 1;
 	}
 }
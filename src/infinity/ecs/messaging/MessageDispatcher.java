@@ -14,4 +14,14 @@ public interface MessageDispatcher {
 	 * @return The created endpoint.
 	 */
 	public MessageEndpoint createEndpoint();
+	
+	/**
+	 * Checks if any endpoint of this dispatcher has registered the specified {@link MessageType}.
+	 * Senders can use this to skip constructing {@link Message}s nobody would receive. The check is
+	 * meant to be cheap enough to be done before every send.
+	 * 
+	 * @param msgType The {@link MessageType} which should be checked.
+	 * @return true if at least one endpoint has registered the type, otherwise false.
+	 */
+	public boolean hasSubscribers(MessageType msgType);
 }
@@ -1,5 +1,8 @@
 package infinity.ecs.messaging;
 
+import java.util.Collection;
+import java.util.function.Consumer;
+
 /**
  * Interface which acts as an endpoint for a specific {@link MessageDispatcher} and is used to receive
  * and send messages.
@@ -22,6 +25,15 @@ public interface MessageEndpoint {
 	 */
 	public void send(Message msg);
 	
+	/**
+	 * Sends all specified messages to the dispatcher and all other relevant endpoints, in the order
+	 * of the collection. The receivers of a {@link MessageType} are only looked up once for every
+	 * run of consecutive messages of that type, which is much cheaper than sending them one by one.
+	 * 
+	 * @param msgs The messages that should be send.
+	 */
+	public void sendAll(Collection<? extends Message> msgs);
+	
 	/**
 	 * Registers the specified message type with this endpoint. The endpoint will now receive all
 	 * messages of the specified type until the type is derigstered again.
@@ -49,17 +61,47 @@ public interface MessageEndpoint {
 	
 	/**
 	 * Retrieves the next message from the queue. Retrieved messages are automatically removed.
-	 * The method will return null if the queue is empty.
+	 * The method will return null if the queue is empty. The receiver takes over the reference the
+	 * queue held and should call {@link Message#release()} once it is done with the message.
 	 *
 	 * @return The next message or null.
 	 */
 	public Message retrieveNext();
 	
+	/**
+	 * Retrieves up to the specified number of messages from the queue and passes them to the
+	 * specified consumer in the order they have been received. Retrieved messages are
+	 * automatically removed. Like with {@link #retrieveNext()}, the consumer should release every
+	 * message once it is done with it.
+	 *
+	 * @param consumer The consumer of the messages.
+	 * @param max The maximal number of messages which should be retrieved.
+	 * @return The number of retrieved messages.
+	 */
+	public int drainTo(Consumer<? super Message> consumer, int max);
+	
+	/**
+	 * Gets the number of messages which have been delivered to this endpoint. Messages which have
+	 * been dropped are not included.
+	 * 
+	 * @return The number of enqueued messages.
+	 */
+	public long getEnqueuedCount();
+	
+	/**
+	 * Gets the number of messages which have been dropped before they could be retrieved, because
+	 * the queue of this endpoint was full.
+	 * 
+	 * @return The number of dropped messages.
+	 */
+	public long getDroppedCount();
+	
 	/**
 	 * Terminates the connection of this endpoint to the dispatcher. The endpoint can no longer be
 	 * used to send or receive {@link Message}s or to register or deregister {@link MessageType}s.
 	 * <br>
-	 * <b>Warning:</b> All unread {@link Message}s in the queue of the endpoint are lost.
+	 * <b>Warning:</b> All unread {@link Message}s in the queue of the endpoint are released and
+	 * lost.
 	 */
 	public void terminate();
 }
@@ -0,0 +1,100 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.utils.RingBuffer;
+
+/**
+ * A pool of recyclable {@link Message}s of a single type, which lets frequently send messages be
+ * reused instead of being allocated for every send.
+ * <p>
+ * <b>Notes:</b><br>
+ * {@link Message}s are taken from the pool with {@link #acquire()}, which constructs a new
+ * {@link Message} with the public no-argument constructor of the class if the pool is empty. A
+ * {@link Message} returns to its pool automatically once all its references have been released,
+ * see {@link Message#release()}. When the pool is full, recycled {@link Message}s are dropped and
+ * collected as garbage.
+ * <p>
+ * The free {@link Message}s are stored in a lock-free {@link RingBuffer}, so {@link Message}s can
+ * be released by any thread, while {@link #acquire()} may only be called by one thread at a time,
+ * which is usually the thread of the sender owning the pool.
+ *
+ * @author preip
+ */
+public final class MessagePool<T extends Message> {
+
+	/**
+	 * The class of the pooled {@link Message}s.
+	 */
+	private final Class<T> _msgClass;
+
+	/**
+	 * The free {@link Message}s.
+	 */
+	private final RingBuffer<T> _free;
+
+	/**
+	 * Creates a new instance of the {@link MessagePool} class, which holds up to 256 free
+	 * {@link Message}s.
+	 *
+	 * @param msgClass The class of the pooled {@link Message}s.
+	 * @throws IllegalArgumentException When msgClass was null.
+	 */
+	public MessagePool(Class<T> msgClass) throws IllegalArgumentException {
+		this(msgClass, 256);
+	}
+
+	/**
+	 * Creates a new instance of the {@link MessagePool} class.
+	 *
+	 * @param msgClass The class of the pooled {@link Message}s.
+	 * @param capacity The maximal number of free {@link Message}s the pool holds.
+	 * @throws IllegalArgumentException When msgClass was null or capacity is not positive.
+	 */
+	public MessagePool(Class<T> msgClass, int capacity) throws IllegalArgumentException {
+		if (msgClass == null)
+			throw new IllegalArgumentException();
+		_msgClass = msgClass;
+		_free = new RingBuffer<T>(capacity);
+	}
+
+	/**
+	 * Takes a free {@link Message} from the pool, or constructs a new one if there is none. The
+	 * caller holds the only reference to the {@link Message}. Must not be called by several threads
+	 * at the same time.
+	 *
+	 * @return The {@link Message}.
+	 * @throws IllegalStateException When the {@link Message} could not be constructed.
+	 */
+	public T acquire() throws IllegalStateException {
+		T msg = _free.poll();
+		if (msg != null) {
+			msg.reset();
+			return msg;
+		}
+		try {
+			msg = _msgClass.getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+		msg.bind(this);
+		return msg;
+	}
+
+	/**
+	 * Gets the number of free {@link Message}s in the pool.
+	 *
+	 * @return The number of free {@link Message}s.
+	 */
+	public int size() {
+		return _free.size();
+	}
+
+	/**
+	 * Puts the specified {@link Message} back into the pool. Only called by the {@link Message}
+	 * itself, after its last reference has been released.
+	 *
+	 * @param msg The {@link Message} which should be recycled.
+	 */
+	void recycle(Message msg) {
+		_free.offer(_msgClass.cast(msg));
+	}
+}
@@ -0,0 +1,222 @@
+package infinity.ecs.messaging;
+
+import java.util.ArrayDeque;
+import java.util.function.Consumer;
+
+/**
+ * The queue of the received {@link Message}s of a single-threaded {@link MessageEndpoint}, which
+ * may be bounded and may coalesce changes of {@link infinity.ecs.core.Component}s.
+ * <p>
+ * <b>Notes:</b><br>
+ * The queue is unbounded by default. A bounded queue handles {@link Message}s which arrive while
+ * it is full according to its {@link OverflowPolicy}. Since the endpoints using this queue receive
+ * their {@link Message}s on the thread of the sender, {@link OverflowPolicy#BLOCK} is not
+ * supported, because the sender would wait for itself.
+ *
+ * @author preip
+ */
+final class MessageQueue {
+
+	/**
+	 * The queued {@link Message}s.
+	 */
+	private final ArrayDeque<Message> _queue;
+
+	/**
+	 * The index of the queued {@link ComponentChangedMessage}s, or null if changes aren't
+	 * coalesced.
+	 */
+	private ChangeCoalescer _coalescer;
+
+	/**
+	 * Indicates if coalescing has been enabled independent of the {@link OverflowPolicy}.
+	 */
+	private boolean _coalescing;
+
+	/**
+	 * The maximal number of queued {@link Message}s.
+	 */
+	private int _capacity;
+
+	/**
+	 * The policy which is used while the queue is full.
+	 */
+	private OverflowPolicy _policy;
+
+	/**
+	 * The number of {@link Message}s which have been queued.
+	 */
+	private long _enqueuedCount;
+
+	/**
+	 * The number of {@link Message}s which have been dropped, because the queue was full.
+	 */
+	private long _droppedCount;
+
+	/**
+	 * The number of {@link ComponentChangedMessage}s which have been coalesced.
+	 */
+	private long _coalescedCount;
+
+	/**
+	 * Creates a new instance of the {@link MessageQueue} class, which is unbounded.
+	 */
+	MessageQueue() {
+		_queue = new ArrayDeque<Message>();
+		_capacity = Integer.MAX_VALUE;
+		_policy = OverflowPolicy.DROP_NEWEST;
+	}
+
+	/**
+	 * Queues the specified {@link Message}, unless it is coalesced or dropped. A queued
+	 * {@link Message} is retained until it has been retrieved.
+	 *
+	 * @param msg The received {@link Message}.
+	 */
+	void offer(Message msg) {
+		if (_coalescer != null && !_coalescer.offer(msg)) {
+			_coalescedCount++;
+			return;
+		}
+		if (_queue.size() >= _capacity) {
+			if (_policy != OverflowPolicy.DROP_OLDEST) {
+				if (_coalescer != null)
+					_coalescer.remove(msg);
+				_droppedCount++;
+				return;
+			}
+			poll().release();
+			_droppedCount++;
+		}
+		msg.retain();
+		_queue.offer(msg);
+		_enqueuedCount++;
+	}
+
+	/**
+	 * Retrieves the oldest queued {@link Message}.
+	 *
+	 * @return The oldest {@link Message} or null.
+	 */
+	Message poll() {
+		Message msg = _queue.poll();
+		if (msg != null && _coalescer != null)
+			_coalescer.remove(msg);
+		return msg;
+	}
+
+	/**
+	 * Retrieves up to the specified number of {@link Message}s and passes them to the specified
+	 * consumer.
+	 *
+	 * @param consumer The consumer of the {@link Message}s.
+	 * @param max The maximal number of {@link Message}s which should be retrieved.
+	 * @return The number of retrieved {@link Message}s.
+	 */
+	int drainTo(Consumer<? super Message> consumer, int max) {
+		int count = 0;
+		Message msg;
+		while (count < max && (msg = poll()) != null) {
+			consumer.accept(msg);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Releases and removes all queued {@link Message}s.
+	 */
+	void clear() {
+		Message msg;
+		while ((msg = _queue.poll()) != null)
+			msg.release();
+		if (_coalescer != null)
+			_coalescer.clear();
+	}
+
+	/**
+	 * Sets the capacity and the {@link OverflowPolicy} of the queue. If the queue holds more
+	 * {@link Message}s than the new capacity, the oldest of them are dropped if the policy is
+	 * {@link OverflowPolicy#DROP_OLDEST}, otherwise they are kept.
+	 *
+	 * @param capacity The maximal number of queued {@link Message}s.
+	 * @param policy The policy which is used while the queue is full.
+	 * @throws IllegalArgumentException When capacity is not positive, or the policy is null or
+	 * 		{@link OverflowPolicy#BLOCK}.
+	 */
+	void setCapacity(int capacity, OverflowPolicy policy) throws IllegalArgumentException {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+		if (policy == null || policy == OverflowPolicy.BLOCK)
+			throw new IllegalArgumentException("unsupported overflow policy " + policy);
+		_capacity = capacity;
+		_policy = policy;
+		updateCoalescer();
+		if (policy == OverflowPolicy.DROP_OLDEST) {
+			while (_queue.size() > capacity) {
+				poll().release();
+				_droppedCount++;
+			}
+		}
+	}
+
+	/**
+	 * Enables or disables the coalescing of {@link ComponentChangedMessage}s. Coalescing stays
+	 * enabled while the policy is {@link OverflowPolicy#COALESCE}.
+	 *
+	 * @param coalescing true if changes should be coalesced, otherwise false.
+	 */
+	void setCoalescing(boolean coalescing) {
+		_coalescing = coalescing;
+		updateCoalescer();
+	}
+
+	boolean isCoalescing() {
+		return _coalescer != null;
+	}
+
+	int getCapacity() {
+		return _capacity;
+	}
+
+	OverflowPolicy getPolicy() {
+		return _policy;
+	}
+
+	int size() {
+		return _queue.size();
+	}
+
+	long getEnqueuedCount() {
+		return _enqueuedCount;
+	}
+
+	long getDroppedCount() {
+		return _droppedCount;
+	}
+
+	long getCoalescedCount() {
+		return _coalescedCount;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Creates or removes the index of the queued changes, depending on whether changes should be
+	 * coalesced or not.
+	 */
+	private void updateCoalescer() {
+		if (!_coalescing && _policy != OverflowPolicy.COALESCE) {
+			_coalescer = null;
+			return;
+		}
+		if (_coalescer != null)
+			return;
+		// the changes which are already queued need to be indexed as well
+		_coalescer = new ChangeCoalescer();
+		for (Message msg : _queue)
+			_coalescer.offer(msg);
+	}
+}
@@ -1,10 +1,14 @@
 package infinity.ecs.messaging;
 
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MessageTypes act as unique identifiers for every type of {@link Message}, by which they can
  * be distinguished.
+ * <p>
+ * <b>Notes:</b><br>
+ * The lookup of existing types does not lock, so messages can be dispatched by several threads at
+ * once. Only the creation of new types is synchronized, to keep the IDs unique.
  * 
  * @author preip
  */
@@ -17,8 +21,8 @@ public final class MessageType {
 	/**
 	 * Contains all current message types indexed by their class for lookup.
 	 */
-	private static final HashMap<Class<? extends Message>, MessageType> _classLib
-		= new HashMap<Class<? extends Message>, MessageType>();
+	private static final ConcurrentHashMap<Class<? extends Message>, MessageType> _classLib
+		= new ConcurrentHashMap<Class<? extends Message>, MessageType>();
 	
 	//----------------------------------------------------------------------------------------------
 	// Static Methods
@@ -44,11 +48,24 @@ public final class MessageType {
 	public static MessageType get(Class<? extends Message> typeClass) {
 		// try to get the message type, assuming there already is an entry for the class
 		MessageType mType = _classLib.get(typeClass);
-		// if not,
+		// if not, a new one must be created
+		if (mType == null)
+			mType = create(typeClass);
+		return mType;
+	}
+	
+	/**
+	 * Creates the MessageType of the specified Message class, unless another thread has already
+	 * created it.
+	 *
+	 * @param typeClass The Message class for which the MessageType should be created.
+	 * @return The resulting MessageType.
+	 */
+	private static synchronized MessageType create(Class<? extends Message> typeClass) {
+		MessageType mType = _classLib.get(typeClass);
 		if (mType == null) {
-			// a new one must be created
 			mType = new MessageType(_classLib.size());
-			// and added to the class library, to enable the class based lookup
+			// added to the class library, to enable the class based lookup
 			_classLib.put(typeClass, mType);
 		}
 		return mType;
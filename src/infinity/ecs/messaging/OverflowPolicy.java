@@ -0,0 +1,34 @@
+package infinity.ecs.messaging;
+
+/**
+ * Defines what a {@link MessageEndpoint} with a bounded queue does with a received
+ * {@link Message} while its queue is full.
+ *
+ * @author preip
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * The oldest queued {@link Message} is released and dropped to make room for the new one.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * The new {@link Message} is dropped.
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * The sender waits until the receiver has retrieved enough {@link Message}s. Only useful if the
+	 * receiver retrieves its {@link Message}s on another thread than the sender.
+	 */
+	BLOCK,
+
+	/**
+	 * Changes of a {@link infinity.ecs.core.Component} which is already queued as changed are
+	 * coalesced, so only changes of other {@link infinity.ecs.core.Component}s and other
+	 * {@link Message}s take up space. If the queue is still full, the new {@link Message} is
+	 * dropped.
+	 */
+	COALESCE
+}
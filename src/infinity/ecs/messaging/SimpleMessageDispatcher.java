@@ -1,6 +1,10 @@
 package infinity.ecs.messaging;
 
+import infinity.ecs.utils.BitArray;
+
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,11 +24,25 @@ public class SimpleMessageDispatcher implements MessageDispatcher {
 	 */
 	public List<SimpleMessageEndpoint> _endpoints;
 	
+	/**
+	 * The number of endpoints which have registered a {@link MessageType}, indexed by the id of
+	 * the type.
+	 */
+	private int[] _subscriberCounts;
+	
+	/**
+	 * Determines which {@link MessageType}s have been registered by at least one endpoint, by
+	 * setting the id of the corresponding type within the bit array.
+	 */
+	private final BitArray _subscribedBits;
+	
 	/**
 	 * Creates a new instance of the {@link SimpleMessageDispatcher} class.
 	 */
 	public SimpleMessageDispatcher() {
 		_endpoints = new ArrayList<SimpleMessageEndpoint>();
+		_subscriberCounts = new int[32];
+		_subscribedBits = new BitArray();
 	}
 	
 	/**
@@ -42,6 +60,31 @@ public class SimpleMessageDispatcher implements MessageDispatcher {
 				ep.receive(msg);
 	}
 	
+	/**
+	 * Dispatches all {@link Message}s which have been send together by the specified endpoint to
+	 * all other relevant endpoints. The interested endpoints are only searched once for every run
+	 * of {@link Message}s of the same type.
+	 * 
+	 * @param sender The sender of the {@link Message}s.
+	 * @param msgs The {@link Message}s which should be dispatched.
+	 */
+	void dispatchAll(SimpleMessageEndpoint sender, Collection<? extends Message> msgs) {
+		int lastId = -1;
+		List<SimpleMessageEndpoint> receivers = new ArrayList<SimpleMessageEndpoint>();
+		for (Message msg : msgs) {
+			int msgId = msg.getType().getId();
+			if (msgId != lastId) {
+				lastId = msgId;
+				receivers.clear();
+				for (SimpleMessageEndpoint ep : _endpoints)
+					if (ep != sender && ep._msgBits.get(msgId))
+						receivers.add(ep);
+			}
+			for (int i = 0; i < receivers.size(); i++)
+				receivers.get(i).receive(msg);
+		}
+	}
+	
 	public MessageEndpoint createEndpoint() {
 		SimpleMessageEndpoint ep = new SimpleMessageEndpoint(this);
 		_endpoints.add(ep);
@@ -55,6 +98,40 @@ public class SimpleMessageDispatcher implements MessageDispatcher {
 	 * @endpoint The endpoint which should be removed.
 	 */
 	void remove(SimpleMessageEndpoint endpoint) {
-		_endpoints.remove(endpoint);
+		if (!_endpoints.remove(endpoint))
+			return;
+		for (int msgId = 0; msgId < endpoint._msgBits.getCapacity(); msgId++)
+			if (endpoint._msgBits.get(msgId))
+				unsubscribe(msgId);
+	}
+	
+	/**
+	 * Counts a new registration of the {@link MessageType} with the specified id. Only called by
+	 * the {@link SimpleMessageEndpoint}s, when they register a type they had not registered before.
+	 *
+	 * @param msgId The id of the {@link MessageType}.
+	 */
+	void subscribe(int msgId) {
+		if (msgId >= _subscriberCounts.length)
+			_subscriberCounts = Arrays.copyOf(_subscriberCounts,
+					Math.max(msgId + 1, _subscriberCounts.length * 2));
+		if (_subscriberCounts[msgId]++ == 0)
+			_subscribedBits.set(msgId, true);
+	}
+	
+	/**
+	 * Counts the removal of a registration of the {@link MessageType} with the specified id. Only
+	 * called by the {@link SimpleMessageEndpoint}s, when they deregister a type they had
+	 * registered before.
+	 *
+	 * @param msgId The id of the {@link MessageType}.
+	 */
+	void unsubscribe(int msgId) {
+		if (--_subscriberCounts[msgId] == 0)
+			_subscribedBits.set(msgId, false);
+	}
+	
+	public boolean hasSubscribers(MessageType msgType) {
+		return _subscribedBits.get(msgType.getId());
 	}
 }
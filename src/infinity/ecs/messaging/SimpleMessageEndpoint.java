@@ -2,8 +2,8 @@ package infinity.ecs.messaging;
 
 import infinity.ecs.utils.BitArray;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.util.Collection;
+import java.util.function.Consumer;
 
 // TODO: Comment this
 public class SimpleMessageEndpoint implements MessageEndpoint {
@@ -16,7 +16,7 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 	/**
 	 * The queue which is used to store all received messages.
 	 */
-	final Queue<Message> _queue;
+	final MessageQueue _queue;
 	
 	/**
 	 * Determines which {@link MessageType}s have been registered or not, by setting the id of the
@@ -37,7 +37,7 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 	 */
 	SimpleMessageEndpoint(SimpleMessageDispatcher dispatcher) {
 		_dispatcher = dispatcher;
-		_queue = new ArrayDeque<Message>();
+		_queue = new MessageQueue();
 		_msgBits = new BitArray();
 		_isTerminated = false;
 	}
@@ -45,7 +45,7 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 	/**
 	 * Receives a new message which has been dispatched by the {@link SimpleMessageDispatcher}
 	 * this endpoint is associated with. The received {@link Message} is stored in the internal
-	 * queue.
+	 * queue, which holds a reference to it until it has been retrieved.
 	 * 
 	 * @param msg The received {@link Message}.
 	 */
@@ -65,6 +65,18 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 		_dispatcher.dispatch(this, msg);
 	}
 	
+	/**
+	 * Sends all specified messages to the dispatcher and all other relevant endpoints.
+	 * 
+	 * @param msgs The messages which should be send.
+	 * @throws IllegalStateException when the endpoint has been terminated.
+	 */
+	public void sendAll(Collection<? extends Message> msgs) throws IllegalStateException {
+		if (_isTerminated)
+			throw new IllegalStateException("endpoint has been terminated");
+		_dispatcher.dispatchAll(this, msgs);
+	}
+	
 	/**
 	 * Registers the specified message type with this endpoint. The endpoint will now receive all
 	 * messages of the specified type until the type is derigstered again.
@@ -75,7 +87,10 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 	public void register(MessageType type) throws IllegalStateException {
 		if (_isTerminated)
 			throw new IllegalStateException("endpoint has been terminated");
-		_msgBits.set(type.getId(), true);
+		if (!_msgBits.get(type.getId())) {
+			_msgBits.set(type.getId(), true);
+			_dispatcher.subscribe(type.getId());
+		}
 	}
 	
 	/**
@@ -88,7 +103,10 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 	public void deregister(MessageType type) throws IllegalStateException {
 		if (_isTerminated)
 			throw new IllegalStateException("endpoint has been terminated");
-		_msgBits.set(type.getId(), false);
+		if (_msgBits.get(type.getId())) {
+			_msgBits.set(type.getId(), false);
+			_dispatcher.unsubscribe(type.getId());
+		}
 	}
 	
 	public boolean check(MessageType msgType) {
@@ -105,9 +123,89 @@ public class SimpleMessageEndpoint implements MessageEndpoint {
 		return _queue.poll();
 	}
 	
+	public int drainTo(Consumer<? super Message> consumer, int max) {
+		return _queue.drainTo(consumer, max);
+	}
+	
 	public void terminate() {
 		_isTerminated = true;
 		_dispatcher.remove(this);
 		_queue.clear();
 	}
+	
+	/**
+	 * Enables or disables the coalescing of {@link ComponentChangedMessage}s. While enabled, a
+	 * change of a {@link infinity.ecs.core.Component} is not queued if a change of the same
+	 * {@link infinity.ecs.core.Component} is already queued, so the queue holds at most one change
+	 * per {@link infinity.ecs.core.Component} no matter how often it is changed between two
+	 * retrievals. The queued change keeps its position within the queue. Messages of other types
+	 * are not affected.
+	 * 
+	 * @param coalescing true if changes should be coalesced, otherwise false.
+	 */
+	public void setCoalescing(boolean coalescing) {
+		_queue.setCoalescing(coalescing);
+	}
+	
+	/**
+	 * Indicates if the endpoint coalesces {@link ComponentChangedMessage}s, either because it has
+	 * been enabled or because of the {@link OverflowPolicy#COALESCE} policy.
+	 * 
+	 * @return true if changes are coalesced, otherwise false.
+	 */
+	public boolean isCoalescing() {
+		return _queue.isCoalescing();
+	}
+	
+	/**
+	 * Gets the number of {@link ComponentChangedMessage}s which haven't been queued, because an
+	 * equal change was already queued.
+	 * 
+	 * @return The number of coalesced messages.
+	 */
+	public long getCoalescedCount() {
+		return _queue.getCoalescedCount();
+	}
+	
+	/**
+	 * Limits the number of messages the queue of this endpoint can hold. Messages which are
+	 * received while the queue is full are handled according to the specified policy. If the queue
+	 * already holds more messages, the oldest of them are dropped if the policy is
+	 * {@link OverflowPolicy#DROP_OLDEST}, otherwise they are kept. The queue is unbounded by
+	 * default.
+	 * 
+	 * @param capacity The maximal number of queued messages.
+	 * @param policy The {@link OverflowPolicy} which is used while the queue is full.
+	 * @throws IllegalArgumentException when capacity is not positive, or the policy is null or
+	 * 		{@link OverflowPolicy#BLOCK}, since messages are received on the thread of the sender.
+	 */
+	public void setCapacity(int capacity, OverflowPolicy policy) throws IllegalArgumentException {
+		_queue.setCapacity(capacity, policy);
+	}
+	
+	/**
+	 * Gets the maximal number of messages the queue of this endpoint can hold.
+	 * 
+	 * @return The capacity, which is {@link Integer#MAX_VALUE} if the queue is unbounded.
+	 */
+	public int getCapacity() {
+		return _queue.getCapacity();
+	}
+	
+	/**
+	 * Gets the {@link OverflowPolicy} which is used while the queue of this endpoint is full.
+	 * 
+	 * @return The {@link OverflowPolicy}.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		return _queue.getPolicy();
+	}
+	
+	public long getEnqueuedCount() {
+		return _queue.getEnqueuedCount();
+	}
+	
+	public long getDroppedCount() {
+		return _queue.getDroppedCount();
+	}
 }
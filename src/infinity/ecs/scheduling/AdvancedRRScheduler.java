@@ -42,6 +42,21 @@ public class AdvancedRRScheduler implements Scheduler {
      */
     private boolean _runFlag;
     
+    /**
+     * Decides when the schedule is run and which elapsed time is passed to the systems.
+     */
+    private FrameTimer _timer;
+    
+    /**
+     * The measurements of the schedule.
+     */
+    private final SchedulerMetrics _metrics;
+    
+    /**
+     * Contains the measurements of every system of the current schedule, in the same order.
+     */
+    private SystemMetrics[] _systemMetrics;
+    
     /**
      * The only instance of the RRScheduler.
      */
@@ -54,6 +69,9 @@ public class AdvancedRRScheduler implements Scheduler {
 	_index = 0;
 	_schedule = new ArrayList<>();
 	_systems = new ArrayList<>();
+	_timer = new FrameTimer();
+	_metrics = new SchedulerMetrics(this);
+	_systemMetrics = new SystemMetrics[0];
     } 
 	
     /**
@@ -114,22 +132,57 @@ system A is 1 and the of B is 5, than A runs every frame and B at least every 5t
     }
     
     /**
-     * Runs the schedule until the _runFlag is set to false. makeSchedule() needs to be called first
+     * Runs the schedule until the _runFlag is set to false. makeSchedule() needs to be called first.
+     * The FrameTimer decides how often the schedule is run, between the frames the thread sleeps.
+     * Interrupting the thread stops the loop like pause(), the interrupt flag stays set.
      */
     @Override
     public void run(){
 	_runFlag = true;
+	FrameTimer timer = _timer;
+	timer.reset();
 	while(_runFlag) {
-	    while(_index < _schedule.size()){
-		_schedule.get(_index).update(1);
-		_index += 1;
+	    int steps = timer.advance();
+	    //The timer doesn't wait anymore once the thread is interrupted
+	    if(Thread.currentThread().isInterrupted()) {
+		_runFlag = false;
+		return;
 	    }
-	    _runs += 1;
-	    _index = 0;
-	    //Catches the overflow
-	    if(_runs == Integer.MAX_VALUE)
-		_runs = 0; 
+	    for(int i = 0; i < steps && _runFlag; i++)
+		runSchedule(timer.getElapsedTime());
+	}
+    }
+    
+    /**
+     * Runs the schedule once. If a system ends or pauses the schedule, the remaining systems of
+     * the frame are skipped.
+     * @param elapsedTime The time that is passed to the systems.
+     */
+    private void runSchedule(int elapsedTime){
+	boolean measure = _metrics.isEnabled();
+	long frameStart = measure ? System.nanoTime() : 0;
+	while(_index < _schedule.size()){
+	    int index = _index;
+	    //The index is advanced first, since end() resets it during the update
+	    _index += 1;
+	    if(measure)
+		_systemMetrics[index].start();
+	    _schedule.get(index).update(elapsedTime);
+	    if(measure)
+		_systemMetrics[index].stop();
+	    if(!_runFlag)
+		break;
 	}
+	if(measure)
+	    _metrics.recordFrame(System.nanoTime() - frameStart);
+	//A frame that was stopped before its last system is resumed or has been reset by end()
+	if(_index < _schedule.size())
+	    return;
+	_runs += 1;
+	_index = 0;
+	//Catches the overflow
+	if(_runs == Integer.MAX_VALUE)
+	    _runs = 0; 
     }
     
     /**
@@ -146,6 +199,9 @@ system A is 1 and the of B is 5, than A runs every frame and B at least every 5t
 	for(ArrayList<EntitySystem> frame : frames){
 	    _schedule.addAll(frame);
 	}
+	_systemMetrics = new SystemMetrics[_schedule.size()];
+	for(int i = 0; i < _systemMetrics.length; i++)
+	    _systemMetrics[i] = _metrics.getOrCreate(_schedule.get(i));
     }   
     
     private ArrayList<ArrayList<EntitySystem>> makeFrames() {
@@ -263,4 +319,34 @@ system A is 1 and the of B is 5, than A runs every frame and B at least every 5t
     public boolean isRunning(){
 	return _runFlag;
     }
+    
+    /**
+     * Sets the FrameTimer which decides when the schedule is run. Takes effect the next time run()
+     * is called.
+     * @param timer 
+     */
+    @Override
+    public void setFrameTimer(FrameTimer timer){
+	if(timer == null)
+	    throw new IllegalArgumentException();
+	_timer = timer;
+    }
+    
+    /**
+     * Returns the FrameTimer of the schedule.
+     * @return 
+     */
+    @Override
+    public FrameTimer getFrameTimer(){
+	return _timer;
+    }
+    
+    /**
+     * Returns the measurements of the schedule, which are disabled by default.
+     * @return 
+     */
+    @Override
+    public SchedulerMetrics getMetrics(){
+	return _metrics;
+    }
 }
@@ -0,0 +1,26 @@
+package infinity.ecs.scheduling;
+
+/**
+ * A monotonic source of time for the FrameTimer. The SYSTEM clock is backed by System.nanoTime(),
+ * other implementations can be used to drive a schedule by simulated time, e.g. in tests.
+ * @author Simon
+ */
+public interface Clock {
+
+    /**
+     * The clock which uses System.nanoTime().
+     */
+    public static final Clock SYSTEM = new Clock() {
+	@Override
+	public long nanoTime() {
+	    return System.nanoTime();
+	}
+    };
+
+    /**
+     * Returns the current time of the clock in nanoseconds. Only the difference between two
+     * values is meaningful.
+     * @return
+     */
+    public abstract long nanoTime();
+}
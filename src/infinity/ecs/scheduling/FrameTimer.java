@@ -0,0 +1,211 @@
+package infinity.ecs.scheduling;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The FrameTimer decides when a Scheduler runs its schedule and which elapsed time is passed to
+ * the EntitySystems. It measures the real time of a Clock and works in one of two modes:
+ * <p>
+ * In variable step mode every frame runs the schedule once and passes the milliseconds that have
+ * really elapsed since the last frame. Fractions of a millisecond are carried over to the next
+ * frame, so no time gets lost. Optionally the time of a frame is limited to maxElapsedMillis,
+ * so a long stall doesn't pass a huge time to the systems.
+ * <p>
+ * In fixed step mode the elapsed time is collected in an accumulator, and the schedule is run
+ * once for every full step in it, always passing the length of the step. This makes the
+ * simulation independent of the frame rate and the load of the machine. If the machine can't keep
+ * up, at most maxSteps steps are run per frame and the rest of the accumulated time is dropped,
+ * so the simulation slows down instead of spiraling into ever longer frames. The part of a step
+ * which is left in the accumulator is available by getAlpha() and can be used to interpolate
+ * between the last two simulated states.
+ * <p>
+ * In both modes advance() parks the thread until the next frame is due, instead of spinning, so
+ * an idle schedule doesn't use any CPU.
+ * @author Simon
+ */
+public class FrameTimer {
+
+    /**
+     * The number of nanoseconds of a millisecond.
+     */
+    private static final long MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The clock the time is measured with.
+     */
+    private final Clock _clock;
+
+    /**
+     * The length of a step in nanoseconds, or 0 in variable step mode.
+     */
+    private final long _step;
+
+    /**
+     * The maximum number of steps per frame.
+     */
+    private final int _maxSteps;
+
+    /**
+     * The maximum elapsed time in milliseconds of a frame in variable step mode, or 0 if it is
+     * unlimited.
+     */
+    private final int _maxElapsedMillis;
+
+    /**
+     * The time of the clock when the accumulator was updated last.
+     */
+    private long _lastTime;
+
+    /**
+     * The time which has elapsed but was not yet passed to the systems.
+     */
+    private long _accumulator;
+
+    /**
+     * The elapsed time in milliseconds that is passed to the systems in the current frame.
+     */
+    private int _elapsedTime;
+
+    /**
+     * The total time that has been dropped because the catch-up or elapsed time limit was reached.
+     */
+    private long _droppedTime;
+
+    /**
+     * Creates a new FrameTimer in variable step mode, which uses the system clock.
+     */
+    public FrameTimer(){
+	this(Clock.SYSTEM, 0, 1);
+    }
+
+    /**
+     * Creates a new FrameTimer in fixed step mode, which uses the system clock.
+     * @param stepMillis The length of a step in milliseconds.
+     * @param maxSteps The maximum number of steps that are run in a single frame to catch up.
+     */
+    public FrameTimer(int stepMillis, int maxSteps){
+	this(Clock.SYSTEM, stepMillis, maxSteps);
+    }
+
+    /**
+     * Creates a new FrameTimer, which doesn't limit the elapsed time in variable step mode.
+     * @param clock The clock the time is measured with.
+     * @param stepMillis The length of a step in milliseconds, or 0 for variable step mode.
+     * @param maxSteps The maximum number of steps that are run in a single frame to catch up.
+     * @throws IllegalArgumentException If the clock is null, the step is negative or maxSteps is
+     * not positive.
+     */
+    public FrameTimer(Clock clock, int stepMillis, int maxSteps){
+	this(clock, stepMillis, maxSteps, 0);
+    }
+
+    /**
+     * Creates a new FrameTimer.
+     * @param clock The clock the time is measured with.
+     * @param stepMillis The length of a step in milliseconds, or 0 for variable step mode.
+     * @param maxSteps The maximum number of steps that are run in a single frame to catch up.
+     * @param maxElapsedMillis The maximum time in milliseconds that is passed in a single frame in
+     * variable step mode, or 0 if it is unlimited. The time above it is dropped.
+     * @throws IllegalArgumentException If the clock is null, the step or maxElapsedMillis is
+     * negative or maxSteps is not positive.
+     */
+    public FrameTimer(Clock clock, int stepMillis, int maxSteps, int maxElapsedMillis){
+	if(clock == null || stepMillis < 0 || maxSteps <= 0 || maxElapsedMillis < 0)
+	    throw new IllegalArgumentException();
+	_clock = clock;
+	_step = stepMillis * MILLI;
+	_maxSteps = maxSteps;
+	_maxElapsedMillis = maxElapsedMillis;
+	reset();
+    }
+
+    /**
+     * Restarts the measurement, so the time that has passed since the last frame is ignored.
+     * Is called when a scheduler starts running, so a paused schedule doesn't try to catch up.
+     */
+    public void reset(){
+	_lastTime = _clock.nanoTime();
+	_accumulator = 0;
+	_elapsedTime = 0;
+    }
+
+    /**
+     * Waits until the next frame is due and returns how often the schedule needs to be run in
+     * this frame. In variable step mode this is always 1 unless the thread was interrupted.
+     * @return The number of steps, or 0 if the thread was interrupted while waiting.
+     */
+    public int advance(){
+	long step = _step == 0 ? MILLI : _step;
+	update();
+	while(_accumulator < step) {
+	    if(Thread.currentThread().isInterrupted())
+		return 0;
+	    LockSupport.parkNanos(this, step - _accumulator);
+	    update();
+	}
+	if(_step == 0) {
+	    long elapsed = _accumulator / MILLI;
+	    if(_maxElapsedMillis > 0 && elapsed > _maxElapsedMillis) {
+		_droppedTime += (elapsed - _maxElapsedMillis) * MILLI;
+		elapsed = _maxElapsedMillis;
+	    }
+	    _accumulator %= MILLI;
+	    _elapsedTime = (int)elapsed;
+	    return 1;
+	}
+	long steps = _accumulator / _step;
+	if(steps > _maxSteps) {
+	    _droppedTime += (steps - _maxSteps) * _step;
+	    steps = _maxSteps;
+	}
+	_accumulator %= _step;
+	_elapsedTime = (int)(_step / MILLI);
+	return (int)steps;
+    }
+
+    /**
+     * Returns the elapsed time in milliseconds that is passed to every update of the current frame.
+     * @return
+     */
+    public int getElapsedTime(){
+	return _elapsedTime;
+    }
+
+    /**
+     * Returns how far the simulation has advanced into the next step, which can be used to
+     * interpolate between the last two states. Is always 0 in variable step mode.
+     * @return A value from 0 (inclusive) to 1 (exclusive).
+     */
+    public float getAlpha(){
+	if(_step == 0)
+	    return 0;
+	return (float)_accumulator / _step;
+    }
+
+    /**
+     * Returns the total time in milliseconds that has been dropped, because more steps would have
+     * been needed than allowed by the catch-up limit, or a frame took longer than maxElapsedMillis.
+     * @return
+     */
+    public long getDroppedTime(){
+	return _droppedTime / MILLI;
+    }
+
+    /**
+     * True if the timer is in fixed step mode.
+     * @return
+     */
+    public boolean isFixedStep(){
+	return _step != 0;
+    }
+
+    /**
+     * Adds the time that has elapsed since the last call to the accumulator.
+     */
+    private void update(){
+	long now = _clock.nanoTime();
+	_accumulator += now - _lastTime;
+	_lastTime = now;
+    }
+}
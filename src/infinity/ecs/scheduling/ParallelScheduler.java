@@ -0,0 +1,399 @@
+package infinity.ecs.scheduling;
+
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.exceptions.ScheduleIsRunningException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * The ParallelScheduler updates EntitySystems concurrently on a work-stealing ForkJoinPool. The
+ * systems are ordered by their priority like in the RRScheduler, whereby 1 is the highest
+ * priority. makeSchedule() builds a dependency graph from the read and write masks of the systems:
+ * a system depends on every system before it in the order that it conflicts with. A system is
+ * started as soon as all its dependencies of the current frame are done, so systems that don't
+ * conflict run at the same time, while conflicting systems always run in the same order.
+ * Systems which don't declare their accesses conflict with every other system. Concurrent systems
+ * may only mark components as changed if the EntityManager has been set by setEntityManager().
+ * @author Simon
+ */
+public class ParallelScheduler implements Scheduler {
+
+    /**
+     * The pool the systems are updated on.
+     */
+    private final ForkJoinPool _pool;
+
+    /**
+     * Contains all systems that need to be scheduled mapped to their priority.
+     */
+    private final SortedMap<Integer,ArrayList<EntitySystem>> _systems;
+
+    /**
+     * Contains the systems of the current schedule in their order.
+     */
+    private EntitySystem[] _schedule;
+
+    /**
+     * The number of systems every system of the schedule depends on.
+     */
+    private int[] _dependencyCounts;
+
+    /**
+     * The indices of all systems which depend on a system of the schedule.
+     */
+    private int[][] _dependents;
+
+    /**
+     * The indices of all systems without dependencies.
+     */
+    private int[] _roots;
+
+    /**
+     * The current amount of runs since the start.
+     */
+    private volatile int _runs;
+
+    /**
+     * Is used to end the main loop.
+     */
+    private volatile boolean _runFlag;
+
+    /**
+     * Decides when the schedule is run and which elapsed time is passed to the systems.
+     */
+    private FrameTimer _timer;
+
+    /**
+     * The EntityManager whose frames are run as concurrent updates, or null.
+     */
+    private volatile EntityManager _entityManager;
+
+    /**
+     * The measurements of the schedule.
+     */
+    private final SchedulerMetrics _metrics;
+
+    /**
+     * Contains the measurements of every system of the current schedule, in the same order.
+     */
+    private SystemMetrics[] _systemMetrics;
+
+    /**
+     * Creates a new ParallelScheduler which uses the common ForkJoinPool.
+     */
+    public ParallelScheduler(){
+	this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a new ParallelScheduler which uses the specified pool.
+     * @param pool
+     */
+    public ParallelScheduler(ForkJoinPool pool){
+	if(pool == null)
+	    throw new IllegalArgumentException();
+	_pool = pool;
+	_systems = new TreeMap<>();
+	_schedule = new EntitySystem[0];
+	_dependencyCounts = new int[0];
+	_dependents = new int[0][];
+	_roots = new int[0];
+	_timer = new FrameTimer();
+	_metrics = new SchedulerMetrics(this);
+	_systemMetrics = new SystemMetrics[0];
+    }
+
+    /**
+     * Ends the main loop in run() and sets the runs back to 0.
+     */
+    @Override
+    public void end(){
+	_runFlag = false;
+	_runs = 0;
+    }
+
+    /**
+     * Stops the main loop in run() after the current frame.
+     */
+    public void pause(){
+	_runFlag = false;
+    }
+
+    /**
+     * Removes the system from the schedule.
+     * @param system
+     * @return
+     */
+    @Override
+    public boolean removeSystem(EntitySystem system){
+	for(ArrayList<EntitySystem> list : _systems.values()){
+	    if(list.remove(system))
+		return true;
+	}
+	return false;
+    }
+
+    /**
+     * Registers the system in the Scheduler.
+     * @param system
+     * @param priority Systems with a higher priority come first in the order of conflicting
+     * systems, systems with the same priority are ordered by their registration. The highest
+     * priority is 1. The priority must be &#62; 0
+     * @return
+     */
+    @Override
+    public boolean registerSystem(EntitySystem system, Integer priority) {
+	if(system == null || priority <= 0)
+	    return false;
+	ArrayList<EntitySystem> list = _systems.get(priority);
+	if(list == null) {
+	    list = new ArrayList<>();
+	    _systems.put(priority, list);
+	}
+	return list.add(system);
+    }
+
+    /**
+     * Recalculates the schedule and its dependency graph.
+     * @throws ScheduleIsRunningException
+     */
+    @Override
+    public void makeSchedule() throws ScheduleIsRunningException{
+	if(_runFlag)
+	    throw new ScheduleIsRunningException();
+	ArrayList<EntitySystem> order = new ArrayList<>();
+	Collection<ArrayList<EntitySystem>> lists = _systems.values();
+	for(ArrayList<EntitySystem> list : lists)
+	    order.addAll(list);
+
+	int size = order.size();
+	EntitySystem[] schedule = order.toArray(new EntitySystem[size]);
+	int[] dependencyCounts = new int[size];
+	int[][] dependents = new int[size][];
+	int rootCount = 0;
+	for(int i = 0; i < size; i++) {
+	    int count = 0;
+	    int[] tDependents = new int[size - i - 1];
+	    for(int j = i + 1; j < size; j++) {
+		if(schedule[i].conflictsWith(schedule[j])) {
+		    tDependents[count++] = j;
+		    dependencyCounts[j]++;
+		}
+	    }
+	    dependents[i] = Arrays.copyOf(tDependents, count);
+	    if(dependencyCounts[i] == 0)
+		rootCount++;
+	}
+	int[] roots = new int[rootCount];
+	rootCount = 0;
+	for(int i = 0; i < size; i++) {
+	    if(dependencyCounts[i] == 0)
+		roots[rootCount++] = i;
+	}
+	_schedule = schedule;
+	_dependencyCounts = dependencyCounts;
+	_dependents = dependents;
+	_roots = roots;
+	_systemMetrics = new SystemMetrics[size];
+	for(int i = 0; i < size; i++)
+	    _systemMetrics[i] = _metrics.getOrCreate(schedule[i]);
+    }
+
+    /**
+     * Runs the schedule until the _runFlag is set to false. makeSchedule() needs to be called first.
+     * The FrameTimer decides how often the schedule is run, between the frames the thread sleeps.
+     * Interrupting the thread stops the loop like pause(), the interrupt flag stays set.
+     */
+    @Override
+    public void run(){
+	_runFlag = true;
+	FrameTimer timer = _timer;
+	timer.reset();
+	while(_runFlag) {
+	    int steps = timer.advance();
+	    //The timer doesn't wait anymore once the thread is interrupted
+	    if(Thread.currentThread().isInterrupted()) {
+		_runFlag = false;
+		return;
+	    }
+	    for(int i = 0; i < steps && _runFlag; i++)
+		runFrame(timer.getElapsedTime());
+	}
+    }
+
+    /**
+     * Updates every system of the schedule once and waits until all of them are done.
+     * makeSchedule() needs to be called first. If a system throws an exception, the exception is
+     * rethrown after the frame has been abandoned.
+     * @param elapsedTime The time that is passed to the systems.
+     */
+    public void runFrame(int elapsedTime){
+	boolean measure = _metrics.isEnabled();
+	long frameStart = measure ? System.nanoTime() : 0;
+	if(_schedule.length > 0) {
+	    EntityManager manager = _entityManager;
+	    if(manager != null)
+		manager.beginConcurrentUpdate();
+	    try {
+		_pool.invoke(new Frame(elapsedTime, measure));
+	    } finally {
+		//Sends the deferred messages on this thread
+		if(manager != null)
+		    manager.endConcurrentUpdate();
+	    }
+	}
+	if(measure)
+	    _metrics.recordFrame(System.nanoTime() - frameStart);
+	_runs += 1;
+	//Catches the overflow
+	if(_runs == Integer.MAX_VALUE)
+	    _runs = 0;
+    }
+
+    /**
+     * Returns how often the schedule was executed since the start.
+     * @return
+     */
+    @Override
+    public int getRuns(){
+	return _runs;
+    }
+
+    /**
+     * True if the schedule is currently running.
+     * @return
+     */
+    @Override
+    public boolean isRunning(){
+	return _runFlag;
+    }
+
+    /**
+     * Sets the FrameTimer which decides when the schedule is run. Takes effect the next time run()
+     * is called.
+     * @param timer
+     */
+    @Override
+    public void setFrameTimer(FrameTimer timer){
+	if(timer == null)
+	    throw new IllegalArgumentException();
+	_timer = timer;
+    }
+
+    /**
+     * Returns the FrameTimer of the schedule.
+     * @return
+     */
+    @Override
+    public FrameTimer getFrameTimer(){
+	return _timer;
+    }
+
+    /**
+     * Sets the EntityManager of the systems. Every frame is then run as a concurrent update of the
+     * manager, so systems that are updated at the same time may mark components as changed, while
+     * the resulting messages are sent by the thread that runs the frame. Without a manager the
+     * systems must not call EntityManager.markChanged() from concurrently updated systems.
+     * @param manager The EntityManager of the systems, or null.
+     */
+    public void setEntityManager(EntityManager manager){
+	_entityManager = manager;
+    }
+
+    /**
+     * Returns the EntityManager whose frames are run as concurrent updates.
+     * @return The EntityManager or null.
+     */
+    public EntityManager getEntityManager(){
+	return _entityManager;
+    }
+
+    /**
+     * Returns the measurements of the schedule, which are disabled by default.
+     * @return
+     */
+    @Override
+    public SchedulerMetrics getMetrics(){
+	return _metrics;
+    }
+
+    /**
+     * The root task of a single frame, which completes when all systems are done.
+     */
+    private final class Frame extends CountedCompleter<Void> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of dependencies of every system that are not done yet.
+	 */
+	private final AtomicIntegerArray _remaining = new AtomicIntegerArray(_dependencyCounts);
+
+	/**
+	 * The time that is passed to the systems.
+	 */
+	private final int _elapsedTime;
+
+	/**
+	 * True if the updates of the systems are measured.
+	 */
+	private final boolean _measure;
+
+	Frame(int elapsedTime, boolean measure) {
+	    _elapsedTime = elapsedTime;
+	    _measure = measure;
+	}
+
+	@Override
+	public void compute() {
+	    for(int root : _roots) {
+		addToPendingCount(1);
+		new SystemTask(this, root).fork();
+	    }
+	    tryComplete();
+	}
+    }
+
+    /**
+     * Updates a single system and starts all dependent systems that have no other pending
+     * dependencies left.
+     */
+    private final class SystemTask extends CountedCompleter<Void> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Frame _frame;
+
+	private final int _index;
+
+	SystemTask(Frame frame, int index) {
+	    super(frame);
+	    _frame = frame;
+	    _index = index;
+	}
+
+	@Override
+	public void compute() {
+	    if(_frame._measure)
+		_systemMetrics[_index].start();
+	    _schedule[_index].update(_frame._elapsedTime);
+	    if(_frame._measure)
+		_systemMetrics[_index].stop();
+	    for(int dependent : _dependents[_index]) {
+		if(_frame._remaining.decrementAndGet(dependent) == 0) {
+		    // the frame must not complete before the new task is done
+		    _frame.addToPendingCount(1);
+		    new SystemTask(_frame, dependent).fork();
+		}
+	    }
+	    tryComplete();
+	}
+    }
+}
@@ -51,4 +51,23 @@ public interface Scheduler extends Runnable {
      * @return 
      */
     public abstract boolean isRunning();
+    
+    /**
+     * Sets the FrameTimer which decides when the schedule is run and which elapsed time is passed
+     * to the systems. Takes effect the next time run() is called.
+     * @param timer
+     */
+    public abstract void setFrameTimer(FrameTimer timer);
+    
+    /**
+     * Returns the FrameTimer of the schedule.
+     * @return 
+     */
+    public abstract FrameTimer getFrameTimer();
+    
+    /**
+     * Returns the measurements of the schedule, which are disabled by default.
+     * @return 
+     */
+    public abstract SchedulerMetrics getMetrics();
 }
@@ -0,0 +1,196 @@
+package infinity.ecs.scheduling;
+
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.utils.LatencyHistogram;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Contains the measurements of a Scheduler: the time of every frame, and the update times and
+ * processed entities of every EntitySystem. The measurements are disabled by default; while they
+ * are disabled the scheduler only checks a single flag per frame. Recording a measurement never
+ * allocates, since all histograms are created when the schedule is made.
+ * <p>
+ * The metrics can be registered as an MBean to watch them with any JMX console. The measurements
+ * are written by the threads of the scheduler without synchronization, so a reader may see values
+ * of a frame that is still in progress.
+ * @author Simon
+ */
+public final class SchedulerMetrics implements SchedulerMetricsMBean {
+
+    /**
+     * The measured scheduler.
+     */
+    private final Scheduler _scheduler;
+
+    /**
+     * The measurements of every system, in the order the systems were first scheduled.
+     */
+    private final Map<EntitySystem,SystemMetrics> _systems;
+
+    /**
+     * The times of the frames in nanoseconds.
+     */
+    private final LatencyHistogram _frameTimes;
+
+    /**
+     * True if the measurements are taken.
+     */
+    private volatile boolean _enabled;
+
+    /**
+     * The name the metrics are registered with as an MBean, or null.
+     */
+    private ObjectName _name;
+
+    /**
+     * Creates new metrics for the specified scheduler.
+     * @param scheduler
+     */
+    public SchedulerMetrics(Scheduler scheduler){
+	_scheduler = scheduler;
+	_systems = new LinkedHashMap<>();
+	_frameTimes = new LatencyHistogram();
+    }
+
+    /**
+     * Returns the measurements of the specified system and creates them if necessary. Is called by
+     * the scheduler when the schedule is made.
+     * @param system
+     * @return
+     */
+    synchronized SystemMetrics getOrCreate(EntitySystem system){
+	SystemMetrics metrics = _systems.get(system);
+	if(metrics == null) {
+	    metrics = new SystemMetrics(system);
+	    _systems.put(system, metrics);
+	}
+	return metrics;
+    }
+
+    /**
+     * Records the time of a frame.
+     * @param nanos
+     */
+    void recordFrame(long nanos){
+	_frameTimes.record(nanos);
+    }
+
+    @Override
+    public boolean isEnabled(){
+	return _enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled){
+	_enabled = enabled;
+    }
+
+    @Override
+    public int getRuns(){
+	return _scheduler.getRuns();
+    }
+
+    /**
+     * Returns the times of the frames in nanoseconds.
+     * @return
+     */
+    public LatencyHistogram getFrameTimes(){
+	return _frameTimes;
+    }
+
+    /**
+     * Returns the measurements of the specified system.
+     * @param system
+     * @return The measurements, or null if the system has never been scheduled.
+     */
+    public synchronized SystemMetrics getSystemMetrics(EntitySystem system){
+	return _systems.get(system);
+    }
+
+    /**
+     * Returns the measurements of all systems that have been scheduled.
+     * @return
+     */
+    public synchronized List<SystemMetrics> getAllSystemMetrics(){
+	return new ArrayList<>(_systems.values());
+    }
+
+    @Override
+    public long getFrameCount(){
+	return _frameTimes.getCount();
+    }
+
+    @Override
+    public double getMeanFrameTime(){
+	return _frameTimes.getMean();
+    }
+
+    @Override
+    public long getP99FrameTime(){
+	return _frameTimes.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getMaxFrameTime(){
+	return _frameTimes.getMax();
+    }
+
+    @Override
+    public synchronized String[] getSystemReport(){
+	String[] report = new String[_systems.size()];
+	int i = 0;
+	for(SystemMetrics metrics : _systems.values()) {
+	    LatencyHistogram times = metrics.getUpdateTimes();
+	    report[i++] = String.format("%s: mean=%.0f p99=%d max=%d entities=%d",
+		    metrics.getSystem().getClass().getSimpleName(), times.getMean(),
+		    times.getValueAtPercentile(99), times.getMax(), metrics.getLastEntityCount());
+	}
+	return report;
+    }
+
+    /**
+     * Removes all measurements. Should only be called while the measurements are disabled or the
+     * scheduler isn't running.
+     */
+    @Override
+    public synchronized void reset(){
+	_frameTimes.reset();
+	for(SystemMetrics metrics : _systems.values())
+	    metrics.reset();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server.
+     * @param name The name of the scheduler, which becomes part of the object name
+     * "infinity.ecs:type=Scheduler,name=...".
+     * @throws JMException If the metrics could not be registered.
+     */
+    public synchronized void registerMBean(String name) throws JMException{
+	if(_name != null)
+	    unregisterMBean();
+	ObjectName objectName = new ObjectName("infinity.ecs:type=Scheduler,name="
+		+ ObjectName.quote(name));
+	ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+	_name = objectName;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if they have been registered.
+     * @throws JMException If the metrics could not be unregistered.
+     */
+    public synchronized void unregisterMBean() throws JMException{
+	if(_name == null)
+	    return;
+	MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	if(server.isRegistered(_name))
+	    server.unregisterMBean(_name);
+	_name = null;
+    }
+}
@@ -0,0 +1,63 @@
+package infinity.ecs.scheduling;
+
+/**
+ * The management interface of the SchedulerMetrics, which makes them available by JMX. All times
+ * are in nanoseconds.
+ * @author Simon
+ */
+public interface SchedulerMetricsMBean {
+
+    /**
+     * True if the measurements are taken.
+     * @return
+     */
+    public abstract boolean isEnabled();
+
+    /**
+     * Enables or disables the measurements.
+     * @param enabled
+     */
+    public abstract void setEnabled(boolean enabled);
+
+    /**
+     * Returns how often the schedule was executed since the start.
+     * @return
+     */
+    public abstract int getRuns();
+
+    /**
+     * Returns the number of measured frames.
+     * @return
+     */
+    public abstract long getFrameCount();
+
+    /**
+     * Returns the mean time of a frame.
+     * @return
+     */
+    public abstract double getMeanFrameTime();
+
+    /**
+     * Returns the 99th percentile of the frame times.
+     * @return
+     */
+    public abstract long getP99FrameTime();
+
+    /**
+     * Returns the longest frame time.
+     * @return
+     */
+    public abstract long getMaxFrameTime();
+
+    /**
+     * Returns one line per system with its name, the mean, 99th percentile and maximum of its
+     * update times and the number of entities processed by its last update.
+     * @return
+     */
+    public abstract String[] getSystemReport();
+
+    /**
+     * Removes all measurements.
+     */
+    public abstract void reset();
+}
@@ -0,0 +1,107 @@
+package infinity.ecs.scheduling;
+
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.utils.LatencyHistogram;
+
+/**
+ * Contains the measurements of a single EntitySystem: the latencies of its updates in
+ * nanoseconds and the number of entities it processed. The measurements are taken by the
+ * Scheduler while its SchedulerMetrics are enabled.
+ * @author Simon
+ */
+public final class SystemMetrics {
+
+    /**
+     * The measured system.
+     */
+    private final EntitySystem _system;
+
+    /**
+     * The latencies of the updates in nanoseconds.
+     */
+    private final LatencyHistogram _updateTimes;
+
+    /**
+     * The time when the current update was started.
+     */
+    private long _startTime;
+
+    /**
+     * The number of processed entities of the system when the current update was started.
+     */
+    private long _startCount;
+
+    /**
+     * The number of entities processed by the last measured update.
+     */
+    private volatile long _lastEntityCount;
+
+    /**
+     * The number of entities processed by all measured updates.
+     */
+    private volatile long _totalEntityCount;
+
+    SystemMetrics(EntitySystem system){
+	_system = system;
+	_updateTimes = new LatencyHistogram();
+    }
+
+    /**
+     * Is called right before the system is updated.
+     */
+    void start(){
+	_startCount = _system.getProcessedCount();
+	_startTime = System.nanoTime();
+    }
+
+    /**
+     * Is called right after the system has been updated.
+     */
+    void stop(){
+	_updateTimes.record(System.nanoTime() - _startTime);
+	long count = _system.getProcessedCount() - _startCount;
+	_lastEntityCount = count;
+	_totalEntityCount += count;
+    }
+
+    /**
+     * Removes all measurements.
+     */
+    void reset(){
+	_updateTimes.reset();
+	_lastEntityCount = 0;
+	_totalEntityCount = 0;
+    }
+
+    /**
+     * Returns the measured system.
+     * @return
+     */
+    public EntitySystem getSystem(){
+	return _system;
+    }
+
+    /**
+     * Returns the latencies of the updates of the system in nanoseconds.
+     * @return
+     */
+    public LatencyHistogram getUpdateTimes(){
+	return _updateTimes;
+    }
+
+    /**
+     * Returns the number of entities processed by the last measured update.
+     * @return
+     */
+    public long getLastEntityCount(){
+	return _lastEntityCount;
+    }
+
+    /**
+     * Returns the number of entities processed by all measured updates.
+     * @return
+     */
+    public long getTotalEntityCount(){
+	return _totalEntityCount;
+    }
+}
@@ -1,7 +1,5 @@
 package infinity.ecs.utils;
 
-import java.util.Arrays;
-
 /**
  * Class that can be used to store the value of an arbitrary number of bits.
  * <p>
@@ -150,6 +148,45 @@ public class BitArray {
 		return false;
 	}
 
+	/**
+	 * Checks if this BitArray contains all bits of the first specified BitArray, at least one bit
+	 * of the second one and none of the bits of the third one. The second condition is also met if
+	 * the second BitArray has no bits set at all. All three checks are done in a single pass over
+	 * the integers of the arrays.
+	 *
+	 * @param all The bits which all need to be set in this array.
+	 * @param any The bits of which at least one needs to be set in this array.
+	 * @param none The bits which all need to be unset in this array.
+	 * @return true if all three conditions are met, otherwise false.
+	 */
+	public boolean matches(BitArray all, BitArray any, BitArray none) {
+		// safe some lookup time by getting references
+		int[] array = _array;
+		int[] allArray = all._array;
+		int[] anyArray = any._array;
+		int[] noneArray = none._array;
+		int length = Math.max(allArray.length, Math.max(anyArray.length, noneArray.length));
+		boolean anyRequired = false;
+		boolean anyFound = false;
+		for (int i = 0; i < length; i++) {
+			// integers outside of the capacity of this array are zero by definition
+			int value = i < array.length ? array[i] : 0;
+			if (i < allArray.length) {
+				int t = allArray[i];
+				if ((value & t) != t)
+					return false;
+			}
+			if (i < noneArray.length && (value & noneArray[i]) != 0)
+				return false;
+			if (i < anyArray.length && anyArray[i] != 0) {
+				anyRequired = true;
+				if ((value & anyArray[i]) != 0)
+					anyFound = true;
+			}
+		}
+		return !anyRequired || anyFound;
+	}
+
 	/**
 	 * Gets the current number of bits that can be stored in this bit array.
 	 *
@@ -190,7 +227,14 @@ public class BitArray {
 	
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(_array);
+		// trailing zero words are ignored by equals, so they must not change the hash either
+		int length = _array.length;
+		while (length > 0 && _array[length - 1] == 0)
+			length--;
+		int hash = 1;
+		for (int i = 0; i < length; i++)
+			hash = 31 * hash + _array[i];
+		return hash;
 	}
 
 	/**
@@ -30,6 +30,11 @@ package infinity.ecs.utils;
  * acquired to the pool will be unique, regardless of the actions of other
  * objects. On the other hand this means that the IdPool can only distribute
  * 2^32 IDs during it's lifetime, after which it will simply overflow.
+ * <p>
+ * Pools which are created with a growing stack double the capacity of the stack
+ * whenever it is full, so no freed ID is ever lost. This keeps the distributed
+ * IDs as dense as possible, which is what the {@link
+ * infinity.ecs.core.EntityManager} relies on to keep its arrays small.
  *
  * ToDo: Needs unit tests.
  *
@@ -54,6 +59,11 @@ public class IdPool {
 	 * means there are currently no free IDs.
 	 */
 	private int _freeIdsPointer;
+	/**
+	 * Indicates if the stack of free IDs grows when it is full, instead of
+	 * dropping the freed ID.
+	 */
+	private final boolean _growFreeIds;
 
 	/**
 	 * Creates a new instance of the IdPool class. The capacity of the stack for
@@ -69,9 +79,21 @@ public class IdPool {
 	 * @param freeIdCapacity The capacity of the stack for free IDs.
 	 */
 	public IdPool(int freeIdCapacity) {
+		this(freeIdCapacity, false);
+	}
+
+	/**
+	 * Creates a new instance of the IdPool class.
+	 *
+	 * @param freeIdCapacity The initial capacity of the stack for free IDs.
+	 * @param growFreeIds true if the stack for free IDs should grow when it is
+	 * full, or false if further freed IDs should be lost.
+	 */
+	public IdPool(int freeIdCapacity, boolean growFreeIds) {
 		_idCount = 0;
 		_freeIds = new int[freeIdCapacity];
 		_freeIdsPointer = -1;
+		_growFreeIds = growFreeIds;
 	}
 
 	/**
@@ -85,14 +107,55 @@ public class IdPool {
 		return _idCount++;
 	}
 
+	/**
+	 * Gets the specified number of unique IDs from this pool. Free IDs are
+	 * distributed first, the remaining IDs are taken as one continuous range.
+	 *
+	 * @param count The number of IDs.
+	 * @return The resulting IDs.
+	 */
+	public int[] getIds(int count) {
+		int[] ids = new int[count];
+		int fromStack = Math.min(count, _freeIdsPointer + 1);
+		for (int i = 0; i < fromStack; i++)
+			ids[i] = _freeIds[_freeIdsPointer--];
+		for (int i = fromStack; i < count; i++)
+			ids[i] = _idCount++;
+		return ids;
+	}
+
 	/**
 	 * Free a previously distributed ID which is no longer needed.
 	 *
 	 * @param id The ID which should be free.
 	 */
 	public void freeId(int id) {
-		if (_freeIdsPointer != _freeIds.length - 1)
-			_freeIds[++_freeIdsPointer] = id;
+		if (_freeIdsPointer == _freeIds.length - 1) {
+			if (!_growFreeIds)
+				return;
+			setFreeIdCapacity(Math.max(16, _freeIds.length * 2));
+		}
+		_freeIds[++_freeIdsPointer] = id;
+	}
+
+	/**
+	 * Gets the number of IDs which are currently free and will be distributed
+	 * again before any new ID.
+	 *
+	 * @return The number of free IDs.
+	 */
+	public int getFreeIdCount() {
+		return _freeIdsPointer + 1;
+	}
+
+	/**
+	 * Gets the number of IDs which have been distributed so far, including
+	 * the ones which have been freed. All IDs are smaller than this value.
+	 *
+	 * @return The number of distributed IDs.
+	 */
+	public int getIdCount() {
+		return _idCount;
 	}
 
 	/**
@@ -130,8 +193,9 @@ public class IdPool {
 			// position of the stack pointer, because it's not possible to copy 
 			// more than the new stack would hold, but there is also no point 
 			// in copying more data than is used anyway
-			int length = Math.min(capacity, _freeIdsPointer);
+			int length = Math.min(capacity, _freeIdsPointer + 1);
 			System.arraycopy(_freeIds, 0, newFreeIds, 0, length);
+			_freeIdsPointer = length - 1;
 		}
 		_freeIds = newFreeIds;
 	}
@@ -15,7 +15,9 @@ import java.util.NoSuchElementException;
  * inserted by the set method with their specific unique index. Since the collection has no defined
  * end, there is no add method. For the purpose of inserting new elements into the collection, it
  * can be assumed to be of infinite length. If the current capacity is exceeded, the internal
- * array is automatically resized to match the required capacity.
+ * array is automatically resized to match the required capacity. The capacity is at least doubled
+ * on every resize, so filling the collection with sequential indices costs amortized O(1) per
+ * element. Use {@link #ensureCapacity(int)} if the number of elements is known in advance.
  * <p>
  * Iterating trough the array is more costly than for conventional lists, because elements may be
  * spread through the whole array, so that the position of the next element must be searched
@@ -32,8 +34,9 @@ public class IndexedCollection<T> implements Iterable<T> {
 	// is considered to be free and every field not null is occupied.
 	
 	/**
-	 * The initial capacity of the internal array if the default constructor is used and the number
-	 * of additional elements slots that is allocated if the current capacity is exceeded. 
+	 * The initial capacity of the internal array if the default constructor is used and the
+	 * minimum number of additional elements slots that is allocated if the current capacity is
+	 * exceeded.
 	 */
 	private final static int CAPACITY_OFFSET = 32;
 	
@@ -59,6 +62,16 @@ public class IndexedCollection<T> implements Iterable<T> {
 		_elements = (T[])new Object[capacity];
 	}
 	
+	/**
+	 * Creates a new instance of the {@link IndexedCollection} class, which contains the same
+	 * elements at the same indices as the specified collection.
+	 * 
+	 * @param source The collection which should be copied.
+	 */
+	public IndexedCollection(IndexedCollection<T> source) {
+		_elements = source._elements.clone();
+	}
+	
 	/**
 	 * Tries to get the element with the specified index.
 	 * 
@@ -80,10 +93,21 @@ public class IndexedCollection<T> implements Iterable<T> {
 	 */
 	public void set(int index, T element) {
 		if (index >= _elements.length)
-			resize(index + CAPACITY_OFFSET);
+			resize(Math.max(index + CAPACITY_OFFSET, _elements.length * 2));
 		_elements[index] = element;
 	}
 	
+	/**
+	 * Makes sure the collection can hold elements up to the specified index without having to
+	 * resize the internal array.
+	 * 
+	 * @param capacity The required capacity.
+	 */
+	public void ensureCapacity(int capacity) {
+		if (capacity > _elements.length)
+			resize(capacity);
+	}
+	
 	/**
 	 * Removes the element with the specified index from the collection and frees the corresponding
 	 * field.
@@ -0,0 +1,181 @@
+package infinity.ecs.utils;
+
+import java.util.Arrays;
+
+/**
+ * Records the distribution of latencies, or any other non-negative long values, with a fixed
+ * relative precision.
+ * <p>
+ * <b>Notes:</b><br>
+ * The histogram uses the same layout as an HDR histogram: every power of two is divided into 32
+ * linear sub-buckets, so every recorded value is known with an error of at most 1/32 (about 3%),
+ * regardless of its magnitude. Values below 64 are recorded exactly. All buckets are allocated up
+ * front, so recording a value never allocates and costs only a few arithmetic operations.
+ * <p>
+ * The histogram is not synchronized. It should only be written by one thread at a time; other
+ * threads may read it concurrently, but might see the values of a partially recorded value.
+ *
+ * @author preip
+ */
+public final class LatencyHistogram {
+
+	/**
+	 * The number of bits used to address the sub-buckets of a power of two.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * The number of sub-buckets of a power of two.
+	 */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The number of values recorded in every bucket.
+	 */
+	private final long[] _counts;
+
+	/**
+	 * The number of recorded values.
+	 */
+	private long _count;
+
+	/**
+	 * The sum of all recorded values.
+	 */
+	private long _sum;
+
+	/**
+	 * The smallest recorded value.
+	 */
+	private long _min;
+
+	/**
+	 * The largest recorded value.
+	 */
+	private long _max;
+
+	/**
+	 * Creates a new instance of the {@link LatencyHistogram} class.
+	 */
+	public LatencyHistogram() {
+		_counts = new long[(64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT];
+		reset();
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Private Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the index of the bucket of the specified value.
+	 */
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKET_COUNT)
+			return (int)value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return (shift + 1) * SUB_BUCKET_COUNT + (int)(value >>> shift) - SUB_BUCKET_COUNT;
+	}
+
+	/**
+	 * Gets the largest value which is recorded in the bucket at the specified index.
+	 */
+	private static long highestValueOf(int index) {
+		if (index < SUB_BUCKET_COUNT)
+			return index;
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long subBucket = index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Records the specified value. Negative values are recorded as 0.
+	 *
+	 * @param value The value which should be recorded.
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		_counts[indexOf(value)]++;
+		_count++;
+		_sum += value;
+		if (value < _min)
+			_min = value;
+		if (value > _max)
+			_max = value;
+	}
+
+	/**
+	 * Removes all recorded values.
+	 */
+	public void reset() {
+		Arrays.fill(_counts, 0);
+		_count = 0;
+		_sum = 0;
+		_min = Long.MAX_VALUE;
+		_max = 0;
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		return _count;
+	}
+
+	/**
+	 * Gets the smallest recorded value.
+	 *
+	 * @return The smallest value, or 0 if no value has been recorded.
+	 */
+	public long getMin() {
+		return _count == 0 ? 0 : _min;
+	}
+
+	/**
+	 * Gets the largest recorded value.
+	 *
+	 * @return The largest value, or 0 if no value has been recorded.
+	 */
+	public long getMax() {
+		return _max;
+	}
+
+	/**
+	 * Gets the exact mean of all recorded values.
+	 *
+	 * @return The mean, or 0 if no value has been recorded.
+	 */
+	public double getMean() {
+		return _count == 0 ? 0 : (double)_sum / _count;
+	}
+
+	/**
+	 * Gets the value below or at which the specified percentage of all recorded values lie. The
+	 * result has the precision of the buckets, but is never larger than the largest recorded
+	 * value.
+	 *
+	 * @param percentile The percentage, from 0 to 100.
+	 * @return The value at the percentile, or 0 if no value has been recorded.
+	 * @throws IllegalArgumentException When the percentile is not within 0 and 100.
+	 */
+	public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+		if (percentile < 0 || percentile > 100)
+			throw new IllegalArgumentException();
+		if (_count == 0)
+			return 0;
+		long target = Math.max(1, (long)Math.ceil(percentile / 100 * _count));
+		long total = 0;
+		for (int i = 0; i < _counts.length; i++) {
+			total += _counts[i];
+			if (total >= target)
+				return Math.min(highestValueOf(i), _max);
+		}
+		return _max;
+	}
+}
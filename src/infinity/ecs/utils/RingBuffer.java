@@ -0,0 +1,195 @@
+package infinity.ecs.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded queue which can be filled by any number of threads at the same time, but may only be
+ * emptied by a single thread, without using any locks.
+ * <p>
+ * <b>Notes:</b><br>
+ * The elements are stored in an array which is used as a ring. Producers claim a slot by
+ * increasing the tail with a compare-and-set and publish their element by writing it into the
+ * claimed slot. The consumer takes the element from the slot at the head, clears the slot and
+ * increases the head, which frees the slot for the producers again. Since a producer claims its
+ * slot before it writes the element, the consumer may briefly have to wait for an element which
+ * has been claimed but not yet published.
+ * <p>
+ * The capacity is always rounded up to the next power of two, so the slot of a position can be
+ * found with a bit mask instead of a division. When the buffer is full, {@link #offer(Object)}
+ * fails instead of waiting for the consumer.
+ *
+ * @author preip
+ */
+public final class RingBuffer<T> {
+
+	/**
+	 * The slots of the ring, which are null when they are free.
+	 */
+	private final AtomicReferenceArray<T> _slots;
+
+	/**
+	 * The mask which turns a position into the index of its slot.
+	 */
+	private final int _mask;
+
+	/**
+	 * The position of the next element to take. Only written by the consumer.
+	 */
+	private final AtomicLong _head;
+
+	/**
+	 * The position of the next slot to claim.
+	 */
+	private final AtomicLong _tail;
+
+	/**
+	 * Creates a new instance of the {@link RingBuffer} class.
+	 *
+	 * @param capacity The minimal number of elements the buffer should be able to hold.
+	 * @throws IllegalArgumentException When capacity is not positive or greater than 2^30.
+	 */
+	public RingBuffer(int capacity) throws IllegalArgumentException {
+		if (capacity <= 0 || capacity > 1 << 30)
+			throw new IllegalArgumentException();
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity)
+			size <<= 1;
+		_slots = new AtomicReferenceArray<T>(size);
+		_mask = size - 1;
+		_head = new AtomicLong();
+		_tail = new AtomicLong();
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Producer Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Inserts the specified element at the tail of the buffer. May be called by any thread.
+	 *
+	 * @param element The element which should be inserted.
+	 * @return true if the element has been inserted, false if the buffer was full.
+	 * @throws IllegalArgumentException When element was null.
+	 */
+	public boolean offer(T element) throws IllegalArgumentException {
+		if (element == null)
+			throw new IllegalArgumentException();
+		long tail;
+		do {
+			tail = _tail.get();
+			if (tail - _head.get() > _mask)
+				return false;
+		} while (!_tail.compareAndSet(tail, tail + 1));
+		_slots.lazySet((int)tail & _mask, element);
+		return true;
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Consumer Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Retrieves and removes the element at the head of the buffer. May only be called by the
+	 * consumer thread.
+	 *
+	 * @return The element at the head, or null if the buffer is empty.
+	 */
+	public T poll() {
+		long head = _head.get();
+		int index = (int)head & _mask;
+		T element = _slots.get(index);
+		if (element == null) {
+			if (head == _tail.get())
+				return null;
+			// the slot has been claimed, but the element is not published yet
+			do {
+				Thread.yield();
+				element = _slots.get(index);
+			} while (element == null);
+		}
+		_slots.lazySet(index, null);
+		_head.lazySet(head + 1);
+		return element;
+	}
+
+	/**
+	 * Retrieves and removes up to the specified number of elements from the head of the buffer and
+	 * passes them to the specified consumer. The tail is only read once, so only the elements which
+	 * have been inserted before the call are retrieved. May only be called by the consumer thread.
+	 *
+	 * @param consumer The consumer of the elements.
+	 * @param max The maximal number of elements which should be retrieved.
+	 * @return The number of retrieved elements.
+	 */
+	public int drainTo(Consumer<? super T> consumer, int max) {
+		long head = _head.get();
+		int count = (int)Math.max(0, Math.min(max, _tail.get() - head));
+		for (int i = 0; i < count; i++) {
+			int index = (int)head & _mask;
+			T element = _slots.get(index);
+			// wait for claimed elements which are not published yet
+			while (element == null) {
+				Thread.yield();
+				element = _slots.get(index);
+			}
+			_slots.lazySet(index, null);
+			_head.lazySet(++head);
+			consumer.accept(element);
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the element at the head of the buffer without removing it. May only be called by the
+	 * consumer thread.
+	 *
+	 * @return The element at the head, or null if the buffer is empty or the element at the head
+	 * 		is not published yet.
+	 */
+	public T peek() {
+		return _slots.get((int)_head.get() & _mask);
+	}
+
+	/**
+	 * Removes all elements from the buffer. May only be called by the consumer thread.
+	 */
+	public void clear() {
+		while (poll() != null);
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Public Methods
+	//----------------------------------------------------------------------------------------------
+
+	/**
+	 * Gets the number of elements in the buffer. Since the buffer can be changed concurrently,
+	 * the number is only an estimate.
+	 *
+	 * @return The number of elements.
+	 */
+	public int size() {
+		long size = _tail.get() - _head.get();
+		return (int)Math.max(0, Math.min(size, _mask + 1));
+	}
+
+	/**
+	 * Checks if the buffer is empty. Since the buffer can be changed concurrently, the result is
+	 * only an estimate.
+	 *
+	 * @return true if the buffer is empty, otherwise false.
+	 */
+	public boolean isEmpty() {
+		return _tail.get() == _head.get();
+	}
+
+	/**
+	 * Gets the maximal number of elements the buffer can hold.
+	 *
+	 * @return The capacity.
+	 */
+	public int getCapacity() {
+		return _mask + 1;
+	}
+}
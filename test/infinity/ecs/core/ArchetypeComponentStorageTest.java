@@ -0,0 +1,223 @@
+package infinity.ecs.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class ArchetypeComponentStorageTest {
+
+	private ArchetypeComponentStorage _storage;
+	private EntityManager _manager;
+	private ComponentType _typeA, _typeB;
+
+	@Before
+	public void setUp() {
+		_typeA = ComponentType.get(ComponentA.class);
+		_typeB = ComponentType.get(ComponentB.class);
+		// use a tiny chunk size so the tests span multiple chunks
+		_storage = new ArchetypeComponentStorage(4);
+		_manager = new EntityManager(_storage);
+		_manager.registerComponentFactory(new FactoryA());
+		_manager.registerComponentFactory(new FactoryB());
+	}
+
+	@Test
+	public void testAddAndGetComponent() throws Exception {
+		Entity entity = _manager.createEntity();
+		Component a = entity.addComponent(_typeA);
+		Component b = entity.addComponent(_typeB);
+		assertSame(a, entity.getComponent(_typeA));
+		assertSame(b, entity.getComponent(_typeB));
+		assertEquals(new ComponentMask(_typeA, _typeB),
+				_storage.getArchetype(entity).getComponentMask());
+	}
+
+	@Test
+	public void testMigration() throws Exception {
+		Entity[] entities = new Entity[10];
+		Component[] components = new Component[10];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = _manager.createEntity();
+			components[i] = entities[i].addComponent(_typeA);
+		}
+		// move every second entity to another archetype, which leaves gaps that must be filled
+		for (int i = 0; i < entities.length; i += 2)
+			entities[i].addComponent(_typeB);
+		for (int i = 0; i < entities.length; i++) {
+			assertSame("Component got lost while moving the entity",
+					components[i], entities[i].getComponent(_typeA));
+			assertEquals(i % 2 == 0, entities[i].getComponent(_typeB) != null);
+		}
+		Archetype a = _storage.getArchetype(entities[1]);
+		Archetype ab = _storage.getArchetype(entities[0]);
+		assertEquals(5, a.size());
+		assertEquals(5, ab.size());
+		assertEquals(2, ab.getChunks().size());
+
+		assertTrue(entities[0].removeComponents(_typeB));
+		assertSame(a, _storage.getArchetype(entities[0]));
+		assertNull(entities[0].getComponent(_typeB));
+		assertSame(components[0], entities[0].getComponent(_typeA));
+	}
+
+	@Test
+	public void testChunkIteration() throws Exception {
+		for (int i = 0; i < 9; i++)
+			_manager.createEntity().addComponent(_typeA);
+		_manager.removeEntity(_manager.getEntity(3));
+		int count = 0;
+		Archetype archetype = _storage.getArchetype(_manager.getEntity(0));
+		for (ArchetypeChunk chunk : archetype.getChunks()) {
+			Component[] column = chunk.getColumn(_typeA);
+			for (int i = 0; i < chunk.size(); i++) {
+				assertSame(column[i], _manager.getEntity(chunk.getEntityId(i)).getComponent(_typeA));
+				count++;
+			}
+		}
+		assertEquals(8, count);
+	}
+
+	@Test
+	public void testCreateEntitiesInTargetArchetype() throws Exception {
+		Entity[] entities = _manager.createEntities(10, _typeA, _typeB);
+		assertEquals("Only the empty archetype and the target archetype should exist",
+				2, _storage.getArchetypes().size());
+		Archetype ab = _storage.getArchetype(entities[0]);
+		assertEquals(new ComponentMask(_typeA, _typeB), ab.getComponentMask());
+		assertEquals(10, ab.size());
+		assertEquals(3, ab.getChunks().size());
+		for (Entity entity : entities) {
+			assertSame(ab, _storage.getArchetype(entity));
+			assertSame(entity, entity.getComponent(_typeA).getEntity());
+			assertSame(entity, entity.getComponent(_typeB).getEntity());
+		}
+	}
+
+	@Test
+	public void testComponentMaskIsCopied() throws Exception {
+		Entity e1 = _manager.createEntity();
+		e1.addComponent(_typeA);
+		Archetype a = _storage.getArchetype(e1);
+		ComponentMask mask = a.getComponentMask();
+		mask.add(_typeB);
+		assertEquals(new ComponentMask(_typeA), a.getComponentMask());
+		Entity e2 = _manager.createEntity();
+		e2.addComponent(_typeA);
+		assertSame(a, _storage.getArchetype(e2));
+		e2.addComponent(_typeB);
+		assertNotSame(a, _storage.getArchetype(e2));
+	}
+
+	@Test
+	public void testHighIdMask() throws Exception {
+		ComponentType high = registerHighIdType(_manager);
+		assertTrue(high.getId() >= 32);
+		Entity e1 = _manager.createEntity();
+		e1.addComponent(_typeA);
+		Entity e2 = _manager.createEntity();
+		e2.addComponent(high);
+		e2.addComponent(_typeA);
+		e2.removeComponents(high);
+		// the mask of e2 keeps a longer bit array, but must still find the same archetype
+		assertEquals(e1.getComponentMask(), e2.getComponentMask());
+		assertEquals(e1.getComponentMask().hashCode(), e2.getComponentMask().hashCode());
+		assertSame(_storage.getArchetype(e1), _storage.getArchetype(e2));
+	}
+
+	//----------------------------------------------------------------------------------------------
+	// Test Components
+	//----------------------------------------------------------------------------------------------
+
+	static class ComponentA extends Component { }
+
+	static class ComponentB extends Component { }
+
+	static class FactoryA implements ComponentFactory {
+		public ComponentType getComponentType() {
+			return ComponentType.get(ComponentA.class);
+		}
+		public Component createNewComponent() {
+			return new ComponentA();
+		}
+	}
+
+	static class FactoryB implements ComponentFactory {
+		public ComponentType getComponentType() {
+			return ComponentType.get(ComponentB.class);
+		}
+		public Component createNewComponent() {
+			return new ComponentB();
+		}
+	}
+
+	/**
+	 * Registers factories for all high id components and returns the type with the highest id,
+	 * which is at least 32, so its bit lies outside the first word of a {@link ComponentMask}.
+	 */
+	static ComponentType registerHighIdType(EntityManager manager) throws Exception {
+		ComponentType high = null;
+		for (Class<?> c : HighIds.class.getDeclaredClasses()) {
+			final ComponentType type = ComponentType.get(c.asSubclass(Component.class));
+			final Class<? extends Component> typeClass = type.getComponentClass();
+			manager.registerComponentFactory(new ComponentFactory() {
+				public ComponentType getComponentType() {
+					return type;
+				}
+				public Component createNewComponent() {
+					try {
+						return typeClass.getDeclaredConstructor().newInstance();
+					} catch (ReflectiveOperationException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			if (high == null || type.getId() > high.getId())
+				high = type;
+		}
+		return high;
+	}
+
+	/**
+	 * Enough component classes to push at least one type id beyond the first word of a mask.
+	 */
+	static class HighIds {
+		static class H0 extends Component { }
+		static class H1 extends Component { }
+		static class H2 extends Component { }
+		static class H3 extends Component { }
+		static class H4 extends Component { }
+		static class H5 extends Component { }
+		static class H6 extends Component { }
+		static class H7 extends Component { }
+		static class H8 extends Component { }
+		static class H9 extends Component { }
+		static class H10 extends Component { }
+		static class H11 extends Component { }
+		static class H12 extends Component { }
+		static class H13 extends Component { }
+		static class H14 extends Component { }
+		static class H15 extends Component { }
+		static class H16 extends Component { }
+		static class H17 extends Component { }
+		static class H18 extends Component { }
+		static class H19 extends Component { }
+		static class H20 extends Component { }
+		static class H21 extends Component { }
+		static class H22 extends Component { }
+		static class H23 extends Component { }
+		static class H24 extends Component { }
+		static class H25 extends Component { }
+		static class H26 extends Component { }
+		static class H27 extends Component { }
+		static class H28 extends Component { }
+		static class H29 extends Component { }
+		static class H30 extends Component { }
+		static class H31 extends Component { }
+		static class H32 extends Component { }
+	}
+}
@@ -0,0 +1,149 @@
+package infinity.ecs.core;
+
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentB;
+import infinity.ecs.core.ArchetypeComponentStorageTest.FactoryA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.FactoryB;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class CommandBufferTest {
+
+	private EntityManager _manager;
+	private CommandBuffer _buffer;
+	private ComponentType _typeA, _typeB;
+
+	@Before
+	public void setUp() {
+		_typeA = ComponentType.get(ComponentA.class);
+		_typeB = ComponentType.get(ComponentB.class);
+		_manager = new EntityManager(new ArchetypeComponentStorage());
+		_manager.registerComponentFactory(new FactoryA());
+		_manager.registerComponentFactory(new FactoryB());
+		_buffer = new CommandBuffer(_manager);
+	}
+
+	@Test
+	public void testPlaybackDuringIteration() throws Exception {
+		EntityQuery query = _manager.getQuery(new ComponentMask(_typeA));
+		for (int i = 0; i < 10; i++)
+			_manager.createEntity().addComponent(_typeA);
+		// change the iterated query while iterating over it, which is only safe with a buffer
+		for (Entity entity : query.getEntities()) {
+			if (entity.getId() % 2 == 0)
+				_buffer.removeEntity(entity);
+			else
+				_buffer.removeComponent(entity, _typeA);
+			_buffer.createEntity(_typeA, _typeB);
+		}
+		assertEquals(10, query.size());
+		assertEquals(20, _buffer.size());
+		_buffer.playback();
+		assertEquals(0, _buffer.size());
+
+		Entity[] created = _buffer.getCreatedEntities();
+		assertEquals(10, created.length);
+		assertEquals(10, query.size());
+		for (Entity entity : created)
+			assertTrue(query.contains(entity));
+		assertEquals(15, _manager.getEntitiesByMask(new ComponentMask()).size());
+	}
+
+	@Test
+	public void testPhases() throws Exception {
+		Entity parent = _manager.createEntity();
+		Entity child = _manager.createEntity();
+		// the removal is recorded first, but applied last
+		_buffer.removeEntity(parent);
+		_buffer.setParent(child, parent);
+		_buffer.addComponent(child, _typeB);
+		_buffer.addComponent(child, _typeB);
+		_buffer.playback();
+		assertFalse(_manager.isAlive(parent));
+		assertFalse("Children are removed with their parent", _manager.isAlive(child));
+
+		// commands for removed entities are skipped
+		_buffer.addComponent(child, _typeA);
+		_buffer.setParent(child, null);
+		_buffer.playback();
+	}
+
+	@Test
+	public void testRemoveThenAdd() throws Exception {
+		Entity entity = _manager.createEntity();
+		Component old = entity.addComponent(_typeA);
+		// resetting a component is recorded as a removal followed by an addition
+		_buffer.removeComponent(entity, _typeA);
+		_buffer.addComponent(entity, _typeA);
+		_buffer.playback();
+		Component fresh = entity.getComponent(_typeA);
+		assertNotNull("The component must be added again", fresh);
+		assertNotSame(old, fresh);
+	}
+
+	@Test
+	public void testAddThenRemove() throws Exception {
+		Entity entity = _manager.createEntity();
+		_buffer.addComponent(entity, _typeA);
+		_buffer.removeComponent(entity, _typeA);
+		_buffer.playback();
+		assertNull(entity.getComponent(_typeA));
+	}
+
+	@Test
+	public void testReparent() throws Exception {
+		Entity a = _manager.createEntity();
+		Entity b = _manager.createEntity();
+		Entity child = _manager.createEntity();
+		_manager.addChildEntity(a, child);
+		_buffer.setParent(child, b);
+		_buffer.playback();
+		assertSame(b, _manager.getParent(child));
+		assertFalse(_manager.getChildren(a).contains(child));
+		_buffer.setParent(child, null);
+		_buffer.playback();
+		assertNull(_manager.getParent(child));
+	}
+
+	@Test
+	public void testFailingPlayback() throws Exception {
+		EntityManager manager = new EntityManager();
+		manager.registerComponentFactory(new FactoryA());
+		CommandBuffer buffer = new CommandBuffer(manager);
+		EntityQuery query = manager.getQuery(new ComponentMask(_typeA));
+		buffer.createEntity(_typeA);
+		// there is no factory for the type, so the playback fails after the creation
+		buffer.addComponent(manager.createEntity(), _typeB);
+		try {
+			buffer.playback();
+			fail("The type has no factory");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals("A failed playback must clear the buffer", 0, buffer.size());
+		assertEquals(1, query.size());
+		buffer.playback();
+		assertEquals("A retry must not apply the commands again", 1, query.size());
+
+		Entity root = _manager.createEntity();
+		Entity parent = _manager.createEntity();
+		Entity child = _manager.createEntity();
+		_manager.addChildEntity(root, parent);
+		_manager.addChildEntity(parent, child);
+		_buffer.setParent(parent, child);
+		try {
+			_buffer.playback();
+			fail("An entity can't become a child of its own child");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(0, _buffer.size());
+		assertSame("The failing command must not detach the entity",
+				root, _manager.getParent(parent));
+	}
+}
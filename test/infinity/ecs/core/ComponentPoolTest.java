@@ -0,0 +1,52 @@
+package infinity.ecs.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class ComponentPoolTest {
+
+	private ComponentPool _pool;
+
+	@Before
+	public void setUp() {
+		_pool = new ComponentPool(ComponentType.get(TestComponent.class));
+	}
+
+	@Test
+	public void testAddAndGet() {
+		Component c1 = new TestComponent();
+		Component c2 = new TestComponent();
+		_pool.add(3, c1);
+		_pool.add(100, c2);
+		assertEquals(2, _pool.size());
+		assertSame(c1, _pool.get(3));
+		assertSame(c2, _pool.get(100));
+		assertNull(_pool.get(4));
+		assertNull(_pool.get(1000));
+	}
+
+	@Test
+	public void testSwapRemove() {
+		Component[] components = new Component[50];
+		for (int i = 0; i < components.length; i++) {
+			components[i] = new TestComponent();
+			_pool.add(i, components[i]);
+		}
+		assertSame(components[7], _pool.remove(7));
+		assertNull(_pool.remove(7));
+		assertEquals(49, _pool.size());
+		// the last element must have been moved into the gap
+		assertEquals(7, _pool.indexOf(49));
+		assertEquals(49, _pool.getEntityId(7));
+		for (int i = 0; i < _pool.size(); i++)
+			assertSame(_pool.getComponent(i), _pool.get(_pool.getEntityId(i)));
+	}
+
+	static class TestComponent extends Component { }
+}
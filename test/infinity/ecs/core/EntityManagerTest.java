@@ -5,7 +5,18 @@
  */
 package infinity.ecs.core;
 
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentB;
+import infinity.ecs.core.ArchetypeComponentStorageTest.FactoryA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.FactoryB;
 import infinity.ecs.exceptions.EntityDoesNotExistsException;
+import infinity.ecs.messaging.ComponentChangedMessage;
+import infinity.ecs.messaging.EntitiesCreatedMessage;
+import infinity.ecs.messaging.EntitiesRemovedMessage;
+import infinity.ecs.messaging.EntityCreatedMessage;
+import infinity.ecs.messaging.MessageEndpoint;
+import infinity.ecs.messaging.MessageType;
+import infinity.ecs.messaging.SimpleMessageDispatcher;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -97,4 +108,119 @@ public class EntityManagerTest {
     public void testAddComponents_Entity_ComponentArr() throws Exception {
     	//TODO: Implement
     }
+
+    @Test
+    public void testIdsAreRecycled() throws Exception {
+    	int id = _entity.getId();
+    	long handle = _entity.getHandle();
+    	assertTrue(_manager.removeEntity(_entity));
+    	assertFalse("Removed entities must not be alive", _entity.isAlive());
+    	assertFalse(_manager.isAlive(handle));
+    	assertFalse("Entities can only be removed once", _manager.removeEntity(_entity));
+
+    	Entity recycled = _manager.createEntity();
+    	assertEquals("The id should have been reused", id, recycled.getId());
+    	assertEquals(_entity.getGeneration() + 1, recycled.getGeneration());
+    	assertFalse("Stale entities must not alias new ones", _entity.equals(recycled));
+    	assertTrue(_manager.isAlive(recycled.getHandle()));
+    	assertFalse(_manager.isAlive(handle));
+    	assertSame(recycled, _manager.getEntityByHandle(recycled.getHandle()));
+    	try {
+    		_manager.getEntityByHandle(handle);
+    		fail("Stale handles must not resolve");
+    	} catch (EntityDoesNotExistsException e) {
+    	}
+    	try {
+    		_manager.getComponent(_entity, ComponentType.get(ArchetypeComponentStorageTest.ComponentA.class));
+    		fail("Stale entities must be rejected");
+    	} catch (IllegalArgumentException e) {
+    	}
+    }
+
+    @Test
+    public void testRemoveEntityWithChildren() throws Exception {
+    	Entity child = _manager.createEntity();
+    	Entity grandChild = _manager.createEntity();
+    	_manager.addChildEntity(_entity, child);
+    	_manager.addChildEntity(child, grandChild);
+    	_manager.addChildEntity(_entity2, _entity);
+
+    	assertTrue(_manager.removeEntity(_entity));
+    	assertFalse(child.isAlive());
+    	assertFalse(grandChild.isAlive());
+    	assertEquals("The entity must be detached from its parent",
+    			0, _entity2.getChildEntities().size());
+    }
+
+    @Test
+    public void testCreateAndRemoveEntities() throws Exception {
+    	ComponentType typeA = ComponentType.get(ComponentA.class);
+    	ComponentType typeB = ComponentType.get(ComponentB.class);
+    	_manager.registerComponentFactory(new FactoryA());
+    	_manager.registerComponentFactory(new FactoryB());
+    	SimpleMessageDispatcher dispatcher = new SimpleMessageDispatcher();
+    	MessageEndpoint endpoint = dispatcher.createEndpoint();
+    	endpoint.register(MessageType.get(EntitiesCreatedMessage.class));
+    	endpoint.register(MessageType.get(EntitiesRemovedMessage.class));
+    	endpoint.register(MessageType.get(EntityCreatedMessage.class));
+    	_manager.setMessageDispatcher(dispatcher);
+    	EntityQuery query = _manager.getQuery(new ComponentMask(typeA, typeB));
+
+    	Entity[] entities = _manager.createEntities(1000, typeA, typeB);
+    	assertEquals(1000, query.size());
+    	for (Entity entity : entities) {
+    		assertTrue(entity.isAlive());
+    		assertNotNull(entity.getComponent(typeA));
+    		assertSame(entity, entity.getComponent(typeB).getEntity());
+    	}
+    	EntitiesCreatedMessage created = (EntitiesCreatedMessage)endpoint.retrieveNext();
+    	assertEquals(1000, created.getEntities().size());
+    	Entity first = entities[0];
+    	entities[0] = null;
+    	assertSame("The message must not share the returned array",
+    			first, created.getEntities().get(0));
+    	entities[0] = first;
+    	assertNull("Only a single message should be send", endpoint.retrieveNext());
+
+    	_manager.addChildEntity(entities[0], entities[999]);
+    	assertEquals(501, _manager.removeEntities(java.util.Arrays.copyOf(entities, 500)));
+    	assertEquals(499, query.size());
+    	EntitiesRemovedMessage removed = (EntitiesRemovedMessage)endpoint.retrieveNext();
+    	assertEquals(501, removed.getEntities().size());
+    	assertNull(endpoint.retrieveNext());
+
+    	try {
+    		_manager.createEntities(10, typeA, typeA);
+    		fail("Types may only be specified once");
+    	} catch (Exception e) {
+    	}
+    	assertEquals("Failed batches must not create entities", 499, query.size());
+    }
+
+    @Test
+    public void testConcurrentUpdateDefersMessages() throws Exception {
+    	ComponentType typeA = ComponentType.get(ComponentA.class);
+    	_manager.registerComponentFactory(new FactoryA());
+    	_entity.addComponent(typeA);
+    	SimpleMessageDispatcher dispatcher = new SimpleMessageDispatcher();
+    	MessageEndpoint endpoint = dispatcher.createEndpoint();
+    	endpoint.register(MessageType.get(ComponentChangedMessage.class));
+    	_manager.setMessageDispatcher(dispatcher);
+
+    	_manager.beginConcurrentUpdate();
+    	_manager.beginConcurrentUpdate();
+    	assertTrue(_manager.markChanged(_entity, typeA));
+    	_manager.endConcurrentUpdate();
+    	assertNull("Messages are only send by the outermost update", endpoint.retrieveNext());
+    	_manager.endConcurrentUpdate();
+    	ComponentChangedMessage msg = (ComponentChangedMessage)endpoint.retrieveNext();
+    	assertSame(_entity.getComponent(typeA), msg.getComponent());
+    	assertNull(endpoint.retrieveNext());
+
+    	try {
+    		_manager.endConcurrentUpdate();
+    		fail("No concurrent update has been begun");
+    	} catch (IllegalStateException e) {
+    	}
+    }
 }
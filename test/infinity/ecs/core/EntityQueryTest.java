@@ -0,0 +1,227 @@
+package infinity.ecs.core;
+
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentB;
+import infinity.ecs.core.ArchetypeComponentStorageTest.FactoryA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.FactoryB;
+import infinity.ecs.messaging.MessageDispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class EntityQueryTest {
+
+	private EntityManager _manager;
+	private ComponentType _typeA, _typeB;
+
+	@Before
+	public void setUp() {
+		_typeA = ComponentType.get(ComponentA.class);
+		_typeB = ComponentType.get(ComponentB.class);
+		_manager = new EntityManager();
+		_manager.registerComponentFactory(new FactoryA());
+		_manager.registerComponentFactory(new FactoryB());
+	}
+
+	@Test
+	public void testQueryIsCached() {
+		ComponentMask mask = new ComponentMask(_typeA);
+		assertSame(_manager.getQuery(mask), _manager.getQuery(new ComponentMask(_typeA)));
+		assertSame(_manager.getEntitiesByMask(mask), _manager.getEntitiesByMask(mask));
+	}
+
+	@Test
+	public void testEqualMasksShareQuery() throws Exception {
+		ComponentType high = ArchetypeComponentStorageTest.registerHighIdType(_manager);
+		Entity entity = _manager.createEntity();
+		entity.addComponents(high, _typeA);
+		entity.removeComponents(high);
+		// the mask of the entity keeps the word of the high type, but is equal to a fresh mask
+		ComponentMask mask = new ComponentMask(entity.getComponentMask());
+		EntityQuery query = _manager.getQuery(mask);
+		assertSame(query, _manager.getQuery(new ComponentMask(_typeA)));
+		assertEquals(1, query.size());
+	}
+
+	@Test
+	public void testExistingEntitiesAreFound() throws Exception {
+		Entity e1 = _manager.createEntity();
+		e1.addComponents(_typeA, _typeB);
+		Entity e2 = _manager.createEntity();
+		e2.addComponent(_typeA);
+		EntityQuery query = _manager.getQuery(new ComponentMask(_typeA, _typeB));
+		assertEquals(1, query.size());
+		assertSame(e1, query.get(0));
+	}
+
+	@Test
+	public void testComponentMaskIsCopied() {
+		EntityQuery query = _manager.getQuery(new ComponentMask(_typeA));
+		ComponentMask mask = query.getComponentMask();
+		mask.add(_typeB);
+		assertEquals(new ComponentMask(_typeA), query.getComponentMask());
+		assertSame(query, _manager.getQuery(new ComponentMask(_typeA)));
+		assertTrue(_manager.removeQuery(query));
+		assertNotSame(query, _manager.getQuery(new ComponentMask(_typeA)));
+	}
+
+	@Test
+	public void testIncrementalUpdates() throws Exception {
+		EntityQuery query = _manager.getQuery(new ComponentMask(_typeA));
+		EntityQuery all = _manager.getQuery(new ComponentMask());
+		Entity e1 = _manager.createEntity();
+		Entity e2 = _manager.createEntity();
+		assertEquals(0, query.size());
+		assertEquals(2, all.size());
+
+		e1.addComponent(_typeA);
+		e2.addComponent(_typeA);
+		assertEquals(2, query.size());
+		assertTrue(query.contains(e1) && query.contains(e2));
+
+		e1.removeComponents(_typeA);
+		assertEquals(1, query.size());
+		assertFalse(query.contains(e1));
+		assertSame(e2, query.get(0));
+
+		_manager.removeEntity(e2);
+		assertEquals(0, query.size());
+		assertEquals(1, all.size());
+	}
+
+	@Test
+	public void testAnyAndNone() throws Exception {
+		Entity a = _manager.createEntity();
+		a.addComponent(_typeA);
+		Entity b = _manager.createEntity();
+		b.addComponent(_typeB);
+		Entity ab = _manager.createEntity();
+		ab.addComponents(_typeA, _typeB);
+		Entity empty = _manager.createEntity();
+
+		EntityQuery any = _manager.query().any(_typeA, _typeB).build();
+		assertEquals(3, any.size());
+		assertFalse(any.contains(empty));
+
+		EntityQuery onlyA = _manager.query().all(_typeA).none(_typeB).build();
+		assertEquals(1, onlyA.size());
+		assertTrue(onlyA.contains(a));
+
+		ab.removeComponents(_typeB);
+		assertEquals(2, onlyA.size());
+		a.addComponent(_typeB);
+		assertFalse(onlyA.contains(a));
+		
+		assertTrue(_manager.removeQuery(onlyA));
+		a.removeComponents(_typeB);
+		assertFalse("Removed queries must no longer be updated", onlyA.contains(a));
+	}
+
+	@Test
+	public void testChangeFilters() throws Exception {
+		final List<Entity> visited = new ArrayList<Entity>();
+		Consumer<Entity> collect = new Consumer<Entity>() {
+			public void accept(Entity entity) {
+				visited.add(entity);
+			}
+		};
+		EntityQuery changed = _manager.query().all(_typeA).changed(_typeA).build();
+		Entity e1 = _manager.createEntity();
+		Entity e2 = _manager.createEntity();
+		e1.addComponent(_typeA);
+		e2.addComponent(_typeA);
+
+		// newly added components count as changed
+		assertEquals(2, changed.forEach(collect));
+		assertEquals(2, visited.size());
+
+		visited.clear();
+		assertEquals(0, changed.forEach(collect));
+		assertEquals("Nothing changed since the last run", 0, visited.size());
+
+		e2.markChanged(_typeA);
+		assertEquals(1, changed.forEach(collect));
+		assertEquals(1, visited.size());
+		assertSame(e2, visited.get(0));
+	}
+
+	@Test
+	public void testRecycledIdHasNoChanges() throws Exception {
+		final List<Entity> visited = new ArrayList<Entity>();
+		Consumer<Entity> collect = new Consumer<Entity>() {
+			public void accept(Entity entity) {
+				visited.add(entity);
+			}
+		};
+		EntityQuery changed = _manager.query().all(_typeB).changed(_typeA).build();
+		changed.forEach(collect);
+		Entity old = _manager.createEntity();
+		old.addComponent(_typeA);
+		old.markChanged(_typeA);
+		_manager.removeEntity(old);
+		Entity entity = _manager.createEntity();
+		assertEquals(old.getId(), entity.getId());
+		entity.addComponent(_typeB);
+		changed.forEach(collect);
+		assertTrue("The ticks of the removed entity must not be reused", visited.isEmpty());
+	}
+
+	@Test
+	public void testForEachParallel() throws Exception {
+		EntityQuery query = _manager.getQuery(new ComponentMask(_typeA));
+		Entity[] entities = _manager.createEntities(10000, _typeA);
+		final AtomicIntegerArray visits = new AtomicIntegerArray(10000 + entities[0].getId());
+		assertEquals(10000, query.forEachParallel(new Consumer<Entity>() {
+			@Override
+			public void accept(Entity entity) {
+				visits.incrementAndGet(entity.getId());
+			}
+		}, 100));
+		for (Entity entity : entities)
+			assertEquals("Every entity must be visited exactly once", 1, visits.get(entity.getId()));
+	}
+
+	@Test
+	public void testProcessedCount() throws Exception {
+		final EntityQuery changed = _manager.query().all(_typeA).changed(_typeA).build();
+		Entity[] entities = _manager.createEntities(100, _typeA);
+		changed.forEach(new Consumer<Entity>() {
+			public void accept(Entity entity) { }
+		});
+		for (int i = 0; i < 3; i++)
+			entities[i].markChanged(_typeA);
+		EntitySystem system = new EntitySystem(null) {
+			@Override
+			public void initialize(EntityManager entityManager, MessageDispatcher msgDispatcher) { }
+
+			@Override
+			public boolean isInitialized() {
+				return true;
+			}
+
+			@Override
+			public void update(int elapsedTime) {
+				forEach(changed, new Consumer<Entity>() {
+					public void accept(Entity entity) { }
+				});
+			}
+
+			@Override
+			public void terminate() { }
+		};
+		system.update(0);
+		assertEquals("Only entities which pass the change filters are processed",
+				3, system.getProcessedCount());
+	}
+}
@@ -0,0 +1,119 @@
+package infinity.ecs.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class OffHeapComponentArrayTest {
+
+	@Packed(offHeap = true)
+	public static class OffHeapComponent extends Component {
+		public byte b;
+		public double d;
+		public int i;
+		public boolean flag;
+	}
+
+	public static class OffHeapFactory implements ComponentFactory {
+		@Override
+		public Component createNewComponent() {
+			OffHeapComponent c = new OffHeapComponent();
+			c.d = 0.5;
+			c.flag = true;
+			return c;
+		}
+
+		@Override
+		public ComponentType getComponentType() {
+			return ComponentType.get(OffHeapComponent.class);
+		}
+	}
+
+	private EntityManager _manager;
+	private ComponentType _type;
+
+	@Before
+	public void setUp() {
+		_type = ComponentType.get(OffHeapComponent.class);
+		_manager = new EntityManager();
+		_manager.registerComponentFactory(new OffHeapFactory());
+	}
+
+	@Test
+	public void testLayout() {
+		PackedLayout layout = new PackedLayout(OffHeapComponent.class);
+		// the double comes first, followed by the int and both single byte fields
+		assertEquals(0, layout.getOffset(layout.indexOf("d")));
+		assertEquals(8, layout.getOffset(layout.indexOf("i")));
+		assertEquals(16, layout.getStride());
+	}
+
+	@Test
+	public void testAddGetAndRemove() throws Exception {
+		assertTrue(_type.isOffHeap());
+		Entity[] entities = new Entity[100];
+		for (int n = 0; n < entities.length; n++) {
+			entities[n] = _manager.createEntity();
+			entities[n].addComponent(_type);
+		}
+		OffHeapComponentArray array = _manager.getOffHeapComponents(_type);
+		assertEquals(100, array.size());
+		assertEquals(array.getNativeSize(), _manager.getNativeMemorySize());
+		assertTrue(array.getNativeSize() >= 100 * 16);
+
+		int i = array.getFieldIndex("i");
+		for (int n = 0; n < array.size(); n++) {
+			assertEquals(0.5, array.getDouble(n, array.getFieldIndex("d")), 0.0);
+			array.setInt(n, i, array.getEntityId(n));
+		}
+		_manager.removeEntity(entities[0]);
+		entities[50].removeComponents(_type);
+		assertEquals(98, array.size());
+		for (int n = 0; n < array.size(); n++)
+			assertEquals(array.getEntityId(n), array.getInt(n, i));
+
+		OffHeapComponent copy = (OffHeapComponent)entities[99].getComponent(_type);
+		assertEquals(entities[99].getId(), copy.i);
+		assertTrue(copy.flag);
+		assertNull(entities[50].getComponent(_type));
+	}
+
+	@Test
+	public void testSegments() {
+		// four rows per segment, so the rows are spread over many buffers
+		OffHeapComponentArray array = new OffHeapComponentArray(_type, 64);
+		OffHeapComponent source = new OffHeapComponent();
+		int i = array.getFieldIndex("i");
+		int d = array.getFieldIndex("d");
+		for (int id = 0; id < 100; id++) {
+			source.i = id;
+			source.d = id * 0.5;
+			assertEquals(id, array.add(id, source));
+		}
+		assertEquals(128 * 16, array.getNativeSize());
+		// move rows of the last segment into gaps of the first segments
+		for (int id = 0; id < 100; id += 3)
+			array.remove(id);
+		assertEquals(66, array.size());
+		OffHeapComponent target = new OffHeapComponent();
+		for (int n = 0; n < array.size(); n++) {
+			int id = array.getEntityId(n);
+			assertEquals(id, array.getInt(n, i));
+			assertEquals(id * 0.5, array.getDouble(n, d), 0.0);
+			array.load(n, target);
+			assertEquals(id, target.i);
+			array.setDouble(n, d, id);
+			assertEquals(id, array.getDouble(n, d), 0.0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotOnHeap() {
+		_manager.getPackedComponents(_type);
+	}
+}
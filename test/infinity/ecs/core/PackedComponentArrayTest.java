@@ -0,0 +1,106 @@
+package infinity.ecs.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class PackedComponentArrayTest {
+
+	@Packed
+	public static class PackedComponent extends Component {
+		public float x;
+		public int count;
+		public boolean flag;
+	}
+
+	public static class PackedFactory implements ComponentFactory {
+		@Override
+		public Component createNewComponent() {
+			PackedComponent c = new PackedComponent();
+			c.x = 1f;
+			return c;
+		}
+
+		@Override
+		public ComponentType getComponentType() {
+			return ComponentType.get(PackedComponent.class);
+		}
+	}
+
+	@Packed
+	public static class InvalidComponent extends Component {
+		public Object reference;
+	}
+
+	private EntityManager _manager;
+	private ComponentType _type;
+
+	@Before
+	public void setUp() {
+		_type = ComponentType.get(PackedComponent.class);
+		_manager = new EntityManager();
+		_manager.registerComponentFactory(new PackedFactory());
+	}
+
+	@Test
+	public void testAddAndRemove() throws Exception {
+		assertTrue(_type.isPacked());
+		Entity[] entities = new Entity[40];
+		for (int i = 0; i < entities.length; i++) {
+			entities[i] = _manager.createEntity();
+			entities[i].addComponent(_type);
+		}
+		PackedComponentArray array = _manager.getPackedComponents(_type);
+		assertEquals(40, array.size());
+		int x = array.getFieldIndex("x");
+		int count = array.getFieldIndex("count");
+		PackedCursor cursor = array.cursor();
+		for (int i = 0; i < entities.length; i++) {
+			assertTrue(cursor.moveTo(entities[i].getId()));
+			assertEquals(1f, cursor.getFloat(x), 0f);
+			cursor.setInt(count, i);
+		}
+
+		assertTrue(entities[3].removeComponents(_type));
+		_manager.removeEntity(entities[10]);
+		assertEquals(38, array.size());
+		assertEquals(-1, array.indexOf(entities[3].getId()));
+		assertNull(entities[3].getComponent(_type));
+		// the moved values must still belong to the right entities
+		int[] counts = array.getInts("count");
+		for (int i = 0; i < array.size(); i++)
+			assertEquals(array.getEntityId(i), counts[i]);
+	}
+
+	@Test
+	public void testGetComponentReturnsCopy() throws Exception {
+		Entity entity = _manager.createEntity();
+		entity.addComponent(_type);
+		PackedComponentArray array = _manager.getPackedComponents(_type);
+		array.getFloats("x")[array.indexOf(entity.getId())] = 5f;
+
+		PackedComponent copy = (PackedComponent)entity.getComponent(_type);
+		assertEquals(5f, copy.x, 0f);
+		assertSame(entity, copy.getEntity());
+		copy.x = 7f;
+		assertEquals("Copies must not write through", 5f, array.getFloats("x")[0], 0f);
+
+		array.store(array.indexOf(entity.getId()), copy);
+		assertEquals(7f, array.getFloats("x")[0], 0f);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongColumnType() {
+		_manager.getPackedComponents(_type).getFloats("count");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonPrimitiveField() {
+		new PackedComponentArray(ComponentType.get(InvalidComponent.class));
+	}
+}
@@ -0,0 +1,59 @@
+package infinity.ecs.core;
+
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentA;
+import infinity.ecs.core.ArchetypeComponentStorageTest.ComponentB;
+import infinity.ecs.core.PackedComponentArrayTest.PackedComponent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class PrefabTest {
+
+	private EntityManager _manager;
+	private ComponentType _typeA, _typeB, _typePacked;
+
+	@Before
+	public void setUp() {
+		_typeA = ComponentType.get(ComponentA.class);
+		_typeB = ComponentType.get(ComponentB.class);
+		_typePacked = ComponentType.get(PackedComponent.class);
+		// no factories are registered, prefabs must not need them
+		_manager = new EntityManager(new ArchetypeComponentStorage());
+	}
+
+	@Test
+	public void testInstantiate() {
+		PackedComponent packed = new PackedComponent();
+		packed.count = 42;
+		Prefab prefab = new Prefab(new ComponentB(), packed, new ComponentA());
+		assertEquals(new ComponentMask(_typeA, _typeB, _typePacked), prefab.getComponentMask());
+
+		EntityQuery query = _manager.getQuery(new ComponentMask(_typeA, _typeB));
+		Entity[] entities = _manager.instantiate(prefab, 100);
+		assertEquals(100, query.size());
+		for (Entity entity : entities) {
+			Component a = entity.getComponent(_typeA);
+			assertNotNull(a);
+			assertNotSame("Every entity needs its own copy", prefab.getTemplate(_typeA), a);
+			assertSame(entity, a.getEntity());
+			assertEquals(42, ((PackedComponent)entity.getComponent(_typePacked)).count);
+		}
+		assertNotSame(entities[0].getComponent(_typeB), entities[1].getComponent(_typeB));
+		assertNull("Templates must stay unbound", prefab.getTemplate(_typeA).getEntity());
+
+		Entity single = _manager.instantiate(prefab);
+		assertEquals(101, query.size());
+		assertEquals(new ComponentMask(_typeA, _typeB, _typePacked), single.getComponentMask());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDuplicateTemplates() {
+		new Prefab(new ComponentA(), new ComponentA());
+	}
+}
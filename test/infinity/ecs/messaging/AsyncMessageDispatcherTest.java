@@ -0,0 +1,181 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.messaging.ConcurrentMessageDispatcherTest.TestMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class AsyncMessageDispatcherTest {
+
+	static class TestSubscriber implements Flow.Subscriber<Message> {
+		final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch completed = new CountDownLatch(1);
+		volatile Flow.Subscription subscription;
+		volatile Throwable error;
+		volatile CountDownLatch received;
+
+		TestSubscriber(int expected) {
+			received = new CountDownLatch(expected);
+		}
+
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		public void onNext(Message msg) {
+			values.add(((TestMessage)msg).value);
+			msg.release();
+			received.countDown();
+		}
+
+		public void onError(Throwable error) {
+			this.error = error;
+			completed.countDown();
+		}
+
+		public void onComplete() {
+			completed.countDown();
+		}
+	}
+
+	private ExecutorService _executor;
+	private AsyncMessageDispatcher _dispatcher;
+	private MessageEndpoint _sender;
+	private AsyncMessageEndpoint _receiver;
+
+	@Before
+	public void setUp() {
+		_executor = Executors.newFixedThreadPool(2);
+		_dispatcher = new AsyncMessageDispatcher(_executor, 16);
+		_sender = _dispatcher.createEndpoint();
+		_receiver = (AsyncMessageEndpoint)_dispatcher.createEndpoint();
+		_receiver.register(MessageType.get(TestMessage.class));
+	}
+
+	@After
+	public void tearDown() {
+		_executor.shutdownNow();
+	}
+
+	@Test(timeout = 10000)
+	public void testDemand() throws Exception {
+		TestSubscriber subscriber = new TestSubscriber(3);
+		_receiver.subscribe(subscriber);
+		for (int i = 0; i < 10; i++)
+			_sender.send(new TestMessage(i));
+		subscriber.subscription.request(3);
+		subscriber.received.await();
+		// give the delivery task the chance to deliver more than requested
+		Thread.sleep(50);
+		assertEquals(3, subscriber.values.size());
+
+		subscriber.received = new CountDownLatch(7);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		subscriber.received.await();
+		for (int i = 0; i < 10; i++)
+			assertEquals(Integer.valueOf(i), subscriber.values.get(i));
+		assertEquals(10, _receiver.getEnqueuedCount());
+		assertEquals(0, _receiver.getDroppedCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testTerminate() throws Exception {
+		TestSubscriber subscriber = new TestSubscriber(1);
+		_receiver.subscribe(subscriber);
+		_sender.send(new TestMessage(0));
+		_receiver.terminate();
+		subscriber.completed.await();
+		assertNull(subscriber.error);
+		assertTrue(subscriber.values.isEmpty());
+		assertFalse(_dispatcher.hasSubscribers(MessageType.get(TestMessage.class)));
+	}
+
+	@Test(timeout = 10000)
+	public void testSingleSubscriber() throws Exception {
+		TestSubscriber first = new TestSubscriber(1);
+		TestSubscriber second = new TestSubscriber(1);
+		_receiver.subscribe(first);
+		_receiver.subscribe(second);
+		second.completed.await();
+		assertTrue(second.error instanceof IllegalStateException);
+		try {
+			_receiver.retrieveNext();
+			fail("A subscribed endpoint must not be polled");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		// once cancelled, the endpoint can be polled again
+		first.subscription.cancel();
+		while (_receiver.hasSubscriber())
+			Thread.yield();
+		_sender.send(new TestMessage(1));
+		assertEquals(1, ((TestMessage)_receiver.retrieveNext()).value);
+	}
+
+	@Test(timeout = 10000)
+	public void testInvalidRequest() throws Exception {
+		TestSubscriber subscriber = new TestSubscriber(1);
+		_receiver.subscribe(subscriber);
+		subscriber.subscription.request(0);
+		subscriber.completed.await();
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void testRejectedDelivery() throws Exception {
+		// rejects the first task and runs all others on the calling thread
+		final AtomicBoolean reject = new AtomicBoolean(true);
+		AsyncMessageDispatcher dispatcher = new AsyncMessageDispatcher(new Executor() {
+			public void execute(Runnable task) {
+				if (reject.getAndSet(false))
+					throw new RejectedExecutionException();
+				task.run();
+			}
+		});
+		MessageEndpoint sender = dispatcher.createEndpoint();
+		AsyncMessageEndpoint receiver = (AsyncMessageEndpoint)dispatcher.createEndpoint();
+		receiver.register(MessageType.get(TestMessage.class));
+		TestSubscriber rejected = new TestSubscriber(1);
+		receiver.subscribe(rejected);
+		assertTrue(rejected.error instanceof RejectedExecutionException);
+		assertFalse(receiver.hasSubscriber());
+
+		// the rejected task must not block later deliveries
+		TestSubscriber subscriber = new TestSubscriber(1);
+		receiver.subscribe(subscriber);
+		subscriber.subscription.request(1);
+		sender.send(new TestMessage(7));
+		assertEquals(Collections.singletonList(7), subscriber.values);
+	}
+
+	@Test
+	public void testPolling() {
+		_sender.send(new TestMessage(1));
+		assertEquals(1, ((TestMessage)_receiver.retrieveNext()).value);
+		assertSame(_dispatcher, _receiver.getDispatcher());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoExecutor() {
+		new AsyncMessageDispatcher(null);
+	}
+}
@@ -0,0 +1,143 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.ArchetypeComponentStorage;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.messaging.IndexedMessageDispatcherTest.ComponentB;
+import infinity.ecs.messaging.IndexedMessageDispatcherTest.FactoryB;
+import infinity.ecs.messaging.MessagePoolTest.ComponentA;
+import infinity.ecs.messaging.MessagePoolTest.FactoryA;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class ChangeCoalescerTest {
+
+	private static final MessageType CHANGED = MessageType.get(ComponentChangedMessage.class);
+
+	private EntityManager _manager;
+	private ComponentType _typeA, _typeB;
+
+	@Before
+	public void setUp() {
+		_manager = new EntityManager(new ArchetypeComponentStorage());
+		_manager.registerComponentFactory(new FactoryA());
+		_manager.registerComponentFactory(new FactoryB());
+		_typeA = ComponentType.get(ComponentA.class);
+		_typeB = ComponentType.get(ComponentB.class);
+	}
+
+	private MessageEndpoint[] createEndpoints() {
+		SimpleMessageDispatcher simple = new SimpleMessageDispatcher();
+		IndexedMessageDispatcher indexed = new IndexedMessageDispatcher();
+		SimpleMessageEndpoint a = (SimpleMessageEndpoint)simple.createEndpoint();
+		IndexedMessageEndpoint b = (IndexedMessageEndpoint)indexed.createEndpoint();
+		a.setCoalescing(true);
+		b.setCoalescing(true);
+		return new MessageEndpoint[] { a, b };
+	}
+
+	private static List<Message> drain(MessageEndpoint endpoint) {
+		List<Message> msgs = new ArrayList<Message>();
+		Message msg;
+		while ((msg = endpoint.retrieveNext()) != null)
+			msgs.add(msg);
+		return msgs;
+	}
+
+	@Test
+	public void testCoalescing() throws Exception {
+		for (MessageEndpoint endpoint : createEndpoints()) {
+			_manager.setMessageDispatcher(endpoint.getDispatcher());
+			endpoint.register(CHANGED);
+			Entity entity = _manager.createEntity();
+			_manager.addComponent(entity, _typeA);
+			_manager.addComponent(entity, _typeB);
+
+			for (int i = 0; i < 20; i++) {
+				_manager.markChanged(entity, _typeA);
+				_manager.markChanged(entity, _typeB);
+			}
+			List<Message> msgs = drain(endpoint);
+			assertEquals(2, msgs.size());
+			assertEquals(_typeA, ((ComponentChangedMessage)msgs.get(0)).getComponent()
+					.getComponentType());
+			assertEquals(_typeB, ((ComponentChangedMessage)msgs.get(1)).getComponent()
+					.getComponentType());
+			for (Message msg : msgs)
+				msg.release();
+
+			// a retrieved change is queued again by the next change
+			_manager.markChanged(entity, _typeA);
+			assertEquals(1, drain(endpoint).size());
+			endpoint.terminate();
+		}
+	}
+
+	@Test
+	public void testManyEntities() throws Exception {
+		for (MessageEndpoint endpoint : createEndpoints()) {
+			_manager.setMessageDispatcher(endpoint.getDispatcher());
+			endpoint.register(CHANGED);
+			List<Entity> entities = new ArrayList<Entity>();
+			for (int i = 0; i < 100; i++) {
+				Entity entity = _manager.createEntity();
+				_manager.addComponent(entity, _typeA);
+				entities.add(entity);
+			}
+			for (int round = 0; round < 3; round++) {
+				for (int n = 0; n < 3; n++)
+					for (Entity entity : entities)
+						_manager.markChanged(entity, _typeA);
+				// retrieve half of the changes, which must be queued again afterwards
+				for (int i = 0; i < 50; i++)
+					endpoint.retrieveNext();
+				for (Entity entity : entities)
+					_manager.markChanged(entity, _typeA);
+				Set<Entity> changed = new HashSet<Entity>();
+				for (Message msg : drain(endpoint))
+					assertTrue(changed.add(((ComponentChangedMessage)msg).getEntity()));
+				assertEquals(100, changed.size());
+			}
+			long coalesced = endpoint instanceof SimpleMessageEndpoint
+					? ((SimpleMessageEndpoint)endpoint).getCoalescedCount()
+					: ((IndexedMessageEndpoint)endpoint).getCoalescedCount();
+			assertEquals(3 * 250, coalesced);
+			endpoint.terminate();
+		}
+	}
+
+	@Test
+	public void testReusedEntityId() throws Exception {
+		for (MessageEndpoint endpoint : createEndpoints()) {
+			_manager.setMessageDispatcher(endpoint.getDispatcher());
+			endpoint.register(CHANGED);
+			Entity old = _manager.createEntity();
+			_manager.addComponent(old, _typeA);
+			_manager.markChanged(old, _typeA);
+			_manager.removeEntity(old);
+			Entity entity = _manager.createEntity();
+			assertEquals(old.getId(), entity.getId());
+			_manager.addComponent(entity, _typeA);
+			_manager.markChanged(entity, _typeA);
+			_manager.markChanged(entity, _typeA);
+			List<Message> msgs = drain(endpoint);
+			assertEquals(2, msgs.size());
+			assertSame(old, ((ComponentChangedMessage)msgs.get(0)).getEntity());
+			assertSame(entity, ((ComponentChangedMessage)msgs.get(1)).getEntity());
+			endpoint.terminate();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package infinity.ecs.messaging;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class ConcurrentMessageDispatcherTest {
+
+	public static class TestMessage extends Message {
+		public final int value;
+
+		public TestMessage(int value) {
+			this.value = value;
+		}
+	}
+
+	private ConcurrentMessageDispatcher _dispatcher;
+	private MessageType _type;
+
+	@Before
+	public void setUp() {
+		_dispatcher = new ConcurrentMessageDispatcher(8);
+		_type = MessageType.get(TestMessage.class);
+	}
+
+	@Test
+	public void testRegistration() {
+		MessageEndpoint sender = _dispatcher.createEndpoint();
+		MessageEndpoint receiver = _dispatcher.createEndpoint();
+		sender.register(_type);
+		receiver.register(_type);
+		receiver.register(_type);
+		assertTrue(receiver.check(_type));
+		sender.send(new TestMessage(1));
+		assertNull("The sender must not receive its own message", sender.retrieveNext());
+		assertEquals(1, ((TestMessage)receiver.retrieveNext()).value);
+		assertNull("The endpoint must be registered only once", receiver.retrieveNext());
+
+		receiver.deregister(_type);
+		assertFalse(receiver.check(_type));
+		sender.send(new TestMessage(2));
+		assertNull(receiver.retrieveNext());
+
+		receiver.register(_type);
+		receiver.terminate();
+		assertFalse(receiver.check(_type));
+		assertTrue(sender.check(_type));
+	}
+
+	@Test
+	public void testFullQueue() {
+		MessageEndpoint sender = _dispatcher.createEndpoint();
+		ConcurrentMessageEndpoint receiver = (ConcurrentMessageEndpoint)_dispatcher.createEndpoint();
+		receiver.register(_type);
+		for (int i = 0; i < 10; i++)
+			sender.send(new TestMessage(i));
+		assertEquals(2, receiver.getDroppedCount());
+		for (int i = 0; i < 8; i++)
+			assertEquals(i, ((TestMessage)receiver.retrieveNext()).value);
+		assertNull(receiver.retrieveNext());
+	}
+
+	@Test
+	public void testConcurrentSenders() throws Exception {
+		final int senders = 4;
+		final int count = 20000;
+		_dispatcher = new ConcurrentMessageDispatcher(senders * count);
+		MessageEndpoint receiver = _dispatcher.createEndpoint();
+		receiver.register(_type);
+		Thread[] threads = new Thread[senders];
+		for (int s = 0; s < senders; s++) {
+			final MessageEndpoint sender = _dispatcher.createEndpoint();
+			threads[s] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < count; i++)
+						sender.send(new TestMessage(i));
+				}
+			});
+			threads[s].start();
+		}
+		// registrations change while the messages are send
+		MessageEndpoint other = _dispatcher.createEndpoint();
+		for (int i = 0; i < 1000; i++) {
+			other.register(_type);
+			other.deregister(_type);
+		}
+		for (Thread thread : threads)
+			thread.join();
+		long sum = 0;
+		int received = 0;
+		Message msg;
+		while ((msg = receiver.retrieveNext()) != null) {
+			sum += ((TestMessage)msg).value;
+			received++;
+		}
+		assertEquals(senders * count, received);
+		assertEquals((long)senders * count * (count - 1) / 2, sum);
+	}
+}
@@ -0,0 +1,97 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.messaging.ConcurrentMessageDispatcherTest.TestMessage;
+import infinity.ecs.messaging.MessageEndpointTest.OtherMessage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class EventStreamDispatcherTest {
+
+	private EventStreamDispatcher _dispatcher;
+	private MessageEndpoint _sender;
+	private EventStreamEndpoint _a, _b;
+	private MessageType _type, _other;
+
+	@Before
+	public void setUp() {
+		_dispatcher = new EventStreamDispatcher();
+		_type = MessageType.get(TestMessage.class);
+		_other = MessageType.get(OtherMessage.class);
+		_sender = _dispatcher.createEndpoint();
+		_a = (EventStreamEndpoint)_dispatcher.createEndpoint();
+		_b = (EventStreamEndpoint)_dispatcher.createEndpoint();
+	}
+
+	@Test
+	public void testSharedStream() {
+		_a.register(_type);
+		_a.register(_other);
+		_b.register(_type);
+		Message first = new TestMessage(1);
+		Message second = new OtherMessage();
+		Message third = new TestMessage(3);
+		_sender.send(first);
+		_sender.send(second);
+		_sender.send(third);
+		// both readers get the same instances, and the types are merged in the order of sending
+		assertSame(first, _a.retrieveNext());
+		assertSame(second, _a.retrieveNext());
+		assertSame(third, _a.retrieveNext());
+		assertNull(_a.retrieveNext());
+		assertSame(first, _b.retrieveNext());
+		assertSame(third, _b.retrieveNext());
+		assertNull(_b.retrieveNext());
+	}
+
+	@Test
+	public void testFrames() {
+		_a.register(_type);
+		_b.register(_type);
+		_sender.send(new TestMessage(1));
+		_dispatcher.nextFrame();
+		_sender.send(new TestMessage(2));
+		assertEquals(1, ((TestMessage)_a.retrieveNext()).value);
+		_dispatcher.nextFrame();
+		// the message of the first frame is gone now
+		assertEquals(2, ((TestMessage)_a.retrieveNext()).value);
+		assertEquals(2, ((TestMessage)_b.retrieveNext()).value);
+		assertEquals(1, _b.getMissedCount());
+		assertEquals(0, _a.getMissedCount());
+		assertNull(_b.retrieveNext());
+	}
+
+	@Test
+	public void testOwnMessagesAndRegistration() {
+		_a.register(_type);
+		_a.send(new TestMessage(1));
+		assertNull("The sender must not receive its own message", _a.retrieveNext());
+		assertTrue(_dispatcher.hasSubscribers(_type));
+		_a.deregister(_type);
+		assertFalse(_dispatcher.hasSubscribers(_type));
+		_sender.send(new TestMessage(2));
+		_a.register(_type);
+		assertNull("Messages send before the registration are not received", _a.retrieveNext());
+	}
+
+	@Test
+	public void testPooledMessages() {
+		MessagePool<EntityCreatedMessage> pool
+			= new MessagePool<EntityCreatedMessage>(EntityCreatedMessage.class);
+		_a.register(MessageType.get(EntityCreatedMessage.class));
+		EntityCreatedMessage msg = pool.acquire();
+		_sender.send(msg);
+		msg.release();
+		_a.retrieveNext().release();
+		_dispatcher.nextFrame();
+		assertEquals(0, pool.size());
+		_dispatcher.nextFrame();
+		assertEquals("The stream releases its messages after two frames", 1, pool.size());
+	}
+}
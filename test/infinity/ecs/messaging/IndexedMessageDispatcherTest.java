@@ -0,0 +1,170 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.ArchetypeComponentStorage;
+import infinity.ecs.core.Component;
+import infinity.ecs.core.ComponentFactory;
+import infinity.ecs.core.ComponentMask;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.messaging.MessagePoolTest.ComponentA;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class IndexedMessageDispatcherTest {
+
+	public static class ComponentB extends Component { }
+
+	static class FactoryB implements ComponentFactory {
+		public ComponentType getComponentType() {
+			return ComponentType.get(ComponentB.class);
+		}
+		public Component createNewComponent() {
+			return new ComponentB();
+		}
+	}
+
+	private static final MessageType CHANGED = MessageType.get(ComponentChangedMessage.class);
+
+	private IndexedMessageDispatcher _dispatcher;
+	private EntityManager _manager;
+	private ComponentType _typeA, _typeB;
+
+	@Before
+	public void setUp() {
+		_dispatcher = new IndexedMessageDispatcher();
+		_manager = new EntityManager(new ArchetypeComponentStorage());
+		_manager.setMessageDispatcher(_dispatcher);
+		_manager.registerComponentFactory(new MessagePoolTest.FactoryA());
+		_manager.registerComponentFactory(new FactoryB());
+		_typeA = ComponentType.get(ComponentA.class);
+		_typeB = ComponentType.get(ComponentB.class);
+	}
+
+	private static int count(MessageEndpoint endpoint) {
+		int count = 0;
+		Message msg;
+		while ((msg = endpoint.retrieveNext()) != null) {
+			msg.release();
+			count++;
+		}
+		return count;
+	}
+
+	@Test
+	public void testEntitySubscription() throws Exception {
+		Entity a = _manager.createEntity();
+		Entity b = _manager.createEntity();
+		_manager.addComponent(a, _typeA);
+		_manager.addComponent(b, _typeA);
+		IndexedMessageEndpoint endpoint = (IndexedMessageEndpoint)_dispatcher.createEndpoint();
+		assertFalse(_dispatcher.hasSubscribers(CHANGED));
+		endpoint.register(CHANGED, a);
+		assertTrue(_dispatcher.hasSubscribers(CHANGED));
+
+		_manager.markChanged(a, _typeA);
+		_manager.markChanged(b, _typeA);
+		ComponentChangedMessage msg = (ComponentChangedMessage)endpoint.retrieveNext();
+		assertSame(a, msg.getEntity());
+		msg.release();
+		assertNull(endpoint.retrieveNext());
+
+		endpoint.deregister(CHANGED, a);
+		assertFalse(_dispatcher.hasSubscribers(CHANGED));
+		_manager.markChanged(a, _typeA);
+		assertNull(endpoint.retrieveNext());
+	}
+
+	@Test
+	public void testMaskSubscription() throws Exception {
+		Entity a = _manager.createEntity();
+		Entity ab = _manager.createEntity();
+		_manager.addComponent(a, _typeA);
+		_manager.addComponent(ab, _typeA);
+		_manager.addComponent(ab, _typeB);
+		IndexedMessageEndpoint endpoint = (IndexedMessageEndpoint)_dispatcher.createEndpoint();
+		Entity template = _manager.createEntity();
+		_manager.addComponent(template, _typeA);
+		_manager.addComponent(template, _typeB);
+		endpoint.register(CHANGED, template.getComponentMask());
+		_manager.removeComponent(template, _typeB);
+
+		_manager.markChanged(a, _typeA);
+		_manager.markChanged(ab, _typeA);
+		ComponentChangedMessage msg = (ComponentChangedMessage)endpoint.retrieveNext();
+		assertSame("The mask must be copied", ab, msg.getEntity());
+		msg.release();
+		assertNull(endpoint.retrieveNext());
+
+		// the current mask of the entity is used when the message is send
+		_manager.addComponent(a, _typeB);
+		_manager.markChanged(a, _typeA);
+		assertEquals(1, count(endpoint));
+
+		endpoint.deregister(CHANGED, new ComponentMask(_typeA, _typeB));
+		assertFalse(_dispatcher.hasSubscribers(CHANGED));
+	}
+
+	@Test
+	public void testSingleDelivery() throws Exception {
+		Entity entity = _manager.createEntity();
+		_manager.addComponent(entity, _typeA);
+		IndexedMessageEndpoint endpoint = (IndexedMessageEndpoint)_dispatcher.createEndpoint();
+		IndexedMessageEndpoint other = (IndexedMessageEndpoint)_dispatcher.createEndpoint();
+		endpoint.register(CHANGED);
+		endpoint.register(CHANGED, entity);
+		endpoint.register(CHANGED, new ComponentMask(_typeA));
+		other.register(CHANGED, new ComponentMask(_typeA));
+
+		_manager.markChanged(entity, _typeA);
+		_manager.markChanged(entity, _typeA);
+		assertEquals("Every message must only be received once", 2, count(endpoint));
+		assertEquals(2, count(other));
+
+		endpoint.terminate();
+		assertTrue("other is still subscribed", _dispatcher.hasSubscribers(CHANGED));
+		other.terminate();
+		assertFalse(_dispatcher.hasSubscribers(CHANGED));
+	}
+
+	@Test
+	public void testRemovedEntity() throws Exception {
+		Entity entity = _manager.createEntity();
+		_manager.addComponent(entity, _typeA);
+		MessageType removed = MessageType.get(EntityRemovedMessage.class);
+		IndexedMessageEndpoint endpoint = (IndexedMessageEndpoint)_dispatcher.createEndpoint();
+		endpoint.register(removed, entity);
+		endpoint.register(removed, new ComponentMask(_typeA));
+		_manager.removeEntity(entity);
+		assertEquals(1, count(endpoint));
+	}
+
+	@Test
+	public void testRemovedEntityEndsSubscriptions() throws Exception {
+		MessageType removed = MessageType.get(EntityRemovedMessage.class);
+		MessageType batchRemoved = MessageType.get(EntitiesRemovedMessage.class);
+		Entity a = _manager.createEntity();
+		Entity b = _manager.createEntity();
+		IndexedMessageEndpoint endpoint = (IndexedMessageEndpoint)_dispatcher.createEndpoint();
+		endpoint.register(CHANGED, a);
+		endpoint.register(CHANGED, b);
+		endpoint.register(removed, a);
+		assertTrue(_dispatcher.hasSubscribers(batchRemoved));
+
+		_manager.removeEntity(a);
+		assertEquals("The removal must still be delivered", 1, count(endpoint));
+		assertTrue("b is still subscribed", _dispatcher.hasSubscribers(CHANGED));
+		_manager.removeEntities(b);
+		assertFalse(_dispatcher.hasSubscribers(CHANGED));
+		assertFalse(_dispatcher.hasSubscribers(removed));
+		assertFalse(_dispatcher.hasSubscribers(batchRemoved));
+		assertEquals(0, count(endpoint));
+	}
+}
@@ -0,0 +1,112 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.messaging.ConcurrentMessageDispatcherTest.TestMessage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the behavior all {@link MessageEndpoint} implementations share.
+ *
+ * @author preip
+ */
+public class MessageEndpointTest {
+
+	public static class OtherMessage extends Message { }
+
+	private static MessageDispatcher[] createDispatchers() {
+		return new MessageDispatcher[] { new SimpleMessageDispatcher(),
+				new IndexedMessageDispatcher(), new ConcurrentMessageDispatcher(),
+				new EventStreamDispatcher(), new AsyncMessageDispatcher(new Executor() {
+					@Override
+					public void execute(Runnable task) {
+						task.run();
+					}
+				}) };
+	}
+
+	@Test
+	public void testSendAllAndDrainTo() {
+		for (MessageDispatcher dispatcher : createDispatchers()) {
+			MessageEndpoint sender = dispatcher.createEndpoint();
+			MessageEndpoint receiver = dispatcher.createEndpoint();
+			MessageEndpoint other = dispatcher.createEndpoint();
+			sender.register(MessageType.get(TestMessage.class));
+			receiver.register(MessageType.get(TestMessage.class));
+			receiver.register(MessageType.get(OtherMessage.class));
+			other.register(MessageType.get(OtherMessage.class));
+
+			List<Message> msgs = new ArrayList<Message>();
+			for (int i = 0; i < 10; i++)
+				msgs.add(new TestMessage(i));
+			msgs.add(new OtherMessage());
+			msgs.add(new TestMessage(10));
+			sender.sendAll(msgs);
+			assertNull(sender.retrieveNext());
+			assertSame(msgs.get(10), other.retrieveNext());
+			assertNull(other.retrieveNext());
+
+			final List<Message> received = new ArrayList<Message>();
+			Consumer<Message> consumer = new Consumer<Message>() {
+				@Override
+				public void accept(Message msg) {
+					received.add(msg);
+				}
+			};
+			assertEquals(5, receiver.drainTo(consumer, 5));
+			assertEquals(msgs.subList(0, 5), received);
+			assertEquals(7, receiver.drainTo(consumer, 100));
+			assertEquals("The order must be kept", msgs, received);
+			assertEquals(0, receiver.drainTo(consumer, 100));
+
+			sender.sendAll(Arrays.asList(new TestMessage(1), new TestMessage(2)));
+			assertEquals(0, receiver.drainTo(consumer, 0));
+			assertEquals(2, receiver.drainTo(consumer, 2));
+		}
+	}
+
+	@Test
+	public void testCounters() {
+		MessageType type = MessageType.get(TestMessage.class);
+		for (MessageDispatcher dispatcher : createDispatchers()) {
+			MessageEndpoint sender = dispatcher.createEndpoint();
+			MessageEndpoint receiver = dispatcher.createEndpoint();
+			receiver.register(type);
+			for (int i = 0; i < 3; i++)
+				sender.send(new TestMessage(i));
+			while (receiver.retrieveNext() != null) { }
+			assertEquals(3, receiver.getEnqueuedCount());
+			assertEquals(0, receiver.getDroppedCount());
+			assertEquals(0, sender.getEnqueuedCount());
+		}
+	}
+
+	@Test
+	public void testHasSubscribers() {
+		MessageType type = MessageType.get(TestMessage.class);
+		MessageType other = MessageType.get(OtherMessage.class);
+		for (MessageDispatcher dispatcher : createDispatchers()) {
+			assertFalse(dispatcher.hasSubscribers(type));
+			MessageEndpoint a = dispatcher.createEndpoint();
+			MessageEndpoint b = dispatcher.createEndpoint();
+			a.register(type);
+			a.register(type);
+			b.register(type);
+			b.register(other);
+			assertTrue(dispatcher.hasSubscribers(type));
+			a.deregister(type);
+			a.deregister(type);
+			assertTrue("b is still registered", dispatcher.hasSubscribers(type));
+			b.terminate();
+			assertFalse(dispatcher.hasSubscribers(type));
+			assertFalse(dispatcher.hasSubscribers(other));
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.ArchetypeComponentStorage;
+import infinity.ecs.core.Component;
+import infinity.ecs.core.ComponentFactory;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class MessagePoolTest {
+
+	public static class ComponentA extends Component { }
+
+	static class FactoryA implements ComponentFactory {
+		public ComponentType getComponentType() {
+			return ComponentType.get(ComponentA.class);
+		}
+		public Component createNewComponent() {
+			return new ComponentA();
+		}
+	}
+
+	private MessagePool<EntityCreatedMessage> _pool;
+
+	@Before
+	public void setUp() {
+		_pool = new MessagePool<EntityCreatedMessage>(EntityCreatedMessage.class);
+	}
+
+	@Test
+	public void testRecycle() {
+		EntityCreatedMessage msg = _pool.acquire();
+		assertEquals(MessageType.get(EntityCreatedMessage.class), msg.getType());
+		Entity entity = new EntityManager().createEntity();
+		msg.set(entity);
+		msg.retain();
+		msg.release();
+		assertEquals("A retained message must not be recycled", 0, _pool.size());
+		msg.release();
+		assertEquals(1, _pool.size());
+		assertNull("Recycled messages must be cleared", msg.getEntity());
+		assertSame(msg, _pool.acquire());
+		assertEquals(0, _pool.size());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDoubleRelease() {
+		EntityCreatedMessage msg = _pool.acquire();
+		msg.release();
+		msg.release();
+	}
+
+	@Test
+	public void testUnpooledMessages() {
+		Message msg = new EntityCreatedMessage(null);
+		msg.release();
+		assertEquals(0, _pool.size());
+	}
+
+	@Test
+	public void testDelivery() throws Exception {
+		MessageDispatcher dispatcher = new IndexedMessageDispatcher();
+		MessageEndpoint receiver = dispatcher.createEndpoint();
+		MessageEndpoint ignorant = dispatcher.createEndpoint();
+		receiver.register(MessageType.get(ComponentChangedMessage.class));
+		ignorant.register(MessageType.get(ComponentChangedMessage.class));
+		EntityManager manager = new EntityManager(new ArchetypeComponentStorage());
+		manager.setMessageDispatcher(dispatcher);
+		manager.registerComponentFactory(new FactoryA());
+		ComponentType type = ComponentType.get(ComponentA.class);
+		Entity entity = manager.createEntity();
+		manager.addComponent(entity, type);
+
+		manager.markChanged(entity, type);
+		ComponentChangedMessage first = (ComponentChangedMessage)receiver.retrieveNext();
+		assertSame(entity, first.getEntity());
+		first.release();
+		// the message is still queued in the other endpoint, so it must not be reused yet
+		manager.markChanged(entity, type);
+		Message second = receiver.retrieveNext();
+		assertNotSame(first, second);
+		second.release();
+
+		// once every endpoint released the messages, they are reused
+		ignorant.terminate();
+		manager.markChanged(entity, type);
+		Message third = receiver.retrieveNext();
+		assertTrue(third == first || third == second);
+	}
+}
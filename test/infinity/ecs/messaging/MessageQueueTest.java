@@ -0,0 +1,129 @@
+package infinity.ecs.messaging;
+
+import infinity.ecs.core.ArchetypeComponentStorage;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.messaging.ConcurrentMessageDispatcherTest.TestMessage;
+import infinity.ecs.messaging.MessagePoolTest.ComponentA;
+import infinity.ecs.messaging.MessagePoolTest.FactoryA;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the bounded queues of the endpoints.
+ *
+ * @author preip
+ */
+public class MessageQueueTest {
+
+	private static final MessageType TYPE = MessageType.get(TestMessage.class);
+
+	private static int retrieveValue(MessageEndpoint endpoint) {
+		return ((TestMessage)endpoint.retrieveNext()).value;
+	}
+
+	@Test
+	public void testDropNewest() {
+		IndexedMessageDispatcher dispatcher = new IndexedMessageDispatcher();
+		MessageEndpoint sender = dispatcher.createEndpoint();
+		IndexedMessageEndpoint receiver = (IndexedMessageEndpoint)dispatcher.createEndpoint();
+		receiver.register(TYPE);
+		receiver.setCapacity(2, OverflowPolicy.DROP_NEWEST);
+		for (int i = 0; i < 5; i++)
+			sender.send(new TestMessage(i));
+		assertEquals(2, receiver.getEnqueuedCount());
+		assertEquals(3, receiver.getDroppedCount());
+		assertEquals(0, retrieveValue(receiver));
+		assertEquals(1, retrieveValue(receiver));
+		assertNull(receiver.retrieveNext());
+	}
+
+	@Test
+	public void testDropOldest() {
+		SimpleMessageDispatcher dispatcher = new SimpleMessageDispatcher();
+		MessageEndpoint sender = dispatcher.createEndpoint();
+		SimpleMessageEndpoint receiver = (SimpleMessageEndpoint)dispatcher.createEndpoint();
+		receiver.register(TYPE);
+		for (int i = 0; i < 5; i++)
+			sender.send(new TestMessage(i));
+		receiver.setCapacity(3, OverflowPolicy.DROP_OLDEST);
+		assertEquals("Reducing the capacity drops the oldest", 2, receiver.getDroppedCount());
+		sender.send(new TestMessage(5));
+		assertEquals(3, receiver.getDroppedCount());
+		assertEquals(6, receiver.getEnqueuedCount());
+		assertEquals(3, retrieveValue(receiver));
+		assertEquals(4, retrieveValue(receiver));
+		assertEquals(5, retrieveValue(receiver));
+		assertNull(receiver.retrieveNext());
+	}
+
+	@Test
+	public void testCoalesce() throws Exception {
+		IndexedMessageDispatcher dispatcher = new IndexedMessageDispatcher();
+		IndexedMessageEndpoint receiver = (IndexedMessageEndpoint)dispatcher.createEndpoint();
+		receiver.register(MessageType.get(ComponentChangedMessage.class));
+		receiver.register(TYPE);
+		receiver.setCapacity(2, OverflowPolicy.COALESCE);
+		assertTrue(receiver.isCoalescing());
+		EntityManager manager = new EntityManager(new ArchetypeComponentStorage());
+		manager.setMessageDispatcher(dispatcher);
+		manager.registerComponentFactory(new FactoryA());
+		ComponentType type = ComponentType.get(ComponentA.class);
+		Entity entity = manager.createEntity();
+		manager.addComponent(entity, type);
+
+		for (int i = 0; i < 10; i++)
+			manager.markChanged(entity, type);
+		MessageEndpoint sender = dispatcher.createEndpoint();
+		sender.send(new TestMessage(0));
+		sender.send(new TestMessage(1));
+		assertEquals(2, receiver.getEnqueuedCount());
+		assertEquals(9, receiver.getCoalescedCount());
+		assertEquals(1, receiver.getDroppedCount());
+		assertTrue(receiver.retrieveNext() instanceof ComponentChangedMessage);
+		assertEquals(0, retrieveValue(receiver));
+
+		receiver.setCapacity(2, OverflowPolicy.DROP_NEWEST);
+		assertFalse(receiver.isCoalescing());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBlockNotSupported() {
+		((SimpleMessageEndpoint)new SimpleMessageDispatcher().createEndpoint())
+				.setCapacity(1, OverflowPolicy.BLOCK);
+	}
+
+	@Test(timeout = 10000)
+	public void testBlock() throws Exception {
+		ConcurrentMessageDispatcher dispatcher = new ConcurrentMessageDispatcher(2);
+		final MessageEndpoint sender = dispatcher.createEndpoint();
+		ConcurrentMessageEndpoint receiver =
+				(ConcurrentMessageEndpoint)dispatcher.createEndpoint();
+		receiver.register(TYPE);
+		receiver.setOverflowPolicy(OverflowPolicy.BLOCK);
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 100; i++)
+					sender.send(new TestMessage(i));
+				done.countDown();
+			}
+		};
+		producer.start();
+		for (int i = 0; i < 100; i++) {
+			Message msg;
+			while ((msg = receiver.retrieveNext()) == null)
+				Thread.yield();
+			assertEquals("No message may be lost", i, ((TestMessage)msg).value);
+		}
+		done.await();
+		assertEquals(100, receiver.getEnqueuedCount());
+		assertEquals(0, receiver.getDroppedCount());
+	}
+}
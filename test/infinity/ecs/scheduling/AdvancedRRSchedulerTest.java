@@ -0,0 +1,92 @@
+package infinity.ecs.scheduling;
+
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.messaging.MessageDispatcher;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class AdvancedRRSchedulerTest {
+
+	/**
+	 * A system which logs its updates and optionally ends the scheduler.
+	 */
+	private class LoggingSystem extends EntitySystem {
+		private final String _name;
+		private final boolean _end;
+
+		LoggingSystem(String name, boolean end) {
+			super(null);
+			_name = name;
+			_end = end;
+		}
+
+		@Override
+		public void initialize(EntityManager entityManager, MessageDispatcher msgDispatcher) { }
+
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+
+		@Override
+		public void update(int elapsedTime) {
+			_log.add(_name);
+			if (_end)
+				_scheduler.end();
+		}
+
+		@Override
+		public void terminate() { }
+	}
+
+	private AdvancedRRScheduler _scheduler;
+	private List<String> _log;
+
+	@Before
+	public void setUp() {
+		AdvancedRRScheduler.getInstance().newInstance();
+		_scheduler = AdvancedRRScheduler.getInstance();
+		_log = new ArrayList<>();
+	}
+
+	/**
+	 * Sets the schedule directly, since it only depends on the order of the systems here.
+	 */
+	private void setSchedule(EntitySystem... systems) throws Exception {
+		Field schedule = AdvancedRRScheduler.class.getDeclaredField("_schedule");
+		schedule.setAccessible(true);
+		schedule.set(_scheduler, new ArrayList<>(Arrays.asList(systems)));
+		Field systemMetrics = AdvancedRRScheduler.class.getDeclaredField("_systemMetrics");
+		systemMetrics.setAccessible(true);
+		SystemMetrics[] metrics = new SystemMetrics[systems.length];
+		for (int i = 0; i < systems.length; i++)
+			metrics[i] = _scheduler.getMetrics().getOrCreate(systems[i]);
+		systemMetrics.set(_scheduler, metrics);
+	}
+
+	@Test(timeout = 5000)
+	public void testEndFromSystem() throws Exception {
+		setSchedule(new LoggingSystem("a", false), new LoggingSystem("b", true),
+				new LoggingSystem("c", false));
+		_scheduler.run();
+		assertFalse(_scheduler.isRunning());
+		assertEquals(0, _scheduler.getRuns());
+		assertEquals(Arrays.asList("a", "b"), _log);
+		// end() resets the schedule, so the next run starts with the first system again
+		_scheduler.run();
+		assertEquals(Arrays.asList("a", "b", "a", "b"), _log);
+	}
+}
@@ -0,0 +1,110 @@
+package infinity.ecs.scheduling;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class FrameTimerTest {
+
+	private static final long MILLI = 1000000L;
+
+	/**
+	 * A clock which only moves when told to.
+	 */
+	private static class ManualClock implements Clock {
+		long _now;
+		long _tick;
+
+		@Override
+		public long nanoTime() {
+			_now += _tick;
+			return _now;
+		}
+	}
+
+	private ManualClock _clock;
+
+	@Before
+	public void setUp() {
+		_clock = new ManualClock();
+	}
+
+	@Test
+	public void testFixedStep() {
+		FrameTimer timer = new FrameTimer(_clock, 10, 5);
+		assertTrue(timer.isFixedStep());
+		_clock._now += 25 * MILLI;
+		assertEquals(2, timer.advance());
+		assertEquals(10, timer.getElapsedTime());
+		assertEquals(0.5f, timer.getAlpha(), 0.001f);
+
+		_clock._now += 5 * MILLI;
+		assertEquals(1, timer.advance());
+		assertEquals(0f, timer.getAlpha(), 0.001f);
+	}
+
+	@Test
+	public void testCatchUpLimit() {
+		FrameTimer timer = new FrameTimer(_clock, 10, 5);
+		_clock._now += 1003 * MILLI;
+		assertEquals(5, timer.advance());
+		assertEquals(950, timer.getDroppedTime());
+		assertEquals(0.3f, timer.getAlpha(), 0.001f);
+	}
+
+	@Test
+	public void testVariableStep() {
+		FrameTimer timer = new FrameTimer(_clock, 0, 1, 100);
+		assertFalse(timer.isFixedStep());
+		_clock._now += 7 * MILLI + MILLI / 2;
+		assertEquals(1, timer.advance());
+		assertEquals(7, timer.getElapsedTime());
+		// the half millisecond is carried over
+		_clock._now += 2 * MILLI + MILLI / 2;
+		assertEquals(1, timer.advance());
+		assertEquals(3, timer.getElapsedTime());
+		_clock._now += 500 * MILLI;
+		timer.advance();
+		assertEquals(100, timer.getElapsedTime());
+		assertEquals(400, timer.getDroppedTime());
+	}
+
+	@Test
+	public void testVariableStepUnlimited() {
+		// maxSteps only limits the catch-up of fixed steps
+		FrameTimer timer = new FrameTimer(_clock, 0, 5);
+		_clock._now += 500 * MILLI;
+		assertEquals(1, timer.advance());
+		assertEquals(500, timer.getElapsedTime());
+		assertEquals(0, timer.getDroppedTime());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeMaxElapsed() {
+		new FrameTimer(_clock, 0, 1, -1);
+	}
+
+	@Test
+	public void testWaitsForNextFrame() {
+		// every reading of the clock moves it a quarter of a step, so the timer has to wait
+		FrameTimer timer = new FrameTimer(_clock, 4, 5);
+		_clock._tick = MILLI;
+		assertEquals(1, timer.advance());
+		assertTrue(_clock._now >= 4 * MILLI);
+	}
+
+	@Test
+	public void testReset() {
+		FrameTimer timer = new FrameTimer(_clock, 10, 5);
+		_clock._now += 100 * MILLI;
+		timer.reset();
+		_clock._now += 10 * MILLI;
+		assertEquals(1, timer.advance());
+		assertEquals(0, timer.getDroppedTime());
+	}
+}
@@ -0,0 +1,288 @@
+package infinity.ecs.scheduling;
+
+import infinity.ecs.core.Component;
+import infinity.ecs.core.ComponentMask;
+import infinity.ecs.core.ComponentFactory;
+import infinity.ecs.core.ComponentType;
+import infinity.ecs.core.Entity;
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntityQuery;
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.messaging.ComponentChangedMessage;
+import infinity.ecs.messaging.MessageDispatcher;
+import infinity.ecs.messaging.MessageEndpoint;
+import infinity.ecs.messaging.MessageType;
+import infinity.ecs.messaging.SimpleMessageDispatcher;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class ParallelSchedulerTest {
+
+	public static class ComponentX extends Component { }
+
+	public static class ComponentY extends Component { }
+
+	/**
+	 * A system which logs its updates and optionally waits for other systems at a barrier.
+	 */
+	private static class LoggingSystem extends EntitySystem {
+		private final String _name;
+		private final List<String> _log;
+		private final CyclicBarrier _barrier;
+
+		LoggingSystem(String name, List<String> log, CyclicBarrier barrier,
+				ComponentMask readMask, ComponentMask writeMask) {
+			super(null, readMask, writeMask);
+			_name = name;
+			_log = log;
+			_barrier = barrier;
+		}
+
+		LoggingSystem(String name, List<String> log) {
+			super(null);
+			_name = name;
+			_log = log;
+			_barrier = null;
+		}
+
+		@Override
+		public void initialize(EntityManager entityManager, MessageDispatcher msgDispatcher) { }
+
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+
+		@Override
+		public void update(int elapsedTime) {
+			if (_barrier != null) {
+				try {
+					_barrier.await(5, TimeUnit.SECONDS);
+				} catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			_log.add(_name);
+			countProcessed(7);
+		}
+
+		@Override
+		public void terminate() { }
+	}
+
+	/**
+	 * A system which marks the component of its type as changed on all specified entities.
+	 */
+	private static class MarkingSystem extends EntitySystem {
+		private final Entity[] _entities;
+		private final ComponentType _type;
+		private final CyclicBarrier _barrier;
+
+		MarkingSystem(Entity[] entities, ComponentType type, CyclicBarrier barrier) {
+			super(null, null, new ComponentMask(type));
+			_entities = entities;
+			_type = type;
+			_barrier = barrier;
+		}
+
+		@Override
+		public void initialize(EntityManager entityManager, MessageDispatcher msgDispatcher) { }
+
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+
+		@Override
+		public void update(int elapsedTime) {
+			try {
+				_barrier.await(5, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			for (Entity entity : _entities)
+				entity.markChanged(_type);
+		}
+
+		@Override
+		public void terminate() { }
+	}
+
+	private static ComponentFactory createFactory(final Class<? extends Component> c) {
+		return new ComponentFactory() {
+			public ComponentType getComponentType() {
+				return ComponentType.get(c);
+			}
+			public Component createNewComponent() {
+				try {
+					return c.getDeclaredConstructor().newInstance();
+				} catch (ReflectiveOperationException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+		};
+	}
+
+	private ForkJoinPool _pool;
+	private ParallelScheduler _scheduler;
+	private List<String> _log;
+	private ComponentMask _x, _y;
+
+	@Before
+	public void setUp() {
+		_pool = new ForkJoinPool(4);
+		_scheduler = new ParallelScheduler(_pool);
+		_log = Collections.synchronizedList(new ArrayList<String>());
+		_x = new ComponentMask(ComponentType.get(ComponentX.class));
+		_y = new ComponentMask(ComponentType.get(ComponentY.class));
+	}
+
+	@After
+	public void tearDown() {
+		_pool.shutdownNow();
+	}
+
+	@Test
+	public void testConflicts() {
+		EntitySystem readerX = new LoggingSystem("a", _log, null, _x, null);
+		EntitySystem writerX = new LoggingSystem("b", _log, null, null, _x);
+		EntitySystem writerY = new LoggingSystem("c", _log, null, _y, _y);
+		assertTrue(readerX.conflictsWith(writerX));
+		assertFalse(readerX.conflictsWith(writerY));
+		assertFalse(readerX.conflictsWith(new LoggingSystem("d", _log, null, _x, null)));
+		assertTrue("Undeclared systems conflict with all others",
+				readerX.conflictsWith(new LoggingSystem("e", _log)));
+	}
+
+	@Test
+	public void testConcurrentSystems() throws Exception {
+		// both systems wait for each other, so they can only finish when they run concurrently
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		_scheduler.registerSystem(new LoggingSystem("a", _log, barrier, _x, null), 1);
+		_scheduler.registerSystem(new LoggingSystem("b", _log, barrier, _x, _y), 1);
+		_scheduler.makeSchedule();
+		_scheduler.runFrame(0);
+		assertEquals(2, _log.size());
+		assertEquals(1, _scheduler.getRuns());
+	}
+
+	@Test
+	public void testDeterministicOrder() throws Exception {
+		_scheduler.registerSystem(new LoggingSystem("write", _log, null, null, _x), 2);
+		_scheduler.registerSystem(new LoggingSystem("read", _log, null, _x, null), 3);
+		_scheduler.registerSystem(new LoggingSystem("first", _log, null, _y, _x), 1);
+		_scheduler.registerSystem(new LoggingSystem("last", _log), 4);
+		_scheduler.makeSchedule();
+		for (int i = 0; i < 100; i++) {
+			_log.clear();
+			_scheduler.runFrame(0);
+			assertEquals(Arrays.asList("first", "write", "read", "last"), _log);
+		}
+	}
+
+	@Test
+	public void testConcurrentMarkChanged() throws Exception {
+		ComponentType x = ComponentType.get(ComponentX.class);
+		ComponentType y = ComponentType.get(ComponentY.class);
+		EntityManager manager = new EntityManager();
+		manager.registerComponentFactory(createFactory(ComponentX.class));
+		manager.registerComponentFactory(createFactory(ComponentY.class));
+		Entity[] entities = manager.createEntities(5000, x, y);
+		EntityQuery changedX = manager.query().all(x).changed(x).build();
+		EntityQuery changedY = manager.query().all(y).changed(y).build();
+		SimpleMessageDispatcher dispatcher = new SimpleMessageDispatcher();
+		MessageEndpoint endpoint = dispatcher.createEndpoint();
+		endpoint.register(MessageType.get(ComponentChangedMessage.class));
+		manager.setMessageDispatcher(dispatcher);
+
+		// both systems wait for each other, so they mark their components at the same time
+		CyclicBarrier barrier = new CyclicBarrier(2);
+		_scheduler.setEntityManager(manager);
+		_scheduler.registerSystem(new MarkingSystem(entities, x, barrier), 1);
+		_scheduler.registerSystem(new MarkingSystem(entities, y, barrier), 1);
+		_scheduler.makeSchedule();
+		_scheduler.runFrame(0);
+
+		int messages = 0;
+		while (endpoint.retrieveNext() != null)
+			messages++;
+		assertEquals(10000, messages);
+		final int[] count = new int[1];
+		Consumer<Entity> counter = new Consumer<Entity>() {
+			@Override
+			public void accept(Entity entity) {
+				count[0]++;
+			}
+		};
+		changedX.forEach(counter);
+		changedY.forEach(counter);
+		assertEquals(10000, count[0]);
+	}
+
+	@Test
+	public void testInterruptStopsRun() throws Exception {
+		_scheduler.registerSystem(new LoggingSystem("a", _log), 1);
+		_scheduler.makeSchedule();
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				_scheduler.run();
+			}
+		});
+		thread.start();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (_scheduler.getRuns() == 0 && System.currentTimeMillis() < deadline)
+			Thread.sleep(1);
+		thread.interrupt();
+		thread.join(5000);
+		assertFalse("The interrupted scheduler must return from run()", thread.isAlive());
+		assertFalse(_scheduler.isRunning());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		EntitySystem system = new LoggingSystem("a", _log);
+		_scheduler.registerSystem(system, 1);
+		_scheduler.makeSchedule();
+		SchedulerMetrics metrics = _scheduler.getMetrics();
+		_scheduler.runFrame(0);
+		assertEquals("Disabled metrics must not measure", 0, metrics.getFrameCount());
+
+		metrics.setEnabled(true);
+		for (int i = 0; i < 10; i++)
+			_scheduler.runFrame(0);
+		assertEquals(10, metrics.getFrameCount());
+		assertEquals(11, metrics.getRuns());
+		SystemMetrics systemMetrics = metrics.getSystemMetrics(system);
+		assertEquals(10, systemMetrics.getUpdateTimes().getCount());
+		assertEquals(7, systemMetrics.getLastEntityCount());
+		assertEquals(70, systemMetrics.getTotalEntityCount());
+		assertTrue(metrics.getMaxFrameTime() >= systemMetrics.getUpdateTimes().getMax());
+		assertEquals(1, metrics.getSystemReport().length);
+
+		metrics.registerMBean("test");
+		ObjectName name = new ObjectName("infinity.ecs:type=Scheduler,name=\"test\"");
+		assertEquals(10L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "FrameCount"));
+		metrics.unregisterMBean();
+		assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+	}
+}
@@ -0,0 +1,89 @@
+package infinity.ecs.scheduling;
+
+import infinity.ecs.core.EntityManager;
+import infinity.ecs.core.EntitySystem;
+import infinity.ecs.messaging.MessageDispatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class RRSchedulerTest {
+
+	/**
+	 * A system which logs its updates and optionally ends the scheduler.
+	 */
+	private class LoggingSystem extends EntitySystem {
+		private final String _name;
+		private final boolean _end;
+
+		LoggingSystem(String name, boolean end) {
+			super(null);
+			_name = name;
+			_end = end;
+		}
+
+		@Override
+		public void initialize(EntityManager entityManager, MessageDispatcher msgDispatcher) { }
+
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+
+		@Override
+		public void update(int elapsedTime) {
+			_log.add(_name);
+			if (_end)
+				_scheduler.end();
+		}
+
+		@Override
+		public void terminate() { }
+	}
+
+	private RRScheduler _scheduler;
+	private List<String> _log;
+
+	@Before
+	public void setUp() {
+		_scheduler = new RRScheduler();
+		_log = new ArrayList<>();
+	}
+
+	@Test(timeout = 5000)
+	public void testEndFromSystem() throws Exception {
+		_scheduler.registerSystem(new LoggingSystem("a", false), 1);
+		_scheduler.registerSystem(new LoggingSystem("b", true), 2);
+		_scheduler.registerSystem(new LoggingSystem("c", false), 3);
+		_scheduler.makeSchedule();
+		_scheduler.run();
+		assertFalse(_scheduler.isRunning());
+		assertEquals(0, _scheduler.getRuns());
+		assertEquals(Arrays.asList("a", "b"), _log);
+		// end() resets the schedule, so the next run starts with the first system again
+		_scheduler.run();
+		assertEquals(Arrays.asList("a", "b", "a", "b"), _log);
+	}
+
+	@Test(timeout = 5000)
+	public void testRemoveSystem() throws Exception {
+		EntitySystem system = new LoggingSystem("a", false);
+		_scheduler.registerSystem(system, 1);
+		_scheduler.registerSystem(new LoggingSystem("b", true), 2);
+		assertTrue(_scheduler.removeSystem(system));
+		assertFalse(_scheduler.removeSystem(system));
+		_scheduler.makeSchedule();
+		_scheduler.run();
+		assertEquals(Arrays.asList("b"), _log);
+	}
+}
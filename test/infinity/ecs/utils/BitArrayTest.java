@@ -137,4 +137,32 @@ public class BitArrayTest {
         BitArray ba2 = _ba2.clone();
         assertTrue("Both cloned BitArray should be equal", _ba2.equals(ba2));
     }
+
+    @Test
+    public void testMatches() {
+        BitArray all = new BitArray();
+        BitArray any = new BitArray();
+        BitArray none = new BitArray();
+        _ba1.set(1, true);
+        _ba1.set(40, true);
+
+        assertTrue("Empty conditions should always match", _ba1.matches(all, any, none));
+
+        all.set(40, true);
+        any.set(1, true);
+        any.set(70, true);
+        assertTrue("All and any bits are set", _ba1.matches(all, any, none));
+
+        none.set(100, true);
+        assertTrue("Excluded bit outside the capacity is unset", _ba1.matches(all, any, none));
+        none.set(1, true);
+        assertFalse("Excluded bit is set", _ba1.matches(all, any, none));
+        none.set(1, false);
+
+        any.set(1, false);
+        assertFalse("None of the any bits is set", _ba1.matches(all, any, none));
+        any.set(70, false);
+        all.set(41, true);
+        assertFalse("Not all required bits are set", _ba1.matches(all, any, none));
+    }
 }
@@ -69,6 +69,37 @@ public class IdPoolTest {
         _defaultIdPool.setFreeIdCapacity(10000);
         assertEquals("The _defaultdPool should have a capacity of 10000",
                 _defaultIdPool.getFreeIdCapacity(),10000);
+        assertEquals("Resizing must keep all free ids",
+                _defaultIdPool.getId(),42);
+        assertEquals("Resizing must keep all free ids",
+                _defaultIdPool.getId(),10);
+        
+        assertEquals("Shrinking keeps the free ids that fit",
+                _bigfullIdPool.getFreeIdCount(),255);
+    }
+    
+    @Test
+    public void testGetIds() {
+        int[] ids = _defaultIdPool.getIds(4);
+        assertEquals("Free ids should be handed out first",ids[0],42);
+        assertEquals("Free ids should be handed out first",ids[1],10);
+        assertEquals(ids[2],0);
+        assertEquals(ids[3],1);
+        assertEquals(_defaultIdPool.getId(),2);
+    }
+    
+    @Test
+    public void testGrowingFreeIds() {
+        IdPool pool = new IdPool(2, true);
+        for(int i=0; i < 100; i++)
+            pool.getId();
+        for(int i=0; i < 100; i++)
+            pool.freeId(i);
+        assertEquals("No freed id should be lost",pool.getFreeIdCount(),100);
+        for(int i=0; i < 100; i++)
+            pool.getId();
+        assertEquals("Only freed ids should have been handed out",
+                pool.getIdCount(),100);
     }
     
 }
@@ -0,0 +1,56 @@
+package infinity.ecs.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class LatencyHistogramTest {
+
+	private LatencyHistogram _histogram;
+
+	@Before
+	public void setUp() {
+		_histogram = new LatencyHistogram();
+	}
+
+	@Test
+	public void testEmpty() {
+		assertEquals(0, _histogram.getCount());
+		assertEquals(0, _histogram.getMin());
+		assertEquals(0, _histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void testSmallValuesAreExact() {
+		for (int i = 1; i <= 50; i++)
+			_histogram.record(i);
+		assertEquals(50, _histogram.getCount());
+		assertEquals(1, _histogram.getMin());
+		assertEquals(50, _histogram.getMax());
+		assertEquals(25.5, _histogram.getMean(), 0.0);
+		assertEquals(25, _histogram.getValueAtPercentile(50));
+		assertEquals(50, _histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testRelativePrecision() {
+		for (long i = 1; i <= 100000; i++)
+			_histogram.record(i * 1000);
+		long p99 = _histogram.getValueAtPercentile(99);
+		assertEquals(99000000, p99, 99000000 / 32);
+		long p50 = _histogram.getValueAtPercentile(50);
+		assertEquals(50000000, p50, 50000000 / 32);
+		assertEquals(100000000, _histogram.getValueAtPercentile(100));
+		_histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, _histogram.getMax());
+
+		_histogram.reset();
+		assertEquals(0, _histogram.getCount());
+		assertEquals(0, _histogram.getMax());
+	}
+}
@@ -0,0 +1,73 @@
+package infinity.ecs.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author preip
+ */
+public class RingBufferTest {
+
+	@Test
+	public void testCapacity() {
+		assertEquals(8, new RingBuffer<Integer>(5).getCapacity());
+		assertEquals(8, new RingBuffer<Integer>(8).getCapacity());
+		assertEquals(1, new RingBuffer<Integer>(1).getCapacity());
+	}
+
+	@Test
+	public void testOfferAndPoll() {
+		RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+		assertTrue(buffer.isEmpty());
+		assertNull(buffer.poll());
+		// wrap around the ring several times
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 4; i++)
+				assertTrue(buffer.offer(i));
+			assertFalse("A full buffer must reject elements", buffer.offer(4));
+			assertEquals(4, buffer.size());
+			assertEquals(Integer.valueOf(0), buffer.peek());
+			for (int i = 0; i < 4; i++)
+				assertEquals(Integer.valueOf(i), buffer.poll());
+			assertNull(buffer.poll());
+		}
+		buffer.offer(1);
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final int producers = 4;
+		final int count = 100000;
+		final RingBuffer<Integer> buffer = new RingBuffer<Integer>(64);
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			threads[p] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < count; i++)
+						while (!buffer.offer(producer * count + i))
+							Thread.yield();
+				}
+			});
+			threads[p].start();
+		}
+		// every element must arrive exactly once and in the order of its producer
+		int[] next = new int[producers];
+		for (int received = 0; received < producers * count; ) {
+			Integer element = buffer.poll();
+			if (element == null)
+				continue;
+			int producer = element / count;
+			assertEquals(next[producer]++, element % count);
+			received++;
+		}
+		for (Thread thread : threads)
+			thread.join();
+		assertTrue(buffer.isEmpty());
+	}
+}